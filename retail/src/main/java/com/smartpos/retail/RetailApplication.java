@@ -1,22 +1,41 @@
 package com.smartpos.retail;
 
+import com.smartpos.retail.service.UserService;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.lang.management.ManagementFactory;
 
 @SpringBootApplication
+@EnableScheduling
 public class RetailApplication extends Application {
 
+	// Run with -Dretail.startup.benchmark=true to print cold-start timings and exit
+	private static final boolean STARTUP_BENCHMARK = Boolean.getBoolean("retail.startup.benchmark");
+
 	private ConfigurableApplicationContext springContext;
 
+	private long contextStartMillis;
+	private long contextReadyMillis;
+
 	@Override
 	public void init() {
-		// Start Spring Boot
-		springContext = new SpringApplicationBuilder(RetailApplication.class).run();
+		// Start Spring Boot lazily: only the beans behind the login screen are created here,
+		// JPA, repositories and the other screens are warmed up after the window is shown
+		contextStartMillis = System.currentTimeMillis();
+		springContext = new SpringApplicationBuilder(RetailApplication.class)
+				.lazyInitialization(true)
+				.run(getParameters().getRaw().toArray(String[]::new));
+		contextReadyMillis = System.currentTimeMillis();
 	}
 
 	@Override
@@ -31,6 +50,66 @@ public class RetailApplication extends Application {
         primaryStage.setTitle("نظام نقاط البيع الذكية - تسجيل الدخول");
 		primaryStage.setResizable(false);
 		primaryStage.show();
+
+		long loginReadyMillis = System.currentTimeMillis();
+		long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.println("Startup - context: " + (contextReadyMillis - contextStartMillis) + " ms, "
+				+ "login ready: " + (loginReadyMillis - jvmStartMillis) + " ms after JVM start");
+
+		Thread loginUsable = awaitUsableLogin(jvmStartMillis);
+		warmUpContext(jvmStartMillis, loginUsable);
+	}
+
+	/**
+	 * Report when a login can be checked, which is when the stored users are loaded.
+	 * Until then the login screen is shown but pressing Enter waits.
+	 */
+	private Thread awaitUsableLogin(long jvmStartMillis) {
+		Thread loginUsable = new Thread(() -> {
+			springContext.getBean(UserService.class).awaitReady();
+			System.out.println("Startup - login usable: " + (System.currentTimeMillis() - jvmStartMillis) + " ms after JVM start");
+		}, "login-usable");
+		loginUsable.setDaemon(true);
+		loginUsable.start();
+		return loginUsable;
+	}
+
+	/**
+	 * Instantiate the remaining singletons on a background thread so the first
+	 * sale or inventory view does not pay for JPA/Hibernate bootstrap.
+	 */
+	private void warmUpContext(long jvmStartMillis, Thread loginUsable) {
+		Thread warmUp = new Thread(() -> {
+			ConfigurableListableBeanFactory beanFactory = springContext.getBeanFactory();
+			for (String beanName : beanFactory.getBeanDefinitionNames()) {
+				BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+				if (!definition.isSingleton() || definition.isAbstract()) {
+					continue;
+				}
+				try {
+					beanFactory.getBean(beanName);
+				} catch (RuntimeException e) {
+					if (!springContext.isActive()) {
+						return;
+					}
+					System.err.println("Warm-up failed for bean " + beanName + ": " + e.getMessage());
+				}
+			}
+
+			long warmMillis = System.currentTimeMillis();
+			System.out.println("Startup - context fully warm: " + (warmMillis - jvmStartMillis) + " ms after JVM start");
+
+			if (STARTUP_BENCHMARK) {
+				try {
+					loginUsable.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				Platform.exit();
+			}
+		}, "context-warmup");
+		warmUp.setDaemon(true);
+		warmUp.start();
 	}
 
 	@Override
@@ -42,4 +121,4 @@ public class RetailApplication extends Application {
 		// This is called by MainLauncher
 		Application.launch(RetailApplication.class, args);
 	}
-}
\ No newline at end of file
+}
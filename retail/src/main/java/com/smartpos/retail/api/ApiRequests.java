@@ -0,0 +1,28 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.UserSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Checks and conversions shared by the API controllers
+ */
+final class ApiRequests {
+
+    private ApiRequests() {
+    }
+
+    static void requireAdmin(UserSession session, String action) {
+        if (!session.getUser().isAdmin()) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN,
+                    action + " an admin session on lane " + session.getTerminalId());
+        }
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
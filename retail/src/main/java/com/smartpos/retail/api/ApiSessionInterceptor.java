@@ -0,0 +1,72 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Authenticates API calls by the token issued when the session was opened.
+ * Every call except the login itself sends {@code Authorization: Bearer <token>}, and a call
+ * on a lane is only accepted with the token of that lane's session. The desktop till's
+ * terminal is never reachable over HTTP.
+ * The session is left in the {@link #SESSION_ATTRIBUTE} request attribute for the controllers.
+ */
+@Component
+@ConditionalOnWebApplication
+public class ApiSessionInterceptor implements HandlerInterceptor {
+
+    public static final String SESSION_ATTRIBUTE = "com.smartpos.retail.api.session";
+
+    private static final String BEARER = "Bearer ";
+
+    private final UserService userService;
+
+    public ApiSessionInterceptor(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String laneId = pathVariables != null ? pathVariables.get("laneId") : null;
+        if (UserService.LOCAL_TERMINAL_ID.equals(laneId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Lane " + laneId + " is the desktop till and is not served over the API");
+        }
+
+        // Logging in is how a client gets its token
+        if (HttpMethod.POST.matches(request.getMethod())
+                && SessionApiController.PATH.equals(String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE)))) {
+            return true;
+        }
+
+        UserSession session = userService.getSessionByToken(bearerToken(request));
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "A valid session token is required");
+        }
+        if (laneId != null && !laneId.equals(session.getTerminalId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "The session token is not for lane " + laneId);
+        }
+        request.setAttribute(SESSION_ATTRIBUTE, session);
+        return true;
+    }
+
+    private static String bearerToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return null;
+        }
+        return header.substring(BEARER.length()).trim();
+    }
+}
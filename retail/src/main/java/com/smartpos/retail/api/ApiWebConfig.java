@@ -0,0 +1,25 @@
+package com.smartpos.retail.api;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts every API call behind the session token check
+ */
+@Configuration
+@ConditionalOnWebApplication
+public class ApiWebConfig implements WebMvcConfigurer {
+
+    private final ApiSessionInterceptor sessionInterceptor;
+
+    public ApiWebConfig(ApiSessionInterceptor sessionInterceptor) {
+        this.sessionInterceptor = sessionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sessionInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,28 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.service.BasketAffinityService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Products most often bought together with a given one
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class BasketAffinityApiController {
+
+    private final BasketAffinityService basketAffinityService;
+
+    public BasketAffinityApiController(BasketAffinityService basketAffinityService) {
+        this.basketAffinityService = basketAffinityService;
+    }
+
+    @GetMapping("/analytics/bought-with")
+    public List<BasketAffinityService.Affinity> getBoughtWith(@RequestParam String product,
+                                                               @RequestParam(defaultValue = "0") int limit) {
+        return basketAffinityService.getBoughtWith(product, limit);
+    }
+}
@@ -0,0 +1,47 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.ProductService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Products as a branch sees them, and the prices and stock a branch sets for itself
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class BranchApiController {
+
+    private final ProductService productService;
+
+    public BranchApiController(ProductService productService) {
+        this.productService = productService;
+    }
+
+    public record BranchValuesRequest(Double price, Integer stock) {}
+
+    @GetMapping("/branches/{branchId}/products/{barcode}")
+    public ProductRow scanInBranch(@PathVariable String branchId, @PathVariable String barcode) {
+        ProductRow product = productService.getProductByBarcode(branchId, barcode);
+        if (product == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + barcode);
+        }
+        return product;
+    }
+
+    @PutMapping("/lanes/{laneId}/branches/{branchId}/products/{productName}")
+    public ProductRow setBranchValues(@PathVariable String branchId, @PathVariable String productName,
+                                      @RequestBody BranchValuesRequest request,
+                                      @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "Branch prices and stock need");
+        if (productService.getProductByName(productName) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + productName);
+        }
+        productService.setBranchPrice(branchId, productName, request.price());
+        return productService.setBranchStock(branchId, productName, request.stock());
+    }
+}
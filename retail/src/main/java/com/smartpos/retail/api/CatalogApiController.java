@@ -0,0 +1,40 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.util.LruCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Scan lookups against the shared catalog, and how well the hot-product cache in front of them is doing
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class CatalogApiController {
+
+    private final ProductService productService;
+
+    public CatalogApiController(ProductService productService) {
+        this.productService = productService;
+    }
+
+    @GetMapping("/products/{barcode}")
+    public ProductRow scan(@PathVariable String barcode) {
+        ProductRow product = productService.getProductByBarcode(barcode);
+        if (product == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + barcode);
+        }
+        return product;
+    }
+
+    @GetMapping("/stats/product-cache")
+    public Map<String, LruCache.Stats> getProductCacheStats() {
+        return productService.getLookupCacheStats();
+    }
+}
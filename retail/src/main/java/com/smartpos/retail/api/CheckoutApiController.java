@@ -0,0 +1,117 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.CartItem;
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.Receipt;
+import com.smartpos.retail.model.TaxBreakdown;
+import com.smartpos.retail.service.CartService;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.SalesService;
+import com.smartpos.retail.service.TaxService;
+import com.smartpos.retail.util.LruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Headless checkout API so lanes, self-checkout kiosks and load generators can
+ * drive the same services as the JavaFX client. Each lane is a terminal with
+ * its own user session and cart.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class CheckoutApiController {
+
+    private final ProductService productService;
+    private final CartService cartService;
+    private final SalesService salesService;
+    private final TaxService taxService;
+
+    private final LruCache<String, Receipt> receipts;
+
+    @Autowired
+    public CheckoutApiController(ProductService productService,
+                                 CartService cartService,
+                                 SalesService salesService,
+                                 TaxService taxService,
+                                 @Value("${retail.api.receipt-cache-size:10000}") int receiptCacheSize) {
+        this.productService = productService;
+        this.cartService = cartService;
+        this.salesService = salesService;
+        this.taxService = taxService;
+        this.receipts = new LruCache<>(receiptCacheSize);
+    }
+
+    public record ScanRequest(String barcode, Integer quantity) {}
+
+    public record CartView(String laneId, String cartId, List<CartItem> items,
+                           double subtotal, double discount, List<TaxBreakdown.TaxLine> taxes,
+                           double tax, double total) {}
+
+    @GetMapping("/lanes/{laneId}/cart")
+    public CartView getCart(@PathVariable String laneId) {
+        return viewOf(laneId, cartService.getOrOpenCart(laneId));
+    }
+
+    @PostMapping("/lanes/{laneId}/cart/items")
+    public CartView addItem(@PathVariable String laneId, @RequestBody ScanRequest request) {
+        ProductRow product = productService.getProductByBarcode(request.barcode());
+        if (product == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + request.barcode());
+        }
+        int quantity = request.quantity() != null ? request.quantity() : 1;
+
+        CartSession cart = cartService.addToCart(cartService.getOrOpenCart(laneId).getId(), product, quantity);
+        return viewOf(laneId, cart);
+    }
+
+    @DeleteMapping("/lanes/{laneId}/cart/items/{productName}")
+    public CartView removeItem(@PathVariable String laneId, @PathVariable String productName) {
+        CartSession cart = cartService.removeFromCart(cartService.getOrOpenCart(laneId).getId(), productName);
+        return viewOf(laneId, cart);
+    }
+
+    @DeleteMapping("/lanes/{laneId}/cart")
+    public CartView clearCart(@PathVariable String laneId) {
+        CartSession cart = cartService.clearCart(cartService.getOrOpenCart(laneId).getId());
+        return viewOf(laneId, cart);
+    }
+
+    @PostMapping("/lanes/{laneId}/checkout")
+    public Receipt checkout(@PathVariable String laneId) {
+        CartSession cart = cartService.getOrOpenCart(laneId);
+        synchronized (cart) {
+            String transactionId = salesService.processSale(cart, productService);
+            Receipt receipt = salesService.generateReceipt(cart, transactionId);
+            cartService.closeCart(cart.getId());
+            receipts.put(transactionId, receipt);
+            return receipt;
+        }
+    }
+
+    @GetMapping("/receipts/{transactionId}")
+    public Receipt getReceipt(@PathVariable String transactionId) {
+        Receipt receipt = receipts.get(transactionId);
+        if (receipt == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Receipt not found: " + transactionId);
+        }
+        return receipt;
+    }
+
+    private CartView viewOf(String laneId, CartSession cart) {
+        synchronized (cart) {
+            double subtotal = cart.getSubtotal();
+            double discount = cart.getDiscountTotal();
+            TaxBreakdown taxes = taxService.calculateTax(cart);
+            return new CartView(laneId, cart.getId(), cart.toCartItems(), subtotal, discount, taxes.getLines(),
+                    taxes.getTax(), subtotal - discount + taxes.getAddedTax());
+        }
+    }
+}
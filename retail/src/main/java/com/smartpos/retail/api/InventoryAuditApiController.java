@@ -0,0 +1,55 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.InventoryChange;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.InventoryAuditService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.smartpos.retail.api.ApiRequests.toMillis;
+
+/**
+ * The audit trail of a product's catalog and stock changes, and its stock at any moment
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class InventoryAuditApiController {
+
+    private final InventoryAuditService inventoryAuditService;
+
+    public InventoryAuditApiController(InventoryAuditService inventoryAuditService) {
+        this.inventoryAuditService = inventoryAuditService;
+    }
+
+    public record StockAt(String productName, String branchId, LocalDateTime at, Integer stock) {}
+
+    @GetMapping("/lanes/{laneId}/audit/products/{productName}")
+    public List<InventoryChange> getInventoryHistory(@PathVariable String productName,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                     @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "The inventory audit trail needs");
+        return inventoryAuditService.getHistory(productName,
+                from != null ? toMillis(from) : Long.MIN_VALUE, to != null ? toMillis(to) : Long.MAX_VALUE);
+    }
+
+    @GetMapping("/lanes/{laneId}/audit/products/{productName}/stock")
+    public StockAt getStockAt(@PathVariable String productName,
+                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+                              @RequestParam(required = false) String branchId,
+                              @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "The inventory audit trail needs");
+        Integer stock = inventoryAuditService.getStockAt(productName, branchId, toMillis(at));
+        if (stock == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No stock recorded for " + productName + " at " + at);
+        }
+        return new StockAt(productName, branchId, at, stock);
+    }
+}
@@ -0,0 +1,77 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.PriceVersion;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.PriceScheduleService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.smartpos.retail.api.ApiRequests.toMillis;
+
+/**
+ * Prices scheduled ahead of time, and the price of a product at any moment
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class PriceApiController {
+
+    private final PriceScheduleService priceScheduleService;
+
+    public PriceApiController(PriceScheduleService priceScheduleService) {
+        this.priceScheduleService = priceScheduleService;
+    }
+
+    public record PriceChangeRequest(String productName, double price, LocalDateTime effectiveFrom) {}
+
+    public record PriceAt(String productName, LocalDateTime at, Double price) {}
+
+    @PostMapping("/lanes/{laneId}/prices")
+    public PriceVersion schedulePrice(@RequestBody PriceChangeRequest request,
+                                      @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "Scheduling prices needs");
+        if (request.effectiveFrom() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "effectiveFrom is required");
+        }
+        return priceScheduleService.schedule(request.productName(), request.price(), toMillis(request.effectiveFrom()));
+    }
+
+    @DeleteMapping("/lanes/{laneId}/prices/{productName}")
+    public ResponseEntity<Void> cancelPrice(@PathVariable String productName,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effectiveFrom,
+                                            @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "Cancelling prices needs");
+        if (!priceScheduleService.cancel(productName, toMillis(effectiveFrom))) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No price scheduled for " + productName + " at " + effectiveFrom);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/prices/pending")
+    public List<PriceVersion> getPendingPrices() {
+        return priceScheduleService.getPending();
+    }
+
+    @GetMapping("/prices/{productName}")
+    public PriceAt getPriceAt(@PathVariable String productName,
+                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        LocalDateTime when = at != null ? at : LocalDateTime.now();
+        Double price = priceScheduleService.getPriceAt(productName, toMillis(when));
+        if (price == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found: " + productName);
+        }
+        return new PriceAt(productName, when, price);
+    }
+
+    @GetMapping("/prices/{productName}/history")
+    public List<PriceVersion> getPriceHistory(@PathVariable String productName) {
+        return priceScheduleService.getHistory(productName);
+    }
+}
@@ -0,0 +1,79 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.Promotion;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.PromotionService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Promotion rules: multi-buy, bundle and percentage-off deals applied to every cart
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class PromotionApiController {
+
+    private final PromotionService promotionService;
+
+    public PromotionApiController(PromotionService promotionService) {
+        this.promotionService = promotionService;
+    }
+
+    /**
+     * A new rule. MULTI_BUY uses productNames (one product), requiredQuantity and bundlePrice,
+     * BUNDLE uses productNames and bundlePrice, PERCENT_OFF uses category or productNames and percentOff.
+     */
+    public record PromotionRequest(String name, Promotion.PromotionType type, Set<String> productNames,
+                                   String category, int requiredQuantity, double bundlePrice, double percentOff,
+                                   LocalDateTime validFrom, LocalDateTime validUntil) {}
+
+    @GetMapping("/promotions")
+    public List<Promotion> getPromotions() {
+        return promotionService.getPromotions();
+    }
+
+    @PostMapping("/lanes/{laneId}/promotions")
+    public Promotion addPromotion(@RequestBody PromotionRequest request,
+                                  @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "Adding promotions needs");
+        if (request.type() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "type is required");
+        }
+        Set<String> productNames = request.productNames() != null ? request.productNames() : Set.of();
+        Promotion promotion = switch (request.type()) {
+            case MULTI_BUY -> {
+                if (productNames.size() != 1) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A multi-buy needs exactly one product");
+                }
+                yield Promotion.multiBuy(request.name(), productNames.iterator().next(),
+                        request.requiredQuantity(), request.bundlePrice());
+            }
+            case BUNDLE -> Promotion.bundle(request.name(), productNames, request.bundlePrice());
+            case PERCENT_OFF -> request.category() != null
+                    ? Promotion.categoryPercentOff(request.name(), request.category(), request.percentOff())
+                    : Promotion.productPercentOff(request.name(), productNames, request.percentOff());
+        };
+        return promotionService.addPromotion(promotion.validBetween(request.validFrom(), request.validUntil()));
+    }
+
+    @DeleteMapping("/lanes/{laneId}/promotions/{id}")
+    public ResponseEntity<Void> removePromotion(@PathVariable Long id,
+                                                @RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "Removing promotions needs");
+        Promotion promotion = promotionService.getPromotions().stream()
+                .filter(candidate -> Objects.equals(candidate.getId(), id))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Promotion not found: " + id));
+        promotionService.removePromotion(promotion);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.service.ReceiptSearchService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Finds past transactions by ID, date, total, cashier or product
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class ReceiptSearchApiController {
+
+    private final ReceiptSearchService receiptSearchService;
+
+    public ReceiptSearchApiController(ReceiptSearchService receiptSearchService) {
+        this.receiptSearchService = receiptSearchService;
+    }
+
+    @GetMapping("/transactions")
+    public List<SaleRecord> searchTransactions(@RequestParam(required = false) String id,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                               @RequestParam(required = false) Double minTotal,
+                                               @RequestParam(required = false) Double maxTotal,
+                                               @RequestParam(required = false) String cashier,
+                                               @RequestParam(required = false) String product,
+                                               @RequestParam(defaultValue = "0") int limit) {
+        return receiptSearchService.search(new ReceiptSearchService.Query(id, from, to, minTotal, maxTotal,
+                cashier, product, limit));
+    }
+}
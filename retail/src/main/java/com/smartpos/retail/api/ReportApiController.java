@@ -0,0 +1,54 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.model.ZReport;
+import com.smartpos.retail.service.ZReportService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The running day and shift totals, closing the day, and the Z reports closed so far
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class ReportApiController {
+
+    private final ZReportService zReportService;
+
+    public ReportApiController(ZReportService zReportService) {
+        this.zReportService = zReportService;
+    }
+
+    @GetMapping("/reports/current")
+    public ZReport getCurrentReport() {
+        return zReportService.getCurrentReport();
+    }
+
+    @GetMapping("/reports/shifts/{cashier}")
+    public ZReport getShiftReport(@PathVariable String cashier) {
+        return zReportService.getShiftReport(cashier);
+    }
+
+    @PostMapping("/lanes/{laneId}/close-day")
+    public ZReport closeDay(@RequestAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE) UserSession session) {
+        ApiRequests.requireAdmin(session, "Closing the day needs");
+        return zReportService.closeDay();
+    }
+
+    @GetMapping("/reports/z/{number}")
+    public ZReport getZReport(@PathVariable long number) {
+        ZReport report = zReportService.getReport(number);
+        if (report == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Z report not found: " + number);
+        }
+        return report;
+    }
+
+    @GetMapping("/reports/z/{number}/verify")
+    public ZReportService.Verification verifyZReport(@PathVariable long number) {
+        return zReportService.verify(number);
+    }
+}
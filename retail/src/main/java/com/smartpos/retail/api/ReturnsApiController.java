@@ -0,0 +1,51 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.service.RefundService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Returns and voids against journaled sales
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class ReturnsApiController {
+
+    private final RefundService refundService;
+
+    public ReturnsApiController(RefundService refundService) {
+        this.refundService = refundService;
+    }
+
+    public record ReturnRequest(String transactionId, Map<String, Integer> items) {}
+
+    @GetMapping("/transactions/{transactionId}")
+    public SaleRecord getTransaction(@PathVariable String transactionId) {
+        SaleRecord sale = refundService.findTransaction(transactionId);
+        if (sale == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction not found: " + transactionId);
+        }
+        return sale;
+    }
+
+    @GetMapping("/transactions/{transactionId}/returnable")
+    public Map<String, Integer> getReturnable(@PathVariable String transactionId) {
+        return refundService.getReturnableQuantities(transactionId);
+    }
+
+    @PostMapping("/lanes/{laneId}/returns")
+    public SaleRecord returnItems(@PathVariable String laneId, @RequestBody ReturnRequest request) {
+        return refundService.refund(request.transactionId(), request.items(), laneId);
+    }
+
+    @PostMapping("/lanes/{laneId}/voids/{transactionId}")
+    public SaleRecord voidSale(@PathVariable String laneId, @PathVariable String transactionId) {
+        return refundService.voidSale(transactionId, laneId);
+    }
+}
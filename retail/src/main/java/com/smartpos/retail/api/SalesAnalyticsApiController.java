@@ -0,0 +1,30 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.SalesSummary;
+import com.smartpos.retail.service.SalesAnalyticsService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+/**
+ * Sales totals over a range of days, aggregated from the sales event log
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class SalesAnalyticsApiController {
+
+    private final SalesAnalyticsService salesAnalyticsService;
+
+    public SalesAnalyticsApiController(SalesAnalyticsService salesAnalyticsService) {
+        this.salesAnalyticsService = salesAnalyticsService;
+    }
+
+    @GetMapping("/analytics/sales")
+    public SalesSummary getSalesSummary(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return salesAnalyticsService.summarize(from, to);
+    }
+}
@@ -0,0 +1,49 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.User;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.UserService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Logs users in and out of API lanes. Logging in returns the token the lane's client
+ * sends with every other call.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class SessionApiController {
+
+    static final String PATH = "/api/lanes/{laneId}/session";
+
+    private final UserService userService;
+
+    public SessionApiController(UserService userService) {
+        this.userService = userService;
+    }
+
+    public record LoginRequest(String username, String password) {}
+
+    @PostMapping("/lanes/{laneId}/session")
+    public Map<String, String> login(@PathVariable String laneId, @RequestBody LoginRequest request) {
+        User user = userService.authenticate(request.username(), request.password());
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid username or password");
+        }
+        UserSession session = userService.openSession(laneId, user);
+        return Map.of("laneId", laneId, "user", user.getUsername(), "role", user.getRole().name(),
+                "token", session.getToken());
+    }
+
+    @DeleteMapping("/lanes/{laneId}/session")
+    public ResponseEntity<Void> logout(@PathVariable String laneId) {
+        userService.closeSession(laneId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.ReorderSuggestion;
+import com.smartpos.retail.service.StockMonitorService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Products running low and how much of each to reorder
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication
+public class StockApiController {
+
+    private final StockMonitorService stockMonitorService;
+
+    public StockApiController(StockMonitorService stockMonitorService) {
+        this.stockMonitorService = stockMonitorService;
+    }
+
+    @GetMapping("/stock/reorder-suggestions")
+    public List<ReorderSuggestion> getReorderSuggestions() {
+        return stockMonitorService.getReorderSuggestions();
+    }
+}
@@ -2,6 +2,7 @@ package com.smartpos.retail.controllers;
 
 import com.smartpos.retail.model.ProductRow;
 import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.StockMonitorService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -26,11 +27,14 @@ public class DashboardController implements Initializable {
 
     private final ApplicationContext springContext;
     private final ProductService productService;
+    private final StockMonitorService stockMonitorService;
     
     @Autowired
-    public DashboardController(ApplicationContext springContext, ProductService productService) {
+    public DashboardController(ApplicationContext springContext, ProductService productService,
+                               StockMonitorService stockMonitorService) {
         this.springContext = springContext;
         this.productService = productService;
+        this.stockMonitorService = stockMonitorService;
     }
     
     @FXML
@@ -93,8 +97,8 @@ public class DashboardController implements Initializable {
         double totalStockValue = productService.getTotalStockValue();
         totalStockValueLabel.setText(String.format("%.2f ر.س", totalStockValue));
         
-        // Low stock products
-        List<ProductRow> lowStock = productService.getLowStockProducts(50);
+        // Low stock products, kept up to date by the stock monitor as sales come in
+        List<ProductRow> lowStock = stockMonitorService.getLowStockProducts();
         lowStockLabel.setText(String.valueOf(lowStock.size()));
         lowStockProducts.clear();
         lowStockProducts.addAll(lowStock);
@@ -1,7 +1,9 @@
 package com.smartpos.retail.controllers;
 
 import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.TaxRate;
 import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.TaxService;
 import com.smartpos.retail.service.UserService;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -28,12 +30,15 @@ public class InventoryController implements Initializable {
     private final ApplicationContext springContext;
     private final ProductService productService;
     private final UserService userService;
+    private final TaxService taxService;
     
     @Autowired
-    public InventoryController(ApplicationContext springContext, ProductService productService, UserService userService) {
+    public InventoryController(ApplicationContext springContext, ProductService productService,
+                               UserService userService, TaxService taxService) {
         this.springContext = springContext;
         this.productService = productService;
         this.userService = userService;
+        this.taxService = taxService;
     }
     
     @FXML
@@ -173,6 +178,8 @@ public class InventoryController implements Initializable {
     }
     
     private void showProductDialog(ProductRow product) {
+        // The stock the form starts from; only the user's change to it is applied on save
+        int stockShown = product != null ? product.getStock() : 0;
         Dialog<ProductRow> dialog = new Dialog<>();
         dialog.setTitle(product == null ? "إضافة منتج جديد" : "تعديل منتج");
         
@@ -193,12 +200,22 @@ public class InventoryController implements Initializable {
         priceField.setPromptText("السعر");
         TextField stockField = new TextField();
         stockField.setPromptText("المخزون");
+        TextField categoryField = new TextField();
+        categoryField.setPromptText("الفئة");
+        ComboBox<String> taxClassBox = new ComboBox<>();
+        taxClassBox.setEditable(true);
+        taxClassBox.setPromptText("حسب الفئة");
+        for (TaxRate taxRate : taxService.getTaxRates()) {
+            taxClassBox.getItems().add(taxRate.getCode());
+        }
         
         if (product != null) {
             nameField.setText(product.getName());
             barcodeField.setText(product.getBarcode());
             priceField.setText(String.valueOf(product.getPrice()));
-            stockField.setText(String.valueOf(product.getStock()));
+            stockField.setText(String.valueOf(stockShown));
+            categoryField.setText(product.getCategory());
+            taxClassBox.setValue(product.getTaxClass());
         }
         
         grid.add(new Label("اسم المنتج:"), 0, 0);
@@ -209,6 +226,10 @@ public class InventoryController implements Initializable {
         grid.add(priceField, 1, 2);
         grid.add(new Label("المخزون:"), 0, 3);
         grid.add(stockField, 1, 3);
+        grid.add(new Label("الفئة:"), 0, 4);
+        grid.add(categoryField, 1, 4);
+        grid.add(new Label("فئة الضريبة:"), 0, 5);
+        grid.add(taxClassBox, 1, 5);
         
         dialog.getDialogPane().setContent(grid);
         
@@ -230,7 +251,12 @@ public class InventoryController implements Initializable {
                         return null;
                     }
                     
+                    String category = categoryField.getText() != null ? categoryField.getText().trim() : "";
+                    
                     ProductRow newProduct = new ProductRow(name, barcode.isEmpty() ? null : barcode, price, stock);
+                    newProduct.setCategory(category.isEmpty() ? null : category);
+                    String taxClass = taxClassBox.getValue() != null ? taxClassBox.getValue().trim() : "";
+                    newProduct.setTaxClass(taxClass.isEmpty() ? null : taxClass);
                     
                     if (product == null) {
                         // Create new product
@@ -238,7 +264,7 @@ public class InventoryController implements Initializable {
                         statusLabel.setText("تم إضافة المنتج بنجاح");
                     } else {
                         // Update existing product
-                        productService.updateProduct(product.getName(), newProduct);
+                        productService.updateProduct(product.getName(), newProduct, stockShown);
                         statusLabel.setText("تم تحديث المنتج بنجاح");
                     }
                     
@@ -0,0 +1,87 @@
+package com.smartpos.retail.controllers;
+
+import com.smartpos.retail.model.ProductRow;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.text.Text;
+
+/**
+ * Fixed ring of rows for the recent-scans panel.
+ * The rows are built once and recycled: a scan rewrites the text of the oldest row and
+ * moves it to the bottom, so scanning allocates no nodes. Styling comes from the
+ * recent-scan classes in sales.css.
+ */
+public class RecentScansStrip {
+
+    private static final String CURRENCY = " ر.س";
+
+    private final HBox[] rows;
+    private final Text[] names;
+    private final Text[] prices;
+    private final StringBuilder priceText = new StringBuilder();
+    // Index of the oldest row, the next one to be reused
+    private int next;
+
+    public RecentScansStrip(Pane container, int size) {
+        this.rows = new HBox[size];
+        this.names = new Text[size];
+        this.prices = new Text[size];
+
+        for (int i = 0; i < size; i++) {
+            names[i] = new Text();
+            names[i].getStyleClass().add("recent-scan-name");
+            prices[i] = new Text();
+            prices[i].getStyleClass().add("recent-scan-price");
+
+            rows[i] = new HBox(10, names[i], prices[i]);
+            rows[i].getStyleClass().add("recent-scan");
+            hide(rows[i]);
+        }
+        container.getChildren().setAll(rows);
+    }
+
+    public void show(ProductRow product) {
+        int slot = next;
+        next = (next + 1) % rows.length;
+
+        setText(names[slot], product.getName());
+        setText(prices[slot], formatPrice(product.getPrice()));
+        rows[slot].setVisible(true);
+        rows[slot].setManaged(true);
+        // Newest scan goes to the bottom of the panel
+        rows[slot].toFront();
+    }
+
+    public void clear() {
+        for (HBox row : rows) {
+            hide(row);
+        }
+        next = 0;
+    }
+
+    private String formatPrice(double price) {
+        long cents = Math.round(price * 100);
+        priceText.setLength(0);
+        if (cents < 0) {
+            priceText.append('-');
+            cents = -cents;
+        }
+        priceText.append(cents / 100).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            priceText.append('0');
+        }
+        return priceText.append(fraction).append(CURRENCY).toString();
+    }
+
+    private static void setText(Text text, String value) {
+        if (!value.equals(text.getText())) {
+            text.setText(value);
+        }
+    }
+
+    private static void hide(HBox row) {
+        row.setVisible(false);
+        row.setManaged(false);
+    }
+}
@@ -1,33 +1,52 @@
 package com.smartpos.retail.controllers;
 
 import com.smartpos.retail.model.CartItem;
+import com.smartpos.retail.model.CartSession;
 import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.TaxBreakdown;
 import com.smartpos.retail.service.CartService;
+import com.smartpos.retail.service.ProductSearchService;
 import com.smartpos.retail.service.ProductService;
 import com.smartpos.retail.service.SalesService;
+import com.smartpos.retail.service.StockReservationService;
+import com.smartpos.retail.service.TaxService;
+import com.smartpos.retail.service.UserService;
+import com.smartpos.retail.util.ScanQueue;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
-import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.util.Duration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Controller;
 
 import java.io.IOException;
 import java.net.URL;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Controller
 public class SalesController implements Initializable {
@@ -36,16 +55,27 @@ public class SalesController implements Initializable {
     private final ProductService productService;
     private final CartService cartService;
     private final SalesService salesService;
+    private final TaxService taxService;
+    private final ProductSearchService productSearchService;
+    private final StockReservationService stockReservationService;
     
     @Autowired
     public SalesController(ApplicationContext springContext, 
                         ProductService productService,
                         CartService cartService,
-                        SalesService salesService) {
+                        SalesService salesService,
+                        TaxService taxService,
+                        ProductSearchService productSearchService,
+                        StockReservationService stockReservationService,
+                        @Value("${retail.scan.coalesce-window-ms:300}") long scanCoalesceWindowMillis) {
         this.springContext = springContext;
         this.productService = productService;
         this.cartService = cartService;
         this.salesService = salesService;
+        this.taxService = taxService;
+        this.productSearchService = productSearchService;
+        this.stockReservationService = stockReservationService;
+        this.scanQueue = new ScanQueue(scanCoalesceWindowMillis);
     }
 
     @FXML
@@ -81,6 +111,9 @@ public class SalesController implements Initializable {
     @FXML
     private Label subtotalLabel;
     
+    @FXML
+    private Label discountLabel;
+    
     @FXML
     private Label taxLabel;
     
@@ -97,11 +130,32 @@ public class SalesController implements Initializable {
     private Label statusLabel;
     
     private ObservableList<CartItem> cartItems;
-    private static final double TAX_RATE = 0.0; // Can be configured later
+    private CartSession cart;
+    
+    // Type-ahead search: wait for typing to pause, run one query at a time off the FX thread
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(200);
+    private static final int MIN_SEARCH_LENGTH = 2;
+    private static final int MAX_SUGGESTIONS = 8;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private PauseTransition searchDebounce;
+    private Task<List<ProductRow>> pendingSearch;
+    private ContextMenu suggestionsPopup;
+    
+    // Scanner input is queued by the key handler and applied to the cart once per frame,
+    // repeats of a code merge only when back to back (A, B, A is three cart updates)
+    private final ScanQueue scanQueue;
+    private ScanPump scanPump;
+    private static final int RECENT_SCANS_SHOWN = 5;
+    private RecentScansStrip recentScans;
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupDateLabel();
+        recentScans = new RecentScansStrip(recentScansArea, RECENT_SCANS_SHOWN);
         initializeCart();
         setupBarcodeScanner();
         
@@ -117,47 +171,219 @@ public class SalesController implements Initializable {
     private void setupBarcodeScanner() {
         // Listen for Enter key (barcode scanners send Enter after scanning)
         barcodeField.setOnKeyPressed(this::handleBarcodeInput);
+        
+        // Apply queued scans once per frame, a view loaded earlier stops pumping into stale nodes
+        if (scanPump != null) {
+            scanPump.stop();
+        }
+        scanPump = new ScanPump(scanQueue, this::processScans);
+        scanPump.start();
+        
+        // Suggest products while a cashier types a name by hand
+        suggestionsPopup = new ContextMenu();
+        searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+        searchDebounce.setOnFinished(event -> startSearch(barcodeField.getText()));
+        barcodeField.textProperty().addListener((observable, oldText, newText) -> {
+            cancelPendingSearch();
+            if (newText == null || newText.trim().length() < MIN_SEARCH_LENGTH) {
+                suggestionsPopup.hide();
+                return;
+            }
+            searchDebounce.playFromStart();
+        });
+    }
+    
+    private void startSearch(String text) {
+        String query = text.trim();
+        Task<List<ProductRow>> search = new Task<>() {
+            @Override
+            protected List<ProductRow> call() {
+                return productSearchService.suggest(query, MAX_SUGGESTIONS);
+            }
+        };
+        search.setOnSucceeded(event -> {
+            if (search == pendingSearch) {
+                pendingSearch = null;
+                showSuggestions(search.getValue());
+            }
+        });
+        pendingSearch = search;
+        searchExecutor.execute(search);
+    }
+    
+    private void cancelPendingSearch() {
+        searchDebounce.stop();
+        if (pendingSearch != null) {
+            // A queued search that has been superseded never runs
+            pendingSearch.cancel();
+            pendingSearch = null;
+        }
+    }
+    
+    private void showSuggestions(List<ProductRow> products) {
+        if (products.isEmpty()) {
+            suggestionsPopup.hide();
+            return;
+        }
+        
+        List<MenuItem> items = new ArrayList<>(products.size());
+        for (ProductRow product : products) {
+            MenuItem item = new MenuItem(product.getName() + "  -  " + String.format("%.2f", product.getPrice()) + " ر.س");
+            item.setOnAction(event -> {
+                flushScans();
+                String error = addToCart(product, 1);
+                barcodeField.clear();
+                showScanResult(List.of(product), error != null ? error : "تم الإضافة: " + product.getName(), error != null);
+            });
+            items.add(item);
+        }
+        suggestionsPopup.getItems().setAll(items);
+        if (!suggestionsPopup.isShowing()) {
+            suggestionsPopup.show(barcodeField, Side.BOTTOM, 0, 0);
+        }
     }
     
     private void handleBarcodeInput(KeyEvent event) {
         if (event.getCode() == KeyCode.ENTER) {
+            cancelPendingSearch();
+            suggestionsPopup.hide();
             String barcode = barcodeField.getText().trim();
             if (!barcode.isEmpty()) {
-                processBarcode(barcode);
+                // Only queue the scan here, the frame pump does the work
+                scanQueue.offer(barcode);
+                barcodeField.clear();
             }
             event.consume();
         }
     }
     
-    private void processBarcode(String barcode) {
-        // Find product by barcode
-        ProductRow product = productService.getProductByBarcode(barcode);
+    /**
+     * Apply scans queued since the last frame, then update the screen once
+     */
+    private void processScans(List<ScanQueue.Scan> scans) {
+        List<ProductRow> added = new ArrayList<>();
+        String message = null;
+        boolean isError = false;
         
-        if (product == null) {
-            // Try searching by name as fallback
-            product = productService.getProductByName(barcode);
+        for (ScanQueue.Scan scan : scans) {
+            ProductRow product = findScannedProduct(scan.code());
+            if (product == null) {
+                searchTypedCode(scan);
+                continue;
+            }
+            
+            ScanOutcome outcome = addScans(product, scan.quantity());
+            if (outcome.added() > 0) {
+                added.add(product);
+            }
+            message = outcome.message();
+            isError = outcome.error() != null;
         }
         
+        showScanResult(added, message, isError);
+    }
+    
+    /**
+     * What a run of scans of one product did to the cart
+     * @param product The product scanned
+     * @param added Units put in the cart
+     * @param refused Units left out
+     * @param error Why units were left out, null if none were
+     */
+    private record ScanOutcome(ProductRow product, int added, int refused, String error) {
+        
+        String message() {
+            if (added == 0) {
+                return error;
+            }
+            String done = "تم الإضافة: " + product.getName() + (added > 1 ? " ×" + added : "");
+            return error == null ? done : done + " - " + error + " (" + refused + " لم تضف)";
+        }
+    }
+    
+    /**
+     * Add a run of merged scans. If the whole run does not fit in stock, the units that do are
+     * added and only the rest are refused, as they would have been scan by scan.
+     */
+    private ScanOutcome addScans(ProductRow product, int quantity) {
+        String error = addToCart(product, quantity);
+        if (error == null) {
+            return new ScanOutcome(product, quantity, 0, null);
+        }
+        int fits = quantity > 1 ? Math.min(quantity, stockReservationService.getAvailable(product)) : 0;
+        if (fits > 0 && addToCart(product, fits) == null) {
+            return new ScanOutcome(product, fits, quantity - fits, error);
+        }
+        return new ScanOutcome(product, 0, quantity, error);
+    }
+    
+    private ProductRow findScannedProduct(String code) {
+        ProductRow product = productService.getProductByBarcode(code);
         if (product == null) {
-            showStatusMessage("المنتج غير موجود", true);
-            barcodeField.clear();
-            Platform.runLater(() -> barcodeField.requestFocus());
-            return;
+            // Try searching by name as fallback
+            product = productService.getProductByName(code);
         }
-        
-        // Add product to cart (quantity 1 by default)
-        try {
-            cartService.addToCart(product, 1, cartItems);
-            
-            // Update UI
+        return product;
+    }
+    
+    /**
+     * Search for a code that is neither a barcode nor a full name, such as a partial name
+     * typed by hand, off the FX thread. A single match goes in the cart, several are offered
+     * to the cashier. Scans that arrive meanwhile are not held up behind the search.
+     */
+    private void searchTypedCode(ScanQueue.Scan scan) {
+        Task<List<ProductRow>> search = new Task<>() {
+            @Override
+            protected List<ProductRow> call() {
+                return productSearchService.suggest(scan.code(), MAX_SUGGESTIONS);
+            }
+        };
+        search.setOnSucceeded(event -> {
+            List<ProductRow> matches = search.getValue();
+            if (matches.isEmpty()) {
+                showScanResult(List.of(), "المنتج غير موجود", true);
+            } else if (matches.size() == 1) {
+                ScanOutcome outcome = addScans(matches.get(0), scan.quantity());
+                showScanResult(outcome.added() > 0 ? List.of(outcome.product()) : List.of(),
+                        outcome.message(), outcome.error() != null);
+            } else {
+                // A partial name typed by hand: let the cashier pick one
+                showSuggestions(matches);
+                showScanResult(List.of(), "اختر المنتج من القائمة", false);
+            }
+        });
+        searchExecutor.execute(search);
+    }
+    
+    /**
+     * Apply any scans still queued, before an action that depends on the cart contents
+     */
+    private void flushScans() {
+        if (!scanQueue.isEmpty()) {
+            processScans(scanQueue.drain());
+        }
+    }
+    
+    private void showScanResult(List<ProductRow> added, String message, boolean isError) {
+        if (!added.isEmpty()) {
+            refreshCart();
             updateTotals();
-            updateRecentScans(product);
-            showStatusMessage("تم الإضافة: " + product.getName(), false);
-            
-            // Clear barcode field and refocus for next scan
-            barcodeField.clear();
-            Platform.runLater(() -> barcodeField.requestFocus());
-            
+            updateRecentScans(added);
+        }
+        if (message != null) {
+            showStatusMessage(message, isError);
+        }
+        Platform.runLater(() -> barcodeField.requestFocus());
+    }
+    
+    /**
+     * Add a product to the cart
+     * @return Error message for the cashier, null if added
+     */
+    private String addToCart(ProductRow product, int quantity) {
+        try {
+            cart = cartService.addToCart(cart.getId(), product, quantity);
+            return null;
         } catch (IllegalArgumentException e) {
             String errorMsg = e.getMessage();
             if (errorMsg != null) {
@@ -173,32 +399,19 @@ public class SalesController implements Initializable {
             } else {
                 errorMsg = "خطأ غير معروف";
             }
-            showStatusMessage("خطأ: " + errorMsg, true);
-            barcodeField.clear();
-            Platform.runLater(() -> barcodeField.requestFocus());
+            return "خطأ: " + errorMsg;
         }
     }
     
-    private void updateRecentScans(ProductRow product) {
-        lastScannedLabel.setText("آخر: " + product.getName() + " - " + String.format("%.2f", product.getPrice()) + " ر.س");
+    private void updateRecentScans(List<ProductRow> added) {
+        ProductRow last = added.get(added.size() - 1);
+        lastScannedLabel.setText("آخر: " + last.getName() + " - " + String.format("%.2f", last.getPrice()) + " ر.س");
         lastScannedLabel.setVisible(true);
         
-        // Add to recent scans area (keep last 5)
-        if (recentScansArea.getChildren().size() >= 5) {
-            recentScansArea.getChildren().remove(0);
+        // Keep the last few scans, a burst only rewrites the rows that stay visible
+        for (ProductRow product : added.subList(Math.max(0, added.size() - RECENT_SCANS_SHOWN), added.size())) {
+            recentScans.show(product);
         }
-        
-        HBox scanItem = new HBox(10);
-        scanItem.setPadding(new Insets(5));
-        scanItem.setStyle("-fx-background-color: white; -fx-border-color: #bdc3c7; -fx-border-width: 1;");
-        
-        Label nameLabel = new Label(product.getName());
-        nameLabel.setStyle("-fx-font-weight: bold;");
-        Label priceLabel = new Label(String.format("%.2f", product.getPrice()) + " ر.س");
-        priceLabel.setStyle("-fx-text-fill: #27ae60;");
-        
-        scanItem.getChildren().addAll(nameLabel, priceLabel);
-        recentScansArea.getChildren().add(scanItem);
     }
     
     private void initializeCart() {
@@ -209,34 +422,120 @@ public class SalesController implements Initializable {
         cartPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
         cartTotalColumn.setCellValueFactory(new PropertyValueFactory<>("total"));
         
-        // Remove column with Remove button
+        // Remove column with Remove button, bound once per cell and looked up on click
         cartRemoveColumn.setCellFactory(column -> new TableCell<CartItem, String>() {
             private final Button removeButton = new Button("إزالة");
             
+            {
+                removeButton.getStyleClass().add("remove-button");
+                removeButton.setOnAction(e -> {
+                    CartItem cartItem = getTableRow().getItem();
+                    if (cartItem == null) {
+                        return;
+                    }
+                    cartService.removeFromCart(cart.getId(), cartItem.getProductName());
+                    refreshCart();
+                    updateTotals();
+                    showStatusMessage("تم إزالة العنصر", false);
+                });
+            }
+            
             @Override
             protected void updateItem(String item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty) {
-                    setGraphic(null);
-                } else {
-                    CartItem cartItem = getTableView().getItems().get(getIndex());
-                    removeButton.setOnAction(e -> {
-                        cartService.removeFromCart(cartItems, cartItem.getProductName());
-                        updateTotals();
-                        showStatusMessage("تم إزالة العنصر", false);
-                    });
-                    removeButton.setStyle("-fx-background-color: #e74c3c; -fx-text-fill: white;");
-                    setGraphic(removeButton);
-                }
+                setGraphic(empty ? null : removeButton);
             }
         });
         
         cartTable.setItems(cartItems);
+        
+        // Pick up the cart this terminal was working on, it survives view switches and restarts
+        cart = cartService.getOrOpenCart(UserService.LOCAL_TERMINAL_ID);
+        refreshCart();
         updateTotals();
     }
     
+    private void refreshCart() {
+        // Update the rows already in the table, a scan usually only changes one quantity
+        List<CartSession.CartLine> lines = cart.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            CartSession.CartLine line = lines.get(i);
+            CartItem row = i < cartItems.size() ? cartItems.get(i) : null;
+            if (row != null && row.getProductName().equals(line.productName()) && row.getPrice() == line.price()) {
+                if (row.getQuantity() != line.quantity()) {
+                    row.setQuantity(line.quantity());
+                }
+            } else if (row != null) {
+                cartItems.set(i, new CartItem(line.productName(), line.quantity(), line.price()));
+            } else {
+                cartItems.add(new CartItem(line.productName(), line.quantity(), line.price()));
+            }
+        }
+        if (cartItems.size() > lines.size()) {
+            cartItems.remove(lines.size(), cartItems.size());
+        }
+    }
+    
+    @FXML
+    private void handleParkCart() {
+        flushScans();
+        if (cart.isEmpty()) {
+            showStatusMessage("السلة فارغة", true);
+            return;
+        }
+        
+        cartService.parkCart(cart.getId());
+        cart = cartService.getOrOpenCart(UserService.LOCAL_TERMINAL_ID);
+        refreshCart();
+        updateTotals();
+        recentScans.clear();
+        lastScannedLabel.setVisible(false);
+        showStatusMessage("تم تعليق السلة", false);
+        Platform.runLater(() -> barcodeField.requestFocus());
+    }
+    
+    @FXML
+    private void handleResumeCart() {
+        flushScans();
+        List<CartSession> parkedCarts = cartService.getParkedCarts();
+        if (parkedCarts.isEmpty()) {
+            showStatusMessage("لا توجد سلال معلقة", true);
+            return;
+        }
+        
+        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+        Map<String, CartSession> choices = new LinkedHashMap<>();
+        for (CartSession parked : parkedCarts) {
+            String time = Instant.ofEpochMilli(parked.getUpdatedAtMillis())
+                    .atZone(ZoneId.systemDefault())
+                    .format(timeFormatter);
+            choices.put(time + " - " + parked.getItemCount() + " عناصر - "
+                    + String.format("%.2f", parked.getSubtotal()) + " ر.س", parked);
+        }
+        
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(choices.keySet().iterator().next(), choices.keySet());
+        dialog.setTitle("استئناف سلة");
+        dialog.setHeaderText("اختر السلة المعلقة");
+        dialog.showAndWait().ifPresent(choice -> {
+            try {
+                cart = cartService.resumeCart(choices.get(choice).getId(), UserService.LOCAL_TERMINAL_ID);
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // Resumed or closed on another lane while the dialog was open
+                showStatusMessage("السلة لم تعد معلقة", true);
+                return;
+            }
+            refreshCart();
+            updateTotals();
+            recentScans.clear();
+            lastScannedLabel.setVisible(false);
+            showStatusMessage("تم استئناف السلة", false);
+        });
+        Platform.runLater(() -> barcodeField.requestFocus());
+    }
+    
     @FXML
     private void handleClearCart() {
+        flushScans();
         if (cartItems.isEmpty()) {
             return;
         }
@@ -248,9 +547,10 @@ public class SalesController implements Initializable {
         
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                cartService.clearCart(cartItems);
+                cartService.clearCart(cart.getId());
+                refreshCart();
                 updateTotals();
-                recentScansArea.getChildren().clear();
+                recentScans.clear();
                 lastScannedLabel.setVisible(false);
                 showStatusMessage("تم مسح السلة", false);
                 Platform.runLater(() -> barcodeField.requestFocus());
@@ -260,13 +560,14 @@ public class SalesController implements Initializable {
     
     @FXML
     private void handleCheckout() {
+        flushScans();
         if (!salesService.canProcessCheckout(cartItems)) {
             showAlert("السلة فارغة", "يرجى مسح العناصر قبل الدفع.");
             Platform.runLater(() -> barcodeField.requestFocus());
             return;
         }
         
-        double total = cartService.calculateTotal(cartItems, TAX_RATE);
+        double total = cartTotal();
         
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
         alert.setTitle("الدفع");
@@ -277,20 +578,21 @@ public class SalesController implements Initializable {
             if (response == ButtonType.OK) {
                 try {
                     // Process sale using service (with product service for stock update)
-                    String transactionId = salesService.processSale(cartItems, TAX_RATE, productService);
+                    String transactionId = salesService.processSale(cart, productService);
                     
                     // Generate receipt
                     com.smartpos.retail.model.Receipt receipt = salesService.generateReceipt(
-                        cartItems, 
-                        TAX_RATE, 
+                        cart, 
                         transactionId
                     );
                     
                     showStatusMessage("تم إتمام البيع", false);
                     
-                    // Clear cart after successful checkout
-                    cartService.clearCart(cartItems);
-                    recentScansArea.getChildren().clear();
+                    // Close the paid cart and start a new one
+                    cartService.closeCart(cart.getId());
+                    cart = cartService.getOrOpenCart(UserService.LOCAL_TERMINAL_ID);
+                    refreshCart();
+                    recentScans.clear();
                     lastScannedLabel.setVisible(false);
                     updateTotals();
                     
@@ -312,6 +614,8 @@ public class SalesController implements Initializable {
     
     @FXML
     private void handleBack() {
+        flushScans();
+        scanPump.stop();
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/home-view.fxml"));
             loader.setControllerFactory(springContext::getBean);
@@ -329,13 +633,25 @@ public class SalesController implements Initializable {
     }
     
     private void updateTotals() {
-        double subtotal = cartService.calculateSubtotal(cartItems);
-        double tax = cartService.calculateTax(subtotal, TAX_RATE);
-        double total = cartService.calculateTotal(cartItems, TAX_RATE);
+        double subtotal;
+        double discount;
+        TaxBreakdown taxes;
+        synchronized (cart) {
+            subtotal = cart.getSubtotal();
+            discount = cart.getDiscountTotal();
+            taxes = taxService.calculateTax(cart);
+        }
         
         subtotalLabel.setText(String.format("%.2f", subtotal));
-        taxLabel.setText(String.format("%.2f", tax));
-        totalLabel.setText(String.format("%.2f", total));
+        discountLabel.setText(String.format("%.2f", discount));
+        taxLabel.setText(String.format("%.2f", taxes.getTax()));
+        totalLabel.setText(String.format("%.2f", subtotal - discount + taxes.getAddedTax()));
+    }
+    
+    private double cartTotal() {
+        synchronized (cart) {
+            return cart.getSubtotal() - cart.getDiscountTotal() + taxService.calculateTax(cart).getAddedTax();
+        }
     }
     
     private void showStatusMessage(String message, boolean isError) {
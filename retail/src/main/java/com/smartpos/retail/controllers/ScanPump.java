@@ -0,0 +1,37 @@
+package com.smartpos.retail.controllers;
+
+import com.smartpos.retail.util.ScanQueue;
+import javafx.animation.AnimationTimer;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Applies queued scans to the cart once per frame, on the FX thread.
+ * The scanner's key handler only appends to the queue, so a burst of scans costs one cart
+ * and screen update per frame rather than one per scan. Back-to-back scans of the same code
+ * merge across frames until the queue's window closes: A, A, B gives two updates, A, B, A
+ * gives three. A run reaches the cart once its window ends or another code is scanned.
+ */
+public class ScanPump extends AnimationTimer {
+
+    private final ScanQueue queue;
+    private final Consumer<List<ScanQueue.Scan>> processor;
+
+    public ScanPump(ScanQueue queue, Consumer<List<ScanQueue.Scan>> processor) {
+        this.queue = queue;
+        this.processor = processor;
+    }
+
+    @Override
+    public void handle(long now) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        // Scans are stamped with wall-clock time, the frame time is not on that clock
+        List<ScanQueue.Scan> scans = queue.drainClosed();
+        if (!scans.isEmpty()) {
+            processor.accept(scans);
+        }
+    }
+}
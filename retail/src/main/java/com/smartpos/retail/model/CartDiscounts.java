@@ -0,0 +1,53 @@
+package com.smartpos.retail.model;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Promotion discounts currently applied to a cart.
+ * Line-level discounts (percentage off) are kept per product, multi-line discounts
+ * (multi-buy, bundle) per promotion, so a scan only has to replace the entries it touches.
+ */
+public class CartDiscounts {
+    private final Map<String, Double> lineDiscounts = new HashMap<>();
+    private final Map<Promotion, Double> promotionDiscounts = new IdentityHashMap<>();
+    private double total;
+    private long rulesVersion = -1;
+    
+    public double getTotal() {
+        return total;
+    }
+    
+    public long getRulesVersion() {
+        return rulesVersion;
+    }
+    
+    public void setRulesVersion(long rulesVersion) {
+        this.rulesVersion = rulesVersion;
+    }
+    
+    public double getLineDiscount(String productName) {
+        return lineDiscounts.getOrDefault(productName, 0.0);
+    }
+    
+    public void setLineDiscount(String productName, double discount) {
+        Double previous = discount > 0 ? lineDiscounts.put(productName, discount) : lineDiscounts.remove(productName);
+        total += discount - (previous != null ? previous : 0.0);
+    }
+    
+    public void setPromotionDiscount(Promotion promotion, double discount) {
+        Double previous = discount > 0 ? promotionDiscounts.put(promotion, discount) : promotionDiscounts.remove(promotion);
+        total += discount - (previous != null ? previous : 0.0);
+    }
+    
+    public Map<Promotion, Double> getPromotionDiscounts() {
+        return promotionDiscounts;
+    }
+    
+    public void clear() {
+        lineDiscounts.clear();
+        promotionDiscounts.clear();
+        total = 0.0;
+    }
+}
@@ -0,0 +1,150 @@
+package com.smartpos.retail.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class representing a customer's cart on the server side.
+ * Lines are kept as small immutable records rather than JavaFX-backed CartItems,
+ * CartItems are only created when a view needs them.
+ */
+public class CartSession {
+
+    public enum Status {
+        ACTIVE,
+        PARKED
+    }
+
+    /**
+     * One product line in the cart, with the tax class resolved when it was scanned
+     */
+    public record CartLine(String productName, int quantity, double price, String taxClass) {
+
+        public CartLine(String productName, int quantity, double price) {
+            this(productName, quantity, price, null);
+        }
+
+        public CartLine withQuantity(int quantity) {
+            return new CartLine(productName, quantity, price, taxClass);
+        }
+
+        public double total() {
+            return quantity * price;
+        }
+    }
+
+    private final String id;
+    private final long createdAtMillis;
+    private String terminalId;
+    private Status status;
+    private long updatedAtMillis;
+    private final List<CartLine> lines;
+    private final CartDiscounts discounts = new CartDiscounts();
+
+    public CartSession(String id, String terminalId) {
+        this(id, terminalId, Status.ACTIVE, System.currentTimeMillis(), System.currentTimeMillis(), new ArrayList<>());
+    }
+
+    public CartSession(String id, String terminalId, Status status,
+                       long createdAtMillis, long updatedAtMillis, List<CartLine> lines) {
+        this.id = id;
+        this.terminalId = terminalId;
+        this.status = status;
+        this.createdAtMillis = createdAtMillis;
+        this.updatedAtMillis = updatedAtMillis;
+        this.lines = lines;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTerminalId() {
+        return terminalId;
+    }
+
+    public void setTerminalId(String terminalId) {
+        this.terminalId = terminalId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getUpdatedAtMillis() {
+        return updatedAtMillis;
+    }
+
+    public void touch() {
+        this.updatedAtMillis = System.currentTimeMillis();
+    }
+
+    public List<CartLine> getLines() {
+        return lines;
+    }
+
+    public int indexOfLine(String productName) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).productName().equals(productName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public CartLine findLine(String productName) {
+        int index = indexOfLine(productName);
+        return index >= 0 ? lines.get(index) : null;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int getItemCount() {
+        int count = 0;
+        for (CartLine line : lines) {
+            count += line.quantity();
+        }
+        return count;
+    }
+
+    public double getSubtotal() {
+        double subtotal = 0.0;
+        for (CartLine line : lines) {
+            subtotal += line.total();
+        }
+        return subtotal;
+    }
+
+    public CartDiscounts getDiscounts() {
+        return discounts;
+    }
+
+    /**
+     * Promotion discount for the cart, never more than the subtotal
+     */
+    public double getDiscountTotal() {
+        return Math.min(discounts.getTotal(), getSubtotal());
+    }
+
+    /**
+     * Create CartItems for display and checkout
+     * @return One CartItem per line
+     */
+    public List<CartItem> toCartItems() {
+        List<CartItem> items = new ArrayList<>(lines.size());
+        for (CartLine line : lines) {
+            items.add(new CartItem(line.productName(), line.quantity(), line.price()));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,35 @@
+package com.smartpos.retail.model;
+
+/**
+ * One change to the catalog or to stock, as kept in the inventory audit log.
+ * Values a change did not touch are the same before and after; values that did not exist,
+ * such as the stock before a product was created, are null.
+ * @param kind What changed
+ * @param timestampMillis When it changed
+ * @param productName The product
+ * @param branchId Branch whose own price or stock changed, empty for the shared catalog
+ * @param actor Username of whoever made the change, or the job that made it
+ * @param stockBefore Units in stock before the change
+ * @param stockAfter Units in stock after the change
+ * @param priceBefore Price before the change
+ * @param priceAfter Price after the change
+ */
+public record InventoryChange(Kind kind, long timestampMillis, String productName, String branchId, String actor,
+                              Integer stockBefore, Integer stockAfter, Double priceBefore, Double priceAfter) {
+
+    public enum Kind {
+        CREATE,
+        UPDATE,
+        DELETE,
+        SALE,
+        RESTOCK,
+        PRICE_CHANGE,
+        BRANCH_PRICE,
+        BRANCH_STOCK
+    }
+
+    public InventoryChange {
+        branchId = branchId != null ? branchId : "";
+        actor = actor != null ? actor : "";
+    }
+}
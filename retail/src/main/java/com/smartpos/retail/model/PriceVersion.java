@@ -0,0 +1,10 @@
+package com.smartpos.retail.model;
+
+/**
+ * A product's price from a point in time until its next version takes over
+ * @param productName Product name
+ * @param effectiveMillis When the price takes effect, Long.MIN_VALUE for the price a product
+ *                        had before its first scheduled change
+ * @param price The price
+ */
+public record PriceVersion(String productName, long effectiveMillis, double price) {}
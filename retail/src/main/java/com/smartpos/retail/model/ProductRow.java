@@ -15,6 +15,8 @@ public class ProductRow {
     private String barcode;
     private double price;
     private int stock;
+    private String category;
+    private String taxClass;
 
     // 1. MANDATORY: Hibernate needs this empty constructor
     public ProductRow() {}
@@ -27,24 +29,27 @@ public class ProductRow {
         this.stock = stock;
     }
 
-    // 3. For JavaFX TableView: Create properties "on the fly"
+    // 3. For JavaFX TableView: Create properties "on the fly", through the getters so catalog views work too
     public StringProperty nameProperty() {
-        return new SimpleStringProperty(name);
+        return new SimpleStringProperty(getName());
     }
 
     public DoubleProperty priceProperty() {
-        return new SimpleDoubleProperty(price);
+        return new SimpleDoubleProperty(getPrice());
     }
 
     public IntegerProperty stockProperty() {
-        return new SimpleIntegerProperty(stock);
+        return new SimpleIntegerProperty(getStock());
     }
 
     public StringProperty barcodeProperty() {
-        return new SimpleStringProperty(barcode);
+        return new SimpleStringProperty(getBarcode());
     }
 
     // Standard Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 
@@ -56,4 +61,10 @@ public class ProductRow {
 
     public int getStock() { return stock; }
     public void setStock(int stock) { this.stock = stock; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public String getTaxClass() { return taxClass; }
+    public void setTaxClass(String taxClass) { this.taxClass = taxClass; }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.smartpos.retail.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Model class representing a promotion rule (Entity)
+ */
+@Entity
+@Table(name = "promotions")
+public class Promotion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    private PromotionType type;
+
+    // Products the rule applies to (the product for a multi-buy, the members of a bundle)
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "promotion_products", joinColumns = @JoinColumn(name = "promotion_id"))
+    @Column(name = "product_name")
+    private Set<String> productNames = new HashSet<>();
+
+    // Category for percentage-off rules
+    private String category;
+
+    // Multi-buy: units per group
+    private int requiredQuantity;
+
+    // Multi-buy: price per group, bundle: price for one of each member
+    private double bundlePrice;
+
+    // Percentage off, e.g. 0.10 for 10%
+    private double percentOff;
+
+    // Optional time box, open ended when null
+    private LocalDateTime validFrom;
+    private LocalDateTime validUntil;
+
+    // --- MANDATORY EMPTY CONSTRUCTOR ---
+    public Promotion() {
+    }
+
+    public Promotion(String name, PromotionType type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Buy requiredQuantity units of a product for groupPrice, e.g. 3 for 10
+     */
+    public static Promotion multiBuy(String name, String productName, int requiredQuantity, double groupPrice) {
+        Promotion promotion = new Promotion(name, PromotionType.MULTI_BUY);
+        promotion.productNames.add(productName);
+        promotion.requiredQuantity = requiredQuantity;
+        promotion.bundlePrice = groupPrice;
+        return promotion;
+    }
+
+    /**
+     * One of each product together for bundlePrice
+     */
+    public static Promotion bundle(String name, Set<String> productNames, double bundlePrice) {
+        Promotion promotion = new Promotion(name, PromotionType.BUNDLE);
+        promotion.productNames.addAll(productNames);
+        promotion.bundlePrice = bundlePrice;
+        return promotion;
+    }
+
+    /**
+     * Percentage off every product in a category
+     */
+    public static Promotion categoryPercentOff(String name, String category, double percentOff) {
+        Promotion promotion = new Promotion(name, PromotionType.PERCENT_OFF);
+        promotion.category = category;
+        promotion.percentOff = percentOff;
+        return promotion;
+    }
+
+    /**
+     * Percentage off specific products
+     */
+    public static Promotion productPercentOff(String name, Set<String> productNames, double percentOff) {
+        Promotion promotion = new Promotion(name, PromotionType.PERCENT_OFF);
+        promotion.productNames.addAll(productNames);
+        promotion.percentOff = percentOff;
+        return promotion;
+    }
+
+    /**
+     * Limit the promotion to a time window
+     * @return this promotion
+     */
+    public Promotion validBetween(LocalDateTime from, LocalDateTime until) {
+        this.validFrom = from;
+        this.validUntil = until;
+        return this;
+    }
+
+    public boolean isActiveAt(LocalDateTime time) {
+        return (validFrom == null || !time.isBefore(validFrom))
+                && (validUntil == null || time.isBefore(validUntil));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public PromotionType getType() {
+        return type;
+    }
+
+    public Set<String> getProductNames() {
+        return productNames;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getRequiredQuantity() {
+        return requiredQuantity;
+    }
+
+    public double getBundlePrice() {
+        return bundlePrice;
+    }
+
+    public double getPercentOff() {
+        return percentOff;
+    }
+
+    public LocalDateTime getValidFrom() {
+        return validFrom;
+    }
+
+    public LocalDateTime getValidUntil() {
+        return validUntil;
+    }
+
+    public enum PromotionType {
+        MULTI_BUY("عرض الكمية"),
+        BUNDLE("عرض المجموعة"),
+        PERCENT_OFF("خصم نسبة");
+
+        private final String arabicName;
+
+        PromotionType(String arabicName) {
+            this.arabicName = arabicName;
+        }
+
+        public String getArabicName() {
+            return arabicName;
+        }
+    }
+}
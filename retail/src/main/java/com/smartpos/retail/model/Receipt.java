@@ -12,7 +12,9 @@ public class Receipt {
     private LocalDateTime saleDate;
     private List<ReceiptItem> items;
     private double subtotal;
+    private double discount;
     private double tax;
+    private List<TaxBreakdown.TaxLine> taxLines;
     private double total;
     
     public Receipt(String transactionId, LocalDateTime saleDate, List<ReceiptItem> items, 
@@ -22,6 +24,19 @@ public class Receipt {
         this.items = items;
         this.subtotal = subtotal;
         this.tax = tax;
+        this.taxLines = List.of();
+        this.total = total;
+    }
+    
+    public Receipt(String transactionId, LocalDateTime saleDate, List<ReceiptItem> items, 
+                   double subtotal, double discount, TaxBreakdown taxes, double total) {
+        this.transactionId = transactionId;
+        this.saleDate = saleDate;
+        this.items = items;
+        this.subtotal = subtotal;
+        this.discount = discount;
+        this.tax = taxes.getTax();
+        this.taxLines = taxes.getLines();
         this.total = total;
     }
     
@@ -41,10 +56,18 @@ public class Receipt {
         return subtotal;
     }
     
+    public double getDiscount() {
+        return discount;
+    }
+    
     public double getTax() {
         return tax;
     }
     
+    public List<TaxBreakdown.TaxLine> getTaxLines() {
+        return taxLines;
+    }
+    
     public double getTotal() {
         return total;
     }
@@ -81,6 +104,17 @@ public class Receipt {
         
         receipt.append("───────────────────────────────────\n");
         receipt.append(String.format("المجموع الفرعي / Subtotal: %20.2f ر.س\n", subtotal));
+        if (discount > 0) {
+            receipt.append(String.format("الخصم / Discount: %24.2f- ر.س\n", discount));
+        }
+        for (TaxBreakdown.TaxLine taxLine : taxLines) {
+            receipt.append(String.format("  %s %s%%%s: %.2f على %.2f ر.س\n",
+                taxLine.name(),
+                formatRate(taxLine.rate()),
+                taxLine.inclusive() ? " (شامل)" : "",
+                taxLine.tax(),
+                taxLine.taxableAmount()));
+        }
         receipt.append(String.format("الضريبة / Tax: %27.2f ر.س\n", tax));
         receipt.append("───────────────────────────────────\n");
         receipt.append(String.format("الإجمالي / Total: %25.2f ر.س\n", total));
@@ -92,6 +126,11 @@ public class Receipt {
         return receipt.toString();
     }
     
+    private static String formatRate(double rate) {
+        double percent = rate * 100;
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.format("%.2f", percent);
+    }
+    
     /**
      * Inner class for receipt items
      */
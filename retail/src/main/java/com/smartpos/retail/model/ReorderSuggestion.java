@@ -0,0 +1,22 @@
+package com.smartpos.retail.model;
+
+/**
+ * A product whose stock has fallen below its reorder point
+ * @param productName Product name
+ * @param barcode Product barcode
+ * @param stock Stock when the suggestion was made
+ * @param reorderPoint Stock level below which the product is reordered
+ * @param dailyVelocity Expected units sold per day, from the demand forecast or the smoothed velocity
+ * @param suggestedQuantity Units to order to bring stock back up to the target
+ */
+public record ReorderSuggestion(String productName, String barcode, int stock, int reorderPoint,
+                                double dailyVelocity, int suggestedQuantity) {
+
+    /**
+     * Days the current stock lasts at the expected daily sales
+     * @return Days of cover, infinite when the product is not selling
+     */
+    public double daysOfCover() {
+        return dailyVelocity > 0 ? stock / dailyVelocity : Double.POSITIVE_INFINITY;
+    }
+}
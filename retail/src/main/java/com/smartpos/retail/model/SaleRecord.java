@@ -0,0 +1,65 @@
+package com.smartpos.retail.model;
+
+import java.util.List;
+
+/**
+ * A completed sale, refund or void as written to the sales journal.
+ * Refunds and voids carry negative quantities and amounts, so adding up records gives net sales.
+ * @param transactionId Transaction ID printed on the receipt
+ * @param timestampMillis When the sale was completed
+ * @param terminalId Terminal the sale was made on
+ * @param cashier Username of the cashier, empty if unknown
+ * @param subtotal Sum of the line totals
+ * @param discount Promotion and line discounts
+ * @param tax Tax on the sale, inclusive and added
+ * @param total Amount paid
+ * @param lines Sold or returned products
+ * @param kind Sale, refund or void
+ * @param originalTransactionId Sale a refund or void reverses, empty for a sale
+ */
+public record SaleRecord(String transactionId, long timestampMillis, String terminalId, String cashier,
+                         double subtotal, double discount, double tax, double total, List<Line> lines,
+                         Kind kind, String originalTransactionId) {
+
+    public enum Kind {
+        SALE,
+        REFUND,
+        VOID
+    }
+
+    /**
+     * One product line of a sale
+     */
+    public record Line(String productName, int quantity, double price, double total) {}
+
+    public SaleRecord {
+        terminalId = terminalId != null ? terminalId : "";
+        cashier = cashier != null ? cashier : "";
+        lines = List.copyOf(lines);
+        kind = kind != null ? kind : Kind.SALE;
+        originalTransactionId = originalTransactionId != null ? originalTransactionId : "";
+    }
+
+    public SaleRecord(String transactionId, long timestampMillis, String terminalId, String cashier,
+                      double subtotal, double discount, double tax, double total, List<Line> lines) {
+        this(transactionId, timestampMillis, terminalId, cashier, subtotal, discount, tax, total, lines,
+                Kind.SALE, "");
+    }
+
+    public boolean isSale() {
+        return kind == Kind.SALE;
+    }
+
+    public int getItemCount() {
+        int items = 0;
+        for (Line line : lines) {
+            items += line.quantity();
+        }
+        return items;
+    }
+
+    public SaleRecord withTimestamp(long timestampMillis) {
+        return new SaleRecord(transactionId, timestampMillis, terminalId, cashier,
+                subtotal, discount, tax, total, lines, kind, originalTransactionId);
+    }
+}
@@ -0,0 +1,23 @@
+package com.smartpos.retail.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Net sales over a range of days, aggregated from the sales event log.
+ * Returned lines count against the products they were sold as.
+ * @param from First day, null if the range is open at the start
+ * @param to Last day, null if the range is open at the end
+ * @param lineCount Sold and returned lines read
+ * @param units Net units sold
+ * @param revenue Net amount of the lines, before sale-level discounts and added tax
+ * @param products Net sales per product, highest revenue first
+ */
+public record SalesSummary(LocalDate from, LocalDate to, long lineCount, long units, double revenue,
+                           List<ProductSales> products) {
+
+    /**
+     * Net units and amount sold of one product
+     */
+    public record ProductSales(String productName, long units, double revenue) {}
+}
@@ -0,0 +1,54 @@
+package com.smartpos.retail.model;
+
+import java.util.List;
+
+/**
+ * Tax due on a sale, one line per tax rate used
+ */
+public class TaxBreakdown {
+
+    public static final TaxBreakdown NONE = new TaxBreakdown(List.of());
+
+    /**
+     * Tax for one rate
+     * @param taxableAmount Amount after discounts at shelf price
+     */
+    public record TaxLine(String code, String name, double rate, boolean inclusive,
+                          double taxableAmount, double tax) {}
+
+    private final List<TaxLine> lines;
+    private final double tax;
+    private final double addedTax;
+
+    public TaxBreakdown(List<TaxLine> lines) {
+        this.lines = lines;
+        double tax = 0.0;
+        double addedTax = 0.0;
+        for (TaxLine line : lines) {
+            tax += line.tax();
+            if (!line.inclusive()) {
+                addedTax += line.tax();
+            }
+        }
+        this.tax = tax;
+        this.addedTax = addedTax;
+    }
+
+    public List<TaxLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * Total tax, inclusive and exclusive
+     */
+    public double getTax() {
+        return tax;
+    }
+
+    /**
+     * Tax added on top of shelf prices (exclusive rates only)
+     */
+    public double getAddedTax() {
+        return addedTax;
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartpos.retail.model;
+
+import jakarta.persistence.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Model class representing a tax class and its rate (Entity)
+ */
+@Entity
+@Table(name = "tax_rates")
+public class TaxRate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Tax class code referenced by products, e.g. "STD" or "ZERO"
+    @Column(unique = true, nullable = false)
+    private String code;
+
+    private String name;
+
+    // e.g. 0.15 for 15%
+    private double rate;
+
+    // true when shelf prices already include this tax
+    private boolean inclusive;
+
+    // Categories that fall in this tax class unless the product says otherwise
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "tax_rate_categories", joinColumns = @JoinColumn(name = "tax_rate_id"))
+    @Column(name = "category")
+    private Set<String> categories = new HashSet<>();
+
+    // --- MANDATORY EMPTY CONSTRUCTOR ---
+    public TaxRate() {
+    }
+
+    public TaxRate(String code, String name, double rate, boolean inclusive) {
+        this.code = code;
+        this.name = name;
+        this.rate = rate;
+        this.inclusive = inclusive;
+    }
+
+    /**
+     * Copy of this rate, so a rate in use is never changed in place
+     * @return A new rate with the same id, code, name, rate, inclusive flag and categories
+     */
+    public TaxRate copy() {
+        TaxRate copy = new TaxRate(code, name, rate, inclusive);
+        copy.id = id;
+        copy.categories.addAll(categories);
+        return copy;
+    }
+
+    /**
+     * Tax contained in (inclusive) or due on top of (exclusive) an amount
+     * @param amount Taxable amount at shelf price
+     * @return The tax
+     */
+    public double taxOn(double amount) {
+        return inclusive ? amount * rate / (1 + rate) : amount * rate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public boolean isInclusive() {
+        return inclusive;
+    }
+
+    public void setInclusive(boolean inclusive) {
+        this.inclusive = inclusive;
+    }
+
+    public Set<String> getCategories() {
+        return categories;
+    }
+}
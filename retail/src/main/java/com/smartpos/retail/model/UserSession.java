@@ -0,0 +1,56 @@
+package com.smartpos.retail.model;
+
+import java.time.Instant;
+
+/**
+ * Model class representing a logged in user on one terminal (till, kiosk or API client)
+ */
+public class UserSession {
+    private final String terminalId;
+    private final User user;
+    private final String token;
+    private final Instant startedAt;
+    private volatile long lastAccessMillis;
+    
+    public UserSession(String terminalId, User user, String token) {
+        this.terminalId = terminalId;
+        this.user = user;
+        this.token = token;
+        this.startedAt = Instant.now();
+        this.lastAccessMillis = System.currentTimeMillis();
+    }
+    
+    public String getTerminalId() {
+        return terminalId;
+    }
+    
+    public User getUser() {
+        return user;
+    }
+    
+    /**
+     * Secret handed to the client that opened the session, sent back with every API call
+     */
+    public String getToken() {
+        return token;
+    }
+    
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+    
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+    
+    /**
+     * Record activity on the session so it is not expired as idle
+     */
+    public void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+    
+    public boolean isIdle(long nowMillis, long idleTimeoutMillis) {
+        return nowMillis - lastAccessMillis > idleTimeoutMillis;
+    }
+}
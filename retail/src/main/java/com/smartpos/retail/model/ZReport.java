@@ -0,0 +1,182 @@
+package com.smartpos.retail.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * End-of-day (Z) or running (X) sales report.
+ * Covers the sales completed after openedAt up to and including closedAt, net of refunds.
+ * A day report carries one report per cashier who sold in the period; a cashier report has none.
+ */
+public class ZReport {
+
+    /**
+     * Units and amount sold of one product
+     */
+    public record ItemTotal(String productName, int quantity, double amount) {}
+
+    private final long number;
+    private final String cashier;
+    private final long openedAtMillis;
+    private final long closedAtMillis;
+    private final int transactionCount;
+    private final long itemCount;
+    private final double subtotal;
+    private final double discount;
+    private final double tax;
+    private final double total;
+    private final int refundCount;
+    private final double refundTotal;
+    private final List<ItemTotal> topItems;
+    private final List<ZReport> cashierReports;
+
+    public ZReport(long number, String cashier, long openedAtMillis, long closedAtMillis,
+                   int transactionCount, long itemCount, double subtotal, double discount,
+                   double tax, double total, int refundCount, double refundTotal,
+                   List<ItemTotal> topItems, List<ZReport> cashierReports) {
+        this.number = number;
+        this.cashier = cashier;
+        this.openedAtMillis = openedAtMillis;
+        this.closedAtMillis = closedAtMillis;
+        this.transactionCount = transactionCount;
+        this.itemCount = itemCount;
+        this.subtotal = subtotal;
+        this.discount = discount;
+        this.tax = tax;
+        this.total = total;
+        this.refundCount = refundCount;
+        this.refundTotal = refundTotal;
+        this.topItems = List.copyOf(topItems);
+        this.cashierReports = List.copyOf(cashierReports);
+    }
+
+    /**
+     * Sequential Z number, 0 for a running report that has not been closed
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Cashier the report is for, null for the whole store
+     */
+    public String getCashier() {
+        return cashier;
+    }
+
+    public long getOpenedAtMillis() {
+        return openedAtMillis;
+    }
+
+    public long getClosedAtMillis() {
+        return closedAtMillis;
+    }
+
+    public LocalDate getBusinessDate() {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(closedAtMillis), ZoneId.systemDefault());
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public double getSubtotal() {
+        return subtotal;
+    }
+
+    public double getDiscount() {
+        return discount;
+    }
+
+    public double getTax() {
+        return tax;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    /**
+     * Number of refunds and voids in the period
+     */
+    public int getRefundCount() {
+        return refundCount;
+    }
+
+    /**
+     * Amount paid back, already taken off the total
+     */
+    public double getRefundTotal() {
+        return refundTotal;
+    }
+
+    public List<ItemTotal> getTopItems() {
+        return topItems;
+    }
+
+    public List<ZReport> getCashierReports() {
+        return cashierReports;
+    }
+
+    /**
+     * Generate formatted report text
+     */
+    public String generateReportText() {
+        StringBuilder report = new StringBuilder();
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        ZoneId zone = ZoneId.systemDefault();
+
+        report.append("═══════════════════════════════════\n");
+        if (cashier != null) {
+            report.append("      تقرير الوردية / Shift Report\n");
+            report.append("الكاشير / Cashier: ").append(cashier).append("\n");
+        } else if (number > 0) {
+            report.append("      تقرير Z رقم / Z Report #").append(number).append("\n");
+        } else {
+            report.append("      تقرير X / X Report\n");
+        }
+        report.append("═══════════════════════════════════\n");
+        if (openedAtMillis > 0) {
+            report.append("من / From: ").append(LocalDateTime.ofInstant(Instant.ofEpochMilli(openedAtMillis), zone).format(dateFormatter)).append("\n");
+        }
+        report.append("إلى / To: ").append(LocalDateTime.ofInstant(Instant.ofEpochMilli(closedAtMillis), zone).format(dateFormatter)).append("\n");
+        report.append("───────────────────────────────────\n");
+        report.append(String.format("المعاملات / Transactions: %10d\n", transactionCount));
+        report.append(String.format("القطع / Items: %21d\n", itemCount));
+        report.append(String.format("المجموع الفرعي / Subtotal: %12.2f ر.س\n", subtotal));
+        report.append(String.format("الخصم / Discount: %20.2f ر.س\n", discount));
+        report.append(String.format("الضريبة / Tax: %23.2f ر.س\n", tax));
+        if (refundCount > 0) {
+            report.append(String.format("المرتجعات / Refunds: %3d %13.2f- ر.س\n", refundCount, refundTotal));
+        }
+        report.append(String.format("الإجمالي / Total: %20.2f ر.س\n", total));
+
+        if (!topItems.isEmpty()) {
+            report.append("───────────────────────────────────\n");
+            report.append("الأكثر مبيعاً / Top Items\n");
+            for (ItemTotal item : topItems) {
+                String productName = item.productName();
+                if (productName.length() > 20) {
+                    productName = productName.substring(0, 17) + "...";
+                }
+                report.append(String.format("%-20s %5d  %9.2f\n", productName, item.quantity(), item.amount()));
+            }
+        }
+
+        for (ZReport cashierReport : cashierReports) {
+            report.append("───────────────────────────────────\n");
+            report.append(String.format("%-16s %5d  %12.2f ر.س\n", cashierReport.getCashier(),
+                    cashierReport.getTransactionCount(), cashierReport.getTotal()));
+        }
+        report.append("═══════════════════════════════════\n");
+        return report.toString();
+    }
+}
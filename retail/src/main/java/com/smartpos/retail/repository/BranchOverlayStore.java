@@ -0,0 +1,125 @@
+package com.smartpos.retail.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Branch prices and stock, one file per branch holding only the products the branch
+ * overrides. Products are stored by name, so a file survives the catalog being rebuilt.
+ *
+ * Layout: magic, version, entry count, then per entry:
+ * product name (UTF), price (double, NaN for the catalog price), stock (int, Integer.MIN_VALUE for the catalog stock).
+ */
+@Repository
+public class BranchOverlayStore {
+
+    private static final int MAGIC = 0x5242524f; // "RBRO"
+    private static final short VERSION = 1;
+    private static final String EXTENSION = ".overlay";
+
+    /**
+     * A product's values in one branch
+     * @param productName The product name
+     * @param price Branch price, null for the catalog price
+     * @param stock Branch stock, null for the catalog stock
+     */
+    public record Entry(String productName, Double price, Integer stock) {}
+
+    private final Path directory;
+
+    public BranchOverlayStore(@Value("${retail.catalog.branch-dir:data/branches}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Replace a branch's file atomically
+     * @param branchId The branch, already checked to be safe as a file name
+     * @param entries The products the branch overrides
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String branchId, List<Entry> entries) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(branchId + EXTENSION);
+        Path tempFile = directory.resolve(branchId + EXTENSION + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.productName());
+                out.writeDouble(entry.price() != null ? entry.price() : Double.NaN);
+                out.writeInt(entry.stock() != null ? entry.stock() : Integer.MIN_VALUE);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read every branch's file
+     * @return Entries keyed by branch, leaving out files that cannot be read
+     */
+    public Map<String, List<Entry>> readAll() {
+        Map<String, List<Entry>> branches = new HashMap<>();
+        if (!Files.isDirectory(directory)) {
+            return branches;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                List<Entry> entries = read(file);
+                if (entries != null) {
+                    branches.put(name.substring(0, name.length() - EXTENSION.length()), entries);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing branch overlays: " + e.getMessage());
+        }
+        return branches;
+    }
+
+    private static List<Entry> read(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                System.err.println("Ignoring unrecognised branch overlay: " + file);
+                return null;
+            }
+            short version = in.readShort();
+            if (version < 1 || version > VERSION) {
+                System.err.println("Ignoring branch overlay version " + version + ": " + file);
+                return null;
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String productName = in.readUTF();
+                double price = in.readDouble();
+                int stock = in.readInt();
+                entries.add(new Entry(productName, Double.isNaN(price) ? null : price,
+                        stock != Integer.MIN_VALUE ? stock : null));
+            }
+            return entries;
+        } catch (EOFException e) {
+            System.err.println("Ignoring truncated branch overlay: " + file);
+            return null;
+        } catch (IOException e) {
+            System.err.println("Error reading branch overlay " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
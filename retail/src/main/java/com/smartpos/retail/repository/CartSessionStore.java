@@ -0,0 +1,200 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.CartSession;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local store for open carts, one small binary file per cart.
+ * Carts are encoded on the caller's thread and written by a single background writer,
+ * so cart operations never wait on disk. Several changes to the same cart before
+ * the writer gets to it are coalesced into one write of the latest state.
+ */
+@Repository
+public class CartSessionStore {
+
+    private static final int MAGIC = 0x52434152; // "RCAR"
+    private static final short VERSION = 2;
+    private static final String EXTENSION = ".cart";
+    private static final byte[] DELETED = new byte[0];
+
+    private final Path directory;
+    private final Map<String, byte[]> pending = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cart-store-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CartSessionStore(@Value("${retail.cart.store-dir:data/carts}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Queue the current state of a cart to be written
+     * @param session The cart to save
+     */
+    public void save(CartSession session) {
+        enqueue(session.getId(), encode(session));
+    }
+
+    /**
+     * Queue removal of a cart that is no longer open
+     * @param cartId The cart ID
+     */
+    public void delete(String cartId) {
+        enqueue(cartId, DELETED);
+    }
+
+    /**
+     * Read every stored cart
+     * @return Carts found in the store, unreadable files are skipped
+     */
+    public List<CartSession> loadAll() {
+        List<CartSession> sessions = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return sessions;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    sessions.add(decode(Files.readAllBytes(file)));
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable cart file " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading cart store: " + e.getMessage());
+        }
+        return sessions;
+    }
+
+    /**
+     * Wait until every queued change has been written
+     */
+    public void flush() {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        writer.shutdown();
+        try {
+            // The writer may still hold a file open; tests and restarts reuse the directory
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(String cartId, byte[] data) {
+        // Only schedule a write if none is waiting for this cart, the waiting one picks up the latest data
+        if (pending.put(cartId, data) == null) {
+            writer.execute(() -> writePending(cartId));
+        }
+    }
+
+    private void writePending(String cartId) {
+        byte[] data = pending.remove(cartId);
+        if (data == null) {
+            return;
+        }
+
+        Path file = directory.resolve(cartId + EXTENSION);
+        try {
+            if (data == DELETED) {
+                Files.deleteIfExists(file);
+                return;
+            }
+            Files.createDirectories(directory);
+            Path tempFile = directory.resolve(cartId + ".tmp");
+            Files.write(tempFile, data);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing cart " + cartId + ": " + e.getMessage());
+        }
+    }
+
+    static byte[] encode(CartSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + session.getLines().size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(session.getId());
+            out.writeUTF(session.getTerminalId() != null ? session.getTerminalId() : "");
+            out.writeByte(session.getStatus().ordinal());
+            out.writeLong(session.getCreatedAtMillis());
+            out.writeLong(session.getUpdatedAtMillis());
+            out.writeInt(session.getLines().size());
+            for (CartSession.CartLine line : session.getLines()) {
+                out.writeUTF(line.productName());
+                out.writeInt(line.quantity());
+                out.writeDouble(line.price());
+                out.writeUTF(line.taxClass() != null ? line.taxClass() : "");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode cart " + session.getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static CartSession decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognised cart file");
+            }
+            short version = in.readShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported cart file version " + version);
+            }
+            String id = in.readUTF();
+            String terminalId = in.readUTF();
+            CartSession.Status status = CartSession.Status.values()[in.readByte()];
+            long createdAt = in.readLong();
+            long updatedAt = in.readLong();
+            int lineCount = in.readInt();
+            if (lineCount < 0) {
+                throw new IOException("Corrupt cart file");
+            }
+            List<CartSession.CartLine> lines = new ArrayList<>(Math.min(lineCount, 256));
+            for (int i = 0; i < lineCount; i++) {
+                String productName = in.readUTF();
+                int quantity = in.readInt();
+                double price = in.readDouble();
+                String taxClass = version >= 2 ? in.readUTF() : "";
+                lines.add(new CartSession.CartLine(productName, quantity, price, taxClass.isEmpty() ? null : taxClass));
+            }
+            return new CartSession(id, terminalId.isEmpty() ? null : terminalId, status, createdAt, updatedAt, lines);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt cart file", e);
+        }
+    }
+}
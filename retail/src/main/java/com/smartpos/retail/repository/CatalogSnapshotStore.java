@@ -0,0 +1,155 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.ProductRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary snapshot of the product catalog (barcode, name, price, stock, category, tax class).
+ * The snapshot is read into the in-memory catalog on startup, in one sequential pass over
+ * the file, so the sales lane can answer lookups before the database is ready.
+ *
+ * Layout: magic, version, record count, then per record:
+ * id (long, -1 if none), barcode, name (length-prefixed UTF-8, -1 for null),
+ * price (double), stock (int), category (version 2 and later), tax class (version 3 and later).
+ */
+@Repository
+public class CatalogSnapshotStore {
+
+    private static final int MAGIC = 0x52434154; // "RCAT"
+    private static final short VERSION = 3;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Integer.BYTES;
+
+    private final Path snapshotPath;
+
+    public CatalogSnapshotStore(@Value("${retail.catalog.snapshot-path:data/catalog.snapshot}") String snapshotPath) {
+        this.snapshotPath = Paths.get(snapshotPath);
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    /**
+     * Write the catalog to disk, replacing the previous snapshot atomically.
+     * Products are streamed out one at a time, so writing needs no copy of the catalog.
+     * @param products The products to write
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void write(Collection<? extends ProductRow> products) throws IOException {
+        Path parent = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tempFile = Files.createTempFile(parent, "catalog", ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(products.size());
+            for (ProductRow product : products) {
+                out.writeLong(product.getId() != null ? product.getId() : -1L);
+                putString(out, product.getBarcode());
+                putString(out, product.getName());
+                out.writeDouble(product.getPrice());
+                out.writeInt(product.getStock());
+                putString(out, product.getCategory());
+                putString(out, product.getTaxClass());
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the catalog snapshot
+     * @return Products in the snapshot, empty if there is no usable snapshot
+     */
+    public List<ProductRow> read() {
+        List<ProductRow> products = new ArrayList<>();
+        return read(products::add) ? products : new ArrayList<>();
+    }
+
+    /**
+     * Read the catalog snapshot one product at a time, without holding the whole catalog as objects
+     * @param consumer Receives each product in snapshot order
+     * @return false if there is no usable snapshot; products already passed on must then be discarded
+     */
+    public boolean read(Consumer<ProductRow> consumer) {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                System.err.println("Ignoring unrecognised catalog snapshot: " + snapshotPath);
+                return false;
+            }
+            short version = buffer.getShort();
+            if (version < 1 || version > VERSION) {
+                System.err.println("Ignoring catalog snapshot version " + version + ": " + snapshotPath);
+                return false;
+            }
+
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                String barcode = getString(buffer);
+                String name = getString(buffer);
+                double price = buffer.getDouble();
+                int stock = buffer.getInt();
+                String category = version >= 2 ? getString(buffer) : null;
+                String taxClass = version >= 3 ? getString(buffer) : null;
+
+                ProductRow product = new ProductRow(name, barcode, price, stock);
+                product.setId(id >= 0 ? id : null);
+                product.setCategory(category);
+                product.setTaxClass(taxClass);
+                consumer.accept(product);
+            }
+            return true;
+        } catch (IOException | BufferUnderflowException e) {
+            System.err.println("Error reading catalog snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,638 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.InventoryChange;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only audit log of catalog and stock changes.
+ * A change is encoded on the caller's thread straight into a fixed-size ring of records and
+ * written out in batches by a single background writer, so the checkout path never waits on
+ * disk; it only waits if the writer falls a whole ring behind.
+ * Records are fixed-size (time, product, kind and branch, actor, stock and price in cents
+ * before and after) and every name is kept once, in a dictionary next to the log that is
+ * read when the log is created.
+ * The log is split into numbered segments of a fixed number of records. When a segment is
+ * full the writer saves an index next to it listing, per product, where its records are, so
+ * a product's history is read with a few lookups instead of a scan of the whole log.
+ * A record cut short by a crash is cut off when the log is opened again.
+ */
+@Repository
+public class InventoryAuditLog {
+
+    private static final int MAGIC = 0x5241554c; // "RAUL"
+    private static final int INDEX_MAGIC = 0x52415558; // "RAUX"
+    private static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 36;
+    private static final int INDEX_HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final String PREFIX = "audit-";
+    private static final String EXTENSION = ".log";
+    private static final String INDEX_EXTENSION = ".index";
+    private static final String DICTIONARY = "names.dict";
+    private static final int BATCH_RECORDS = 4096;
+    private static final int NONE = Integer.MIN_VALUE;
+    // The kind takes the top four bits of the branch word, which leaves 28 bits for names
+    private static final int BRANCH_BITS = 28;
+    private static final int MAX_NAMES = (1 << BRANCH_BITS) - 1;
+
+    // Field offsets within a record
+    private static final int TIME = 0;
+    private static final int PRODUCT = 8;
+    private static final int KIND_AND_BRANCH = 12;
+    private static final int ACTOR = 16;
+    private static final int STOCK_BEFORE = 20;
+    private static final int STOCK_AFTER = 24;
+    private static final int PRICE_BEFORE = 28;
+    private static final int PRICE_AFTER = 32;
+
+    private static final InventoryChange.Kind[] KINDS = InventoryChange.Kind.values();
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-audit-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The ring: callers claim a sequence number, fill the slot it maps to, then publish the
+    // sequence number in that slot. The writer takes slots in sequence order as they are
+    // published and only hands a slot back, by moving consumed past it, once it is copied out.
+    private final int mask;
+    private final byte[] ring;
+    private final ByteBuffer ringView;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    // Codes are handed out by callers, and the writer saves a name to the dictionary before
+    // the first record that uses its code. The names array is published before the count.
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private volatile int nameCount;
+
+    // Owned by the writer thread: the dictionary, the open segment and its index so far
+    private DataOutputStream openDictionary;
+    private int namesWritten;
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_RECORDS * RECORD_SIZE);
+    private FileChannel openChannel;
+    private int openSegment;
+    private int openRecords;
+    private final Map<Integer, Positions> openIndex = new HashMap<>();
+
+    public InventoryAuditLog(@Value("${retail.audit.dir:data/audit}") String directory,
+                             @Value("${retail.audit.ring-size:65536}") int ringSize,
+                             @Value("${retail.audit.segment-records:1048576}") int segmentRecords) {
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("retail.audit.ring-size must be a power of two: " + ringSize);
+        }
+        this.directory = Paths.get(directory);
+        this.segmentRecords = segmentRecords;
+        this.mask = ringSize - 1;
+        this.ring = new byte[ringSize * RECORD_SIZE];
+        this.ringView = ByteBuffer.wrap(ring);
+        this.published = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            published.set(i, -1);
+        }
+        // Read once here so that appending never touches the disk
+        loadDictionary();
+    }
+
+    /**
+     * Queue a change to be written. Returns once the change is in the ring.
+     * @param change The change
+     */
+    public void append(InventoryChange change) {
+        int product = code(change.productName());
+        int branch = change.branchId().isEmpty() ? 0 : code(change.branchId()) + 1;
+        int actor = code(change.actor());
+        int priceBefore = cents(change.priceBefore());
+        int priceAfter = cents(change.priceAfter());
+
+        // Nothing may fail between claiming a slot and publishing it, or the writer stops there
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed > mask) {
+            // The writer is a whole ring behind
+            scheduleDrain();
+            LockSupport.parkNanos(100_000);
+        }
+        int offset = slot(sequence) * RECORD_SIZE;
+        ringView.putLong(offset + TIME, change.timestampMillis());
+        ringView.putInt(offset + PRODUCT, product);
+        ringView.putInt(offset + KIND_AND_BRANCH, change.kind().ordinal() << BRANCH_BITS | branch);
+        ringView.putInt(offset + ACTOR, actor);
+        ringView.putInt(offset + STOCK_BEFORE, change.stockBefore() != null ? change.stockBefore() : NONE);
+        ringView.putInt(offset + STOCK_AFTER, change.stockAfter() != null ? change.stockAfter() : NONE);
+        ringView.putInt(offset + PRICE_BEFORE, priceBefore);
+        ringView.putInt(offset + PRICE_AFTER, priceAfter);
+        published.setRelease(slot(sequence), sequence);
+        scheduleDrain();
+    }
+
+    /**
+     * Changes to one product, in the order they were written. Changes appended before the
+     * call are included.
+     * @param productName The product
+     * @param fromMillis Earliest time, inclusive
+     * @param toMillis Latest time, inclusive
+     * @return The changes, empty if the product has none in the range
+     */
+    public List<InventoryChange> history(String productName, long fromMillis, long toMillis) {
+        Integer code = codes.get(productName);
+        if (code == null) {
+            return List.of();
+        }
+        // Everything queued so far is written, and where this product sits in the open segment
+        // is copied, on the writer; sealed segments never change and are read here
+        OpenSegment open = callOnWriter(() -> {
+            writeAvailable();
+            if (openChannel == null && !openSegment()) {
+                throw new IOException("Inventory audit log cannot be opened");
+            }
+            Positions positions = openIndex.get(code);
+            return new OpenSegment(openSegment, openRecords,
+                    positions != null ? Arrays.copyOf(positions.items, positions.size) : new int[0]);
+        });
+
+        List<InventoryChange> changes = new ArrayList<>();
+        try {
+            for (int segment = 1; segment < open.segment(); segment++) {
+                Path file = segmentFile(segment);
+                if (Files.exists(file)) {
+                    read(file, positionsIn(segment, code), fromMillis, toMillis, changes);
+                }
+            }
+            if (open.positions().length > 0) {
+                read(segmentFile(open.segment()), open.positions(), fromMillis, toMillis, changes);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read inventory audit log for " + productName, e);
+        }
+        return changes;
+    }
+
+    /**
+     * Number of changes appended since the log was opened
+     */
+    public long appendedCount() {
+        return claimed.get();
+    }
+
+    /**
+     * Wait until every change appended so far has been written
+     */
+    public void flush() {
+        callOnWriter(() -> {
+            writeAvailable();
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        writer.execute(() -> {
+            closeOpenSegment();
+            try {
+                if (openDictionary != null) {
+                    openDictionary.close();
+                    openDictionary = null;
+                }
+            } catch (IOException e) {
+                System.err.println("Error closing inventory audit dictionary: " + e.getMessage());
+            }
+        });
+        writer.shutdown();
+        try {
+            // The writer may still hold a file open; tests and restarts reuse the directory
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Where a segment sits and, for the product asked about, its records so far
+     */
+    private record OpenSegment(int segment, int records, int[] positions) {}
+
+    /**
+     * Growable list of record numbers
+     */
+    private static final class Positions {
+        int[] items = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+            }
+            items[size++] = position;
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    private static int cents(Double price) {
+        return price != null ? Math.toIntExact(Math.round(price * 100)) : NONE;
+    }
+
+    private void scheduleDrain() {
+        if (!drainScheduled.get() && drainScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                System.err.println("Inventory audit log is closed, change not written");
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            writeAvailable();
+            drainScheduled.set(false);
+            // A change published after the last look, whose caller saw a drain still scheduled
+            if (published.get(slot(consumed)) != consumed || !drainScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private <T> T callOnWriter(Callable<T> task) {
+        try {
+            return writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the inventory audit log", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void writeAvailable() {
+        long next = consumed;
+        while (published.get(slot(next)) == next) {
+            long first = next;
+            if (openChannel == null && !openSegment()) {
+                // Nowhere to write; drop what is queued rather than hold up the lanes
+                while (published.get(slot(next)) == next) {
+                    next++;
+                }
+                System.err.println("Inventory audit log unavailable, " + (next - first) + " changes not written");
+                consumed = next;
+                return;
+            }
+
+            batch.clear();
+            int room = Math.min(BATCH_RECORDS, segmentRecords - openRecords);
+            while (batch.position() < room * RECORD_SIZE && published.get(slot(next)) == next) {
+                batch.put(ring, slot(next) * RECORD_SIZE, RECORD_SIZE);
+                next++;
+            }
+            // The slots are copied out, callers may reuse them
+            consumed = next;
+            int count = (int) (next - first);
+            try {
+                writeNames();
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    openChannel.write(batch);
+                }
+                for (int i = 0; i < count; i++) {
+                    indexRecord(openIndex, batch.getInt(i * RECORD_SIZE + PRODUCT), openRecords + i);
+                }
+                openRecords += count;
+                if (openRecords >= segmentRecords) {
+                    sealOpenSegment();
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing inventory audit log, " + count + " changes may be lost: "
+                        + e.getMessage());
+                closeOpenSegment();
+            }
+        }
+    }
+
+    private static void indexRecord(Map<Integer, Positions> index, int product, int position) {
+        index.computeIfAbsent(product, code -> new Positions()).add(position);
+    }
+
+    private void writeNames() throws IOException {
+        int known = nameCount;
+        if (namesWritten == known) {
+            return;
+        }
+        String[] current = names;
+        while (namesWritten < known) {
+            openDictionary.writeUTF(current[namesWritten++]);
+        }
+        openDictionary.flush();
+    }
+
+    private Path segmentFile(int segment) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, segment, EXTENSION));
+    }
+
+    private Path indexFile(int segment) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, segment, INDEX_EXTENSION));
+    }
+
+    /**
+     * Open the newest segment for appending, or the next one if it is full, after making sure
+     * every full segment has its index
+     */
+    private boolean openSegment() {
+        try {
+            Files.createDirectories(directory);
+            if (openDictionary == null) {
+                openDictionary = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                        directory.resolve(DICTIONARY), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            int newest = 1;
+            while (Files.exists(segmentFile(newest + 1))) {
+                newest++;
+            }
+            for (int segment = 1; segment < newest; segment++) {
+                if (Files.exists(segmentFile(segment)) && !Files.exists(indexFile(segment))) {
+                    writeIndex(segment, scan(segmentFile(segment)));
+                }
+            }
+
+            Path file = segmentFile(newest);
+            openIndex.clear();
+            openRecords = 0;
+            if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+                checkHeader(file);
+                long whole = (Files.size(file) - HEADER_SIZE) / RECORD_SIZE;
+                openChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (HEADER_SIZE + whole * RECORD_SIZE < openChannel.size()) {
+                    System.err.println("Dropping incomplete record at the end of " + file);
+                    openChannel.truncate(HEADER_SIZE + whole * RECORD_SIZE);
+                }
+                openChannel.position(openChannel.size());
+                openIndex.putAll(scan(file));
+                openRecords = (int) whole;
+            } else {
+                openChannel = createSegment(file);
+            }
+            openSegment = newest;
+            if (openRecords >= segmentRecords) {
+                sealOpenSegment();
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error opening inventory audit log: " + e.getMessage());
+            closeOpenSegment();
+            return false;
+        }
+    }
+
+    private static FileChannel createSegment(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return channel;
+    }
+
+    private void sealOpenSegment() throws IOException {
+        openChannel.close();
+        openChannel = null;
+        writeIndex(openSegment, openIndex);
+        openIndex.clear();
+        openRecords = 0;
+        openSegment++;
+        openChannel = createSegment(segmentFile(openSegment));
+    }
+
+    private void closeOpenSegment() {
+        try {
+            if (openChannel != null) {
+                openChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing inventory audit log: " + e.getMessage());
+        }
+        openChannel = null;
+        openIndex.clear();
+        openRecords = 0;
+    }
+
+    /**
+     * Save a segment's index: products sorted by code, each with where its record numbers
+     * start in the list that follows and how many there are
+     */
+    private void writeIndex(int segment, Map<Integer, Positions> index) throws IOException {
+        int[] products = index.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Path file = indexFile(segment);
+        Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(products.length);
+            int start = 0;
+            for (int product : products) {
+                int count = index.get(product).size;
+                out.writeInt(product);
+                out.writeInt(start);
+                out.writeInt(count);
+                start += count;
+            }
+            for (int product : products) {
+                Positions positions = index.get(product);
+                for (int i = 0; i < positions.size; i++) {
+                    out.writeInt(positions.items[i]);
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Record numbers of a product in a full segment, from its index, or by reading the whole
+     * segment if the index is missing
+     */
+    private int[] positionsIn(int segment, int product) throws IOException {
+        Path file = indexFile(segment);
+        if (!Files.exists(file)) {
+            Positions positions = scan(segmentFile(segment)).get(product);
+            return positions != null ? Arrays.copyOf(positions.items, positions.size) : new int[0];
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (index.getInt(0) != INDEX_MAGIC) {
+                throw new IOException("Not an inventory audit index: " + file);
+            }
+            int products = index.getInt(8);
+            int low = 0;
+            int high = products - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int entry = INDEX_HEADER_SIZE + middle * INDEX_ENTRY_SIZE;
+                int code = index.getInt(entry);
+                if (code < product) {
+                    low = middle + 1;
+                } else if (code > product) {
+                    high = middle - 1;
+                } else {
+                    int start = INDEX_HEADER_SIZE + products * INDEX_ENTRY_SIZE + index.getInt(entry + 4) * Integer.BYTES;
+                    int[] positions = new int[index.getInt(entry + 8)];
+                    for (int i = 0; i < positions.length; i++) {
+                        positions[i] = index.getInt(start + i * Integer.BYTES);
+                    }
+                    return positions;
+                }
+            }
+            return new int[0];
+        }
+    }
+
+    private static Map<Integer, Positions> scan(Path file) throws IOException {
+        Map<Integer, Positions> index = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            if (records <= 0) {
+                return index;
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + records * RECORD_SIZE);
+            for (int record = 0; record < records; record++) {
+                indexRecord(index, data.getInt(HEADER_SIZE + record * RECORD_SIZE + PRODUCT), record);
+            }
+        }
+        return index;
+    }
+
+    private void read(Path file, int[] positions, long fromMillis, long toMillis, List<InventoryChange> changes)
+            throws IOException {
+        if (positions.length == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = HEADER_SIZE + (long) (positions[positions.length - 1] + 1) * RECORD_SIZE;
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            for (int position : positions) {
+                int offset = HEADER_SIZE + position * RECORD_SIZE;
+                long time = data.getLong(offset + TIME);
+                if (time >= fromMillis && time <= toMillis) {
+                    changes.add(decode(data, offset));
+                }
+            }
+        }
+    }
+
+    private InventoryChange decode(ByteBuffer data, int offset) {
+        String[] current = names;
+        int kindAndBranch = data.getInt(offset + KIND_AND_BRANCH);
+        int branch = kindAndBranch & MAX_NAMES;
+        int stockBefore = data.getInt(offset + STOCK_BEFORE);
+        int stockAfter = data.getInt(offset + STOCK_AFTER);
+        int priceBefore = data.getInt(offset + PRICE_BEFORE);
+        int priceAfter = data.getInt(offset + PRICE_AFTER);
+        return new InventoryChange(KINDS[kindAndBranch >>> BRANCH_BITS], data.getLong(offset + TIME),
+                current[data.getInt(offset + PRODUCT)], branch > 0 ? current[branch - 1] : "",
+                current[data.getInt(offset + ACTOR)],
+                stockBefore != NONE ? stockBefore : null, stockAfter != NONE ? stockAfter : null,
+                priceBefore != NONE ? priceBefore / 100.0 : null, priceAfter != NONE ? priceAfter / 100.0 : null);
+    }
+
+    private static void checkHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION || in.readShort() != RECORD_SIZE) {
+                throw new IOException("Not an inventory audit log, or another version: " + file);
+            }
+        }
+    }
+
+    private int code(String name) {
+        Integer code = codes.get(name);
+        return code != null ? code : addName(name);
+    }
+
+    private synchronized int addName(String name) {
+        Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+        int count = nameCount;
+        if (count == MAX_NAMES) {
+            throw new IllegalStateException("Inventory audit dictionary is full");
+        }
+        String[] current = names;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, 2 * count);
+        }
+        current[count] = name;
+        names = current;
+        codes.put(name, count);
+        nameCount = count + 1;
+        return count;
+    }
+
+    private void loadDictionary() {
+        Path file = directory.resolve(DICTIONARY);
+        try {
+            if (Files.exists(file)) {
+                byte[] data = Files.readAllBytes(file);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+                long valid = 0;
+                try {
+                    while (in.available() > 0) {
+                        addName(in.readUTF());
+                        valid = data.length - in.available();
+                    }
+                } catch (EOFException e) {
+                    System.err.println("Dropping incomplete name at the end of " + file);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(valid);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read inventory audit dictionary " + file, e);
+        }
+        // Seen by the writer through the hand-off of its first task
+        namesWritten = nameCount;
+    }
+}
@@ -0,0 +1,138 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.PriceVersion;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Append-only log of scheduled price versions, their cancellations and how far they have
+ * been applied to the catalog. Each record is a kind byte, the product name (UTF), a time (long)
+ * and the price (double): a version's effective time and price, the time of the version a
+ * cancellation withdraws, or the time up to which versions were applied, with no product or price.
+ * A record cut short by a crash is dropped when the log is read.
+ */
+@Repository
+public class PriceVersionStore {
+
+    private static final byte VERSION_RECORD = 1;
+    private static final byte CANCEL_RECORD = 2;
+    private static final byte ACTIVATION_RECORD = 3;
+
+    private final Path file;
+    private DataOutputStream out;
+
+    public PriceVersionStore(@Value("${retail.prices.versions-path:data/prices.versions}") String file) {
+        this.file = Paths.get(file);
+    }
+
+    /**
+     * Append a version
+     * @param version The version
+     */
+    public synchronized void append(PriceVersion version) {
+        write(VERSION_RECORD, version.productName(), version.effectiveMillis(), version.price());
+    }
+
+    /**
+     * Append the cancellation of a version that has not taken effect
+     * @param productName The product name
+     * @param effectiveMillis Effective time of the cancelled version
+     */
+    public synchronized void appendCancel(String productName, long effectiveMillis) {
+        write(CANCEL_RECORD, productName, effectiveMillis, Double.NaN);
+    }
+
+    /**
+     * Record that every version up to a time has been applied to the catalog
+     * @param appliedUpToMillis The time
+     */
+    public synchronized void appendActivation(long appliedUpToMillis) {
+        write(ACTIVATION_RECORD, "", appliedUpToMillis, Double.NaN);
+    }
+
+    /**
+     * Replay the log in the order it was written
+     * @param versions Receives every version
+     * @param cancels Receives every cancellation, as the version it withdraws with a NaN price
+     * @param activations Receives every time versions were applied up to
+     */
+    public synchronized void replay(Consumer<PriceVersion> versions, Consumer<PriceVersion> cancels,
+                                    LongConsumer activations) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long valid = 0;
+        try {
+            byte[] data = Files.readAllBytes(file);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            try {
+                while (in.available() > 0) {
+                    byte kind = in.readByte();
+                    PriceVersion version = new PriceVersion(in.readUTF(), in.readLong(), in.readDouble());
+                    if (kind == VERSION_RECORD) {
+                        versions.accept(version);
+                    } else if (kind == CANCEL_RECORD) {
+                        cancels.accept(version);
+                    } else if (kind == ACTIVATION_RECORD) {
+                        activations.accept(version.effectiveMillis());
+                    } else {
+                        throw new IOException("Unrecognised price record kind " + kind);
+                    }
+                    valid = data.length - in.available();
+                }
+            } catch (EOFException e) {
+                System.err.println("Dropping incomplete price record at the end of " + file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading price versions " + file + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing price versions: " + e.getMessage());
+        }
+    }
+
+    private void write(byte kind, String productName, long effectiveMillis, double price) {
+        try {
+            if (out == null) {
+                Path parent = file.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            out.writeByte(kind);
+            out.writeUTF(productName);
+            out.writeLong(effectiveMillis);
+            out.writeDouble(price);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot save price version for " + productName, e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.ProductRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * JPA repository for the product catalog
+ */
+@Repository
+public interface ProductRepository extends JpaRepository<ProductRow, Long> {
+}
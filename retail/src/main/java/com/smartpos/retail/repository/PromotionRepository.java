@@ -0,0 +1,12 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.Promotion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * JPA repository for promotion rules
+ */
+@Repository
+public interface PromotionRepository extends JpaRepository<Promotion, Long> {
+}
@@ -0,0 +1,384 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.SaleRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Append-only log of sold and returned lines for analytics, partitioned by day and by lane:
+ * one directory per calendar day holding one file per lane. Each line is a fixed-size record
+ * (time, product code, quantity, amount in cents) and product names are kept once, in a
+ * dictionary next to the days, so a partition is read as a memory-mapped array and split
+ * into slices that are aggregated in parallel.
+ * Lines are appended by a single background writer, so checkouts never wait on the log.
+ * A record cut short by a crash is ignored when read and cut off before the next append.
+ */
+@Repository
+public class SalesEventLog {
+
+    private static final int MAGIC = 0x5253454c; // "RSEL"
+    private static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 24;
+    private static final String EXTENSION = ".events";
+    private static final String DICTIONARY = "products.dict";
+    private static final int SLICE_RECORDS = 1 << 20;
+
+    /**
+     * Folds one line of the log into a running tally
+     * @param <T> The tally, one per slice, combined once every slice is read
+     */
+    @FunctionalInterface
+    public interface LineVisitor<T> {
+        void visit(T tally, long timestampMillis, int productCode, int quantity, long amountCents);
+    }
+
+    private final Path directory;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sales-event-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Product codes are handed out by the writer thread, and a name is written to the
+    // dictionary before any line that uses its code. The names array is grown by the writer
+    // and published before the count, so a reader that sees a code also sees its name.
+    private final Map<String, Integer> productCodes = new ConcurrentHashMap<>();
+    private volatile String[] productNames = new String[1024];
+    private volatile int productCount;
+    private volatile boolean dictionaryLoaded;
+
+    // Owned by the writer thread: the dictionary and the lane files of the day being appended to
+    private DataOutputStream openDictionary;
+    private LocalDate openDate;
+    private final Map<String, OutputStream> openLanes = new HashMap<>();
+
+    public SalesEventLog(@Value("${retail.sales.event-log-dir:data/events}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Queue the lines of a sale, refund or void to be appended to its day and lane
+     * @param sale The completed record
+     */
+    public void append(SaleRecord sale) {
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(sale.timestampMillis()), zone);
+        String lane = laneOf(sale.terminalId());
+        writer.execute(() -> write(date, lane, sale));
+    }
+
+    /**
+     * Fold every line written for a range of days into a tally, reading the partitions in
+     * parallel. Lines still queued for the writer are not included.
+     * @param from First day, null for the start of the log
+     * @param to Last day, null for the end of the log
+     * @param tally Creates an empty tally for each slice
+     * @param visitor Adds one line to a tally
+     * @param combine Merges the tallies of two slices
+     * @return The combined tally, an empty one if the range has no lines
+     */
+    public <T> T aggregate(LocalDate from, LocalDate to, Supplier<T> tally, LineVisitor<T> visitor,
+                           BinaryOperator<T> combine) {
+        ensureDictionary();
+        return slices(from, to).parallelStream()
+                .map(slice -> scan(slice, tally.get(), visitor))
+                .reduce(combine)
+                .orElseGet(tally);
+    }
+
+    /**
+     * Name of a product code seen by a visitor
+     * @param productCode The code
+     * @return The product name
+     */
+    public String productName(int productCode) {
+        ensureDictionary();
+        if (productCode < 0 || productCode >= productCount) {
+            throw new IndexOutOfBoundsException("Unknown product code " + productCode);
+        }
+        return productNames[productCode];
+    }
+
+    /**
+     * Number of product codes handed out so far
+     * @return Codes run from 0 to this count, exclusive
+     */
+    public int productCount() {
+        ensureDictionary();
+        return productCount;
+    }
+
+    /**
+     * Wait until every queued line has been written
+     */
+    public void flush() {
+        runOnWriter(() -> { });
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        writer.execute(() -> {
+            closeOpenDay();
+            try {
+                if (openDictionary != null) {
+                    openDictionary.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error closing sales event log: " + e.getMessage());
+            }
+        });
+        writer.shutdown();
+        try {
+            // The writer may still hold a file open; tests and restarts reuse the directory
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ensureDictionary() {
+        if (!dictionaryLoaded) {
+            runOnWriter(this::loadDictionary);
+        }
+    }
+
+    private void runOnWriter(Runnable task) {
+        try {
+            writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String laneOf(String terminalId) {
+        String lane = terminalId.replaceAll("[^A-Za-z0-9._-]", "_");
+        return lane.isEmpty() ? "unknown" : lane;
+    }
+
+    private void write(LocalDate date, String lane, SaleRecord sale) {
+        try {
+            loadDictionary();
+            if (!date.equals(openDate)) {
+                closeOpenDay();
+                openDate = date;
+            }
+            OutputStream out = openLanes.get(lane);
+            if (out == null) {
+                out = openLane(date, lane);
+                openLanes.put(lane, out);
+            }
+
+            ByteBuffer records = ByteBuffer.allocate(sale.lines().size() * RECORD_SIZE);
+            for (SaleRecord.Line line : sale.lines()) {
+                records.putLong(sale.timestampMillis());
+                records.putInt(codeOf(line.productName()));
+                records.putInt(line.quantity());
+                records.putLong(Math.round(line.total() * 100));
+            }
+            openDictionary.flush();
+            out.write(records.array());
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing sales event log for " + date + ": " + e.getMessage());
+            closeOpenDay();
+        }
+    }
+
+    private int codeOf(String productName) throws IOException {
+        Integer code = productCodes.get(productName);
+        if (code == null) {
+            code = productCount;
+            openDictionary.writeUTF(productName);
+            addProductName(productName);
+        }
+        return code;
+    }
+
+    private void addProductName(String productName) {
+        int code = productCount;
+        String[] names = productNames;
+        if (code == names.length) {
+            names = Arrays.copyOf(names, 2 * code);
+        }
+        names[code] = productName;
+        productNames = names;
+        productCodes.put(productName, code);
+        productCount = code + 1;
+    }
+
+    private OutputStream openLane(LocalDate date, String lane) throws IOException {
+        Path file = directory.resolve(date.toString()).resolve(lane + EXTENSION);
+        Files.createDirectories(file.getParent());
+        if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+            checkHeader(file);
+            long whole = HEADER_SIZE + (Files.size(file) - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            if (whole < Files.size(file)) {
+                System.err.println("Dropping incomplete record at the end of " + file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(whole);
+                }
+            }
+        } else {
+            try (DataOutputStream header = new DataOutputStream(Files.newOutputStream(file))) {
+                header.writeInt(MAGIC);
+                header.writeShort(VERSION);
+                header.writeShort(RECORD_SIZE);
+            }
+        }
+        return new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND));
+    }
+
+    private void closeOpenDay() {
+        for (OutputStream out : openLanes.values()) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing sales event log: " + e.getMessage());
+            }
+        }
+        openLanes.clear();
+        openDate = null;
+    }
+
+    private void loadDictionary() {
+        if (dictionaryLoaded) {
+            return;
+        }
+        Path file = directory.resolve(DICTIONARY);
+        try {
+            Files.createDirectories(directory);
+            long valid = 0;
+            if (Files.exists(file)) {
+                byte[] data = Files.readAllBytes(file);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+                try {
+                    while (in.available() > 0) {
+                        String name = in.readUTF();
+                        addProductName(name);
+                        valid = data.length - in.available();
+                    }
+                } catch (EOFException e) {
+                    System.err.println("Dropping incomplete product name at the end of " + file);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(valid);
+                    }
+                }
+            }
+            openDictionary = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open sales event dictionary " + file, e);
+        }
+        dictionaryLoaded = true;
+    }
+
+    /**
+     * A run of whole records in one lane file of one day
+     */
+    private record Slice(Path file, long firstRecord, int records) {}
+
+    private List<Slice> slices(LocalDate from, LocalDate to) {
+        List<Slice> slices = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return slices;
+        }
+        try (DirectoryStream<Path> days = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path day : days) {
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(day.getFileName().toString());
+                } catch (DateTimeParseException e) {
+                    System.err.println("Skipping unexpected sales event directory " + day);
+                    continue;
+                }
+                if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) {
+                    continue;
+                }
+                try (DirectoryStream<Path> lanes = Files.newDirectoryStream(day, "*" + EXTENSION)) {
+                    for (Path lane : lanes) {
+                        long records = (Files.size(lane) - HEADER_SIZE) / RECORD_SIZE;
+                        if (records <= 0) {
+                            continue;
+                        }
+                        try {
+                            checkHeader(lane);
+                        } catch (IOException e) {
+                            System.err.println("Skipping sales event file: " + e.getMessage());
+                            continue;
+                        }
+                        for (long first = 0; first < records; first += SLICE_RECORDS) {
+                            slices.add(new Slice(lane, first, (int) Math.min(SLICE_RECORDS, records - first)));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing sales event log: " + e.getMessage());
+        }
+        return slices;
+    }
+
+    private static <T> T scan(Slice slice, T tally, LineVisitor<T> visitor) {
+        try (FileChannel channel = FileChannel.open(slice.file(), StandardOpenOption.READ)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + slice.firstRecord() * RECORD_SIZE, (long) slice.records() * RECORD_SIZE);
+            int end = slice.records() * RECORD_SIZE;
+            for (int position = 0; position < end; position += RECORD_SIZE) {
+                visitor.visit(tally, records.getLong(position), records.getInt(position + 8),
+                        records.getInt(position + 12), records.getLong(position + 16));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading sales event log " + slice.file() + ": " + e.getMessage());
+        }
+        return tally;
+    }
+
+    private static void checkHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognised sales event file " + file);
+            }
+            short version = in.readShort();
+            if (version < 1 || version > VERSION || in.readShort() != RECORD_SIZE) {
+                throw new IOException("Unsupported sales event file version " + version + ": " + file);
+            }
+        }
+    }
+}
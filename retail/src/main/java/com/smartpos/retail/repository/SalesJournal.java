@@ -0,0 +1,556 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.SaleRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of completed sales, refunds and voids, one file per calendar day.
+ * Records are encoded on the caller's thread and appended by a single background writer.
+ * Each file starts with a header and holds length-prefixed records, so a record cut short
+ * by a crash is detected and skipped when the journal is read back.
+ * Next to each day file an index file lists the transaction IDs and their offsets, so a
+ * transaction from any day is read with one seek instead of a scan.
+ * Other indexes over the sales subscribe to the journal and are fed from the writer thread.
+ */
+@Repository
+public class SalesJournal {
+
+    private static final int MAGIC = 0x52534a4c; // "RSJL"
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = 6;
+    private static final String PREFIX = "sales-";
+    private static final String EXTENSION = ".journal";
+    private static final String INDEX_EXTENSION = ".index";
+    private static final int OFFSET_BITS = 40;
+
+    private final Path directory;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sales-journal-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Transaction ID to day and offset, and sale to the refunds and voids against it.
+    // Loaded on the writer thread on first lookup and kept up to date by it afterwards.
+    private final Map<String, Long> locations = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> reversals = new ConcurrentHashMap<>();
+    private volatile boolean indexLoaded;
+    private final List<Consumer<SaleRecord>> listeners = new CopyOnWriteArrayList<>();
+
+    // Owned by the writer thread: the files of the day being appended to
+    private LocalDate openDate;
+    private OutputStream openFile;
+    private DataOutputStream openIndex;
+    private long openSize;
+
+    public SalesJournal(@Value("${retail.sales.journal-dir:data/journal}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Queue a record to be appended to the journal of its day
+     * @param sale The completed sale, refund or void
+     */
+    public void append(SaleRecord sale) {
+        LocalDate date = dateOf(sale.timestampMillis());
+        byte[] record = encode(sale);
+        writer.execute(() -> write(date, sale, record));
+    }
+
+    /**
+     * Replay every journaled record to a listener, then pass it each record once it is written.
+     * Both happen on the writer thread, so the listener sees every record exactly once and in
+     * journal order. The replay is queued and this returns straight away.
+     * @param listener Called on the writer thread, must not block
+     */
+    public void subscribe(Consumer<SaleRecord> listener) {
+        writer.execute(() -> {
+            for (LocalDate date : getDates()) {
+                for (SaleRecord sale : read(date)) {
+                    deliver(listener, sale);
+                }
+            }
+            listeners.add(listener);
+        });
+    }
+
+    /**
+     * Look up one transaction by its ID
+     * @param transactionId The transaction ID
+     * @return The record, null if the journal has no such transaction
+     */
+    public SaleRecord find(String transactionId) {
+        if (transactionId == null) {
+            return null;
+        }
+        loadIndex();
+        Long location = locations.get(transactionId);
+        if (location == null) {
+            // It may still be waiting for the writer
+            flush();
+            location = locations.get(transactionId);
+        }
+        return location == null ? null : readAt(LocalDate.ofEpochDay(location >>> OFFSET_BITS),
+                location & ((1L << OFFSET_BITS) - 1));
+    }
+
+    /**
+     * Refunds and voids recorded against a sale
+     * @param transactionId The original sale's transaction ID
+     * @return Reversals in the order they were journaled, empty if none
+     */
+    public List<SaleRecord> findReversals(String transactionId) {
+        loadIndex();
+        flush();
+        List<SaleRecord> records = new ArrayList<>();
+        for (String reversalId : reversals.getOrDefault(transactionId, List.of())) {
+            SaleRecord record = find(reversalId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Read the records of one day
+     * @param date Calendar day in the system time zone
+     * @return Records in the order they were appended, empty if there were none
+     */
+    public List<SaleRecord> read(LocalDate date) {
+        Path file = fileFor(date);
+        if (!Files.exists(file)) {
+            return new ArrayList<>();
+        }
+        try {
+            return decodeAll(Files.readAllBytes(file), file);
+        } catch (IOException e) {
+            System.err.println("Error reading sales journal " + file + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Read the records completed after one time up to and including another
+     * @param fromMillis Exclusive start
+     * @param toMillis Inclusive end
+     * @return Records in the period, oldest first
+     */
+    public List<SaleRecord> readBetween(long fromMillis, long toMillis) {
+        LocalDate first = dateOf(fromMillis);
+        LocalDate last = dateOf(toMillis);
+        List<SaleRecord> sales = new ArrayList<>();
+        for (LocalDate date : getDates()) {
+            if (date.isBefore(first) || date.isAfter(last)) {
+                continue;
+            }
+            for (SaleRecord sale : read(date)) {
+                if (sale.timestampMillis() > fromMillis && sale.timestampMillis() <= toMillis) {
+                    sales.add(sale);
+                }
+            }
+        }
+        return sales;
+    }
+
+    /**
+     * Days that have a journal file
+     * @return Dates in ascending order
+     */
+    public List<LocalDate> getDates() {
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    dates.add(LocalDate.parse(name.substring(PREFIX.length(), name.length() - EXTENSION.length())));
+                } catch (DateTimeParseException e) {
+                    System.err.println("Skipping unexpected journal file " + file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing sales journal: " + e.getMessage());
+        }
+        return new ArrayList<>(dates);
+    }
+
+    /**
+     * Wait until every queued record has been written
+     */
+    public void flush() {
+        runOnWriter(() -> { });
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        writer.execute(this::closeOpenDay);
+        writer.shutdown();
+        try {
+            // The writer may still hold a file open; tests and restarts reuse the directory
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public LocalDate dateOf(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone);
+    }
+
+    private void runOnWriter(Runnable task) {
+        try {
+            writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void loadIndex() {
+        if (!indexLoaded) {
+            runOnWriter(this::readIndexes);
+        }
+    }
+
+    private Path fileFor(LocalDate date) {
+        return directory.resolve(PREFIX + date + EXTENSION);
+    }
+
+    private Path indexFor(LocalDate date) {
+        return directory.resolve(PREFIX + date + INDEX_EXTENSION);
+    }
+
+    private void write(LocalDate date, SaleRecord sale, byte[] record) {
+        try {
+            if (!date.equals(openDate)) {
+                openDay(date);
+            }
+            long offset = openSize;
+            openFile.write(record);
+            openFile.flush();
+            openSize += record.length;
+
+            openIndex.writeUTF(sale.transactionId());
+            openIndex.writeUTF(sale.originalTransactionId());
+            openIndex.writeLong(offset);
+            openIndex.flush();
+            if (indexLoaded) {
+                remember(date, sale.transactionId(), sale.originalTransactionId(), offset);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing sales journal for " + date + ": " + e.getMessage());
+            closeOpenDay();
+            return;
+        }
+        for (Consumer<SaleRecord> listener : listeners) {
+            deliver(listener, sale);
+        }
+    }
+
+    private static void deliver(Consumer<SaleRecord> listener, SaleRecord sale) {
+        try {
+            listener.accept(sale);
+        } catch (RuntimeException e) {
+            System.err.println("Sales journal listener failed on " + sale.transactionId() + ": " + e.getMessage());
+        }
+    }
+
+    private void openDay(LocalDate date) throws IOException {
+        closeOpenDay();
+        Files.createDirectories(directory);
+        Path file = fileFor(date);
+        Path index = indexFor(date);
+
+        if (Files.exists(file) && Files.size(file) > 0) {
+            if (versionOf(file) < VERSION) {
+                upgrade(file);
+            }
+            if (isStale(date)) {
+                rebuildIndex(date);
+            }
+        } else {
+            try (DataOutputStream header = new DataOutputStream(Files.newOutputStream(file))) {
+                header.writeInt(MAGIC);
+                header.writeShort(VERSION);
+            }
+            Files.deleteIfExists(index);
+        }
+
+        openSize = Files.size(file);
+        openFile = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND));
+        openIndex = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        openDate = date;
+    }
+
+    private void closeOpenDay() {
+        try {
+            if (openFile != null) {
+                openFile.close();
+            }
+            if (openIndex != null) {
+                openIndex.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing sales journal: " + e.getMessage());
+        }
+        openFile = null;
+        openIndex = null;
+        openDate = null;
+    }
+
+    private void readIndexes() {
+        if (indexLoaded) {
+            return;
+        }
+        for (LocalDate date : getDates()) {
+            try {
+                if (!date.equals(openDate) && isStale(date)) {
+                    rebuildIndex(date);
+                }
+                readIndex(date);
+            } catch (IOException e) {
+                System.err.println("Error indexing sales journal for " + date + ": " + e.getMessage());
+            }
+        }
+        indexLoaded = true;
+    }
+
+    private void readIndex(LocalDate date) throws IOException {
+        Path index = indexFor(date);
+        if (!Files.exists(index)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            while (true) {
+                String transactionId;
+                try {
+                    transactionId = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                remember(date, transactionId, in.readUTF(), in.readLong());
+            }
+        } catch (EOFException e) {
+            System.err.println("Ignoring incomplete entry at the end of " + index);
+        }
+    }
+
+    private void remember(LocalDate date, String transactionId, String originalTransactionId, long offset) {
+        locations.put(transactionId, (date.toEpochDay() << OFFSET_BITS) | offset);
+        if (!originalTransactionId.isEmpty()) {
+            reversals.computeIfAbsent(originalTransactionId, id -> new CopyOnWriteArrayList<>()).add(transactionId);
+        }
+    }
+
+    /**
+     * An index is stale if it is missing or older than its journal, e.g. after a crash between the two writes
+     */
+    private boolean isStale(LocalDate date) throws IOException {
+        Path index = indexFor(date);
+        return !Files.exists(index)
+                || Files.getLastModifiedTime(index).compareTo(Files.getLastModifiedTime(fileFor(date))) < 0;
+    }
+
+    private void rebuildIndex(LocalDate date) throws IOException {
+        Path file = fileFor(date);
+        byte[] data = Files.readAllBytes(file);
+        short version = checkHeader(data);
+        Path tempIndex = directory.resolve(indexFor(date).getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempIndex)))) {
+            int offset = HEADER_SIZE;
+            while (offset + 4 <= data.length) {
+                int length = readLength(data, offset);
+                if (length < 0 || offset + 4 + length > data.length) {
+                    break;
+                }
+                SaleRecord sale = decode(data, offset + 4, length, version);
+                out.writeUTF(sale.transactionId());
+                out.writeUTF(sale.originalTransactionId());
+                out.writeLong(offset);
+                offset += 4 + length;
+            }
+        }
+        Files.move(tempIndex, indexFor(date), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rewrite a day written by an older version in the current format before appending to it
+     */
+    private void upgrade(Path file) throws IOException {
+        List<SaleRecord> records = decodeAll(Files.readAllBytes(file), file);
+        Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            for (SaleRecord record : records) {
+                out.write(encode(record));
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private short versionOf(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            byte[] header = new byte[HEADER_SIZE];
+            in.readFully(header);
+            return checkHeader(header);
+        }
+    }
+
+    private SaleRecord readAt(LocalDate date, long offset) {
+        Path file = fileFor(date);
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            byte[] header = new byte[HEADER_SIZE];
+            in.readFully(header);
+            short version = checkHeader(header);
+            in.seek(offset);
+            int length = in.readInt();
+            byte[] record = new byte[length];
+            in.readFully(record);
+            return decode(record, 0, length, version);
+        } catch (IOException e) {
+            System.err.println("Error reading sales journal " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static byte[] encode(SaleRecord sale) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96 + sale.lines().size() * 40);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0); // length, filled in below
+            out.writeUTF(sale.transactionId());
+            out.writeLong(sale.timestampMillis());
+            out.writeUTF(sale.terminalId());
+            out.writeUTF(sale.cashier());
+            out.writeDouble(sale.subtotal());
+            out.writeDouble(sale.discount());
+            out.writeDouble(sale.tax());
+            out.writeDouble(sale.total());
+            out.writeInt(sale.lines().size());
+            for (SaleRecord.Line line : sale.lines()) {
+                out.writeUTF(line.productName());
+                out.writeInt(line.quantity());
+                out.writeDouble(line.price());
+                out.writeDouble(line.total());
+            }
+            out.writeByte(sale.kind().ordinal());
+            out.writeUTF(sale.originalTransactionId());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode sale " + sale.transactionId(), e);
+        }
+        byte[] record = bytes.toByteArray();
+        int length = record.length - 4;
+        record[0] = (byte) (length >>> 24);
+        record[1] = (byte) (length >>> 16);
+        record[2] = (byte) (length >>> 8);
+        record[3] = (byte) length;
+        return record;
+    }
+
+    static List<SaleRecord> decodeAll(byte[] data, Path file) throws IOException {
+        List<SaleRecord> sales = new ArrayList<>();
+        if (data.length == 0) {
+            return sales;
+        }
+        short version = checkHeader(data);
+        int offset = HEADER_SIZE;
+        while (offset + 4 <= data.length) {
+            int length = readLength(data, offset);
+            if (length < 0 || offset + 4 + length > data.length) {
+                System.err.println("Ignoring incomplete record at the end of " + file);
+                break;
+            }
+            sales.add(decode(data, offset + 4, length, version));
+            offset += 4 + length;
+        }
+        return sales;
+    }
+
+    private static short checkHeader(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE || readLength(data, 0) != MAGIC) {
+            throw new IOException("Unrecognised journal file");
+        }
+        short version = (short) (((data[4] & 0xff) << 8) | (data[5] & 0xff));
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        return version;
+    }
+
+    private static int readLength(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    private static SaleRecord decode(byte[] data, int offset, int length, short version) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length))) {
+            String transactionId = in.readUTF();
+            long timestamp = in.readLong();
+            String terminalId = in.readUTF();
+            String cashier = in.readUTF();
+            double subtotal = in.readDouble();
+            double discount = in.readDouble();
+            double tax = in.readDouble();
+            double total = in.readDouble();
+            int lineCount = in.readInt();
+            if (lineCount < 0) {
+                throw new IOException("Corrupt journal record");
+            }
+            List<SaleRecord.Line> lines = new ArrayList<>(Math.min(lineCount, 256));
+            for (int i = 0; i < lineCount; i++) {
+                lines.add(new SaleRecord.Line(in.readUTF(), in.readInt(), in.readDouble(), in.readDouble()));
+            }
+            SaleRecord.Kind kind = SaleRecord.Kind.SALE;
+            String originalTransactionId = "";
+            if (version >= 2) {
+                kind = SaleRecord.Kind.values()[in.readByte()];
+                originalTransactionId = in.readUTF();
+            }
+            return new SaleRecord(transactionId, timestamp, terminalId, cashier, subtotal, discount, tax, total,
+                    lines, kind, originalTransactionId);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt journal record", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.TaxRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TaxRateRepository extends JpaRepository<TaxRate, Long> {
+}
@@ -0,0 +1,182 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.ZReport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local store for closed Z reports, one binary file per report number
+ */
+@Repository
+public class ZReportStore {
+
+    private static final int MAGIC = 0x525a5250; // "RZRP"
+    private static final short VERSION = 2;
+    private static final String PREFIX = "z-";
+    private static final String EXTENSION = ".zreport";
+
+    private final Path directory;
+
+    public ZReportStore(@Value("${retail.reports.dir:data/reports}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Write a closed report
+     * @param report The report, its number names the file
+     */
+    public void save(ZReport report) {
+        try {
+            Files.createDirectories(directory);
+            Path file = fileFor(report.getNumber());
+            Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+            Files.write(tempFile, encode(report));
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write Z report " + report.getNumber(), e);
+        }
+    }
+
+    /**
+     * Read one report
+     * @param number The Z number
+     * @return The report, null if there is none or it cannot be read
+     */
+    public ZReport load(long number) {
+        Path file = fileFor(number);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return decode(Files.readAllBytes(file));
+        } catch (IOException e) {
+            System.err.println("Error reading Z report " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the report with the highest number
+     * @return Latest report, null if no day has been closed yet
+     */
+    public ZReport findLatest() {
+        long latest = 0;
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + EXTENSION)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        latest = Math.max(latest, Long.parseLong(name.substring(PREFIX.length(), name.length() - EXTENSION.length())));
+                    } catch (NumberFormatException e) {
+                        System.err.println("Skipping unexpected report file " + file);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error listing Z reports: " + e.getMessage());
+            }
+        }
+        return latest > 0 ? load(latest) : null;
+    }
+
+    private Path fileFor(long number) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, number, EXTENSION));
+    }
+
+    static byte[] encode(ZReport report) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            write(out, report);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode Z report " + report.getNumber(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ZReport decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognised report file");
+            }
+            short version = in.readShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported report file version " + version);
+            }
+            return read(in, version);
+        }
+    }
+
+    private static void write(DataOutputStream out, ZReport report) throws IOException {
+        out.writeLong(report.getNumber());
+        out.writeUTF(report.getCashier() != null ? report.getCashier() : "");
+        out.writeLong(report.getOpenedAtMillis());
+        out.writeLong(report.getClosedAtMillis());
+        out.writeInt(report.getTransactionCount());
+        out.writeLong(report.getItemCount());
+        out.writeDouble(report.getSubtotal());
+        out.writeDouble(report.getDiscount());
+        out.writeDouble(report.getTax());
+        out.writeDouble(report.getTotal());
+        out.writeInt(report.getRefundCount());
+        out.writeDouble(report.getRefundTotal());
+        out.writeInt(report.getTopItems().size());
+        for (ZReport.ItemTotal item : report.getTopItems()) {
+            out.writeUTF(item.productName());
+            out.writeInt(item.quantity());
+            out.writeDouble(item.amount());
+        }
+        out.writeInt(report.getCashierReports().size());
+        for (ZReport cashierReport : report.getCashierReports()) {
+            write(out, cashierReport);
+        }
+    }
+
+    private static ZReport read(DataInputStream in, short version) throws IOException {
+        long number = in.readLong();
+        String cashier = in.readUTF();
+        long openedAt = in.readLong();
+        long closedAt = in.readLong();
+        int transactions = in.readInt();
+        long items = in.readLong();
+        double subtotal = in.readDouble();
+        double discount = in.readDouble();
+        double tax = in.readDouble();
+        double total = in.readDouble();
+        int refundCount = version >= 2 ? in.readInt() : 0;
+        double refundTotal = version >= 2 ? in.readDouble() : 0;
+
+        int itemCount = in.readInt();
+        if (itemCount < 0) {
+            throw new IOException("Corrupt report file");
+        }
+        List<ZReport.ItemTotal> topItems = new ArrayList<>(Math.min(itemCount, 256));
+        for (int i = 0; i < itemCount; i++) {
+            topItems.add(new ZReport.ItemTotal(in.readUTF(), in.readInt(), in.readDouble()));
+        }
+
+        int cashierCount = in.readInt();
+        if (cashierCount < 0) {
+            throw new IOException("Corrupt report file");
+        }
+        List<ZReport> cashierReports = new ArrayList<>(Math.min(cashierCount, 256));
+        for (int i = 0; i < cashierCount; i++) {
+            cashierReports.add(read(in, version));
+        }
+        return new ZReport(number, cashier.isEmpty() ? null : cashier, openedAt, closedAt, transactions, items,
+                subtotal, discount, tax, total, refundCount, refundTotal, topItems, cashierReports);
+    }
+}
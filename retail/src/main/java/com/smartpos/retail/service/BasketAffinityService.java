@@ -0,0 +1,30 @@
+package com.smartpos.retail.service;
+
+import java.util.List;
+
+/**
+ * Service interface for "frequently bought together" analysis of sold baskets
+ */
+public interface BasketAffinityService {
+
+    /**
+     * A product bought in the same baskets as another
+     * @param productName The other product
+     * @param score Baskets holding both, recent baskets counting more than old ones
+     */
+    record Affinity(String productName, double score) {}
+
+    /**
+     * Products most often bought with a product
+     * @param productName The product
+     * @param limit Most products to return, the configured top-K if not positive
+     * @return Strongest affinities first, empty if the product was never sold with another
+     */
+    List<Affinity> getBoughtWith(String productName, int limit);
+
+    /**
+     * Rebuild the affinities exactly from the sales journal, replacing the running estimates
+     * @return Baskets read
+     */
+    long recompute();
+}
@@ -1,6 +1,7 @@
 package com.smartpos.retail.service;
 
 import com.smartpos.retail.model.CartItem;
+import com.smartpos.retail.model.CartSession;
 import com.smartpos.retail.model.ProductRow;
 import java.util.List;
 
@@ -63,4 +64,71 @@ public interface CartService {
      * @return true if valid, false otherwise
      */
     boolean canAddToCart(ProductRow product, int quantity, List<CartItem> cartItems);
+    
+    /**
+     * Get the active cart on a terminal, opening a new one if there is none
+     * @param terminalId The terminal or lane ID
+     * @return The active cart
+     */
+    CartSession getOrOpenCart(String terminalId);
+    
+    /**
+     * Get a cart by ID
+     * @param cartId The cart ID
+     * @return Cart if open, null otherwise
+     */
+    CartSession getCart(String cartId);
+    
+    /**
+     * Add product to a cart session or update quantity if already exists
+     * @param cartId The cart ID
+     * @param product The product to add
+     * @param quantity The quantity to add
+     * @return The updated cart
+     * @throws IllegalArgumentException if quantity is invalid, stock is insufficient or the cart is unknown
+     */
+    CartSession addToCart(String cartId, ProductRow product, int quantity);
+    
+    /**
+     * Remove a line from a cart session
+     * @param cartId The cart ID
+     * @param productName The product name to remove
+     * @return The updated cart
+     */
+    CartSession removeFromCart(String cartId, String productName);
+    
+    /**
+     * Remove all lines from a cart session
+     * @param cartId The cart ID
+     * @return The emptied cart
+     */
+    CartSession clearCart(String cartId);
+    
+    /**
+     * Close a cart after checkout, removing it from the store
+     * @param cartId The cart ID
+     */
+    void closeCart(String cartId);
+    
+    /**
+     * Park a cart so the terminal can serve another customer
+     * @param cartId The cart ID
+     * @return The parked cart
+     */
+    CartSession parkCart(String cartId);
+    
+    /**
+     * Resume a parked cart on a terminal, parking the terminal's current cart if it has items
+     * @param cartId The parked cart ID
+     * @param terminalId The terminal to resume on
+     * @return The resumed cart
+     * @throws IllegalStateException if the cart is open on a terminal or was closed
+     */
+    CartSession resumeCart(String cartId, String terminalId);
+    
+    /**
+     * Get all parked carts, oldest first
+     * @return Parked carts
+     */
+    List<CartSession> getParkedCarts();
 }
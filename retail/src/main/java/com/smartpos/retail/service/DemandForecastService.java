@@ -0,0 +1,29 @@
+package com.smartpos.retail.service;
+
+import java.time.LocalDate;
+
+/**
+ * Service interface for next-week demand forecasts per product, built from daily sales
+ */
+public interface DemandForecastService {
+
+    /**
+     * Forecast the coming week for every product sold in the history window and hand the
+     * result to the low-stock monitor. Resumes a run for the same day that was cut short.
+     * @return Products with a forecast
+     */
+    int runForecast();
+
+    /**
+     * Forecast units for the week starting on the forecast date
+     * @param productName The product name
+     * @return Forecast units, null if the product has no forecast
+     */
+    Double getWeeklyDemand(String productName);
+
+    /**
+     * Day the current forecasts start from
+     * @return The forecast date, null if no forecast has been made yet
+     */
+    LocalDate getForecastDate();
+}
@@ -0,0 +1,28 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.InventoryChange;
+import java.util.List;
+
+/**
+ * Service interface for looking into past catalog and stock changes, for shrinkage investigations
+ */
+public interface InventoryAuditService {
+
+    /**
+     * Every recorded change to a product, in the shared catalog and in branches
+     * @param productName The product name
+     * @param fromMillis Earliest time, inclusive
+     * @param toMillis Latest time, inclusive
+     * @return Changes in the order they were made, empty if none
+     */
+    List<InventoryChange> getHistory(String productName, long fromMillis, long toMillis);
+
+    /**
+     * Units a product had in stock at a point in time, rebuilt from the recorded changes
+     * @param productName The product name
+     * @param branchId The branch, null for the shared catalog
+     * @param atMillis The time
+     * @return Units in stock, null if nothing was recorded about the product or it did not exist then
+     */
+    Integer getStockAt(String productName, String branchId, long atMillis);
+}
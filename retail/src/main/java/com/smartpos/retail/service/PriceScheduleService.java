@@ -0,0 +1,57 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.PriceVersion;
+import java.util.List;
+
+/**
+ * Service interface for price changes scheduled ahead of time and the price history they leave
+ */
+public interface PriceScheduleService {
+
+    /**
+     * Schedule a product's price from a point in time on
+     * @param productName The product name
+     * @param price The new price
+     * @param effectiveMillis When the price takes effect, not in the past
+     * @return The scheduled version
+     * @throws IllegalArgumentException if the product does not exist, the price is negative or the time has passed
+     */
+    PriceVersion schedule(String productName, double price, long effectiveMillis);
+
+    /**
+     * Withdraw a version that has not taken effect yet
+     * @param productName The product name
+     * @param effectiveMillis Effective time of the version
+     * @return true if the version was withdrawn, false if there is no such version
+     * @throws IllegalStateException if the version has already taken effect
+     */
+    boolean cancel(String productName, long effectiveMillis);
+
+    /**
+     * Versions that have not taken effect yet
+     * @return Pending versions, soonest first
+     */
+    List<PriceVersion> getPending();
+
+    /**
+     * Every version of a product, past and scheduled
+     * @param productName The product name
+     * @return Versions in effective order, empty if its price was never scheduled
+     */
+    List<PriceVersion> getHistory(String productName);
+
+    /**
+     * The price a product had, or is scheduled to have, at a point in time
+     * @param productName The product name
+     * @param atMillis The time
+     * @return The price, the current catalog price for a product that was never scheduled,
+     *         null if the product is unknown
+     */
+    Double getPriceAt(String productName, long atMillis);
+
+    /**
+     * Apply every version whose time has come, all in one step
+     * @return Number of products repriced
+     */
+    int activateDue();
+}
@@ -0,0 +1,20 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.ProductRow;
+import java.util.List;
+
+/**
+ * Service interface for type-ahead product search
+ */
+public interface ProductSearchService {
+
+    /**
+     * Find products for a partly typed name or barcode, best matches first.
+     * Exact matches rank first, then names starting with the query, then names with
+     * a word starting with it, then names containing it.
+     * @param query The text typed so far, several words must all match
+     * @param limit Maximum number of results
+     * @return Matching products, empty if the query is blank
+     */
+    List<ProductRow> suggest(String query, int limit);
+}
@@ -1,7 +1,9 @@
 package com.smartpos.retail.service;
 
 import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.util.LruCache;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service interface for product-related operations
@@ -58,12 +60,23 @@ public interface ProductService {
     ProductRow createProduct(ProductRow product);
     
     /**
-     * Update an existing product
+     * Update an existing product.
+     * Stock is changed by the difference between the edited stock and the stock the editor
+     * started from, so units sold while the product was being edited stay sold.
      * @param productName The name of product to update
      * @param product Updated product data
+     * @param stockSeen Stock the edit started from
      * @return Updated product, null if not found
      */
-    ProductRow updateProduct(String productName, ProductRow product);
+    ProductRow updateProduct(String productName, ProductRow product, int stockSeen);
+    
+    /**
+     * Change the prices of several products at once; a scan sees either every new price or none
+     * @param prices New prices keyed by product name, products no longer in the catalog are skipped
+     * @param actor Who changes the prices, for the audit log
+     * @return Number of products repriced
+     */
+    int applyPrices(Map<String, Double> prices, String actor);
     
     /**
      * Delete a product
@@ -98,4 +111,107 @@ public interface ProductService {
      * @return true if stock was reduced successfully, false otherwise
      */
     boolean reduceStock(String productName, int quantity);
+    
+    /**
+     * Reduce product stock by specified quantity on behalf of a cashier
+     * @param productName The product name
+     * @param quantity The quantity to reduce
+     * @param actor Username of the cashier, for the audit log
+     * @return true if stock was reduced successfully, false otherwise
+     */
+    boolean reduceStock(String productName, int quantity, String actor);
+    
+    /**
+     * Put returned units back into stock, for every product or for none
+     * @param quantities Units to add back, keyed by product name
+     * @throws IllegalArgumentException if a product no longer exists or a quantity is not positive
+     */
+    void restoreStock(Map<String, Integer> quantities);
+    
+    /**
+     * Put returned units back into stock on behalf of a cashier, for every product or for none
+     * @param quantities Units to add back, keyed by product name
+     * @param actor Username of the cashier, for the audit log
+     * @throws IllegalArgumentException if a product no longer exists or a quantity is not positive
+     */
+    void restoreStock(Map<String, Integer> quantities, String actor);
+    
+    /**
+     * Get a product as a branch sees it: the branch's own price and stock where it has set
+     * them, the shared catalog for everything else. Found through the catalog's name index and
+     * the branch's own pages, so the cost does not grow with the catalog or the number of branches.
+     * @param branchId The branch, null for the shared catalog
+     * @param productName The product name
+     * @return Product if found, null otherwise
+     * @throws IllegalArgumentException if the branch ID is not valid
+     */
+    ProductRow getProductByName(String branchId, String productName);
+    
+    /**
+     * Get a product by barcode as a branch sees it, found the same way through the barcode index
+     * @param branchId The branch, null for the shared catalog
+     * @param barcode The product barcode
+     * @return Product if found, null otherwise
+     * @throws IllegalArgumentException if the branch ID is not valid
+     */
+    ProductRow getProductByBarcode(String branchId, String barcode);
+    
+    /**
+     * Reduce a branch's stock of a product. A branch that has no stock of its own for the
+     * product yet starts from the catalog's.
+     * @param branchId The branch, null for the shared catalog
+     * @param productName The product name
+     * @param quantity The quantity to reduce
+     * @return true if stock was reduced successfully, false if the product does not exist
+     * @throws IllegalArgumentException if the branch has fewer units in stock
+     */
+    boolean reduceStock(String branchId, String productName, int quantity);
+    
+    /**
+     * Put returned units back into a branch's stock, for every product or for none
+     * @param branchId The branch, null for the shared catalog
+     * @param quantities Units to add back, keyed by product name
+     * @throws IllegalArgumentException if a product no longer exists or a quantity is not positive
+     */
+    void restoreStock(String branchId, Map<String, Integer> quantities);
+    
+    /**
+     * Set or clear a branch's own price for a product
+     * @param branchId The branch
+     * @param productName The product name
+     * @param price The branch price, null to go back to the catalog price
+     * @return The product as the branch sees it
+     * @throws IllegalArgumentException if the product does not exist or the price is invalid
+     */
+    ProductRow setBranchPrice(String branchId, String productName, Double price);
+    
+    /**
+     * Set or clear a branch's own stock count for a product
+     * @param branchId The branch
+     * @param productName The product name
+     * @param stock Units in stock at the branch, null to go back to the catalog stock
+     * @return The product as the branch sees it
+     * @throws IllegalArgumentException if the product does not exist or the stock is negative
+     */
+    ProductRow setBranchStock(String branchId, String productName, Integer stock);
+    
+    /**
+     * Version number of the catalog, changes whenever a product is added, changed or removed
+     * @return Current catalog version
+     */
+    long getCatalogVersion();
+    
+    /**
+     * Version number of the product names and barcodes. Unlike the catalog version it does not
+     * change on sales, stock or price changes, so indexes over names last until a product is
+     * added, renamed, given a new barcode or removed.
+     * @return Current names version
+     */
+    long getNamesVersion();
+    
+    /**
+     * Hit and miss counters of the hot product lookup caches
+     * @return Stats keyed by lookup ("barcode", "name")
+     */
+    Map<String, LruCache.Stats> getLookupCacheStats();
 }
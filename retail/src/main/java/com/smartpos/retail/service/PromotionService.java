@@ -0,0 +1,50 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.Promotion;
+import java.util.List;
+
+/**
+ * Service interface for promotions and cart discounts
+ */
+public interface PromotionService {
+    
+    /**
+     * Add a promotion rule
+     * @param promotion The promotion to add
+     * @return The saved promotion
+     */
+    Promotion addPromotion(Promotion promotion);
+    
+    /**
+     * Remove a promotion rule
+     * @param promotion The promotion to remove
+     * @return true if removed, false if not found
+     */
+    boolean removePromotion(Promotion promotion);
+    
+    /**
+     * Get all promotion rules
+     * @return All promotions, including ones outside their time window
+     */
+    List<Promotion> getPromotions();
+    
+    /**
+     * Re-evaluate only the promotions that involve a changed cart line
+     * @param cart The cart, caller must hold its lock
+     * @param productName The product whose line was added, changed or removed
+     */
+    void applyLineChange(CartSession cart, String productName);
+    
+    /**
+     * Re-evaluate every promotion against the whole cart
+     * @param cart The cart, caller must hold its lock
+     */
+    void evaluateCart(CartSession cart);
+    
+    /**
+     * Re-evaluate the cart if the promotion rules changed since it was last priced
+     * @param cart The cart, caller must hold its lock
+     */
+    void ensureEvaluated(CartSession cart);
+}
@@ -0,0 +1,32 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.SaleRecord;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Service interface for finding past sales, refunds and voids for support
+ */
+public interface ReceiptSearchService {
+
+    /**
+     * Search criteria, null fields are not filtered on
+     * @param transactionId Start of the transaction ID as printed on the receipt
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     * @param minTotal Smallest amount paid or paid back, inclusive
+     * @param maxTotal Largest amount paid or paid back, inclusive
+     * @param cashier Username of the cashier
+     * @param product Name of a product on the receipt
+     * @param limit Maximum number of results, 0 for the default
+     */
+    record Query(String transactionId, LocalDate from, LocalDate to, Double minTotal, Double maxTotal,
+                 String cashier, String product, int limit) {}
+
+    /**
+     * Find journaled transactions matching every given criterion
+     * @param query The criteria
+     * @return Matching records, newest first
+     */
+    List<SaleRecord> search(Query query);
+}
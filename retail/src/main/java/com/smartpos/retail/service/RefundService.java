@@ -0,0 +1,44 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.SaleRecord;
+import java.util.Map;
+
+/**
+ * Service interface for returns, refunds and voids of completed sales
+ */
+public interface RefundService {
+
+    /**
+     * Look up a journaled transaction
+     * @param transactionId The transaction ID from the receipt
+     * @return The sale, refund or void, null if not found
+     */
+    SaleRecord findTransaction(String transactionId);
+
+    /**
+     * Units of each product on a sale that have not been returned yet
+     * @param transactionId The sale's transaction ID
+     * @return Returnable quantities keyed by product name
+     * @throws IllegalArgumentException if the sale is not found
+     */
+    Map<String, Integer> getReturnableQuantities(String transactionId);
+
+    /**
+     * Return some or all units of a sale: restores the stock and records the refund
+     * @param transactionId The sale's transaction ID
+     * @param quantities Units to return, keyed by product name
+     * @param terminalId Terminal handling the return
+     * @return The refund record, with negative quantities and amounts
+     * @throws IllegalArgumentException if the sale is not found or more is returned than was sold
+     */
+    SaleRecord refund(String transactionId, Map<String, Integer> quantities, String terminalId);
+
+    /**
+     * Cancel a whole sale that has no returns against it yet
+     * @param transactionId The sale's transaction ID
+     * @param terminalId Terminal handling the void
+     * @return The void record
+     * @throws IllegalStateException if part of the sale was already returned
+     */
+    SaleRecord voidSale(String transactionId, String terminalId);
+}
@@ -0,0 +1,19 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.SalesSummary;
+import java.time.LocalDate;
+
+/**
+ * Service interface for analytics over the sales history
+ */
+public interface SalesAnalyticsService {
+
+    /**
+     * Net sales over a range of days, by product
+     * @param from First day, null for the start of the history
+     * @param to Last day, null for the end of the history
+     * @return Totals for the range
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    SalesSummary summarize(LocalDate from, LocalDate to);
+}
@@ -1,6 +1,7 @@
 package com.smartpos.retail.service;
 
 import com.smartpos.retail.model.CartItem;
+import com.smartpos.retail.model.CartSession;
 import com.smartpos.retail.model.Receipt;
 import java.util.List;
 
@@ -43,4 +44,21 @@ public interface SalesService {
      * @return Receipt object
      */
     Receipt generateReceipt(List<CartItem> cartItems, double taxRate, String transactionId);
+    
+    /**
+     * Process a sale for a cart session, applying its promotions and tax classes
+     * @param cart The cart to sell
+     * @param productService The product service to update stock
+     * @return Sale transaction ID
+     * @throws IllegalStateException if cart is empty
+     */
+    String processSale(CartSession cart, ProductService productService);
+    
+    /**
+     * Generate receipt for a cart session, with its promotion discount and tax per rate
+     * @param cart The cart that was sold
+     * @param transactionId The transaction ID
+     * @return Receipt object
+     */
+    Receipt generateReceipt(CartSession cart, String transactionId);
 }
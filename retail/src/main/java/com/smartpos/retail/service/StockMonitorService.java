@@ -0,0 +1,46 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.ReorderSuggestion;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service interface for low-stock monitoring and reorder suggestions
+ */
+public interface StockMonitorService {
+
+    /**
+     * Record units sold after the stock has been reduced, updates the product's
+     * velocity and reorder point and raises or clears its reorder suggestion
+     * @param productName The product name
+     * @param quantity Units sold
+     */
+    void recordSale(String productName, int quantity);
+
+    /**
+     * Current reorder suggestions, most urgent first
+     * @return Suggestions for products still below their reorder point
+     */
+    List<ReorderSuggestion> getReorderSuggestions();
+
+    /**
+     * Products currently below their reorder point
+     * @return Low stock products, most urgent first
+     */
+    List<ProductRow> getLowStockProducts();
+
+    /**
+     * Replace the demand forecasts reorder points are based on. Products without a forecast
+     * fall back to their sales velocity.
+     * @param dailyDemand Forecast units per day over the coming week, by product name
+     */
+    void applyForecasts(Map<String, Double> dailyDemand);
+
+    /**
+     * Reorder point of a product, from its demand forecast or sales velocity, or the minimum threshold
+     * @param productName The product name
+     * @return Stock level below which the product is reordered
+     */
+    int getReorderPoint(String productName);
+}
@@ -0,0 +1,46 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.ProductRow;
+
+/**
+ * Service interface for soft stock reservations held by open carts
+ */
+public interface StockReservationService {
+
+    /**
+     * Hold units of a product for a cart, replacing what the cart held of it before.
+     * Holds of a cart are renewed by every change and expire when the cart sits idle.
+     * @param cartId The cart ID
+     * @param product The product, whose stock is shared by the holds of all carts
+     * @param quantity Units the cart now needs, 0 releases the hold
+     * @throws IllegalArgumentException if the quantity is negative or other carts hold too much of the stock
+     */
+    void hold(String cartId, ProductRow product, int quantity);
+
+    /**
+     * Release what a cart holds of one product
+     * @param cartId The cart ID
+     * @param productName The product name
+     */
+    void release(String cartId, String productName);
+
+    /**
+     * Release everything a cart holds, after it is sold, cleared or closed
+     * @param cartId The cart ID
+     */
+    void releaseAll(String cartId);
+
+    /**
+     * Units of a product held by all open carts
+     * @param productName The product name
+     * @return Units held
+     */
+    int getReserved(String productName);
+
+    /**
+     * Stock of a product that no cart holds
+     * @param product The product
+     * @return Units still free to add to a cart
+     */
+    int getAvailable(ProductRow product);
+}
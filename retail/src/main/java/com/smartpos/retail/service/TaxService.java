@@ -0,0 +1,40 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.TaxBreakdown;
+import com.smartpos.retail.model.TaxRate;
+import java.util.List;
+
+/**
+ * Service interface for tax classes and tax calculation
+ */
+public interface TaxService {
+
+    /**
+     * Get all tax rates
+     * @return All configured tax rates
+     */
+    List<TaxRate> getTaxRates();
+
+    /**
+     * Add a tax rate or update the one with the same code
+     * @param taxRate The tax rate to save
+     * @return The saved tax rate
+     */
+    TaxRate saveTaxRate(TaxRate taxRate);
+
+    /**
+     * Tax class for a product: its own class, else its category's, else the default
+     * @param product The product
+     * @return Tax class code
+     */
+    String resolveTaxClass(ProductRow product);
+
+    /**
+     * Calculate tax per rate for a cart, after its promotion discount
+     * @param cart The cart, caller must hold its lock
+     * @return The tax breakdown
+     */
+    TaxBreakdown calculateTax(CartSession cart);
+}
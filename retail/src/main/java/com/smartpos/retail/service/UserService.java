@@ -1,12 +1,19 @@
 package com.smartpos.retail.service;
 
 import com.smartpos.retail.model.User;
+import com.smartpos.retail.model.UserSession;
+import java.util.Collection;
 
 /**
  * Service interface for user authentication and management
  */
 public interface UserService {
     
+    /**
+     * Terminal ID used by the desktop client for the current* methods
+     */
+    String LOCAL_TERMINAL_ID = "local";
+    
     /**
      * Authenticate user with username and password
      * @param username The username
@@ -15,6 +22,59 @@ public interface UserService {
      */
     User authenticate(String username, String password);
     
+    /**
+     * Wait until the stored users are loaded, after which a login is checked without waiting on the database
+     */
+    void awaitReady();
+    
+    /**
+     * Open a session for a user on a terminal, replacing any existing session there
+     * @param terminalId The terminal or session ID
+     * @param user The authenticated user
+     * @return The new session
+     */
+    UserSession openSession(String terminalId, User user);
+    
+    /**
+     * Get the active session on a terminal and mark it as used
+     * @param terminalId The terminal or session ID
+     * @return Session, null if there is none or it has expired; the LOCAL_TERMINAL_ID session does not expire
+     */
+    UserSession getSession(String terminalId);
+    
+    /**
+     * Get the active session a token was issued for and mark it as used
+     * @param token The token of the session, as returned when it was opened
+     * @return Session, null if the token is unknown or its session has ended
+     */
+    UserSession getSessionByToken(String token);
+    
+    /**
+     * Close the session on a terminal
+     * @param terminalId The terminal or session ID
+     */
+    void closeSession(String terminalId);
+    
+    /**
+     * Get all active sessions
+     * @return Active sessions
+     */
+    Collection<UserSession> getActiveSessions();
+    
+    /**
+     * Check if the user on a terminal has permission to access inventory
+     * @param terminalId The terminal or session ID
+     * @return true if the session belongs to an admin, false otherwise
+     */
+    boolean canAccessInventory(String terminalId);
+    
+    /**
+     * Check if the user on a terminal has permission to make sales
+     * @param terminalId The terminal or session ID
+     * @return true if the terminal has an active session, false otherwise
+     */
+    boolean canMakeSales(String terminalId);
+    
     /**
      * Get current logged in user
      * @return Current user, null if not logged in
@@ -0,0 +1,58 @@
+package com.smartpos.retail.service;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.model.ZReport;
+import java.util.List;
+
+/**
+ * Service interface for shift and end-of-day sales reports
+ */
+public interface ZReportService {
+
+    /**
+     * Result of recomputing a closed report from the sales journal
+     * @param reportNumber The Z number checked
+     * @param matches Whether the stored report equals the recomputed one
+     * @param differences One line per field that differs, empty when they match
+     */
+    record Verification(long reportNumber, boolean matches, List<String> differences) {}
+
+    /**
+     * Journal a completed sale, refund or void and add it to the running day and cashier totals
+     * @param sale The completed sale, refund or void
+     */
+    void recordSale(SaleRecord sale);
+
+    /**
+     * Running totals of the open day, without closing it
+     * @return X report for the sales since the last close
+     */
+    ZReport getCurrentReport();
+
+    /**
+     * Running totals of one cashier in the open day
+     * @param cashier Username of the cashier
+     * @return Shift report, empty if the cashier has not sold anything
+     */
+    ZReport getShiftReport(String cashier);
+
+    /**
+     * Close the day: store the running totals as the next Z report and start from zero
+     * @return The stored Z report
+     */
+    ZReport closeDay();
+
+    /**
+     * Get a closed report
+     * @param number The Z number
+     * @return The report, null if not found
+     */
+    ZReport getReport(long number);
+
+    /**
+     * Recompute a closed report from the raw sales journal and compare it with the stored one
+     * @param number The Z number
+     * @return The differences found
+     */
+    Verification verify(long number);
+}
@@ -0,0 +1,391 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.service.BasketAffinityService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of BasketAffinityService
+ * Each product keeps a small table of the products bought with it, twice the top-K in size.
+ * Sales are fed in from the journal as they are written; a partner not in a full table takes
+ * the weakest slot and its weight (the Space-Saving scheme), so memory stays bounded and the
+ * strong partners stay in. The weight taken over is remembered as the partner's possible
+ * overcount, and partners are ranked by what they are sure to have. Baskets are weighted by forward decay, e^(rate * (time - landmark)),
+ * so old weights never need touching; they are only scaled down when the exponent gets large.
+ * The batch recompute counts every pair exactly from the journal, one task per day in
+ * parallel, and swaps in the result with the sales made while it ran added on top.
+ */
+@Service
+public class BasketAffinityServiceImpl implements BasketAffinityService {
+
+    // Forward weights are rescaled before e^exponent gets anywhere near overflowing a double
+    private static final double MAX_EXPONENT = 50;
+
+    private final SalesJournal journal;
+    private final int topK;
+    private final int maxBasketItems;
+    private final double decayPerMilli;
+
+    private final Object swap = new Object();
+    private volatile Model model;
+    // Sales made after the cutoff of a running recompute, null when none is running
+    private List<SaleRecord> sinceCutoff;
+    private long cutoffMillis;
+
+    @Autowired
+    public BasketAffinityServiceImpl(SalesJournal journal,
+                                     @Value("${retail.affinity.top-k:10}") int topK,
+                                     @Value("${retail.affinity.half-life-days:30}") double halfLifeDays,
+                                     @Value("${retail.affinity.max-basket-items:50}") int maxBasketItems) {
+        this.journal = journal;
+        this.topK = topK;
+        this.maxBasketItems = maxBasketItems;
+        this.decayPerMilli = Math.log(2) / (halfLifeDays * 24 * 60 * 60 * 1000);
+        this.model = new Model(2 * topK, decayPerMilli);
+    }
+
+    /**
+     * Learn from what is already journaled and from every sale after; the replay runs on the journal's writer
+     */
+    @PostConstruct
+    void start() {
+        journal.subscribe(this::add);
+    }
+
+    @Override
+    public List<BasketAffinityService.Affinity> getBoughtWith(String productName, int limit) {
+        if (productName == null) {
+            return List.of();
+        }
+        return model.boughtWith(productName, limit > 0 ? Math.min(limit, 2 * topK) : topK,
+                System.currentTimeMillis());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${retail.affinity.recompute-interval-ms:86400000}",
+               initialDelayString = "${retail.affinity.recompute-interval-ms:86400000}")
+    public synchronized long recompute() {
+        long cutoff = System.currentTimeMillis();
+        synchronized (swap) {
+            sinceCutoff = new ArrayList<>();
+            cutoffMillis = cutoff;
+        }
+        try {
+            // Sales completed up to the cutoff are read from the journal, later ones come from the feed
+            journal.flush();
+            LocalDate lastDay = journal.dateOf(cutoff);
+            Map<String, Integer> codes = new ConcurrentHashMap<>();
+            AtomicInteger nextCode = new AtomicInteger();
+            PairCounts counts = journal.getDates().parallelStream()
+                    .filter(date -> !date.isAfter(lastDay))
+                    .map(date -> {
+                        PairCounts day = new PairCounts();
+                        for (SaleRecord sale : journal.read(date)) {
+                            if (sale.isSale() && sale.timestampMillis() <= cutoff) {
+                                day.addBasket(basketOf(sale), codes, nextCode,
+                                        Math.exp(decayPerMilli * (sale.timestampMillis() - cutoff)));
+                            }
+                        }
+                        return day;
+                    })
+                    .reduce(PairCounts::merge)
+                    .orElseGet(PairCounts::new);
+
+            String[] names = new String[nextCode.get()];
+            codes.forEach((name, code) -> names[code] = name);
+            Model rebuilt = new Model(2 * topK, decayPerMilli);
+            rebuilt.start(cutoff);
+            counts.forEach((first, second, weight) -> {
+                Partners a = rebuilt.partners(names[first]);
+                Partners b = rebuilt.partners(names[second]);
+                a.keep(b, weight);
+                b.keep(a, weight);
+            });
+
+            synchronized (swap) {
+                for (SaleRecord sale : sinceCutoff) {
+                    rebuilt.addBasket(basketOf(sale), sale.timestampMillis());
+                }
+                model = rebuilt;
+            }
+            System.out.println("Basket affinities recomputed from " + counts.baskets + " baskets, "
+                    + counts.size + " product pairs");
+            return counts.baskets;
+        } finally {
+            synchronized (swap) {
+                sinceCutoff = null;
+            }
+        }
+    }
+
+    void add(SaleRecord sale) {
+        if (!sale.isSale()) {
+            return;
+        }
+        String[] basket = basketOf(sale);
+        if (basket.length < 2) {
+            return;
+        }
+        synchronized (swap) {
+            if (sinceCutoff != null && sale.timestampMillis() > cutoffMillis) {
+                sinceCutoff.add(sale);
+            }
+            model.addBasket(basket, sale.timestampMillis());
+        }
+    }
+
+    /**
+     * Distinct products of a sale; very large baskets say little about affinity and are cut short
+     */
+    private String[] basketOf(SaleRecord sale) {
+        Set<String> products = new LinkedHashSet<>();
+        for (SaleRecord.Line line : sale.lines()) {
+            if (line.quantity() > 0 && products.size() < maxBasketItems) {
+                products.add(line.productName());
+            }
+        }
+        return products.toArray(new String[0]);
+    }
+
+    /**
+     * Partner tables of every product, with weights relative to a landmark time
+     */
+    private static final class Model {
+        private final int capacity;
+        private final double decayPerMilli;
+        private final Map<String, Partners> byProduct = new ConcurrentHashMap<>();
+        private volatile long landmarkMillis;
+        private boolean started;
+
+        Model(int capacity, double decayPerMilli) {
+            this.capacity = capacity;
+            this.decayPerMilli = decayPerMilli;
+        }
+
+        void start(long landmarkMillis) {
+            this.landmarkMillis = landmarkMillis;
+            started = true;
+        }
+
+        Partners partners(String productName) {
+            return byProduct.computeIfAbsent(productName, name -> new Partners(name, capacity));
+        }
+
+        void addBasket(String[] basket, long millis) {
+            if (!started) {
+                start(millis);
+            }
+            double exponent = decayPerMilli * (millis - landmarkMillis);
+            if (exponent > MAX_EXPONENT) {
+                double factor = Math.exp(-exponent);
+                for (Partners partners : byProduct.values()) {
+                    partners.scale(factor);
+                }
+                landmarkMillis = millis;
+                exponent = 0;
+            }
+            double weight = Math.exp(exponent);
+            Partners[] items = new Partners[basket.length];
+            for (int i = 0; i < basket.length; i++) {
+                items[i] = partners(basket[i]);
+            }
+            for (int i = 0; i < items.length; i++) {
+                for (int j = i + 1; j < items.length; j++) {
+                    items[i].offer(items[j], weight);
+                    items[j].offer(items[i], weight);
+                }
+            }
+        }
+
+        List<BasketAffinityService.Affinity> boughtWith(String productName, int limit, long nowMillis) {
+            Partners partners = byProduct.get(productName);
+            if (partners == null) {
+                return List.of();
+            }
+            return partners.top(limit, Math.exp(decayPerMilli * (landmarkMillis - nowMillis)));
+        }
+    }
+
+    /**
+     * The products bought with one product and their weights, guarded by its own monitor
+     */
+    private static final class Partners {
+        private final String name;
+        private final Partners[] partners;
+        private final double[] weights;
+        // Weight a partner took over with its slot, it may have been bought with this product less
+        private final double[] overcounts;
+        private int size;
+
+        Partners(String name, int capacity) {
+            this.name = name;
+            this.partners = new Partners[capacity];
+            this.weights = new double[capacity];
+            this.overcounts = new double[capacity];
+        }
+
+        /**
+         * Add weight to a partner; a newcomer to a full table replaces the weakest one and
+         * takes over its weight
+         */
+        synchronized void offer(Partners partner, double weight) {
+            int weakest = 0;
+            for (int i = 0; i < size; i++) {
+                if (partners[i] == partner) {
+                    weights[i] += weight;
+                    return;
+                }
+                if (weights[i] < weights[weakest]) {
+                    weakest = i;
+                }
+            }
+            if (size < partners.length) {
+                partners[size] = partner;
+                weights[size++] = weight;
+            } else {
+                partners[weakest] = partner;
+                overcounts[weakest] = weights[weakest];
+                weights[weakest] += weight;
+            }
+        }
+
+        /**
+         * Keep a partner with an exact weight if it is among the strongest seen so far
+         */
+        synchronized void keep(Partners partner, double weight) {
+            if (size < partners.length) {
+                partners[size] = partner;
+                weights[size++] = weight;
+                return;
+            }
+            int weakest = 0;
+            for (int i = 1; i < size; i++) {
+                if (weights[i] < weights[weakest]) {
+                    weakest = i;
+                }
+            }
+            if (weight > weights[weakest]) {
+                partners[weakest] = partner;
+                weights[weakest] = weight;
+                overcounts[weakest] = 0;
+            }
+        }
+
+        synchronized void scale(double factor) {
+            for (int i = 0; i < size; i++) {
+                weights[i] *= factor;
+                overcounts[i] *= factor;
+            }
+        }
+
+        synchronized List<BasketAffinityService.Affinity> top(int limit, double factor) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(weights[b] - overcounts[b], weights[a] - overcounts[a]));
+            List<BasketAffinityService.Affinity> top = new ArrayList<>(Math.min(limit, size));
+            for (int i = 0; i < size && i < limit; i++) {
+                int slot = order[i];
+                top.add(new BasketAffinityService.Affinity(partners[slot].name,
+                        (weights[slot] - overcounts[slot]) * factor));
+            }
+            return top;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PairConsumer {
+        void accept(int first, int second, double weight);
+    }
+
+    /**
+     * Exact pair weights keyed by the two product codes, in an open-addressed table
+     */
+    private static final class PairCounts {
+        private long[] keys = new long[1 << 10];
+        private double[] weights = new double[keys.length];
+        private int size;
+        private long baskets;
+
+        void addBasket(String[] basket, Map<String, Integer> codes, AtomicInteger nextCode, double weight) {
+            if (basket.length < 2) {
+                return;
+            }
+            baskets++;
+            int[] items = new int[basket.length];
+            for (int i = 0; i < basket.length; i++) {
+                items[i] = codes.computeIfAbsent(basket[i], name -> nextCode.getAndIncrement());
+            }
+            for (int i = 0; i < items.length; i++) {
+                for (int j = i + 1; j < items.length; j++) {
+                    int first = Math.min(items[i], items[j]);
+                    int second = Math.max(items[i], items[j]);
+                    // first < second, so no key is 0 and 0 marks a free slot
+                    add(((long) first << 32) | second, weight);
+                }
+            }
+        }
+
+        void add(long key, double weight) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            long hash = key * 0x9e3779b97f4a7c15L;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            weights[slot] += weight;
+        }
+
+        PairCounts merge(PairCounts other) {
+            PairCounts larger = size >= other.size ? this : other;
+            PairCounts smaller = larger == this ? other : this;
+            smaller.forEach((first, second, weight) -> larger.add(((long) first << 32) | second, weight));
+            larger.baskets = baskets + other.baskets;
+            return larger;
+        }
+
+        void forEach(PairConsumer consumer) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    consumer.accept((int) (keys[slot] >>> 32), (int) keys[slot], weights[slot]);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            double[] oldWeights = weights;
+            keys = new long[oldKeys.length * 2];
+            weights = new double[keys.length];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != 0) {
+                    add(oldKeys[slot], oldWeights[slot]);
+                }
+            }
+        }
+    }
+}
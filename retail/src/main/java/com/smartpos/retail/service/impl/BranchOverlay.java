@@ -0,0 +1,292 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * One branch's own prices and stock, laid over the shared catalog.
+ * Columns are indexed by catalog slot like the catalog's own, but split into small pages
+ * that are only allocated when a product in them is first given a branch value, so a branch
+ * costs memory for the products it overrides rather than for the whole catalog. A slot with
+ * no branch value reads through to the catalog.
+ * Stock is copied from the catalog on the branch's first change and counted with atomic
+ * operations from then on, so lanes take it without locking, as in the catalog. Pages are
+ * allocated under the overlay's monitor; setting prices must be serialized by the caller.
+ */
+final class BranchOverlay {
+
+    static final int INHERIT_STOCK = Integer.MIN_VALUE;
+    private static final int PAGE_BITS = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final VarHandle STOCK = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle PRICE = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private final String branchId;
+    // Page directories are copied and republished whenever a page is added, so a reader never
+    // sees a page before it is filled; a page, once allocated, is never moved
+    private volatile int[][] stockPages = new int[0][];
+    private volatile double[][] pricePages = new double[0][];
+
+    BranchOverlay(String branchId) {
+        this.branchId = branchId;
+    }
+
+    String branchId() {
+        return branchId;
+    }
+
+    /**
+     * View of a catalog product as this branch sees it
+     */
+    Row view(ProductCatalog.Row product) {
+        return new Row(product);
+    }
+
+    int stock(int slot, int catalogStock) {
+        int[] page = page(stockPages, slot);
+        if (page == null) {
+            return catalogStock;
+        }
+        int stock = (int) STOCK.getAcquire(page, slot & (PAGE_SIZE - 1));
+        return stock != INHERIT_STOCK ? stock : catalogStock;
+    }
+
+    double price(int slot, double catalogPrice) {
+        double[] page = page(pricePages, slot);
+        if (page == null) {
+            return catalogPrice;
+        }
+        double price = (double) PRICE.getAcquire(page, slot & (PAGE_SIZE - 1));
+        return Double.isNaN(price) ? catalogPrice : price;
+    }
+
+    boolean hasStock(int slot) {
+        int[] page = page(stockPages, slot);
+        return page != null && (int) STOCK.getAcquire(page, slot & (PAGE_SIZE - 1)) != INHERIT_STOCK;
+    }
+
+    boolean hasPrice(int slot) {
+        double[] page = page(pricePages, slot);
+        return page != null && !Double.isNaN((double) PRICE.getAcquire(page, slot & (PAGE_SIZE - 1)));
+    }
+
+    /**
+     * Set or clear the branch's stock of a slot
+     * @param stock Units in stock, INHERIT_STOCK to read the catalog's again
+     */
+    void setStock(int slot, int stock) {
+        STOCK.setRelease(stockPage(slot), slot & (PAGE_SIZE - 1), stock);
+    }
+
+    /**
+     * Set or clear the branch's price of a slot
+     * @param price The branch price, NaN to read the catalog's again
+     */
+    void setPrice(int slot, double price) {
+        PRICE.setRelease(pricePage(slot), slot & (PAGE_SIZE - 1), price);
+    }
+
+    /**
+     * Compare-and-decrement on the branch's counter, copying the catalog stock in first if
+     * the branch has none of its own yet
+     * @return Units in stock just before the take, -1, leaving the stock as it was, if fewer
+     *         units are in stock
+     */
+    int takeStock(int slot, int quantity, int catalogStock) {
+        int[] page = stockPage(slot);
+        int index = slot & (PAGE_SIZE - 1);
+        int current;
+        do {
+            current = (int) STOCK.getVolatile(page, index);
+            if (current == INHERIT_STOCK) {
+                STOCK.compareAndSet(page, index, INHERIT_STOCK, catalogStock);
+                continue;
+            }
+            if (current < quantity) {
+                return -1;
+            }
+        } while (current == INHERIT_STOCK || !STOCK.compareAndSet(page, index, current, current - quantity));
+        return current;
+    }
+
+    /**
+     * @return Units in stock just before they were added
+     */
+    int addStock(int slot, int quantity, int catalogStock) {
+        int[] page = stockPage(slot);
+        int index = slot & (PAGE_SIZE - 1);
+        STOCK.compareAndSet(page, index, INHERIT_STOCK, catalogStock);
+        return (int) STOCK.getAndAdd(page, index, quantity);
+    }
+
+    /**
+     * Slots below a bound that carry a branch price or stock
+     */
+    int[] overriddenSlots(int slots) {
+        int[][] stock = stockPages;
+        double[][] price = pricePages;
+        int[] found = new int[16];
+        int count = 0;
+        int pages = Math.max(stock.length, price.length);
+        for (int page = 0; page < pages; page++) {
+            // Only allocated pages can hold branch values
+            if ((page >= stock.length || stock[page] == null) && (page >= price.length || price[page] == null)) {
+                continue;
+            }
+            int end = Math.min(slots, (page + 1) << PAGE_BITS);
+            for (int slot = page << PAGE_BITS; slot < end; slot++) {
+                if (hasStock(slot) || hasPrice(slot)) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, 2 * count);
+                    }
+                    found[count++] = slot;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Copy of this overlay for a rebuilt catalog
+     * @param newSlots New slot of every old slot, -1 for products that are gone
+     */
+    BranchOverlay remap(int[] newSlots) {
+        BranchOverlay remapped = new BranchOverlay(branchId);
+        for (int slot : overriddenSlots(newSlots.length)) {
+            int target = newSlots[slot];
+            if (target < 0) {
+                continue;
+            }
+            if (hasStock(slot)) {
+                remapped.setStock(target, stock(slot, INHERIT_STOCK));
+            }
+            if (hasPrice(slot)) {
+                remapped.setPrice(target, price(slot, Double.NaN));
+            }
+        }
+        return remapped;
+    }
+
+    /**
+     * Bytes held by the allocated pages
+     */
+    long footprint() {
+        long bytes = 0;
+        for (int[] page : stockPages) {
+            bytes += page != null ? (long) PAGE_SIZE * Integer.BYTES : 0;
+        }
+        for (double[] page : pricePages) {
+            bytes += page != null ? (long) PAGE_SIZE * Double.BYTES : 0;
+        }
+        return bytes;
+    }
+
+    private static <T> T page(T[] pages, int slot) {
+        int page = slot >>> PAGE_BITS;
+        return page < pages.length ? pages[page] : null;
+    }
+
+    private int[] stockPage(int slot) {
+        int[] page = page(stockPages, slot);
+        return page != null ? page : allocateStockPage(slot >>> PAGE_BITS);
+    }
+
+    private double[] pricePage(int slot) {
+        double[] page = page(pricePages, slot);
+        return page != null ? page : allocatePricePage(slot >>> PAGE_BITS);
+    }
+
+    private synchronized int[] allocateStockPage(int index) {
+        int[][] pages = stockPages;
+        if (index < pages.length && pages[index] != null) {
+            return pages[index];
+        }
+        int[] page = new int[PAGE_SIZE];
+        Arrays.fill(page, INHERIT_STOCK);
+        pages = Arrays.copyOf(pages, index < pages.length ? pages.length : Math.max(index + 1, pages.length + (pages.length >> 1)));
+        pages[index] = page;
+        stockPages = pages;
+        return page;
+    }
+
+    private synchronized double[] allocatePricePage(int index) {
+        double[][] pages = pricePages;
+        if (index < pages.length && pages[index] != null) {
+            return pages[index];
+        }
+        double[] page = new double[PAGE_SIZE];
+        Arrays.fill(page, Double.NaN);
+        pages = Arrays.copyOf(pages, index < pages.length ? pages.length : Math.max(index + 1, pages.length + (pages.length >> 1)));
+        pages[index] = page;
+        pricePages = pages;
+        return page;
+    }
+
+    /**
+     * Flyweight view of a catalog product in this branch: price and stock come from the
+     * branch where it has its own, everything else is the shared catalog row
+     */
+    final class Row {
+
+        private final ProductCatalog.Row product;
+
+        private Row(ProductCatalog.Row product) {
+            this.product = product;
+        }
+
+        ProductCatalog.Row product() {
+            return product;
+        }
+
+        String branchId() {
+            return branchId;
+        }
+
+        int takeStock(int quantity) {
+            return BranchOverlay.this.takeStock(product.slot(), quantity, product.getStock());
+        }
+
+        int addStock(int quantity) {
+            return BranchOverlay.this.addStock(product.slot(), quantity, product.getStock());
+        }
+
+        /**
+         * Detached copy of the product with this branch's price and stock
+         */
+        ProductRow toEntity() {
+            ProductRow entity = product.toEntity();
+            entity.setPrice(getPrice());
+            entity.setStock(getStock());
+            return entity;
+        }
+
+        public String getName() {
+            return product.getName();
+        }
+
+        public double getPrice() {
+            return price(product.slot(), product.getPrice());
+        }
+
+        public int getStock() {
+            return stock(product.slot(), product.getStock());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Row row && row.product.equals(product) && row.overlay() == overlay();
+        }
+
+        @Override
+        public int hashCode() {
+            return product.hashCode();
+        }
+
+        private BranchOverlay overlay() {
+            return BranchOverlay.this;
+        }
+    }
+}
@@ -1,19 +1,56 @@
 package com.smartpos.retail.service.impl;
 
 import com.smartpos.retail.model.CartItem;
+import com.smartpos.retail.model.CartSession;
 import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.repository.CartSessionStore;
 import com.smartpos.retail.service.CartService;
+import com.smartpos.retail.service.PromotionService;
+import com.smartpos.retail.service.StockReservationService;
+import com.smartpos.retail.service.TaxService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of CartService
+ * Open carts are kept in memory by ID and saved to the local cart store on every change.
+ * Units in a cart are held for it until they are sold, removed or the cart sits idle too long.
  */
 @Service
 public class CartServiceImpl implements CartService {
     
+    private final CartSessionStore cartStore;
+    private final PromotionService promotionService;
+    private final TaxService taxService;
+    private final StockReservationService reservations;
+    
+    private final Map<String, CartSession> cartsById = new ConcurrentHashMap<>();
+    private final Map<String, CartSession> activeCartsByTerminal = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public CartServiceImpl(CartSessionStore cartStore, PromotionService promotionService, TaxService taxService,
+                           StockReservationService reservations) {
+        this.cartStore = cartStore;
+        this.promotionService = promotionService;
+        this.taxService = taxService;
+        this.reservations = reservations;
+        
+        // Restore carts that were open when the application last stopped
+        for (CartSession session : cartStore.loadAll()) {
+            cartsById.put(session.getId(), session);
+            if (session.getStatus() == CartSession.Status.ACTIVE && session.getTerminalId() != null) {
+                activeCartsByTerminal.put(session.getTerminalId(), session);
+            }
+        }
+    }
+    
     @Override
     public CartItem addToCart(ProductRow product, int quantity, List<CartItem> cartItems) {
         if (product == null) {
@@ -112,4 +149,175 @@ public class CartServiceImpl implements CartService {
         int totalRequested = currentCartQuantity + quantity;
         return totalRequested <= product.getStock();
     }
+    
+    @Override
+    public CartSession getOrOpenCart(String terminalId) {
+        if (terminalId == null) {
+            throw new IllegalArgumentException("Terminal cannot be null");
+        }
+        
+        CartSession cart = activeCartsByTerminal.computeIfAbsent(terminalId, id -> {
+            CartSession session = new CartSession(UUID.randomUUID().toString(), id);
+            cartsById.put(session.getId(), session);
+            cartStore.save(session);
+            return session;
+        });
+        synchronized (cart) {
+            promotionService.ensureEvaluated(cart);
+        }
+        return cart;
+    }
+    
+    @Override
+    public CartSession getCart(String cartId) {
+        return cartId != null ? cartsById.get(cartId) : null;
+    }
+    
+    @Override
+    public CartSession addToCart(String cartId, ProductRow product, int quantity) {
+        if (product == null) {
+            throw new IllegalArgumentException("Product cannot be null");
+        }
+        
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        
+        CartSession session = requireCart(cartId);
+        synchronized (session) {
+            List<CartSession.CartLine> lines = session.getLines();
+            int index = session.indexOfLine(product.getName());
+            int newQuantity = index >= 0 ? lines.get(index).quantity() + quantity : quantity;
+            
+            // Hold the units against the stock other carts have not taken
+            reservations.hold(session.getId(), product, newQuantity);
+            
+            if (index >= 0) {
+                lines.set(index, lines.get(index).withQuantity(newQuantity));
+            } else {
+                lines.add(new CartSession.CartLine(product.getName(), quantity, product.getPrice(),
+                        taxService.resolveTaxClass(product)));
+            }
+            promotionService.applyLineChange(session, product.getName());
+            changed(session);
+        }
+        return session;
+    }
+    
+    @Override
+    public CartSession removeFromCart(String cartId, String productName) {
+        CartSession session = requireCart(cartId);
+        synchronized (session) {
+            int index = session.indexOfLine(productName);
+            if (index >= 0) {
+                session.getLines().remove(index);
+                reservations.release(session.getId(), productName);
+                promotionService.applyLineChange(session, productName);
+                changed(session);
+            }
+        }
+        return session;
+    }
+    
+    @Override
+    public CartSession clearCart(String cartId) {
+        CartSession session = requireCart(cartId);
+        synchronized (session) {
+            session.getLines().clear();
+            session.getDiscounts().clear();
+            reservations.releaseAll(session.getId());
+            changed(session);
+        }
+        return session;
+    }
+    
+    @Override
+    public void closeCart(String cartId) {
+        CartSession session = getCart(cartId);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            if (!cartsById.remove(cartId, session)) {
+                return;
+            }
+            reservations.releaseAll(cartId);
+            if (session.getTerminalId() != null) {
+                activeCartsByTerminal.remove(session.getTerminalId(), session);
+            }
+            cartStore.delete(cartId);
+        }
+    }
+    
+    @Override
+    public CartSession parkCart(String cartId) {
+        CartSession session = requireCart(cartId);
+        synchronized (session) {
+            if (session.getStatus() == CartSession.Status.ACTIVE && session.getTerminalId() != null) {
+                activeCartsByTerminal.remove(session.getTerminalId(), session);
+            }
+            session.setStatus(CartSession.Status.PARKED);
+            changed(session);
+        }
+        return session;
+    }
+    
+    @Override
+    public CartSession resumeCart(String cartId, String terminalId) {
+        CartSession session = requireCart(cartId);
+        requireParked(session);
+        
+        // Park whatever the terminal is working on, or drop it if it is empty
+        CartSession current = activeCartsByTerminal.get(terminalId);
+        if (current != null && current != session) {
+            if (current.isEmpty()) {
+                closeCart(current.getId());
+            } else {
+                parkCart(current.getId());
+            }
+        }
+        
+        synchronized (session) {
+            // Another terminal may have resumed or closed it meanwhile
+            requireParked(session);
+            if (session.getTerminalId() != null) {
+                activeCartsByTerminal.remove(session.getTerminalId(), session);
+            }
+            session.setStatus(CartSession.Status.ACTIVE);
+            session.setTerminalId(terminalId);
+            activeCartsByTerminal.put(terminalId, session);
+            promotionService.ensureEvaluated(session);
+            changed(session);
+        }
+        return session;
+    }
+    
+    @Override
+    public List<CartSession> getParkedCarts() {
+        return cartsById.values().stream()
+                .filter(session -> session.getStatus() == CartSession.Status.PARKED)
+                .sorted(Comparator.comparingLong(CartSession::getUpdatedAtMillis))
+                .toList();
+    }
+    
+    private CartSession requireCart(String cartId) {
+        CartSession session = getCart(cartId);
+        if (session == null) {
+            throw new IllegalArgumentException("Cart not found: " + cartId);
+        }
+        return session;
+    }
+    
+    private void requireParked(CartSession session) {
+        synchronized (session) {
+            if (session.getStatus() != CartSession.Status.PARKED || cartsById.get(session.getId()) != session) {
+                throw new IllegalStateException("Cart is not parked: " + session.getId());
+            }
+        }
+    }
+    
+    private void changed(CartSession session) {
+        session.touch();
+        cartStore.save(session);
+    }
 }
@@ -0,0 +1,441 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.repository.SalesEventLog;
+import com.smartpos.retail.service.DemandForecastService;
+import com.smartpos.retail.service.StockMonitorService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Implementation of DemandForecastService
+ * Each closed day of the sales event log is rolled up once into units per product code and
+ * kept under the forecast directory, so a run only reads the log for the days it has not seen.
+ * Products are forecast in chunks of consecutive codes, in parallel, with additive Holt-Winters
+ * (level, trend and a weekly season) once a product has two weeks of history, and a moving
+ * average before that. Every finished chunk is written to the run's directory before the next
+ * is picked up, and a run that is cut short resumes from those files: its rollups are fixed,
+ * so the chunks it already wrote are still right.
+ */
+@Service
+public class DemandForecastServiceImpl implements DemandForecastService {
+
+    private static final int SEASON = 7;
+    private static final String ROLLUPS = "rollups";
+    private static final String ROLLUP_EXTENSION = ".units";
+    private static final String RUN_PREFIX = "run-";
+    private static final String FORECAST_PREFIX = "forecast-";
+    private static final String FORECAST_EXTENSION = ".bin";
+
+    private final SalesEventLog eventLog;
+    private final StockMonitorService stockMonitorService;
+    private final Path directory;
+    private final int historyDays;
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    private final int chunkSize;
+
+    private volatile LocalDate forecastDate;
+    private volatile Map<String, Double> weeklyDemand = Map.of();
+
+    @Autowired
+    public DemandForecastServiceImpl(SalesEventLog eventLog, StockMonitorService stockMonitorService,
+                                     @Value("${retail.forecast.dir:data/forecast}") String directory,
+                                     @Value("${retail.forecast.history-days:56}") int historyDays,
+                                     @Value("${retail.forecast.level-smoothing:0.3}") double alpha,
+                                     @Value("${retail.forecast.trend-smoothing:0.05}") double beta,
+                                     @Value("${retail.forecast.season-smoothing:0.2}") double gamma,
+                                     @Value("${retail.forecast.chunk-size:8192}") int chunkSize) {
+        if (historyDays < 2 * SEASON) {
+            throw new IllegalArgumentException("Forecast history must cover at least two weeks: " + historyDays);
+        }
+        this.eventLog = eventLog;
+        this.stockMonitorService = stockMonitorService;
+        this.directory = Paths.get(directory);
+        this.historyDays = historyDays;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.chunkSize = chunkSize;
+    }
+
+    @PostConstruct
+    void start() {
+        Thread.ofVirtual().name("demand-forecast-start").start(() -> {
+            try {
+                loadLatest();
+                LocalDate unfinished = latestUnfinishedRun();
+                if (unfinished != null && (forecastDate == null || unfinished.isAfter(forecastDate))) {
+                    System.out.println("Resuming demand forecast for " + unfinished);
+                    run(unfinished, Integer.MAX_VALUE);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Demand forecast startup failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    @Scheduled(cron = "${retail.forecast.cron:0 30 2 * * *}")
+    public int runForecast() {
+        run(LocalDate.now(), Integer.MAX_VALUE);
+        return weeklyDemand.size();
+    }
+
+    @Override
+    public Double getWeeklyDemand(String productName) {
+        return weeklyDemand.get(productName);
+    }
+
+    @Override
+    public LocalDate getForecastDate() {
+        return forecastDate;
+    }
+
+    /**
+     * Forecast the week starting on a day from the history before it
+     * @param asOf First forecast day; only the days before it are read
+     * @param maxChunks Most chunks to compute before stopping, as if the run were cut short
+     * @return Chunks computed by this call, not counting those read back from an earlier attempt
+     */
+    synchronized int run(LocalDate asOf, int maxChunks) {
+        long start = System.currentTimeMillis();
+        LocalDate firstDay = asOf.minusDays(historyDays);
+        int[][] days = new int[historyDays][];
+        int products = 0;
+        for (int day = 0; day < historyDays; day++) {
+            days[day] = rollup(firstDay.plusDays(day));
+            products = Math.max(products, days[day].length);
+        }
+        pruneRollups(firstDay);
+
+        Path runDirectory = directory.resolve(RUN_PREFIX + asOf);
+        createDirectories(runDirectory);
+        int chunks = (products + chunkSize - 1) / chunkSize;
+        int productCount = products;
+        AtomicInteger budget = new AtomicInteger(maxChunks);
+        AtomicInteger computed = new AtomicInteger();
+        AtomicInteger pending = new AtomicInteger();
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            Path file = chunkFile(runDirectory, chunk);
+            if (Files.exists(file)) {
+                return;
+            }
+            if (budget.getAndDecrement() <= 0) {
+                pending.incrementAndGet();
+                return;
+            }
+            int first = chunk * chunkSize;
+            writeChunk(file, forecastChunk(days, first, Math.min(productCount, first + chunkSize)));
+            computed.incrementAndGet();
+        });
+        if (pending.get() > 0) {
+            return computed.get();
+        }
+
+        Map<String, Double> forecasts = new HashMap<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            float[] weekly = readChunk(chunkFile(runDirectory, chunk));
+            for (int i = 0; i < weekly.length; i++) {
+                if (weekly[i] > 0) {
+                    forecasts.put(eventLog.productName(chunk * chunkSize + i), (double) weekly[i]);
+                }
+            }
+        }
+        writeForecast(asOf, forecasts);
+        deleteTree(runDirectory);
+        apply(asOf, forecasts);
+        System.out.println("Demand forecast for " + asOf + ": " + forecasts.size() + " products, "
+                + computed.get() + " of " + chunks + " chunks computed in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return computed.get();
+    }
+
+    private void apply(LocalDate date, Map<String, Double> forecasts) {
+        Map<String, Double> daily = new HashMap<>(forecasts.size() * 2);
+        forecasts.forEach((productName, weekly) -> daily.put(productName, weekly / SEASON));
+        weeklyDemand = Map.copyOf(forecasts);
+        forecastDate = date;
+        stockMonitorService.applyForecasts(daily);
+    }
+
+    private float[] forecastChunk(int[][] days, int firstCode, int endCode) {
+        float[] weekly = new float[endCode - firstCode];
+        int[] history = new int[days.length];
+        for (int code = firstCode; code < endCode; code++) {
+            for (int day = 0; day < days.length; day++) {
+                history[day] = code < days[day].length ? Math.max(0, days[day][code]) : 0;
+            }
+            weekly[code - firstCode] = (float) forecastWeek(history, alpha, beta, gamma);
+        }
+        return weekly;
+    }
+
+    /**
+     * Units expected over the seven days after a daily history. Days before the first sale
+     * are taken as the product not being stocked yet rather than as days without demand.
+     * @param history Units sold per day, oldest first
+     * @return Forecast units for the next week, zero for a product never sold
+     */
+    static double forecastWeek(int[] history, double alpha, double beta, double gamma) {
+        int n = history.length;
+        int first = 0;
+        while (first < n && history[first] == 0) {
+            first++;
+        }
+        int observed = n - first;
+        if (observed == 0) {
+            return 0;
+        }
+        if (observed < 2 * SEASON) {
+            double sum = 0;
+            for (int t = first; t < n; t++) {
+                sum += history[t];
+            }
+            return sum / observed * SEASON;
+        }
+
+        // Start from the first two weeks: their means give the level and trend, and the first
+        // week's deviations from its mean give the weekday pattern
+        double level = mean(history, first, first + SEASON);
+        double trend = (mean(history, first + SEASON, first + 2 * SEASON) - level) / SEASON;
+        double[] season = new double[SEASON];
+        for (int i = 0; i < SEASON; i++) {
+            season[i] = history[first + i] - level;
+        }
+        for (int t = first + SEASON; t < n; t++) {
+            int weekday = (t - first) % SEASON;
+            double lastLevel = level;
+            level = alpha * (history[t] - season[weekday]) + (1 - alpha) * (level + trend);
+            trend = beta * (level - lastLevel) + (1 - beta) * trend;
+            season[weekday] = gamma * (history[t] - level) + (1 - gamma) * season[weekday];
+        }
+
+        double week = 0;
+        for (int h = 1; h <= SEASON; h++) {
+            week += Math.max(0, level + h * trend + season[(n - 1 + h - first) % SEASON]);
+        }
+        return week;
+    }
+
+    private static double mean(int[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+
+    /**
+     * Units per product code sold on a closed day, read from the event log the first time
+     */
+    private int[] rollup(LocalDate day) {
+        Path file = rollupFile(day);
+        try {
+            if (Files.exists(file)) {
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+                int[] units = new int[data.remaining() / Integer.BYTES];
+                data.asIntBuffer().get(units);
+                return units;
+            }
+            int products = eventLog.productCount();
+            int[] units = eventLog.aggregate(day, day, () -> new int[products],
+                    (tally, millis, product, quantity, cents) -> {
+                        if (product < tally.length) {
+                            tally[product] += quantity;
+                        }
+                    }, (a, b) -> {
+                        for (int i = 0; i < a.length; i++) {
+                            a[i] += b[i];
+                        }
+                        return a;
+                    });
+            writeRollup(day, units);
+            return units;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll up sales for " + day, e);
+        }
+    }
+
+    private void pruneRollups(LocalDate firstDay) {
+        Path rollups = directory.resolve(ROLLUPS);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(rollups, "*" + ROLLUP_EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    if (LocalDate.parse(name.substring(0, name.length() - ROLLUP_EXTENSION.length())).isBefore(firstDay)) {
+                        Files.delete(file);
+                    }
+                } catch (DateTimeParseException e) {
+                    System.err.println("Skipping unexpected rollup file " + file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error pruning sales rollups: " + e.getMessage());
+        }
+    }
+
+    void writeRollup(LocalDate day, int[] units) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(units.length * Integer.BYTES);
+        data.asIntBuffer().put(units);
+        writeAtomically(rollupFile(day), data.array());
+    }
+
+    private Path rollupFile(LocalDate day) {
+        return directory.resolve(ROLLUPS).resolve(day + ROLLUP_EXTENSION);
+    }
+
+    private static Path chunkFile(Path runDirectory, int chunk) {
+        return runDirectory.resolve(String.format("chunk-%06d.bin", chunk));
+    }
+
+    private static void writeChunk(Path file, float[] weekly) {
+        ByteBuffer data = ByteBuffer.allocate(weekly.length * Float.BYTES);
+        data.asFloatBuffer().put(weekly);
+        try {
+            writeAtomically(file, data.array());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save forecast chunk " + file, e);
+        }
+    }
+
+    private static float[] readChunk(Path file) {
+        try {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+            float[] weekly = new float[data.remaining() / Float.BYTES];
+            data.asFloatBuffer().get(weekly);
+            return weekly;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read forecast chunk " + file, e);
+        }
+    }
+
+    private static void writeAtomically(Path file, byte[] data) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tempFile, data);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeForecast(LocalDate date, Map<String, Double> forecasts) {
+        Path file = directory.resolve(FORECAST_PREFIX + date + FORECAST_EXTENSION);
+        Path tempFile = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(forecasts.size());
+                for (Map.Entry<String, Double> entry : forecasts.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeFloat(entry.getValue().floatValue());
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (LocalDate older : datesOf(FORECAST_PREFIX, FORECAST_EXTENSION)) {
+                if (older.isBefore(date)) {
+                    Files.deleteIfExists(directory.resolve(FORECAST_PREFIX + older + FORECAST_EXTENSION));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save demand forecast " + file, e);
+        }
+    }
+
+    /**
+     * Put the newest finished forecast back in place after a restart
+     */
+    void loadLatest() {
+        LocalDate latest = null;
+        for (LocalDate date : datesOf(FORECAST_PREFIX, FORECAST_EXTENSION)) {
+            if (latest == null || date.isAfter(latest)) {
+                latest = date;
+            }
+        }
+        if (latest == null) {
+            return;
+        }
+        Path file = directory.resolve(FORECAST_PREFIX + latest + FORECAST_EXTENSION);
+        Map<String, Double> forecasts = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                forecasts.put(in.readUTF(), (double) in.readFloat());
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading demand forecast " + file + ": " + e.getMessage());
+            return;
+        }
+        apply(latest, forecasts);
+    }
+
+    private LocalDate latestUnfinishedRun() {
+        LocalDate latest = null;
+        for (LocalDate date : datesOf(RUN_PREFIX, "")) {
+            if (latest == null || date.isAfter(latest)) {
+                latest = date;
+            }
+        }
+        return latest;
+    }
+
+    private List<LocalDate> datesOf(String prefix, String extension) {
+        List<LocalDate> dates = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return dates;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + extension)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    dates.add(LocalDate.parse(name.substring(prefix.length(), name.length() - extension.length())));
+                } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+                    System.err.println("Skipping unexpected forecast file " + file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing demand forecasts: " + e.getMessage());
+        }
+        return dates;
+    }
+
+    private static void createDirectories(Path path) {
+        try {
+            Files.createDirectories(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + path, e);
+        }
+    }
+
+    private static void deleteTree(Path runDirectory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(runDirectory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+            Files.delete(runDirectory);
+        } catch (IOException e) {
+            System.err.println("Error removing finished forecast run " + runDirectory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.InventoryChange;
+import com.smartpos.retail.repository.InventoryAuditLog;
+import com.smartpos.retail.service.InventoryAuditService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Implementation of InventoryAuditService
+ * Reads a product's changes through the audit log's per-product index. Stock at a time is the
+ * stock after the last change before it, or the stock before the first change after it.
+ * A branch reads the catalog's stock where it had none of its own.
+ */
+@Service
+public class InventoryAuditServiceImpl implements InventoryAuditService {
+
+    private final InventoryAuditLog auditLog;
+
+    @Autowired
+    public InventoryAuditServiceImpl(InventoryAuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public List<InventoryChange> getHistory(String productName, long fromMillis, long toMillis) {
+        if (productName == null) {
+            return List.of();
+        }
+        return auditLog.history(productName, fromMillis, toMillis);
+    }
+
+    @Override
+    public Integer getStockAt(String productName, String branchId, long atMillis) {
+        String branch = branchId != null ? branchId : "";
+        Integer catalogStock = null;
+        Integer branchStock = null;
+        boolean catalogKnown = false;
+        boolean branchKnown = branch.isEmpty();
+        for (InventoryChange change : getHistory(productName, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            boolean catalogChange = change.branchId().isEmpty();
+            boolean branchChange = !branch.isEmpty() && branch.equals(change.branchId());
+            if (change.timestampMillis() <= atMillis) {
+                if (catalogChange) {
+                    catalogStock = change.stockAfter();
+                    catalogKnown = true;
+                } else if (branchChange) {
+                    branchStock = change.stockAfter();
+                    branchKnown = true;
+                }
+            } else if (catalogChange && !catalogKnown) {
+                catalogStock = change.stockBefore();
+                catalogKnown = true;
+            } else if (branchChange && !branchKnown) {
+                branchStock = change.stockBefore();
+                branchKnown = true;
+            }
+        }
+        return branchStock != null ? branchStock : catalogStock;
+    }
+}
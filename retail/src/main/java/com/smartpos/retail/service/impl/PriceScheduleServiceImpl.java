@@ -0,0 +1,277 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.PriceVersion;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.repository.PriceVersionStore;
+import com.smartpos.retail.service.PriceScheduleService;
+import com.smartpos.retail.service.ProductService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of PriceScheduleService
+ * All versions live in an immutable price table: per product, effective times and prices in
+ * two sorted arrays, so a historical lookup is a binary search. Scheduling, cancelling and
+ * activating build a new table and swap it in through an AtomicReference; lookups never lock.
+ * The scheduler applies every due version to the catalog as one batch, which the catalog
+ * swaps in whole, so a scan never sees half of a price change.
+ * The first time a product is scheduled, its current catalog price is kept as the version
+ * before it, so history covers the time before the first change.
+ */
+@Service
+public class PriceScheduleServiceImpl implements PriceScheduleService {
+
+    // Who the audit log shows changing the prices
+    private static final String ACTOR = "price-schedule";
+
+    private final ProductService productService;
+    private final PriceVersionStore store;
+    private final AtomicReference<PriceTable> table = new AtomicReference<>(PriceTable.EMPTY);
+
+    @Autowired
+    public PriceScheduleServiceImpl(ProductService productService, PriceVersionStore store) {
+        this.productService = productService;
+        this.store = store;
+
+        Map<String, List<PriceVersion>> versions = new HashMap<>();
+        long[] appliedUpTo = { Long.MIN_VALUE };
+        store.replay(version -> versions.computeIfAbsent(version.productName(), name -> new ArrayList<>()).add(version),
+                cancel -> {
+                    List<PriceVersion> product = versions.get(cancel.productName());
+                    if (product != null) {
+                        product.removeIf(version -> version.effectiveMillis() == cancel.effectiveMillis());
+                    }
+                }, millis -> appliedUpTo[0] = Math.max(appliedUpTo[0], millis));
+        Map<String, Versions> loaded = new HashMap<>();
+        versions.forEach((productName, list) -> {
+            Versions product = Versions.NONE;
+            for (PriceVersion version : list) {
+                product = product.with(version.effectiveMillis(), version.price());
+            }
+            if (product.size() > 0) {
+                loaded.put(productName, product);
+            }
+        });
+        // Whatever came due while the lane was down is applied on the first activation
+        table.set(new PriceTable(loaded, appliedUpTo[0]));
+    }
+
+    @Override
+    public PriceVersion schedule(String productName, double price, long effectiveMillis) {
+        return schedule(productName, price, effectiveMillis, System.currentTimeMillis());
+    }
+
+    synchronized PriceVersion schedule(String productName, double price, long effectiveMillis, long nowMillis) {
+        ProductRow product = productService.getProductByName(productName);
+        if (product == null) {
+            throw new IllegalArgumentException("المنتج غير موجود: " + productName);
+        }
+        if (price < 0 || Double.isNaN(price)) {
+            throw new IllegalArgumentException("سعر غير صالح للمنتج: " + productName);
+        }
+        if (effectiveMillis < nowMillis) {
+            throw new IllegalArgumentException("لا يمكن جدولة سعر في وقت مضى");
+        }
+
+        PriceTable current = table.get();
+        Versions versions = current.versions.getOrDefault(productName, Versions.NONE);
+        if (versions.size() == 0) {
+            PriceVersion before = new PriceVersion(productName, Long.MIN_VALUE, product.getPrice());
+            store.append(before);
+            versions = versions.with(before.effectiveMillis(), before.price());
+        }
+        PriceVersion version = new PriceVersion(productName, effectiveMillis, price);
+        store.append(version);
+        table.set(current.with(productName, versions.with(effectiveMillis, price)));
+        return version;
+    }
+
+    @Override
+    public synchronized boolean cancel(String productName, long effectiveMillis) {
+        PriceTable current = table.get();
+        Versions versions = current.versions.get(productName);
+        int index = versions == null ? -1 : Arrays.binarySearch(versions.from, effectiveMillis);
+        if (index < 0) {
+            return false;
+        }
+        if (effectiveMillis <= current.appliedUpTo) {
+            throw new IllegalStateException("السعر مطبق بالفعل ولا يمكن إلغاؤه");
+        }
+        store.appendCancel(productName, effectiveMillis);
+        table.set(current.with(productName, versions.without(index)));
+        return true;
+    }
+
+    @Override
+    public List<PriceVersion> getPending() {
+        PriceTable current = table.get();
+        List<PriceVersion> pending = new ArrayList<>();
+        current.versions.forEach((productName, versions) -> {
+            for (int i = versions.size() - 1; i >= 0 && versions.from[i] > current.appliedUpTo; i--) {
+                pending.add(new PriceVersion(productName, versions.from[i], versions.prices[i]));
+            }
+        });
+        pending.sort(Comparator.comparingLong(PriceVersion::effectiveMillis).thenComparing(PriceVersion::productName));
+        return pending;
+    }
+
+    @Override
+    public List<PriceVersion> getHistory(String productName) {
+        Versions versions = table.get().versions.get(productName);
+        List<PriceVersion> history = new ArrayList<>();
+        if (versions != null) {
+            for (int i = 0; i < versions.size(); i++) {
+                history.add(new PriceVersion(productName, versions.from[i], versions.prices[i]));
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public Double getPriceAt(String productName, long atMillis) {
+        Versions versions = table.get().versions.get(productName);
+        if (versions != null) {
+            return versions.at(atMillis);
+        }
+        ProductRow product = productService.getProductByName(productName);
+        return product != null ? product.getPrice() : null;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${retail.prices.activation-interval-ms:1000}")
+    public int activateDue() {
+        return activateDue(System.currentTimeMillis());
+    }
+
+    synchronized int activateDue(long nowMillis) {
+        PriceTable current = table.get();
+        if (current.nextChange > nowMillis) {
+            return 0;
+        }
+        // Only the latest due version of each product counts, earlier ones were overtaken
+        Map<String, Double> due = new HashMap<>();
+        current.versions.forEach((productName, versions) -> {
+            int index = versions.indexAt(nowMillis);
+            if (index >= 0 && versions.from[index] > current.appliedUpTo) {
+                due.put(productName, versions.prices[index]);
+            }
+        });
+        int repriced = due.isEmpty() ? 0 : productService.applyPrices(due, ACTOR);
+        store.appendActivation(nowMillis);
+        table.set(new PriceTable(current.versions, nowMillis));
+        if (repriced > 0) {
+            System.out.println("Price changes applied - " + repriced + " products repriced");
+        }
+        return repriced;
+    }
+
+    /**
+     * Every product's versions and how far they have been applied to the catalog
+     */
+    private static final class PriceTable {
+
+        static final PriceTable EMPTY = new PriceTable(Map.of(), Long.MIN_VALUE);
+
+        final Map<String, Versions> versions;
+        final long appliedUpTo;
+        // Earliest version after appliedUpTo, so the scheduler's tick is a single comparison
+        final long nextChange;
+
+        PriceTable(Map<String, Versions> versions, long appliedUpTo) {
+            this.versions = versions;
+            this.appliedUpTo = appliedUpTo;
+            long next = Long.MAX_VALUE;
+            for (Versions product : versions.values()) {
+                int index = product.indexAt(appliedUpTo) + 1;
+                if (index < product.size()) {
+                    next = Math.min(next, product.from[index]);
+                }
+            }
+            this.nextChange = next;
+        }
+
+        PriceTable with(String productName, Versions product) {
+            Map<String, Versions> copy = new HashMap<>(versions);
+            if (product.size() > 0) {
+                copy.put(productName, product);
+            } else {
+                copy.remove(productName);
+            }
+            return new PriceTable(copy, appliedUpTo);
+        }
+    }
+
+    /**
+     * One product's versions, sorted by effective time; never changed once built
+     */
+    private static final class Versions {
+
+        static final Versions NONE = new Versions(new long[0], new double[0]);
+
+        final long[] from;
+        final double[] prices;
+
+        Versions(long[] from, double[] prices) {
+            this.from = from;
+            this.prices = prices;
+        }
+
+        int size() {
+            return from.length;
+        }
+
+        /**
+         * Index of the version in effect at a time, -1 if it is before the first
+         */
+        int indexAt(long millis) {
+            int index = Arrays.binarySearch(from, millis);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        Double at(long millis) {
+            int index = indexAt(millis);
+            return index >= 0 ? prices[index] : null;
+        }
+
+        /**
+         * Copy with a version added, replacing one at the same time
+         */
+        Versions with(long effectiveMillis, double price) {
+            int index = Arrays.binarySearch(from, effectiveMillis);
+            if (index >= 0) {
+                double[] replaced = prices.clone();
+                replaced[index] = price;
+                return new Versions(from, replaced);
+            }
+            int insert = -index - 1;
+            long[] newFrom = new long[from.length + 1];
+            double[] newPrices = new double[prices.length + 1];
+            System.arraycopy(from, 0, newFrom, 0, insert);
+            System.arraycopy(prices, 0, newPrices, 0, insert);
+            newFrom[insert] = effectiveMillis;
+            newPrices[insert] = price;
+            System.arraycopy(from, insert, newFrom, insert + 1, from.length - insert);
+            System.arraycopy(prices, insert, newPrices, insert + 1, prices.length - insert);
+            return new Versions(newFrom, newPrices);
+        }
+
+        Versions without(int index) {
+            long[] newFrom = new long[from.length - 1];
+            double[] newPrices = new double[prices.length - 1];
+            System.arraycopy(from, 0, newFrom, 0, index);
+            System.arraycopy(prices, 0, newPrices, 0, index);
+            System.arraycopy(from, index + 1, newFrom, index, from.length - index - 1);
+            System.arraycopy(prices, index + 1, newPrices, index, prices.length - index - 1);
+            return new Versions(newFrom, newPrices);
+        }
+    }
+}
@@ -0,0 +1,663 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Column store behind the product catalog.
+ * IDs, prices and stock are primitive arrays indexed by slot. Names are UTF-8 in one
+ * shared byte array, categories and tax classes are dictionary codes, and numeric
+ * barcodes of up to 17 digits are packed into a long with their length, so leading
+ * zeros survive. Rows are handed out as flyweight views over a slot: a stock change
+ * through one view shows through every other view of the same product.
+ * Deleted slots are marked rather than reused, so a view never changes product.
+ * Names and barcodes are found through open-addressing hash indexes of slots.
+ * Stock is counted with atomic operations and can be taken and given back from any thread;
+ * every other write must be serialized by the caller. Reads may run alongside all of them:
+ * a name's offset and length are published together in one word, after its bytes.
+ * A batch of price changes replaces the price column in one write.
+ */
+final class ProductCatalog {
+
+    private static final long NO_ID = -1;
+    private static final long NO_BARCODE = 0;
+    private static final long TEXT_BARCODE = -1;
+    private static final int MAX_PACKED_DIGITS = 17;
+    private static final int DIGITS_SHIFT = 59;
+    private static final int NULL_NAME = -1;
+    private static final int STOCK_PAGE_BITS = 12;
+    private static final int STOCK_PAGE_SIZE = 1 << STOCK_PAGE_BITS;
+    private static final VarHandle STOCK = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle NAME = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int MIN_INDEX_SIZE = 16;
+
+    private long[] ids;
+    private long[] barcodes;
+    // Replaced whole by a batch of price changes, so a reader sees all of them or none
+    private volatile double[] prices;
+    // Fixed-size pages that are never copied when the catalog grows, so a compare-and-set
+    // always lands in the live counter
+    private int[][] stockPages;
+    // Offset into nameBytes in the high half, length in the low half
+    private long[] names;
+    private char[] categories;
+    private char[] taxClasses;
+    private boolean[] deleted;
+    // Only ever appended to and copied when it grows, so any copy a reader sees holds every
+    // name published before it
+    private volatile byte[] nameBytes;
+    private int nameBytesUsed;
+    // Barcodes that are not plain digits, by slot
+    private final Map<Integer, String> textBarcodes = new ConcurrentHashMap<>();
+    // Open-addressing tables from the hash of a barcode or name to slot + 1, 0 for an empty cell.
+    // Cells are never cleared: a lookup checks each candidate slot against the columns, so
+    // cells left behind by renames and deletes are skipped, and dropped when the tables are
+    // rebuilt. A rebuilt table is published whole.
+    private volatile int[] barcodeIndex;
+    private volatile int[] nameIndex;
+    private int barcodeIndexUsed;
+    private int nameIndexUsed;
+    // Code 0 is null
+    private final List<String> dictionary = new CopyOnWriteArrayList<>(List.of(""));
+    private final Map<String, Character> dictionaryCodes = new HashMap<>();
+
+    // Written last, so a reader that sees a slot below it also sees the columns holding it
+    private volatile int slots;
+    private int live;
+
+    ProductCatalog(int capacity) {
+        int initial = Math.max(capacity, 16);
+        ids = new long[initial];
+        barcodes = new long[initial];
+        prices = new double[initial];
+        stockPages = new int[0][];
+        addStockPages(initial);
+        names = new long[initial];
+        categories = new char[initial];
+        taxClasses = new char[initial];
+        deleted = new boolean[initial];
+        nameBytes = new byte[initial * 16];
+        barcodeIndex = new int[indexSize(capacity)];
+        nameIndex = new int[indexSize(capacity)];
+    }
+
+    /**
+     * Number of products, not counting deleted slots
+     */
+    int size() {
+        return live;
+    }
+
+    /**
+     * Slots handed out so far, deleted ones included
+     */
+    int slotCount() {
+        return slots;
+    }
+
+    /**
+     * View of a slot, null if it was deleted
+     */
+    Row row(int slot) {
+        return slot < slots && !deleted[slot] ? new Row(slot) : null;
+    }
+
+    /**
+     * Copy a product into a new slot
+     * @return The view of the stored product
+     */
+    Row add(ProductRow product) {
+        int slot = slots;
+        if (slot == ids.length) {
+            grow(slot + (slot >> 1));
+        }
+        write(slot, product);
+        setStock(slot, product.getStock());
+        indexBarcode(slot);
+        indexName(slot);
+        live++;
+        slots = slot + 1;
+        return new Row(slot);
+    }
+
+    /**
+     * Overwrite a product with the fields of another, keeping its slot.
+     * Stock is left alone: lanes take it concurrently, so it only moves through the atomic counter.
+     */
+    void set(Row row, ProductRow product) {
+        String oldName = row.getName();
+        String oldBarcode = row.getBarcode();
+        write(row.slot, product);
+        if (!Objects.equals(oldBarcode, product.getBarcode())) {
+            indexBarcode(row.slot);
+        }
+        if (!Objects.equals(oldName, product.getName())) {
+            indexName(row.slot);
+        }
+    }
+
+    /**
+     * Whether a view is of a slot of this catalog rather than of one it replaced
+     */
+    boolean owns(Row row) {
+        return row.catalog() == this;
+    }
+
+    /**
+     * Drop a product; views of it keep their last values
+     */
+    void remove(Row row) {
+        if (!deleted[row.slot]) {
+            deleted[row.slot] = true;
+            live--;
+        }
+    }
+
+    /**
+     * Views of every product in catalog order
+     */
+    List<Row> rows() {
+        int count = slots;
+        List<Row> rows = new ArrayList<>(live);
+        for (int slot = 0; slot < count; slot++) {
+            if (!deleted[slot]) {
+                rows.add(new Row(slot));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Detached copies of every product in catalog order, each made as the list is walked,
+     * so the whole catalog is never held as objects
+     */
+    List<ProductRow> entities() {
+        List<Row> rows = rows();
+        return new AbstractList<>() {
+            @Override
+            public ProductRow get(int index) {
+                return rows.get(index).toEntity();
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        };
+    }
+
+    /**
+     * Views of the products with less stock than a threshold, found from the stock column alone
+     */
+    List<Row> lowStock(int threshold) {
+        int count = slots;
+        List<Row> rows = new ArrayList<>();
+        for (int slot = 0; slot < count; slot++) {
+            if (stock(slot) < threshold && !deleted[slot]) {
+                rows.add(new Row(slot));
+            }
+        }
+        return rows;
+    }
+
+    double stockValue() {
+        int count = slots;
+        double[] price = prices;
+        double value = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (!deleted[slot]) {
+                value += price[slot] * stock(slot);
+            }
+        }
+        return value;
+    }
+
+    Row findByName(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int count = slots;
+        int[] table = nameIndex;
+        int mask = table.length - 1;
+        for (int cell = nameHash(key, 0, key.length) & mask; ; cell = (cell + 1) & mask) {
+            int entry = (int) CELL.getAcquire(table, cell);
+            if (entry == 0) {
+                return null;
+            }
+            int slot = entry - 1;
+            if (slot >= count || deleted[slot]) {
+                continue;
+            }
+            long word = name(slot);
+            int offset = nameOffset(word);
+            if (nameLength(word) == key.length
+                    && Arrays.equals(nameBytes, offset, offset + key.length, key, 0, key.length)) {
+                return new Row(slot);
+            }
+        }
+    }
+
+    Row findByBarcode(String barcode) {
+        long packed = pack(barcode);
+        if (packed == NO_BARCODE) {
+            return null;
+        }
+        int count = slots;
+        int[] table = barcodeIndex;
+        int mask = table.length - 1;
+        for (int cell = barcodeHash(packed, barcode) & mask; ; cell = (cell + 1) & mask) {
+            int entry = (int) CELL.getAcquire(table, cell);
+            if (entry == 0) {
+                return null;
+            }
+            int slot = entry - 1;
+            if (slot < count && barcodes[slot] == packed && !deleted[slot]
+                    && (packed != TEXT_BARCODE || barcode.equals(textBarcodes.get(slot)))) {
+                return new Row(slot);
+            }
+        }
+    }
+
+    /**
+     * Change several prices in one step: the column is copied, changed and swapped in
+     * @param rows Products to reprice
+     * @param newPrices Their new prices, in the same order
+     */
+    void setPrices(List<Row> rows, double[] newPrices) {
+        double[] column = prices.clone();
+        for (int i = 0; i < rows.size(); i++) {
+            column[rows.get(i).slot] = newPrices[i];
+        }
+        prices = column;
+    }
+
+    private void write(int slot, ProductRow product) {
+        ids[slot] = product.getId() != null ? product.getId() : NO_ID;
+        writeBarcode(slot, product.getBarcode());
+        prices[slot] = product.getPrice();
+        writeName(slot, product.getName());
+        categories[slot] = code(product.getCategory());
+        taxClasses[slot] = code(product.getTaxClass());
+    }
+
+    private void writeBarcode(int slot, String barcode) {
+        long packed = pack(barcode);
+        if (packed == TEXT_BARCODE) {
+            textBarcodes.put(slot, barcode);
+        } else {
+            textBarcodes.remove(slot);
+        }
+        barcodes[slot] = packed;
+    }
+
+    private void writeName(int slot, String name) {
+        if (name == null) {
+            NAME.setRelease(names, slot, nameWord(0, NULL_NAME));
+            return;
+        }
+        // Always appended, so a reader never sees a name half overwritten; renames are rare
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = nameBytes;
+        if (nameBytesUsed + encoded.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length + (bytes.length >> 1), nameBytesUsed + encoded.length));
+        }
+        System.arraycopy(encoded, 0, bytes, nameBytesUsed, encoded.length);
+        nameBytes = bytes;
+        // Released after the bytes and the array holding them, so a reader that sees the new
+        // offset and length also sees what they point at
+        NAME.setRelease(names, slot, nameWord(nameBytesUsed, encoded.length));
+        nameBytesUsed += encoded.length;
+    }
+
+    private long name(int slot) {
+        return (long) NAME.getAcquire(names, slot);
+    }
+
+    private static long nameWord(int offset, int length) {
+        return (long) offset << 32 | (length & 0xffffffffL);
+    }
+
+    private static int nameOffset(long word) {
+        return (int) (word >>> 32);
+    }
+
+    private static int nameLength(long word) {
+        return (int) word;
+    }
+
+    private char code(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Character code = dictionaryCodes.get(value);
+        if (code == null) {
+            if (dictionary.size() > Character.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct categories and tax classes");
+            }
+            code = (char) dictionary.size();
+            dictionary.add(value);
+            dictionaryCodes.put(value, code);
+        }
+        return code;
+    }
+
+    private void indexBarcode(int slot) {
+        long packed = barcodes[slot];
+        if (packed == NO_BARCODE) {
+            return;
+        }
+        if (barcodeIndexUsed >= maxLoad(barcodeIndex)) {
+            rebuildIndexes();
+        }
+        insert(barcodeIndex, barcodeHash(packed, textBarcodes.get(slot)), slot);
+        barcodeIndexUsed++;
+    }
+
+    private void indexName(int slot) {
+        long word = name(slot);
+        if (nameLength(word) == NULL_NAME) {
+            return;
+        }
+        if (nameIndexUsed >= maxLoad(nameIndex)) {
+            rebuildIndexes();
+        }
+        insert(nameIndex, nameHash(nameBytes, nameOffset(word), nameLength(word)), slot);
+        nameIndexUsed++;
+    }
+
+    /**
+     * Index the live slots again in tables sized for them, dropping cells of renamed and deleted products
+     */
+    private void rebuildIndexes() {
+        int size = indexSize(live + 1);
+        int[] barcodeTable = new int[size];
+        int[] nameTable = new int[size];
+        int barcodesUsed = 0;
+        int namesUsed = 0;
+        int count = slots;
+        for (int slot = 0; slot < count; slot++) {
+            if (deleted[slot]) {
+                continue;
+            }
+            long packed = barcodes[slot];
+            if (packed != NO_BARCODE) {
+                insert(barcodeTable, barcodeHash(packed, textBarcodes.get(slot)), slot);
+                barcodesUsed++;
+            }
+            long word = name(slot);
+            if (nameLength(word) != NULL_NAME) {
+                insert(nameTable, nameHash(nameBytes, nameOffset(word), nameLength(word)), slot);
+                namesUsed++;
+            }
+        }
+        barcodeIndex = barcodeTable;
+        nameIndex = nameTable;
+        barcodeIndexUsed = barcodesUsed;
+        nameIndexUsed = namesUsed;
+    }
+
+    private static void insert(int[] table, int hash, int slot) {
+        int mask = table.length - 1;
+        int cell = hash & mask;
+        while (table[cell] != 0) {
+            cell = (cell + 1) & mask;
+        }
+        CELL.setRelease(table, cell, slot + 1);
+    }
+
+    /**
+     * Power-of-two table size that keeps a number of entries under three quarters full
+     */
+    private static int indexSize(int entries) {
+        int needed = Math.max(entries + entries / 3 + 1, MIN_INDEX_SIZE);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private static int maxLoad(int[] table) {
+        return table.length - (table.length >> 2);
+    }
+
+    private static int barcodeHash(long packed, String text) {
+        return mix(packed == TEXT_BARCODE ? text.hashCode() : Long.hashCode(packed));
+    }
+
+    private static int nameHash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spread the bits of a hash over the low ones the tables index by
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        barcodes = Arrays.copyOf(barcodes, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        addStockPages(capacity);
+        names = Arrays.copyOf(names, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        taxClasses = Arrays.copyOf(taxClasses, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+
+    private void addStockPages(int capacity) {
+        int pages = (capacity + STOCK_PAGE_SIZE - 1) >>> STOCK_PAGE_BITS;
+        if (pages > stockPages.length) {
+            int[][] grown = Arrays.copyOf(stockPages, pages);
+            for (int page = stockPages.length; page < pages; page++) {
+                grown[page] = new int[STOCK_PAGE_SIZE];
+            }
+            stockPages = grown;
+        }
+    }
+
+    private int stock(int slot) {
+        return (int) STOCK.getAcquire(stockPages[slot >>> STOCK_PAGE_BITS], slot & (STOCK_PAGE_SIZE - 1));
+    }
+
+    private void setStock(int slot, int stock) {
+        STOCK.setRelease(stockPages[slot >>> STOCK_PAGE_BITS], slot & (STOCK_PAGE_SIZE - 1), stock);
+    }
+
+    /**
+     * Compare-and-decrement: take the units only if that many are in stock
+     */
+    private int take(int slot, int quantity) {
+        int[] page = stockPages[slot >>> STOCK_PAGE_BITS];
+        int index = slot & (STOCK_PAGE_SIZE - 1);
+        int current;
+        do {
+            current = (int) STOCK.getVolatile(page, index);
+            if (current < quantity) {
+                return -1;
+            }
+        } while (!STOCK.compareAndSet(page, index, current, current - quantity));
+        return current;
+    }
+
+    /**
+     * Digits and their count in one long, NO_BARCODE for null and TEXT_BARCODE for anything else
+     */
+    static long pack(String barcode) {
+        if (barcode == null) {
+            return NO_BARCODE;
+        }
+        int length = barcode.length();
+        if (length == 0 || length > MAX_PACKED_DIGITS) {
+            return TEXT_BARCODE;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char digit = barcode.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return TEXT_BARCODE;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return ((long) length << DIGITS_SHIFT) | value;
+    }
+
+    static String unpack(long packed) {
+        int length = (int) (packed >>> DIGITS_SHIFT);
+        char[] digits = new char[length];
+        long value = packed & ((1L << DIGITS_SHIFT) - 1);
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Flyweight view of one slot; reads go straight to the columns. Products are changed
+     * through the catalog, stock through the atomic operations below.
+     */
+    final class Row {
+
+        private final int slot;
+
+        private Row(int slot) {
+            this.slot = slot;
+        }
+
+        int slot() {
+            return slot;
+        }
+
+        /**
+         * Whether the product is still in this catalog
+         */
+        boolean isLive() {
+            return !deleted[slot];
+        }
+
+        /**
+         * Detached copy, for JPA and for callers outside the catalog's service
+         */
+        ProductRow toEntity() {
+            ProductRow entity = new ProductRow(getName(), getBarcode(), getPrice(), getStock());
+            entity.setId(getId());
+            entity.setCategory(getCategory());
+            entity.setTaxClass(getTaxClass());
+            return entity;
+        }
+
+        public Long getId() {
+            long id = ids[slot];
+            return id != NO_ID ? id : null;
+        }
+
+        public void setId(Long id) {
+            ids[slot] = id != null ? id : NO_ID;
+        }
+
+        public String getName() {
+            long word = name(slot);
+            int length = nameLength(word);
+            return length != NULL_NAME
+                    ? new String(nameBytes, nameOffset(word), length, StandardCharsets.UTF_8) : null;
+        }
+
+        public String getBarcode() {
+            long packed = barcodes[slot];
+            if (packed == NO_BARCODE) {
+                return null;
+            }
+            return packed == TEXT_BARCODE ? textBarcodes.get(slot) : unpack(packed);
+        }
+
+        public double getPrice() {
+            return prices[slot];
+        }
+
+        public int getStock() {
+            return stock(slot);
+        }
+
+        /**
+         * Take units from stock without locking
+         * @return false, leaving the stock as it was, if fewer units are in stock
+         */
+        boolean takeStock(int quantity) {
+            return take(quantity) >= 0;
+        }
+
+        /**
+         * Take units from stock without locking
+         * @return Units in stock just before the take, -1, leaving the stock as it was, if
+         *         fewer units are in stock
+         */
+        int take(int quantity) {
+            return ProductCatalog.this.take(slot, quantity);
+        }
+
+        /**
+         * Add units to stock without locking
+         * @return Units in stock just before they were added
+         */
+        int addStock(int quantity) {
+            int[] page = stockPages[slot >>> STOCK_PAGE_BITS];
+            return (int) STOCK.getAndAdd(page, slot & (STOCK_PAGE_SIZE - 1), quantity);
+        }
+
+        /**
+         * Move stock up or down by a count without locking, never below zero
+         * @return Units in stock just before the change
+         */
+        int adjustStock(int change) {
+            int[] page = stockPages[slot >>> STOCK_PAGE_BITS];
+            int index = slot & (STOCK_PAGE_SIZE - 1);
+            int current;
+            do {
+                current = (int) STOCK.getVolatile(page, index);
+            } while (!STOCK.compareAndSet(page, index, current, Math.max(0, current + change)));
+            return current;
+        }
+
+        public String getCategory() {
+            char code = categories[slot];
+            return code != 0 ? dictionary.get(code) : null;
+        }
+
+        public String getTaxClass() {
+            char code = taxClasses[slot];
+            return code != 0 ? dictionary.get(code) : null;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Row row && row.slot == slot && row.catalog() == catalog();
+        }
+
+        @Override
+        public int hashCode() {
+            return slot;
+        }
+
+        private ProductCatalog catalog() {
+            return ProductCatalog.this;
+        }
+    }
+}
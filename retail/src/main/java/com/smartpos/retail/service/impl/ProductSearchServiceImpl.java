@@ -0,0 +1,272 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.service.ProductSearchService;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.util.LruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of ProductSearchService
+ * Product name words and barcodes are kept in a sorted array so a prefix is found by
+ * binary search, and the three-character runs of each name in a sorted array of hashes so
+ * a substring is checked only against names that hold all of it. The index and the recent
+ * results are kept per names version, so sales and price changes do not rebuild them; the
+ * products themselves are looked up when results are returned, with their current price
+ * and stock.
+ */
+@Service
+public class ProductSearchServiceImpl implements ProductSearchService {
+
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int CONTAINS = 3;
+    private static final int GRAM = 3;
+
+    private final ProductService productService;
+    private final LruCache<String, CachedResults> recentResults;
+
+    private volatile SearchIndex index = new SearchIndex(List.of(), Long.MIN_VALUE);
+
+    private record CachedResults(long namesVersion, List<String> names) {}
+
+    @Autowired
+    public ProductSearchServiceImpl(ProductService productService,
+                                    @Value("${retail.search.recent-cache-size:256}") int recentCacheSize) {
+        this.productService = productService;
+        this.recentResults = new LruCache<>(recentCacheSize);
+    }
+
+    @Override
+    public List<ProductRow> suggest(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        SearchIndex current = currentIndex();
+        String key = limit + ":" + normalized;
+        CachedResults cached = recentResults.get(key);
+        List<String> names;
+        if (cached != null && cached.namesVersion() == current.version) {
+            names = cached.names();
+        } else {
+            names = current.search(normalized, limit);
+            recentResults.put(key, new CachedResults(current.version, names));
+        }
+
+        List<ProductRow> results = new ArrayList<>(names.size());
+        for (String name : names) {
+            ProductRow product = productService.getProductByName(name);
+            if (product != null) {
+                results.add(product);
+            }
+        }
+        return results;
+    }
+
+    private SearchIndex currentIndex() {
+        long version = productService.getNamesVersion();
+        SearchIndex current = index;
+        if (current.version != version) {
+            synchronized (this) {
+                current = index;
+                if (current.version != version) {
+                    current = new SearchIndex(productService.getAllProducts(), version);
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Immutable word and substring index over one version of the product names
+     */
+    private static final class SearchIndex {
+        private final long version;
+        private final String[] productNames;
+        private final String[] names;
+        private final String[] barcodes;
+        // Sorted words (name words and barcodes) and the product each belongs to
+        private final String[] words;
+        private final int[] wordProducts;
+        // Sorted (hash of a three-character run of a name) << 32 | product, one per run and product
+        private final long[] grams;
+
+        SearchIndex(List<ProductRow> catalog, long version) {
+            this.version = version;
+            this.productNames = new String[catalog.size()];
+            this.names = new String[catalog.size()];
+            this.barcodes = new String[catalog.size()];
+
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+            long[] gramEntries = new long[16];
+            int gramCount = 0;
+            Set<Integer> nameGrams = new HashSet<>();
+            for (int i = 0; i < productNames.length; i++) {
+                productNames[i] = catalog.get(i).getName();
+                names[i] = normalize(productNames[i]);
+                barcodes[i] = normalize(catalog.get(i).getBarcode());
+                for (String word : names[i].split(" ")) {
+                    if (!word.isEmpty()) {
+                        entries.add(Map.entry(word, i));
+                    }
+                }
+                if (!barcodes[i].isEmpty()) {
+                    entries.add(Map.entry(barcodes[i], i));
+                }
+
+                nameGrams.clear();
+                for (int at = 0; at + GRAM <= names[i].length(); at++) {
+                    nameGrams.add(gramHash(names[i], at));
+                }
+                if (gramCount + nameGrams.size() > gramEntries.length) {
+                    gramEntries = Arrays.copyOf(gramEntries, Math.max(2 * gramEntries.length, gramCount + nameGrams.size()));
+                }
+                for (int gram : nameGrams) {
+                    gramEntries[gramCount++] = gramEntry(gram, i);
+                }
+            }
+            entries.sort(Map.Entry.comparingByKey());
+
+            this.words = new String[entries.size()];
+            this.wordProducts = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                words[i] = entries.get(i).getKey();
+                wordProducts[i] = entries.get(i).getValue();
+            }
+            this.grams = Arrays.copyOf(gramEntries, gramCount);
+            Arrays.sort(grams);
+        }
+
+        List<String> search(String query, int limit) {
+            String[] queryWords = query.split(" ");
+            Map<Integer, Integer> scores = new HashMap<>();
+
+            // Walk the prefix range of whichever query word has the fewest index entries
+            int from = 0;
+            int to = words.length;
+            for (String word : queryWords) {
+                int wordFrom = lowerBound(word);
+                int wordTo = lowerBound(word + Character.MAX_VALUE);
+                if (wordTo - wordFrom < to - from) {
+                    from = wordFrom;
+                    to = wordTo;
+                }
+            }
+
+            for (int i = from; i < to; i++) {
+                int product = wordProducts[i];
+                if (matchesAll(product, queryWords)) {
+                    scores.merge(product, score(product, query), Math::min);
+                }
+            }
+
+            // Fall back to substring matches when there are not enough word matches, checking
+            // only the names that hold the query's rarest three-character run
+            if (scores.size() < limit && query.length() >= GRAM) {
+                int gramFrom = 0;
+                int gramTo = grams.length;
+                for (int at = 0; at + GRAM <= query.length(); at++) {
+                    int gram = gramHash(query, at);
+                    int runFrom = gramBound(gramEntry(gram, 0));
+                    int runTo = gramBound(gramEntry(gram, Integer.MAX_VALUE) + 1);
+                    if (runTo - runFrom < gramTo - gramFrom) {
+                        gramFrom = runFrom;
+                        gramTo = runTo;
+                    }
+                }
+                for (int i = gramFrom; i < gramTo; i++) {
+                    int product = (int) grams[i];
+                    if (!scores.containsKey(product) && names[product].contains(query)) {
+                        scores.put(product, CONTAINS);
+                    }
+                }
+            }
+
+            Integer[] ranked = scores.keySet().toArray(new Integer[0]);
+            Arrays.sort(ranked, Comparator.<Integer>comparingInt(scores::get)
+                    .thenComparingInt(product -> names[product].length())
+                    .thenComparing(product -> names[product]));
+
+            List<String> results = new ArrayList<>(Math.min(limit, ranked.length));
+            for (int i = 0; i < ranked.length && i < limit; i++) {
+                results.add(productNames[ranked[i]]);
+            }
+            return results;
+        }
+
+        private int score(int product, String query) {
+            if (names[product].equals(query) || barcodes[product].equals(query)) {
+                return EXACT;
+            }
+            if (names[product].startsWith(query) || barcodes[product].startsWith(query)) {
+                return NAME_PREFIX;
+            }
+            return WORD_PREFIX;
+        }
+
+        private boolean matchesAll(int product, String[] queryWords) {
+            for (String word : queryWords) {
+                if (!names[product].contains(word) && !barcodes[product].startsWith(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int gramHash(String text, int at) {
+            return (text.charAt(at) * 31 + text.charAt(at + 1)) * 31 + text.charAt(at + 2);
+        }
+
+        private static long gramEntry(int gram, int product) {
+            return ((long) gram << 32) | product;
+        }
+
+        private int gramBound(long key) {
+            int low = 0;
+            int high = grams.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (grams[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = words.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (words[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -1,32 +1,470 @@
 package com.smartpos.retail.service.impl;
 
+import com.smartpos.retail.model.InventoryChange;
 import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.User;
+import com.smartpos.retail.repository.BranchOverlayStore;
+import com.smartpos.retail.repository.CatalogSnapshotStore;
+import com.smartpos.retail.repository.InventoryAuditLog;
+import com.smartpos.retail.repository.ProductRepository;
 import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.UserService;
+import com.smartpos.retail.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
 @Service
 public class ProductServiceImpl implements ProductService {
     
-    private final List<ProductRow> products;
+    // Columns of the catalog, handed out as flyweight rows. Replaced whole by a reconcile,
+    // so rows handed out before it keep their last values.
+    private volatile ProductCatalog catalog;
+    // Stock is taken without the service lock. Takes share this lock, a reconcile holds it
+    // alone, so no take can land in a catalog that is being replaced.
+    private final ReentrantReadWriteLock catalogSwap = new ReentrantReadWriteLock();
+    private final ProductRepository productRepository;
+    private final CatalogSnapshotStore snapshotStore;
+    private final BranchOverlayStore branchStore;
     
-    public ProductServiceImpl() {
-        // Initialize with sample data - will be replaced with database later
-        this.products = new ArrayList<>();
-        products.add(new ProductRow("Product 1", "1234567890123", 10.50, 100));
-        products.add(new ProductRow("Product 2", "1234567890124", 25.00, 50));
-        products.add(new ProductRow("Product 3", "1234567890125", 5.75, 200));
-        products.add(new ProductRow("Product 4", "1234567890126", 15.25, 75));
-        products.add(new ProductRow("Product 5", "1234567890127", 8.90, 150));
+    // Every catalog and stock change is queued to the audit log with who made it; changes
+    // made without naming anyone are put down to the user signed in at the till
+    private static final String SYSTEM_ACTOR = "system";
+    private final InventoryAuditLog auditLog;
+    private final UserService userService;
+    
+    // Branch prices and stock over the shared catalog, indexed by its slots, so a reconcile
+    // that rebuilds the catalog rebuilds these with it. Branches changed since their last
+    // write are saved with the next snapshot.
+    private static final Pattern BRANCH_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private final Map<String, BranchOverlay> branches = new ConcurrentHashMap<>();
+    private final Set<String> changedBranches = ConcurrentHashMap.newKeySet();
+    
+    // Bumped on every catalog or stock change, compared against the last snapshot written
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // Bumped only when a product is added, renamed, rebarcoded or removed
+    private final AtomicLong namesVersion = new AtomicLong();
+    private volatile long snapshotVersion = -1;
+    
+    // Products are written to the database by one background writer, so no sale or edit
+    // waits on JPA. A product changed again before the writer gets to it is written once,
+    // with its latest values.
+    private final Set<ProductCatalog.Row> pendingWrites = ConcurrentHashMap.newKeySet();
+    private final ExecutorService databaseWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-db-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int WRITE_BATCH = 1000;
+    // Set while a reconcile loads the database: what the writer saved or deleted meanwhile,
+    // which the loaded rows may or may not include, so the local copy wins for these
+    private volatile ReconcileWindow reconcileWindow;
+    
+    // Most scans are for a few hundred products, keep those out of the catalog indexes.
+    // Entries are the live catalog rows, so stock changes show through without eviction;
+    // anything that replaces or removes a row evicts it and bumps the generation.
+    // Callers outside the service get detached copies of the rows.
+    private final LruCache<String, ProductCatalog.Row> barcodeCache;
+    private final LruCache<String, ProductCatalog.Row> nameCache;
+    private final AtomicLong lookupGeneration = new AtomicLong();
+    
+    @Autowired
+    public ProductServiceImpl(ProductRepository productRepository, CatalogSnapshotStore snapshotStore,
+                              BranchOverlayStore branchStore, InventoryAuditLog auditLog, UserService userService,
+                              @Value("${retail.catalog.hot-cache-size:512}") int hotCacheSize) {
+        this.productRepository = productRepository;
+        this.snapshotStore = snapshotStore;
+        this.branchStore = branchStore;
+        this.auditLog = auditLog;
+        this.userService = userService;
+        this.barcodeCache = new LruCache<>(hotCacheSize);
+        this.nameCache = new LruCache<>(hotCacheSize);
+        
+        // Serve lookups from the last snapshot straight away, the database is reconciled in the background
+        ProductCatalog loaded = new ProductCatalog(0);
+        if (!snapshotStore.read(loaded::add)) {
+            loaded = new ProductCatalog(0);
+        }
+        if (loaded.size() == 0) {
+            // Initialize with sample data on first run
+            loaded.add(new ProductRow("Product 1", "1234567890123", 10.50, 100));
+            loaded.add(new ProductRow("Product 2", "1234567890124", 25.00, 50));
+            loaded.add(new ProductRow("Product 3", "1234567890125", 5.75, 200));
+            loaded.add(new ProductRow("Product 4", "1234567890126", 15.25, 75));
+            loaded.add(new ProductRow("Product 5", "1234567890127", 8.90, 150));
+        }
+        this.catalog = loaded;
+        loadBranches();
+    }
+    
+    private void loadBranches() {
+        Map<String, List<BranchOverlayStore.Entry>> stored = branchStore.readAll();
+        if (stored.isEmpty()) {
+            return;
+        }
+        Map<String, ProductCatalog.Row> byName = new HashMap<>();
+        for (ProductCatalog.Row product : catalog.rows()) {
+            byName.put(product.getName(), product);
+        }
+        for (Map.Entry<String, List<BranchOverlayStore.Entry>> branch : stored.entrySet()) {
+            BranchOverlay overlay = new BranchOverlay(branch.getKey());
+            for (BranchOverlayStore.Entry entry : branch.getValue()) {
+                ProductCatalog.Row product = byName.get(entry.productName());
+                if (product == null) {
+                    continue;
+                }
+                if (entry.price() != null) {
+                    overlay.setPrice(product.slot(), entry.price());
+                }
+                if (entry.stock() != null) {
+                    overlay.setStock(product.slot(), entry.stock());
+                }
+            }
+            branches.put(branch.getKey(), overlay);
+        }
+    }
+    
+    @PostConstruct
+    void startReconcile() {
+        Thread.ofVirtual().name("catalog-reconcile").start(() -> {
+            try {
+                int divergent = reconcileWithStore();
+                System.out.println("Catalog reconciled with database - " + divergent + " divergent products");
+            } catch (RuntimeException e) {
+                System.err.println("Catalog reconcile failed: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Bring the in-memory catalog in line with the database.
+     * The database wins for every product it knows about; products that only exist locally
+     * are written to it, and products it no longer has are dropped. Products changed while
+     * the database was being read keep their local values.
+     * @return Number of products that differed between the snapshot and the database
+     */
+    int reconcileWithStore() {
+        ReconcileWindow window = new ReconcileWindow();
+        reconcileWindow = window;
+        try {
+            // Waits for JPA to start, so nothing is locked: lanes keep selling from the snapshot
+            List<ProductRow> storedRows = productRepository.findAll();
+            synchronized (this) {
+                catalogSwap.writeLock().lock();
+                try {
+                    // Only the few writes queued while loading are left, so the window is complete
+                    flushWrites();
+                    return reconcile(storedRows, window);
+                } finally {
+                    catalogSwap.writeLock().unlock();
+                }
+            }
+        } finally {
+            reconcileWindow = null;
+        }
+    }
+    
+    private int reconcile(List<ProductRow> storedRows, ReconcileWindow window) {
+        List<ProductCatalog.Row> localRows = catalog.rows();
+        
+        if (storedRows.isEmpty()) {
+            // Fresh database: seed it from the snapshot
+            for (ProductCatalog.Row product : localRows) {
+                if (!window.written.contains(product)) {
+                    product.setId(null);
+                }
+                persist(product);
+            }
+            markChanged();
+            return localRows.size();
+        }
+        
+        Map<Long, ProductRow> storedById = new HashMap<>();
+        for (ProductRow stored : storedRows) {
+            if (!window.deletedIds.contains(stored.getId())) {
+                storedById.put(stored.getId(), stored);
+            }
+        }
+        
+        int divergent = 0;
+        ProductCatalog reconciled = new ProductCatalog(storedRows.size());
+        int[] newSlots = new int[catalog.slotCount()];
+        Arrays.fill(newSlots, -1);
+        for (ProductCatalog.Row local : localRows) {
+            if (local.getId() == null || window.written.contains(local)) {
+                ProductCatalog.Row added = reconciled.add(local.toEntity());
+                newSlots[local.slot()] = added.slot();
+                if (local.getId() != null) {
+                    storedById.remove(local.getId());
+                } else {
+                    divergent++;
+                }
+                persist(added);
+                continue;
+            }
+            
+            ProductRow stored = storedById.remove(local.getId());
+            if (stored == null) {
+                // Deleted in the database since the snapshot was taken
+                divergent++;
+                continue;
+            }
+            
+            if (!sameContent(local, stored)) {
+                newSlots[local.slot()] = reconciled.add(stored).slot();
+                divergent++;
+            } else {
+                newSlots[local.slot()] = reconciled.add(local.toEntity()).slot();
+            }
+        }
+        
+        // Rows created in the database that the snapshot has not seen yet
+        divergent += storedById.size();
+        for (ProductRow stored : storedById.values()) {
+            reconciled.add(stored);
+        }
+        
+        catalog = reconciled;
+        namesVersion.incrementAndGet();
+        branches.replaceAll((branchId, overlay) -> overlay.remap(newSlots));
+        changedBranches.addAll(branches.keySet());
+        invalidateAllLookups();
+        markChanged();
+        return divergent;
+    }
+    
+    private static ProductRow detached(ProductCatalog.Row product) {
+        return product != null ? product.toEntity() : null;
+    }
+    
+    private static List<ProductRow> detached(List<ProductCatalog.Row> products) {
+        List<ProductRow> copies = new ArrayList<>(products.size());
+        for (ProductCatalog.Row product : products) {
+            copies.add(product.toEntity());
+        }
+        return copies;
+    }
+    
+    private static boolean sameContent(ProductCatalog.Row a, ProductRow b) {
+        return a.getName().equals(b.getName())
+                && Objects.equals(a.getBarcode(), b.getBarcode())
+                && Double.compare(a.getPrice(), b.getPrice()) == 0
+                && a.getStock() == b.getStock()
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getTaxClass(), b.getTaxClass());
+    }
+    
+    /**
+     * Queue a product to be written to the database with its values at the time of writing
+     */
+    private void persist(ProductCatalog.Row product) {
+        if (pendingWrites.add(product)) {
+            databaseWriter.execute(this::writePending);
+        }
+    }
+    
+    private void writePending() {
+        List<ProductCatalog.Row> rows = new ArrayList<>();
+        for (ProductCatalog.Row product : pendingWrites) {
+            // Taken off the queue before its values are read, so a later change queues it again
+            pendingWrites.remove(product);
+            if (product.isLive() && catalog.owns(product)) {
+                rows.add(product);
+            }
+            if (rows.size() == WRITE_BATCH) {
+                write(rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            write(rows);
+        }
+    }
+    
+    private void write(List<ProductCatalog.Row> rows) {
+        List<ProductRow> entities = new ArrayList<>(rows.size());
+        for (ProductCatalog.Row product : rows) {
+            entities.add(product.toEntity());
+        }
+        try {
+            List<ProductRow> saved = productRepository.saveAll(entities);
+            for (int i = 0; i < saved.size(); i++) {
+                rows.get(i).setId(saved.get(i).getId());
+            }
+            ReconcileWindow window = reconcileWindow;
+            if (window != null) {
+                window.written.addAll(rows);
+            }
+        } catch (DataAccessException e) {
+            // The snapshot still holds the changes, they are written to the database on the next reconcile
+            System.err.println("Error saving " + rows.size() + " products: " + e.getMessage());
+        }
+    }
+    
+    private void deleteFromStore(ProductCatalog.Row product) {
+        databaseWriter.execute(() -> {
+            // Read on the writer, after any write that gave a new product its ID
+            Long id = product.getId();
+            if (id == null) {
+                return;
+            }
+            try {
+                productRepository.deleteById(id);
+                ReconcileWindow window = reconcileWindow;
+                if (window != null) {
+                    window.deletedIds.add(id);
+                }
+            } catch (DataAccessException e) {
+                System.err.println("Error deleting product " + product.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Wait until every queued database write has been made
+     */
+    void flushWrites() {
+        try {
+            databaseWriter.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    @PreDestroy
+    void closeDatabaseWriter() {
+        flushWrites();
+        databaseWriter.shutdown();
+        try {
+            databaseWriter.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Products the writer saved or deleted while a reconcile was reading the database
+     */
+    private static final class ReconcileWindow {
+        final Set<ProductCatalog.Row> written = ConcurrentHashMap.newKeySet();
+        final Set<Long> deletedIds = ConcurrentHashMap.newKeySet();
+    }
+    
+    private void markChanged() {
+        catalogVersion.incrementAndGet();
+    }
+    
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+    
+    @Override
+    public long getNamesVersion() {
+        return namesVersion.get();
+    }
+    
+    @Override
+    public Map<String, LruCache.Stats> getLookupCacheStats() {
+        return Map.of("barcode", barcodeCache.getStats(), "name", nameCache.getStats());
+    }
+    
+    private void invalidateLookups(String name, String barcode) {
+        lookupGeneration.incrementAndGet();
+        nameCache.remove(name);
+        if (barcode != null) {
+            barcodeCache.remove(barcode);
+        }
+    }
+    
+    private void invalidateAllLookups() {
+        lookupGeneration.incrementAndGet();
+        nameCache.clear();
+        barcodeCache.clear();
+    }
+    
+    /**
+     * Cache a row found in the catalog indexes, unless the catalog changed while looking
+     */
+    private void cacheLookup(LruCache<String, ProductCatalog.Row> cache, String key, ProductCatalog.Row product,
+                             long generation) {
+        cache.put(key, product);
+        if (lookupGeneration.get() != generation) {
+            cache.remove(key);
+        }
+    }
+    
+    /**
+     * Write the catalog snapshot if anything changed since the last one
+     */
+    @Scheduled(fixedDelayString = "${retail.catalog.snapshot-interval-ms:30000}")
+    @PreDestroy
+    public void writeSnapshot() {
+        long version = catalogVersion.get();
+        if (version == snapshotVersion) {
+            return;
+        }
+        
+        try {
+            snapshotStore.write(catalog.entities());
+            snapshotVersion = version;
+        } catch (IOException e) {
+            System.err.println("Error writing catalog snapshot: " + e.getMessage());
+        }
+        writeBranches();
+    }
+    
+    private void writeBranches() {
+        for (String branchId : changedBranches) {
+            changedBranches.remove(branchId);
+            BranchOverlay overlay = branches.get(branchId);
+            ProductCatalog current = catalog;
+            List<BranchOverlayStore.Entry> entries = new ArrayList<>();
+            for (int slot : overlay.overriddenSlots(current.slotCount())) {
+                ProductCatalog.Row product = current.row(slot);
+                if (product != null) {
+                    entries.add(new BranchOverlayStore.Entry(product.getName(),
+                            overlay.hasPrice(slot) ? overlay.price(slot, Double.NaN) : null,
+                            overlay.hasStock(slot) ? overlay.stock(slot, 0) : null));
+                }
+            }
+            try {
+                branchStore.write(branchId, entries);
+            } catch (IOException e) {
+                changedBranches.add(branchId);
+                System.err.println("Error writing branch " + branchId + ": " + e.getMessage());
+            }
+        }
     }
     
     @Override
     public List<ProductRow> getAllProducts() {
-        return new ArrayList<>(products);
+        return detached(catalog.rows());
     }
     
     @Override
@@ -36,26 +474,46 @@ public class ProductServiceImpl implements ProductService {
         }
         
         String lowerSearchText = searchText.toLowerCase().trim();
-        return products.stream()
+        return catalog.rows().stream()
                 .filter(product -> product.getName().toLowerCase().contains(lowerSearchText))
+                .map(ProductCatalog.Row::toEntity)
                 .collect(Collectors.toList());
     }
     
     @Override
     public ProductRow getProductByName(String productName) {
+        return detached(findByName(productName));
+    }
+    
+    private ProductCatalog.Row findByName(String productName) {
         if (productName == null) {
             return null;
         }
         
-        return products.stream()
-                .filter(product -> product.getName().equals(productName))
-                .findFirst()
-                .orElse(null);
+        ProductCatalog.Row cached = nameCache.get(productName);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long generation = lookupGeneration.get();
+        ProductCatalog.Row found = catalog.findByName(productName);
+        if (found != null) {
+            cacheLookup(nameCache, productName, found, generation);
+        }
+        return found;
+    }
+    
+    /**
+     * The product a stock check or change is for, straight from the catalog's name index.
+     * The lookup caches are skipped: they lock on every hit, and every lane would queue on them.
+     */
+    private ProductCatalog.Row findForStock(String productName) {
+        return productName != null ? catalog.findByName(productName) : null;
     }
     
     @Override
     public boolean hasSufficientStock(String productName, int requestedQuantity) {
-        ProductRow product = getProductByName(productName);
+        ProductCatalog.Row product = findForStock(productName);
         if (product == null) {
             return false;
         }
@@ -64,129 +522,409 @@ public class ProductServiceImpl implements ProductService {
     
     @Override
     public int getAvailableStock(String productName) {
-        ProductRow product = getProductByName(productName);
+        ProductCatalog.Row product = findForStock(productName);
         return product != null ? product.getStock() : 0;
     }
     
     @Override
     public ProductRow getProductByBarcode(String barcode) {
+        return detached(findByBarcode(barcode));
+    }
+    
+    private ProductCatalog.Row findByBarcode(String barcode) {
         if (barcode == null || barcode.trim().isEmpty()) {
             return null;
         }
         
-        return products.stream()
-                .filter(product -> barcode.equals(product.getBarcode()))
-                .findFirst()
-                .orElse(null);
+        ProductCatalog.Row cached = barcodeCache.get(barcode);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long generation = lookupGeneration.get();
+        ProductCatalog.Row found = catalog.findByBarcode(barcode);
+        if (found != null) {
+            cacheLookup(barcodeCache, barcode, found, generation);
+        }
+        return found;
     }
     
     @Override
-    public ProductRow createProduct(ProductRow product) {
+    public synchronized ProductRow createProduct(ProductRow product) {
         if (product == null) {
             throw new IllegalArgumentException("المنتج لا يمكن أن يكون فارغاً");
         }
         
         // Check if product with same name or barcode already exists
-        if (getProductByName(product.getName()) != null) {
+        if (findByName(product.getName()) != null) {
             throw new IllegalArgumentException("منتج بنفس الاسم موجود بالفعل");
         }
         
-        if (product.getBarcode() != null && getProductByBarcode(product.getBarcode()) != null) {
+        if (product.getBarcode() != null && findByBarcode(product.getBarcode()) != null) {
             throw new IllegalArgumentException("منتج بنفس الباركود موجود بالفعل");
         }
         
-        products.add(product);
-        return product;
+        ProductCatalog.Row created = catalog.add(product);
+        persist(created);
+        namesVersion.incrementAndGet();
+        markChanged();
+        audit(InventoryChange.Kind.CREATE, created.getName(), null, currentActor(),
+                null, created.getStock(), null, created.getPrice());
+        return created.toEntity();
     }
     
     @Override
-    public ProductRow updateProduct(String productName, ProductRow updatedProduct) {
+    public synchronized ProductRow updateProduct(String productName, ProductRow updatedProduct, int stockSeen) {
         if (productName == null || updatedProduct == null) {
             throw new IllegalArgumentException("البيانات غير صحيحة");
         }
         
-        ProductRow existingProduct = getProductByName(productName);
+        ProductCatalog.Row existingProduct = findByName(productName);
         if (existingProduct == null) {
             return null;
         }
         
-        // Update product properties
-        int index = products.indexOf(existingProduct);
-        if (index != -1) {
-            // Check if new name conflicts with another product
-            if (!productName.equals(updatedProduct.getName())) {
-                if (getProductByName(updatedProduct.getName()) != null) {
-                    throw new IllegalArgumentException("منتج بنفس الاسم موجود بالفعل");
-                }
+        // Check if new name conflicts with another product
+        if (!productName.equals(updatedProduct.getName())) {
+            if (findByName(updatedProduct.getName()) != null) {
+                throw new IllegalArgumentException("منتج بنفس الاسم موجود بالفعل");
             }
-            
-            // Check if new barcode conflicts with another product
-            if (updatedProduct.getBarcode() != null) {
-                ProductRow existingByBarcode = getProductByBarcode(updatedProduct.getBarcode());
-                if (existingByBarcode != null && !existingByBarcode.getName().equals(productName)) {
-                    throw new IllegalArgumentException("منتج بنفس الباركود موجود بالفعل");
-                }
+        }
+        
+        // Check if new barcode conflicts with another product
+        if (updatedProduct.getBarcode() != null) {
+            ProductCatalog.Row existingByBarcode = findByBarcode(updatedProduct.getBarcode());
+            if (existingByBarcode != null && !existingByBarcode.getName().equals(productName)) {
+                throw new IllegalArgumentException("منتج بنفس الباركود موجود بالفعل");
             }
-            
-            products.set(index, updatedProduct);
-            return updatedProduct;
         }
         
-        return null;
+        // Update product properties in place, the row keeps its slot
+        String oldBarcode = existingProduct.getBarcode();
+        int stockBefore = existingProduct.getStock();
+        double priceBefore = existingProduct.getPrice();
+        updatedProduct.setId(existingProduct.getId());
+        catalog.set(existingProduct, updatedProduct);
+        // Lanes may have sold since the edit started: move the live counter by the edit only
+        int stockChange = updatedProduct.getStock() - stockSeen;
+        if (stockChange != 0) {
+            existingProduct.adjustStock(stockChange);
+        }
+        invalidateLookups(productName, oldBarcode);
+        changedBranches.addAll(branches.keySet());
+        persist(existingProduct);
+        if (!productName.equals(updatedProduct.getName()) || !Objects.equals(oldBarcode, updatedProduct.getBarcode())) {
+            namesVersion.incrementAndGet();
+        }
+        markChanged();
+        
+        // A rename shows in the history of both names
+        String actor = currentActor();
+        if (!productName.equals(existingProduct.getName())) {
+            audit(InventoryChange.Kind.UPDATE, productName, null, actor,
+                    stockBefore, existingProduct.getStock(), priceBefore, existingProduct.getPrice());
+        }
+        audit(InventoryChange.Kind.UPDATE, existingProduct.getName(), null, actor,
+                stockBefore, existingProduct.getStock(), priceBefore, existingProduct.getPrice());
+        return existingProduct.toEntity();
     }
     
     @Override
-    public boolean deleteProduct(String productName) {
+    public synchronized int applyPrices(Map<String, Double> prices, String actor) {
+        List<ProductCatalog.Row> rows = new ArrayList<>(prices.size());
+        double[] newPrices = new double[prices.size()];
+        double[] oldPrices = new double[prices.size()];
+        for (Map.Entry<String, Double> entry : prices.entrySet()) {
+            ProductCatalog.Row product = findByName(entry.getKey());
+            if (product != null) {
+                newPrices[rows.size()] = entry.getValue();
+                oldPrices[rows.size()] = product.getPrice();
+                rows.add(product);
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        
+        catalog.setPrices(rows, newPrices);
+        for (ProductCatalog.Row product : rows) {
+            persist(product);
+        }
+        markChanged();
+        for (int i = 0; i < rows.size(); i++) {
+            ProductCatalog.Row product = rows.get(i);
+            int stock = product.getStock();
+            audit(InventoryChange.Kind.PRICE_CHANGE, product.getName(), null, actor,
+                    stock, stock, oldPrices[i], newPrices[i]);
+        }
+        return rows.size();
+    }
+    
+    @Override
+    public synchronized boolean deleteProduct(String productName) {
         if (productName == null) {
             return false;
         }
         
-        ProductRow product = getProductByName(productName);
-        if (product != null) {
-            return products.remove(product);
+        ProductCatalog.Row product = findByName(productName);
+        if (product != null && product.isLive()) {
+            int stockBefore = product.getStock();
+            double priceBefore = product.getPrice();
+            catalog.remove(product);
+            invalidateLookups(product.getName(), product.getBarcode());
+            changedBranches.addAll(branches.keySet());
+            deleteFromStore(product);
+            namesVersion.incrementAndGet();
+            markChanged();
+            audit(InventoryChange.Kind.DELETE, productName, null, currentActor(), stockBefore, null, priceBefore, null);
+            return true;
         }
         return false;
     }
     
     @Override
     public int getTotalProductCount() {
-        return products.size();
+        return catalog.size();
     }
     
     @Override
     public double getTotalStockValue() {
-        return products.stream()
-                .mapToDouble(p -> p.getPrice() * p.getStock())
-                .sum();
+        return catalog.stockValue();
     }
     
     @Override
     public List<ProductRow> getLowStockProducts(int threshold) {
-        return products.stream()
-                .filter(product -> product.getStock() < threshold)
-                .collect(Collectors.toList());
+        return detached(catalog.lowStock(threshold));
     }
     
     @Override
     public boolean reduceStock(String productName, int quantity) {
+        return reduceStock(productName, quantity, currentActor());
+    }
+    
+    @Override
+    public boolean reduceStock(String productName, int quantity, String actor) {
         if (productName == null || quantity <= 0) {
             return false;
         }
         
-        ProductRow product = getProductByName(productName);
-        if (product == null) {
+        // Compare-and-decrement on the stock counter: lanes never wait for each other,
+        // and two lanes can never both take the last unit
+        ProductCatalog.Row product;
+        int stockBefore;
+        catalogSwap.readLock().lock();
+        try {
+            product = findForStock(productName);
+            if (product == null) {
+                return false;
+            }
+            stockBefore = product.take(quantity);
+            if (stockBefore < 0) {
+                throw new IllegalArgumentException(
+                    "المخزون غير كافي. المتاح: " + product.getStock() + ", المطلوب: " + quantity
+                );
+            }
+            // Queued before a reconcile can swap the catalog, so the reconcile keeps this take
+            persist(product);
+        } finally {
+            catalogSwap.readLock().unlock();
+        }
+        
+        markChanged();
+        double price = product.getPrice();
+        audit(InventoryChange.Kind.SALE, productName, null, actor, stockBefore, stockBefore - quantity, price, price);
+        return true;
+    }
+    
+    @Override
+    public void restoreStock(Map<String, Integer> quantities) {
+        restoreStock(quantities, currentActor());
+    }
+    
+    @Override
+    public synchronized void restoreStock(Map<String, Integer> quantities, String actor) {
+        // Check every line before touching any stock
+        Map<ProductCatalog.Row, Integer> restored = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            ProductCatalog.Row product = findByName(entry.getKey());
+            if (product == null) {
+                throw new IllegalArgumentException("المنتج غير موجود: " + entry.getKey());
+            }
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("كمية غير صالحة للمنتج: " + entry.getKey());
+            }
+            restored.merge(product, entry.getValue(), Integer::sum);
+        }
+        
+        for (Map.Entry<ProductCatalog.Row, Integer> entry : restored.entrySet()) {
+            ProductCatalog.Row product = entry.getKey();
+            int stockBefore = product.addStock(entry.getValue());
+            persist(product);
+            double price = product.getPrice();
+            audit(InventoryChange.Kind.RESTOCK, product.getName(), null, actor,
+                    stockBefore, stockBefore + entry.getValue(), price, price);
+        }
+        if (!restored.isEmpty()) {
+            markChanged();
+        }
+    }
+    
+    @Override
+    public ProductRow getProductByName(String branchId, String productName) {
+        ProductCatalog.Row product = findByName(productName);
+        if (product == null || branchId == null) {
+            return detached(product);
+        }
+        return overlay(branchId).view(product).toEntity();
+    }
+    
+    @Override
+    public ProductRow getProductByBarcode(String branchId, String barcode) {
+        ProductCatalog.Row product = findByBarcode(barcode);
+        if (product == null || branchId == null) {
+            return detached(product);
+        }
+        return overlay(branchId).view(product).toEntity();
+    }
+    
+    @Override
+    public boolean reduceStock(String branchId, String productName, int quantity) {
+        if (branchId == null) {
+            return reduceStock(productName, quantity);
+        }
+        if (productName == null || quantity <= 0) {
             return false;
         }
         
-        int currentStock = product.getStock();
-        if (currentStock < quantity) {
-            throw new IllegalArgumentException(
-                "المخزون غير كافي. المتاح: " + currentStock + ", المطلوب: " + quantity
-            );
+        // Same compare-and-decrement as the catalog's, on the branch's own counter
+        BranchOverlay.Row branchProduct;
+        int stockBefore;
+        catalogSwap.readLock().lock();
+        try {
+            ProductCatalog.Row product = findForStock(productName);
+            if (product == null) {
+                return false;
+            }
+            branchProduct = overlay(branchId).view(product);
+            stockBefore = branchProduct.takeStock(quantity);
+            if (stockBefore < 0) {
+                throw new IllegalArgumentException(
+                    "المخزون غير كافي. المتاح: " + branchProduct.getStock() + ", المطلوب: " + quantity
+                );
+            }
+        } finally {
+            catalogSwap.readLock().unlock();
         }
         
-        int newStock = currentStock - quantity;
-        product.setStock(newStock);
+        changedBranches.add(branchId);
+        markChanged();
+        double price = branchProduct.getPrice();
+        audit(InventoryChange.Kind.SALE, productName, branchId, currentActor(),
+                stockBefore, stockBefore - quantity, price, price);
         return true;
     }
+    
+    @Override
+    public synchronized void restoreStock(String branchId, Map<String, Integer> quantities) {
+        if (branchId == null) {
+            restoreStock(quantities);
+            return;
+        }
+        BranchOverlay overlay = overlay(branchId);
+        Map<BranchOverlay.Row, Integer> restored = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            ProductCatalog.Row product = findByName(entry.getKey());
+            if (product == null) {
+                throw new IllegalArgumentException("المنتج غير موجود: " + entry.getKey());
+            }
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("كمية غير صالحة للمنتج: " + entry.getKey());
+            }
+            restored.merge(overlay.view(product), entry.getValue(), Integer::sum);
+        }
+        
+        String actor = currentActor();
+        for (Map.Entry<BranchOverlay.Row, Integer> entry : restored.entrySet()) {
+            BranchOverlay.Row product = entry.getKey();
+            int stockBefore = product.addStock(entry.getValue());
+            double price = product.getPrice();
+            audit(InventoryChange.Kind.RESTOCK, product.getName(), branchId, actor,
+                    stockBefore, stockBefore + entry.getValue(), price, price);
+        }
+        if (!restored.isEmpty()) {
+            changedBranches.add(branchId);
+            markChanged();
+        }
+    }
+    
+    @Override
+    public synchronized ProductRow setBranchPrice(String branchId, String productName, Double price) {
+        if (price != null && (price < 0 || price.isNaN())) {
+            throw new IllegalArgumentException("سعر غير صالح للمنتج: " + productName);
+        }
+        // Found before the overlay is touched, so an unknown product never creates a branch
+        ProductCatalog.Row product = requireProduct(productName);
+        BranchOverlay overlay = overlay(branchId);
+        BranchOverlay.Row branchProduct = overlay.view(product);
+        double priceBefore = branchProduct.getPrice();
+        overlay.setPrice(product.slot(), price != null ? price : Double.NaN);
+        changedBranches.add(branchId);
+        markChanged();
+        int stock = branchProduct.getStock();
+        audit(InventoryChange.Kind.BRANCH_PRICE, productName, branchId, currentActor(),
+                stock, stock, priceBefore, branchProduct.getPrice());
+        return branchProduct.toEntity();
+    }
+    
+    @Override
+    public synchronized ProductRow setBranchStock(String branchId, String productName, Integer stock) {
+        if (stock != null && stock < 0) {
+            throw new IllegalArgumentException("كمية غير صالحة للمنتج: " + productName);
+        }
+        ProductCatalog.Row product = requireProduct(productName);
+        BranchOverlay overlay = overlay(branchId);
+        // The branch's own stock before and after, null where it reads the catalog's
+        BranchOverlay.Row branchProduct = overlay.view(product);
+        Integer stockBefore = overlay.hasStock(product.slot()) ? branchProduct.getStock() : null;
+        overlay.setStock(product.slot(), stock != null ? stock : BranchOverlay.INHERIT_STOCK);
+        changedBranches.add(branchId);
+        markChanged();
+        double price = branchProduct.getPrice();
+        audit(InventoryChange.Kind.BRANCH_STOCK, productName, branchId, currentActor(),
+                stockBefore, stock, price, price);
+        return branchProduct.toEntity();
+    }
+    
+    private ProductCatalog.Row requireProduct(String productName) {
+        ProductCatalog.Row product = findByName(productName);
+        if (product == null) {
+            throw new IllegalArgumentException("المنتج غير موجود: " + productName);
+        }
+        return product;
+    }
+    
+    private void audit(InventoryChange.Kind kind, String productName, String branchId, String actor,
+                       Integer stockBefore, Integer stockAfter, Double priceBefore, Double priceAfter) {
+        auditLog.append(new InventoryChange(kind, System.currentTimeMillis(), productName, branchId, actor,
+                stockBefore, stockAfter, priceBefore, priceAfter));
+    }
+    
+    private String currentActor() {
+        User user = userService.getCurrentUser();
+        return user != null ? user.getUsername() : SYSTEM_ACTOR;
+    }
+    
+    /**
+     * The overlay of a branch, empty until the branch sets a price or stock of its own
+     */
+    BranchOverlay overlay(String branchId) {
+        BranchOverlay overlay = branches.get(branchId);
+        if (overlay != null) {
+            return overlay;
+        }
+        if (branchId == null || !BRANCH_ID.matcher(branchId).matches()) {
+            throw new IllegalArgumentException("معرّف الفرع غير صالح: " + branchId);
+        }
+        return branches.computeIfAbsent(branchId, BranchOverlay::new);
+    }
 }
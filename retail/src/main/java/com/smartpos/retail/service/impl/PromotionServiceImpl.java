@@ -0,0 +1,337 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.CartDiscounts;
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.Promotion;
+import com.smartpos.retail.repository.PromotionRepository;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.PromotionService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Implementation of PromotionService
+ * Rules are compiled into an index keyed by product (and category for percentage rules),
+ * so a scan of a product without multi-buy or bundle rules only re-prices its own line.
+ * Multi-buy and bundle deals share the cart's units: each unit goes into at most one deal,
+ * best saving per deal first, and percentage rules apply only to units left over, so no unit
+ * is discounted below zero.
+ */
+@Service
+public class PromotionServiceImpl implements PromotionService {
+
+    private final PromotionRepository promotionRepository;
+    private final ProductService productService;
+
+    private final List<Promotion> promotions = new CopyOnWriteArrayList<>();
+    private volatile PromotionIndex index = new PromotionIndex(List.of(), 0);
+
+    @Autowired
+    public PromotionServiceImpl(PromotionRepository promotionRepository, ProductService productService) {
+        this.promotionRepository = promotionRepository;
+        this.productService = productService;
+    }
+
+    @PostConstruct
+    void startLoadingPromotions() {
+        CompletableFuture.runAsync(this::loadPromotions).exceptionally(e -> {
+            System.err.println("Error loading promotions: " + e.getMessage());
+            return null;
+        });
+    }
+
+    void loadPromotions() {
+        promotions.addAll(promotionRepository.findAll());
+        rebuildIndex();
+    }
+
+    @Override
+    public Promotion addPromotion(Promotion promotion) {
+        validate(promotion);
+        Promotion saved = promotion;
+        try {
+            saved = promotionRepository.save(promotion);
+        } catch (DataAccessException e) {
+            System.err.println("Error saving promotion " + promotion.getName() + ": " + e.getMessage());
+        }
+        promotions.add(saved);
+        rebuildIndex();
+        return saved;
+    }
+
+    @Override
+    public boolean removePromotion(Promotion promotion) {
+        if (promotion == null || !promotions.remove(promotion)) {
+            return false;
+        }
+        if (promotion.getId() != null) {
+            try {
+                promotionRepository.deleteById(promotion.getId());
+            } catch (DataAccessException e) {
+                System.err.println("Error deleting promotion " + promotion.getName() + ": " + e.getMessage());
+            }
+        }
+        rebuildIndex();
+        return true;
+    }
+
+    @Override
+    public List<Promotion> getPromotions() {
+        return new ArrayList<>(promotions);
+    }
+
+    private void validate(Promotion promotion) {
+        if (promotion == null || promotion.getType() == null) {
+            throw new IllegalArgumentException("العرض غير صالح");
+        }
+        switch (promotion.getType()) {
+            case MULTI_BUY -> {
+                if (promotion.getProductNames().size() != 1 || promotion.getRequiredQuantity() <= 1) {
+                    throw new IllegalArgumentException("عرض الكمية يحتاج منتجاً واحداً وكمية أكبر من 1");
+                }
+                if (promotion.getBundlePrice() < 0) {
+                    throw new IllegalArgumentException("سعر العرض لا يمكن أن يكون سالباً");
+                }
+            }
+            case BUNDLE -> {
+                if (promotion.getProductNames().size() < 2) {
+                    throw new IllegalArgumentException("عرض المجموعة يحتاج منتجين على الأقل");
+                }
+                if (promotion.getBundlePrice() < 0) {
+                    throw new IllegalArgumentException("سعر العرض لا يمكن أن يكون سالباً");
+                }
+            }
+            case PERCENT_OFF -> {
+                if (promotion.getPercentOff() <= 0 || promotion.getPercentOff() > 1) {
+                    throw new IllegalArgumentException("نسبة الخصم يجب أن تكون بين 0 و 1");
+                }
+            }
+        }
+    }
+
+    private synchronized void rebuildIndex() {
+        index = new PromotionIndex(promotions, index.version + 1);
+    }
+
+    @Override
+    public void applyLineChange(CartSession cart, String productName) {
+        PromotionIndex current = index;
+        CartDiscounts discounts = cart.getDiscounts();
+        if (discounts.getRulesVersion() != current.version) {
+            evaluateCart(cart);
+            return;
+        }
+
+        if (current.multiLineRules(productName).isEmpty()) {
+            CartSession.CartLine line = cart.findLine(productName);
+            discounts.setLineDiscount(productName,
+                    line != null ? lineDiscount(current, line, line.quantity(), LocalDateTime.now()) : 0.0);
+            return;
+        }
+        // Deals share units, so every deal linked to this product through the cart is re-allocated
+        reprice(current, cart, List.of(productName));
+    }
+
+    @Override
+    public void evaluateCart(CartSession cart) {
+        PromotionIndex current = index;
+        CartDiscounts discounts = cart.getDiscounts();
+        discounts.clear();
+        discounts.setRulesVersion(current.version);
+        reprice(current, cart, null);
+    }
+
+    /**
+     * Re-allocate the units of the changed products, and of every product sharing a multi-buy or
+     * bundle with them in the cart, then price the units left over with the percentage rules.
+     * Deals outside that group take none of its units, so the result equals a full evaluation.
+     * @param changed The changed products, null for the whole cart
+     */
+    private void reprice(PromotionIndex current, CartSession cart, Collection<String> changed) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, CartSession.CartLine> lines = new HashMap<>();
+        Map<String, Integer> unitsLeft = new HashMap<>();
+        for (CartSession.CartLine line : cart.getLines()) {
+            lines.putIfAbsent(line.productName(), line);
+            unitsLeft.merge(line.productName(), line.quantity(), Integer::sum);
+        }
+
+        Set<String> group = new LinkedHashSet<>(changed != null ? changed : lines.keySet());
+        Deque<String> pending = new ArrayDeque<>(group);
+        Map<Promotion, Double> savings = new IdentityHashMap<>();
+        while (!pending.isEmpty()) {
+            for (Promotion promotion : current.multiLineRules(pending.poll())) {
+                if (savings.containsKey(promotion)) {
+                    continue;
+                }
+                savings.put(promotion, promotion.isActiveAt(now) ? dealSaving(promotion, lines) : 0.0);
+                for (String member : promotion.getProductNames()) {
+                    if (lines.containsKey(member) && group.add(member)) {
+                        pending.add(member);
+                    }
+                }
+            }
+        }
+
+        // Best saving per deal first; ties in a fixed order so a cart always prices the same
+        List<Promotion> deals = new ArrayList<>(savings.keySet());
+        deals.sort(Comparator.comparingDouble((Promotion promotion) -> -savings.get(promotion))
+                .thenComparing(Promotion::getName, Comparator.nullsLast(Comparator.naturalOrder())));
+        CartDiscounts discounts = cart.getDiscounts();
+        for (Promotion promotion : deals) {
+            discounts.setPromotionDiscount(promotion, takeDeals(promotion, savings.get(promotion), unitsLeft));
+        }
+
+        for (String productName : group) {
+            CartSession.CartLine line = lines.get(productName);
+            discounts.setLineDiscount(productName,
+                    line != null ? lineDiscount(current, line, unitsLeft.get(productName), now) : 0.0);
+        }
+    }
+
+    @Override
+    public void ensureEvaluated(CartSession cart) {
+        if (cart.getDiscounts().getRulesVersion() != index.version) {
+            evaluateCart(cart);
+        }
+    }
+
+    /**
+     * Best percentage-off rule for the units of one line that are not in a deal, percentage
+     * rules do not stack
+     */
+    private double lineDiscount(PromotionIndex current, CartSession.CartLine line, int units, LocalDateTime now) {
+        double bestPercent = 0.0;
+        for (Promotion promotion : current.percentRulesForProduct(line.productName())) {
+            if (promotion.isActiveAt(now)) {
+                bestPercent = Math.max(bestPercent, promotion.getPercentOff());
+            }
+        }
+
+        if (current.hasCategoryRules()) {
+            ProductRow product = productService.getProductByName(line.productName());
+            String category = product != null ? product.getCategory() : null;
+            for (Promotion promotion : current.percentRulesForCategory(category)) {
+                if (promotion.isActiveAt(now)) {
+                    bestPercent = Math.max(bestPercent, promotion.getPercentOff());
+                }
+            }
+        }
+        return Math.min(units, line.quantity()) * line.price() * Math.min(bestPercent, 1.0);
+    }
+
+    /**
+     * Saving of one multi-buy group or bundle at the cart's prices, 0 if a member is missing
+     */
+    private static double dealSaving(Promotion promotion, Map<String, CartSession.CartLine> lines) {
+        double fullPrice = 0.0;
+        if (promotion.getType() == Promotion.PromotionType.MULTI_BUY) {
+            CartSession.CartLine line = lines.get(promotion.getProductNames().iterator().next());
+            if (line == null) {
+                return 0.0;
+            }
+            fullPrice = promotion.getRequiredQuantity() * line.price();
+        } else {
+            for (String member : promotion.getProductNames()) {
+                CartSession.CartLine line = lines.get(member);
+                if (line == null) {
+                    return 0.0;
+                }
+                fullPrice += line.price();
+            }
+        }
+        return Math.max(0.0, fullPrice - promotion.getBundlePrice());
+    }
+
+    /**
+     * Form as many groups or bundles of a deal as the units left allow, and take those units
+     * @return The discount of the deals formed
+     */
+    private static double takeDeals(Promotion promotion, double saving, Map<String, Integer> unitsLeft) {
+        if (saving <= 0) {
+            return 0.0;
+        }
+
+        if (promotion.getType() == Promotion.PromotionType.MULTI_BUY) {
+            String productName = promotion.getProductNames().iterator().next();
+            int groups = unitsLeft.getOrDefault(productName, 0) / promotion.getRequiredQuantity();
+            unitsLeft.merge(productName, -groups * promotion.getRequiredQuantity(), Integer::sum);
+            return groups * saving;
+        }
+
+        // Bundle: one of each member per bundle
+        int bundles = Integer.MAX_VALUE;
+        for (String member : promotion.getProductNames()) {
+            bundles = Math.min(bundles, unitsLeft.getOrDefault(member, 0));
+        }
+        for (String member : promotion.getProductNames()) {
+            unitsLeft.merge(member, -bundles, Integer::sum);
+        }
+        return bundles * saving;
+    }
+
+    /**
+     * Immutable lookup tables built from the current rule set
+     */
+    private static final class PromotionIndex {
+        private final long version;
+        private final Map<String, List<Promotion>> percentByProduct = new HashMap<>();
+        private final Map<String, List<Promotion>> percentByCategory = new HashMap<>();
+        private final Map<String, List<Promotion>> multiLineByProduct = new HashMap<>();
+
+        PromotionIndex(List<Promotion> promotions, long version) {
+            this.version = version;
+            for (Promotion promotion : promotions) {
+                if (promotion.getType() == Promotion.PromotionType.PERCENT_OFF) {
+                    if (promotion.getCategory() != null) {
+                        percentByCategory.computeIfAbsent(promotion.getCategory(), k -> new ArrayList<>()).add(promotion);
+                    }
+                    addForProducts(percentByProduct, promotion.getProductNames(), promotion);
+                } else {
+                    addForProducts(multiLineByProduct, promotion.getProductNames(), promotion);
+                }
+            }
+        }
+
+        private static void addForProducts(Map<String, List<Promotion>> map, Set<String> productNames, Promotion promotion) {
+            for (String productName : productNames) {
+                map.computeIfAbsent(productName, k -> new ArrayList<>()).add(promotion);
+            }
+        }
+
+        List<Promotion> percentRulesForProduct(String productName) {
+            return percentByProduct.getOrDefault(productName, Collections.emptyList());
+        }
+
+        List<Promotion> percentRulesForCategory(String category) {
+            return category != null ? percentByCategory.getOrDefault(category, Collections.emptyList()) : Collections.emptyList();
+        }
+
+        boolean hasCategoryRules() {
+            return !percentByCategory.isEmpty();
+        }
+
+        List<Promotion> multiLineRules(String productName) {
+            return multiLineByProduct.getOrDefault(productName, Collections.emptyList());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.service.ReceiptSearchService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Implementation of ReceiptSearchService
+ * The index is fed by the sales journal and partitioned by day, so a date range only
+ * touches the days in it. Each day keeps postings of the receipts per product and per
+ * cashier, the amounts as a column, and the transaction IDs sorted for prefix search.
+ * Only IDs are kept in memory; matches are read back from the journal.
+ */
+@Service
+public class ReceiptSearchServiceImpl implements ReceiptSearchService {
+
+    private final SalesJournal journal;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    // Written only from the journal's writer thread
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Long, Partition> partitions = new TreeMap<>();
+    private final Map<String, Integer> productIds = new HashMap<>();
+    private final Map<String, Integer> cashierIds = new HashMap<>();
+
+    @Autowired
+    public ReceiptSearchServiceImpl(SalesJournal journal,
+                                    @Value("${retail.receipts.search.default-limit:50}") int defaultLimit,
+                                    @Value("${retail.receipts.search.max-limit:500}") int maxLimit) {
+        this.journal = journal;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Index what is already journaled and follow new records; the replay runs on the journal's writer
+     */
+    @PostConstruct
+    void start() {
+        journal.subscribe(this::add);
+    }
+
+    @Override
+    public List<SaleRecord> search(Query query) {
+        List<String> transactionIds = findIds(query);
+        List<SaleRecord> records = new ArrayList<>(transactionIds.size());
+        for (String transactionId : transactionIds) {
+            SaleRecord record = journal.find(transactionId);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Transaction IDs matching a query, newest first
+     */
+    List<String> findIds(Query query) {
+        int limit = query.limit() > 0 ? Math.min(query.limit(), maxLimit) : defaultLimit;
+        long firstDay = query.from() != null ? query.from().toEpochDay() : Long.MIN_VALUE;
+        long lastDay = query.to() != null ? query.to().toEpochDay() : Long.MAX_VALUE;
+        long minCents = query.minTotal() != null ? cents(query.minTotal()) : Long.MIN_VALUE;
+        long maxCents = query.maxTotal() != null ? cents(query.maxTotal()) : Long.MAX_VALUE;
+        String idPrefix = query.transactionId() != null && !query.transactionId().isBlank()
+                ? query.transactionId().trim() : null;
+        List<String> results = new ArrayList<>();
+        if (firstDay > lastDay || minCents > maxCents) {
+            return results;
+        }
+
+        lock.readLock().lock();
+        try {
+            int product = -1;
+            if (query.product() != null && !query.product().isBlank()) {
+                product = productIds.getOrDefault(normalize(query.product()), -2);
+            }
+            int cashier = -1;
+            if (query.cashier() != null && !query.cashier().isBlank()) {
+                cashier = cashierIds.getOrDefault(normalize(query.cashier()), -2);
+            }
+            if (product == -2 || cashier == -2 || partitions.isEmpty()) {
+                return results;
+            }
+
+            long latestDay = partitions.lastKey();
+            NavigableMap<Long, Partition> days = partitions.subMap(firstDay, true, lastDay, true).descendingMap();
+            for (Partition partition : days.values()) {
+                partition.collect(idPrefix, minCents, maxCents, product, cashier,
+                        partition.epochDay != latestDay, limit, results);
+                if (results.size() >= limit) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    void add(SaleRecord sale) {
+        long epochDay = journal.dateOf(sale.timestampMillis()).toEpochDay();
+        lock.writeLock().lock();
+        try {
+            Partition partition = partitions.computeIfAbsent(epochDay, Partition::new);
+            int ordinal = partition.add(sale.transactionId(), Math.abs(cents(sale.total())));
+            partition.post(partition.byCashier, id(cashierIds, sale.cashier()), ordinal);
+            for (SaleRecord.Line line : sale.lines()) {
+                partition.post(partition.byProduct, id(productIds, line.productName()), ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int id(Map<String, Integer> ids, String name) {
+        return ids.computeIfAbsent(normalize(name), key -> ids.size());
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Receipt ordinals in journal order, so ascending and mergeable
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void add(int ordinal) {
+            // A product on several lines of one receipt is posted once
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        int[] intersect(Postings other) {
+            int[] both = new int[Math.min(size, other.size)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (ordinals[i] < other.ordinals[j]) {
+                    i++;
+                } else if (ordinals[i] > other.ordinals[j]) {
+                    j++;
+                } else {
+                    both[count++] = ordinals[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(both, count);
+        }
+    }
+
+    /**
+     * Receipts journaled on one day
+     */
+    private static final class Partition {
+        private final long epochDay;
+        private String[] transactionIds = new String[256];
+        private long[] amountCents = new long[256];
+        private int size;
+        private final Map<Integer, Postings> byProduct = new HashMap<>();
+        private final Map<Integer, Postings> byCashier = new HashMap<>();
+        // Ordinals by transaction ID, built on the first ID search once the day has stopped changing
+        private int[] byTransactionId;
+
+        Partition(long epochDay) {
+            this.epochDay = epochDay;
+        }
+
+        int add(String transactionId, long cents) {
+            if (size == transactionIds.length) {
+                transactionIds = Arrays.copyOf(transactionIds, size * 2);
+                amountCents = Arrays.copyOf(amountCents, size * 2);
+            }
+            transactionIds[size] = transactionId;
+            amountCents[size] = cents;
+            byTransactionId = null;
+            return size++;
+        }
+
+        void post(Map<Integer, Postings> postings, int id, int ordinal) {
+            postings.computeIfAbsent(id, key -> new Postings()).add(ordinal);
+        }
+
+        void collect(String idPrefix, long minCents, long maxCents, int product, int cashier,
+                     boolean sortIds, int limit, List<String> results) {
+            // Start from the narrowest list of candidates; null means every receipt of the day
+            int[] candidates = null;
+            int count = size;
+            if (product >= 0 || cashier >= 0) {
+                Postings productPostings = product >= 0 ? byProduct.get(product) : null;
+                Postings cashierPostings = cashier >= 0 ? byCashier.get(cashier) : null;
+                if ((product >= 0 && productPostings == null) || (cashier >= 0 && cashierPostings == null)) {
+                    return;
+                }
+                if (productPostings != null && cashierPostings != null) {
+                    candidates = productPostings.intersect(cashierPostings);
+                    count = candidates.length;
+                } else {
+                    Postings postings = productPostings != null ? productPostings : cashierPostings;
+                    candidates = postings.ordinals;
+                    count = postings.size;
+                }
+            } else if (idPrefix != null && sortIds) {
+                candidates = withPrefix(idPrefix);
+                count = candidates.length;
+            }
+
+            for (int i = count - 1; i >= 0 && results.size() < limit; i--) {
+                int ordinal = candidates != null ? candidates[i] : i;
+                if (amountCents[ordinal] < minCents || amountCents[ordinal] > maxCents) {
+                    continue;
+                }
+                String transactionId = transactionIds[ordinal];
+                if (idPrefix != null && !transactionId.regionMatches(true, 0, idPrefix, 0, idPrefix.length())) {
+                    continue;
+                }
+                results.add(transactionId);
+            }
+        }
+
+        /**
+         * Ordinals of the IDs starting with a prefix, ascending
+         */
+        private int[] withPrefix(String prefix) {
+            int[] sorted = sortedByTransactionId();
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (String.CASE_INSENSITIVE_ORDER.compare(transactionIds[sorted[middle]], prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int end = low;
+            while (end < sorted.length && transactionIds[sorted[end]].regionMatches(true, 0, prefix, 0, prefix.length())) {
+                end++;
+            }
+            int[] matches = Arrays.copyOfRange(sorted, low, end);
+            Arrays.sort(matches);
+            return matches;
+        }
+
+        private synchronized int[] sortedByTransactionId() {
+            if (byTransactionId == null) {
+                Integer[] ordinals = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    ordinals[i] = i;
+                }
+                Arrays.sort(ordinals, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(transactionIds[a], transactionIds[b]));
+                int[] sorted = new int[size];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = ordinals[i];
+                }
+                byTransactionId = sorted;
+            }
+            return byTransactionId;
+        }
+    }
+}
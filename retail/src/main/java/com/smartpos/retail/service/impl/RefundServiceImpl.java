@@ -0,0 +1,179 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.repository.SalesEventLog;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.RefundService;
+import com.smartpos.retail.service.UserService;
+import com.smartpos.retail.service.ZReportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Implementation of RefundService
+ * Sales are found through the journal's transaction index, and what is still returnable
+ * is worked out from the refunds already journaled against the sale. A refund takes its
+ * share of the sale's discount and tax; the refund that returns the last units takes
+ * whatever is left, so a fully returned sale always nets to zero.
+ */
+@Service
+public class RefundServiceImpl implements RefundService {
+
+    private final SalesJournal journal;
+    private final ZReportService zReportService;
+    private final ProductService productService;
+    private final UserService userService;
+    private final SalesEventLog eventLog;
+
+    @Autowired
+    public RefundServiceImpl(SalesJournal journal, ZReportService zReportService,
+                             ProductService productService, UserService userService, SalesEventLog eventLog) {
+        this.journal = journal;
+        this.zReportService = zReportService;
+        this.productService = productService;
+        this.userService = userService;
+        this.eventLog = eventLog;
+    }
+
+    @Override
+    public SaleRecord findTransaction(String transactionId) {
+        return journal.find(transactionId);
+    }
+
+    @Override
+    public Map<String, Integer> getReturnableQuantities(String transactionId) {
+        return remaining(requireSale(transactionId), journal.findReversals(transactionId));
+    }
+
+    @Override
+    public synchronized SaleRecord refund(String transactionId, Map<String, Integer> quantities, String terminalId) {
+        if (quantities == null || quantities.isEmpty()) {
+            throw new IllegalArgumentException("لا توجد عناصر للإرجاع");
+        }
+        SaleRecord sale = requireSale(transactionId);
+        List<SaleRecord> reversals = journal.findReversals(transactionId);
+        Map<String, Integer> remaining = remaining(sale, reversals);
+
+        boolean returnsEverything = true;
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            int available = remaining.getOrDefault(entry.getKey(), 0);
+            if (entry.getValue() == null || entry.getValue() <= 0 || entry.getValue() > available) {
+                throw new IllegalArgumentException("لا يمكن إرجاع " + entry.getValue() + " من " + entry.getKey()
+                        + "، المتبقي: " + available);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : remaining.entrySet()) {
+            if (entry.getValue() > 0 && !entry.getValue().equals(quantities.get(entry.getKey()))) {
+                returnsEverything = false;
+            }
+        }
+        return reverse(sale, reversals, quantities, returnsEverything, SaleRecord.Kind.REFUND, terminalId);
+    }
+
+    @Override
+    public synchronized SaleRecord voidSale(String transactionId, String terminalId) {
+        SaleRecord sale = requireSale(transactionId);
+        List<SaleRecord> reversals = journal.findReversals(transactionId);
+        if (!reversals.isEmpty()) {
+            throw new IllegalStateException("تم إرجاع جزء من هذه المعاملة، استخدم الإرجاع");
+        }
+        return reverse(sale, reversals, remaining(sale, reversals), true, SaleRecord.Kind.VOID, terminalId);
+    }
+
+    private SaleRecord requireSale(String transactionId) {
+        SaleRecord sale = journal.find(transactionId);
+        if (sale == null) {
+            throw new IllegalArgumentException("المعاملة غير موجودة: " + transactionId);
+        }
+        if (!sale.isSale()) {
+            throw new IllegalArgumentException("لا يمكن إرجاع عملية إرجاع: " + transactionId);
+        }
+        return sale;
+    }
+
+    private static Map<String, Integer> remaining(SaleRecord sale, List<SaleRecord> reversals) {
+        Map<String, Integer> remaining = new LinkedHashMap<>();
+        for (SaleRecord.Line line : sale.lines()) {
+            remaining.merge(line.productName(), line.quantity(), Integer::sum);
+        }
+        for (SaleRecord reversal : reversals) {
+            for (SaleRecord.Line line : reversal.lines()) {
+                // Reversal quantities are negative
+                remaining.merge(line.productName(), line.quantity(), Integer::sum);
+            }
+        }
+        return remaining;
+    }
+
+    private SaleRecord reverse(SaleRecord sale, List<SaleRecord> reversals, Map<String, Integer> quantities,
+                               boolean returnsEverything, SaleRecord.Kind kind, String terminalId) {
+        Map<String, Double> refundedAmounts = new LinkedHashMap<>();
+        double refundedDiscount = 0;
+        double refundedTax = 0;
+        double refundedTotal = 0;
+        for (SaleRecord reversal : reversals) {
+            for (SaleRecord.Line line : reversal.lines()) {
+                refundedAmounts.merge(line.productName(), line.total(), Double::sum);
+            }
+            refundedDiscount += reversal.discount();
+            refundedTax += reversal.tax();
+            refundedTotal += reversal.total();
+        }
+        Map<String, Integer> remaining = remaining(sale, reversals);
+
+        List<SaleRecord.Line> lines = new ArrayList<>();
+        double subtotal = 0;
+        for (SaleRecord.Line line : sale.lines()) {
+            Integer quantity = quantities.get(line.productName());
+            if (quantity == null || quantity <= 0) {
+                continue;
+            }
+            double lineTotal = quantity.equals(remaining.get(line.productName()))
+                    ? round(line.total() + refundedAmounts.getOrDefault(line.productName(), 0.0))
+                    : round(line.total() / line.quantity() * quantity);
+            lines.add(new SaleRecord.Line(line.productName(), -quantity, line.price(), -lineTotal));
+            subtotal -= lineTotal;
+        }
+        subtotal = round(subtotal);
+
+        double discount;
+        double tax;
+        double total;
+        if (returnsEverything) {
+            discount = -round(sale.discount() + refundedDiscount);
+            tax = -round(sale.tax() + refundedTax);
+            total = -round(sale.total() + refundedTotal);
+        } else {
+            double share = sale.subtotal() != 0 ? -subtotal / sale.subtotal() : 0;
+            discount = -round(sale.discount() * share);
+            tax = -round(sale.tax() * share);
+            total = -round(sale.total() * share);
+        }
+
+        // Stock first: if a product is gone nothing is recorded
+        UserSession session = userService.getSession(terminalId);
+        String cashier = session != null ? session.getUser().getUsername() : null;
+        productService.restoreStock(quantities, cashier);
+
+        SaleRecord record = new SaleRecord(UUID.randomUUID().toString(), System.currentTimeMillis(), terminalId,
+                cashier, subtotal, discount, tax, total, lines, kind, sale.transactionId());
+        zReportService.recordSale(record);
+        eventLog.append(record);
+        System.out.println((kind == SaleRecord.Kind.VOID ? "Sale voided" : "Refund processed")
+                + " - Transaction ID: " + record.transactionId() + " for " + sale.transactionId()
+                + ", total " + total);
+        return record;
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
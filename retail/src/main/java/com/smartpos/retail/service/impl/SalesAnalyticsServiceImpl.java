@@ -0,0 +1,97 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SalesSummary;
+import com.smartpos.retail.repository.SalesEventLog;
+import com.smartpos.retail.service.SalesAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Implementation of SalesAnalyticsService
+ * Aggregates run over the sales event log on the common fork-join pool, one tally of
+ * primitive arrays per slice of the log, so a long history is read on every core without
+ * touching the checkout path.
+ */
+@Service
+public class SalesAnalyticsServiceImpl implements SalesAnalyticsService {
+
+    private final SalesEventLog eventLog;
+
+    @Autowired
+    public SalesAnalyticsServiceImpl(SalesEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    @Override
+    public SalesSummary summarize(LocalDate from, LocalDate to) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("نطاق التاريخ غير صحيح");
+        }
+        int products = eventLog.productCount();
+        Tally tally = eventLog.aggregate(from, to, () -> new Tally(products), Tally::add, Tally::merge);
+
+        List<SalesSummary.ProductSales> byProduct = new ArrayList<>();
+        for (int code = 0; code < tally.units.length; code++) {
+            if (tally.units[code] != 0 || tally.cents[code] != 0) {
+                byProduct.add(new SalesSummary.ProductSales(eventLog.productName(code), tally.units[code],
+                        tally.cents[code] / 100.0));
+            }
+        }
+        byProduct.sort(Comparator.comparingDouble(SalesSummary.ProductSales::revenue).reversed());
+        return new SalesSummary(from, to, tally.lines, tally.totalUnits, tally.totalCents / 100.0, byProduct);
+    }
+
+    /**
+     * Running totals of one slice, indexed by product code
+     */
+    private static final class Tally {
+        private long lines;
+        private long totalUnits;
+        private long totalCents;
+        private long[] units;
+        private long[] cents;
+
+        Tally(int products) {
+            units = new long[Math.max(products, 16)];
+            cents = new long[units.length];
+        }
+
+        void add(long timestampMillis, int productCode, int quantity, long amountCents) {
+            if (productCode >= units.length) {
+                // A product first sold after the aggregate started
+                grow(productCode + 1);
+            }
+            lines++;
+            totalUnits += quantity;
+            totalCents += amountCents;
+            units[productCode] += quantity;
+            cents[productCode] += amountCents;
+        }
+
+        Tally merge(Tally other) {
+            grow(other.units.length);
+            lines += other.lines;
+            totalUnits += other.totalUnits;
+            totalCents += other.totalCents;
+            for (int i = 0; i < other.units.length; i++) {
+                units[i] += other.units[i];
+                cents[i] += other.cents[i];
+            }
+            return this;
+        }
+
+        private void grow(int size) {
+            if (size > units.length) {
+                int length = Math.max(size, units.length * 2);
+                units = Arrays.copyOf(units, length);
+                cents = Arrays.copyOf(cents, length);
+            }
+        }
+    }
+}
@@ -1,30 +1,60 @@
 package com.smartpos.retail.service.impl;
 
 import com.smartpos.retail.model.CartItem;
+import com.smartpos.retail.model.CartSession;
 import com.smartpos.retail.model.Receipt;
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.model.TaxBreakdown;
+import com.smartpos.retail.model.User;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.repository.SalesEventLog;
 import com.smartpos.retail.service.CartService;
 import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.PromotionService;
 import com.smartpos.retail.service.SalesService;
+import com.smartpos.retail.service.StockMonitorService;
+import com.smartpos.retail.service.StockReservationService;
+import com.smartpos.retail.service.TaxService;
+import com.smartpos.retail.service.UserService;
+import com.smartpos.retail.service.ZReportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * Implementation of SalesService
- * TODO: Integrate with database to persist sales
+ * Completed sales are recorded in the Z report and appended to the sales event log.
  */
 @Service
 public class SalesServiceImpl implements SalesService {
     
     private final CartService cartService;
+    private final PromotionService promotionService;
+    private final TaxService taxService;
+    private final StockMonitorService stockMonitorService;
+    private final StockReservationService reservations;
+    private final ZReportService zReportService;
+    private final UserService userService;
+    private final SalesEventLog eventLog;
     
     @Autowired
-    public SalesServiceImpl(CartService cartService) {
+    public SalesServiceImpl(CartService cartService, PromotionService promotionService, TaxService taxService,
+                            StockMonitorService stockMonitorService, StockReservationService reservations,
+                            ZReportService zReportService, UserService userService, SalesEventLog eventLog) {
         this.cartService = cartService;
+        this.promotionService = promotionService;
+        this.taxService = taxService;
+        this.stockMonitorService = stockMonitorService;
+        this.reservations = reservations;
+        this.zReportService = zReportService;
+        this.userService = userService;
+        this.eventLog = eventLog;
     }
     
     @Override
@@ -46,31 +76,17 @@ public class SalesServiceImpl implements SalesService {
         double total = cartService.calculateTotal(cartItems, taxRate);
         
         // Update product stock for each item in cart
-        for (CartItem item : cartItems) {
-            try {
-                boolean stockReduced = productService.reduceStock(
-                    item.getProductName(), 
-                    item.getQuantity()
-                );
-                if (!stockReduced) {
-                    throw new IllegalStateException(
-                        "فشل تحديث المخزون للمنتج: " + item.getProductName()
-                    );
-                }
-            } catch (IllegalArgumentException e) {
-                throw new IllegalStateException(
-                    "خطأ في تحديث المخزون: " + e.getMessage()
-                );
-            }
-        }
-        
-        // TODO: Save sale to database
-        // TODO: Generate receipt
+        User cashier = userService.getCurrentUser();
+        String cashierName = cashier != null ? cashier.getUsername() : null;
+        reduceStock(cartItems, productService, cashierName);
         
         // Generate transaction ID
         String transactionId = UUID.randomUUID().toString();
+        SaleRecord record = toSaleRecord(transactionId, UserService.LOCAL_TERMINAL_ID,
+                cashierName, cartItems, subtotal, 0, tax, total);
+        zReportService.recordSale(record);
+        eventLog.append(record);
         
-        // Log the sale (in production, this would be saved to database)
         System.out.println("Sale processed - Transaction ID: " + transactionId);
         System.out.println("Subtotal: " + subtotal);
         System.out.println("Tax: " + tax);
@@ -97,16 +113,7 @@ public class SalesServiceImpl implements SalesService {
         double total = cartService.calculateTotal(cartItems, taxRate);
         
         // Convert cart items to receipt items
-        List<Receipt.ReceiptItem> receiptItems = new ArrayList<>();
-        for (CartItem cartItem : cartItems) {
-            Receipt.ReceiptItem receiptItem = new Receipt.ReceiptItem(
-                cartItem.getProductName(),
-                cartItem.getQuantity(),
-                cartItem.getPrice(),
-                cartItem.getTotal()
-            );
-            receiptItems.add(receiptItem);
-        }
+        List<Receipt.ReceiptItem> receiptItems = toReceiptItems(cartItems);
         
         // Create receipt
         return new Receipt(
@@ -118,4 +125,120 @@ public class SalesServiceImpl implements SalesService {
             total
         );
     }
+    
+    @Override
+    public String processSale(CartSession cart, ProductService productService) {
+        synchronized (cart) {
+            // Price the cart against the current rules before taking payment
+            promotionService.evaluateCart(cart);
+            List<CartItem> cartItems = cart.toCartItems();
+            if (cartItems.isEmpty()) {
+                throw new IllegalStateException("Cannot process sale: cart is empty");
+            }
+            
+            double subtotal = cart.getSubtotal();
+            double discount = cart.getDiscountTotal();
+            TaxBreakdown taxes = taxService.calculateTax(cart);
+            double tax = taxes.getTax();
+            double total = subtotal - discount + taxes.getAddedTax();
+            
+            // The units the cart held are now taken from stock, so its holds are released
+            UserSession session = userService.getSession(cart.getTerminalId());
+            String cashier = session != null ? session.getUser().getUsername() : null;
+            reduceStock(cartItems, productService, cashier);
+            reservations.releaseAll(cart.getId());
+            
+            String transactionId = UUID.randomUUID().toString();
+            SaleRecord record = toSaleRecord(transactionId, cart.getTerminalId(), cashier,
+                    cartItems, subtotal, discount, tax, total);
+            zReportService.recordSale(record);
+            eventLog.append(record);
+            
+            return transactionId;
+        }
+    }
+    
+    @Override
+    public Receipt generateReceipt(CartSession cart, String transactionId) {
+        synchronized (cart) {
+            if (cart.isEmpty()) {
+                throw new IllegalArgumentException("لا يمكن إنشاء إيصال: السلة فارغة");
+            }
+            promotionService.ensureEvaluated(cart);
+            
+            double subtotal = cart.getSubtotal();
+            double discount = cart.getDiscountTotal();
+            TaxBreakdown taxes = taxService.calculateTax(cart);
+            
+            return new Receipt(
+                transactionId,
+                LocalDateTime.now(),
+                toReceiptItems(cart.toCartItems()),
+                subtotal,
+                discount,
+                taxes,
+                subtotal - discount + taxes.getAddedTax()
+            );
+        }
+    }
+    
+    private void reduceStock(List<CartItem> cartItems, ProductService productService, String cashier) {
+        // Stock is taken line by line without a lock; if a line runs out, the lines already
+        // taken are put back so a failed sale leaves the stock as it found it
+        Map<String, Integer> taken = new HashMap<>();
+        try {
+            for (CartItem item : cartItems) {
+                boolean stockReduced;
+                try {
+                    stockReduced = productService.reduceStock(
+                        item.getProductName(), 
+                        item.getQuantity(),
+                        cashier
+                    );
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException(
+                        "خطأ في تحديث المخزون: " + e.getMessage()
+                    );
+                }
+                if (!stockReduced) {
+                    throw new IllegalStateException(
+                        "فشل تحديث المخزون للمنتج: " + item.getProductName()
+                    );
+                }
+                taken.merge(item.getProductName(), item.getQuantity(), Integer::sum);
+            }
+        } catch (IllegalStateException e) {
+            if (!taken.isEmpty()) {
+                productService.restoreStock(taken, cashier);
+            }
+            throw e;
+        }
+        for (CartItem item : cartItems) {
+            stockMonitorService.recordSale(item.getProductName(), item.getQuantity());
+        }
+    }
+    
+    private SaleRecord toSaleRecord(String transactionId, String terminalId, String cashier, List<CartItem> cartItems,
+                                    double subtotal, double discount, double tax, double total) {
+        List<SaleRecord.Line> lines = new ArrayList<>(cartItems.size());
+        for (CartItem item : cartItems) {
+            lines.add(new SaleRecord.Line(item.getProductName(), item.getQuantity(), item.getPrice(), item.getTotal()));
+        }
+        return new SaleRecord(transactionId, System.currentTimeMillis(), terminalId, cashier,
+                subtotal, discount, tax, total, lines);
+    }
+    
+    private List<Receipt.ReceiptItem> toReceiptItems(List<CartItem> cartItems) {
+        List<Receipt.ReceiptItem> receiptItems = new ArrayList<>();
+        for (CartItem cartItem : cartItems) {
+            Receipt.ReceiptItem receiptItem = new Receipt.ReceiptItem(
+                cartItem.getProductName(),
+                cartItem.getQuantity(),
+                cartItem.getPrice(),
+                cartItem.getTotal()
+            );
+            receiptItems.add(receiptItem);
+        }
+        return receiptItems;
+    }
 }
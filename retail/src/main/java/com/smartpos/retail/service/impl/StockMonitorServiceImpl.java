@@ -0,0 +1,243 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.ReorderSuggestion;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.StockMonitorService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of StockMonitorService
+ * Each sold product keeps an exponentially smoothed daily sales velocity. Its reorder point
+ * covers a number of days at that velocity, never below the minimum threshold. Suggestions
+ * are raised and cleared per product as sales come in, so the catalog is only scanned once
+ * at startup; a background job rolls the velocities over at day boundaries.
+ * When the nightly demand forecast has a product, its forecast daily demand replaces the
+ * smoothed velocity, since it follows trend and weekday; a busy day still raises it.
+ */
+@Service
+public class StockMonitorServiceImpl implements StockMonitorService {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final ProductService productService;
+    private final double smoothing;
+    private final int coverDays;
+    private final int targetDays;
+    private final int minThreshold;
+
+    private final Map<String, Velocity> velocities = new ConcurrentHashMap<>();
+    private final Map<String, ReorderSuggestion> suggestions = new ConcurrentHashMap<>();
+    private volatile Map<String, Double> forecasts = Map.of();
+
+    @Autowired
+    public StockMonitorServiceImpl(ProductService productService,
+                                   @Value("${retail.stock.velocity-smoothing:0.3}") double smoothing,
+                                   @Value("${retail.stock.cover-days:3}") int coverDays,
+                                   @Value("${retail.stock.target-days:14}") int targetDays,
+                                   @Value("${retail.stock.min-threshold:50}") int minThreshold) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("Velocity smoothing must be in (0, 1]: " + smoothing);
+        }
+        this.productService = productService;
+        this.smoothing = smoothing;
+        this.coverDays = coverDays;
+        this.targetDays = targetDays;
+        this.minThreshold = minThreshold;
+    }
+
+    @PostConstruct
+    void startSeeding() {
+        Thread.ofVirtual().name("stock-monitor-seed").start(() -> {
+            try {
+                seedFromCatalog();
+            } catch (RuntimeException e) {
+                System.err.println("Low-stock seeding failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * One pass over the catalog for products that were already low before any sale was seen
+     */
+    void seedFromCatalog() {
+        for (ProductRow product : productService.getAllProducts()) {
+            evaluate(product);
+        }
+        System.out.println("Low-stock monitor started - " + suggestions.size() + " products to reorder");
+    }
+
+    @Override
+    public void recordSale(String productName, int quantity) {
+        recordSale(productName, quantity, System.currentTimeMillis());
+    }
+
+    void recordSale(String productName, int quantity, long atMillis) {
+        if (productName == null || quantity <= 0) {
+            return;
+        }
+        long day = atMillis / DAY_MILLIS;
+        velocities.computeIfAbsent(productName, name -> new Velocity(day)).add(day, quantity, smoothing);
+
+        ProductRow product = productService.getProductByName(productName);
+        if (product != null) {
+            evaluate(product);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${retail.stock.roll-interval-ms:3600000}")
+    public void rollVelocities() {
+        rollVelocities(System.currentTimeMillis());
+    }
+
+    /**
+     * Close finished days for every product with sales history, so products that
+     * stopped selling lose velocity and their reorder point drops back
+     */
+    void rollVelocities(long nowMillis) {
+        long day = nowMillis / DAY_MILLIS;
+        for (Map.Entry<String, Velocity> entry : velocities.entrySet()) {
+            entry.getValue().roll(day, smoothing);
+            ProductRow product = productService.getProductByName(entry.getKey());
+            if (product == null) {
+                velocities.remove(entry.getKey());
+                suggestions.remove(entry.getKey());
+            } else {
+                evaluate(product);
+            }
+        }
+    }
+
+    @Override
+    public List<ReorderSuggestion> getReorderSuggestions() {
+        List<ReorderSuggestion> current = new ArrayList<>(suggestions.size());
+        for (String productName : suggestions.keySet()) {
+            // Restocking goes through the inventory screen, so check the live stock again
+            ProductRow product = productService.getProductByName(productName);
+            ReorderSuggestion suggestion = product == null ? null : evaluate(product);
+            if (suggestion == null) {
+                suggestions.remove(productName);
+            } else {
+                current.add(suggestion);
+            }
+        }
+        current.sort(Comparator.comparingDouble(ReorderSuggestion::daysOfCover)
+                .thenComparingInt(ReorderSuggestion::stock));
+        return current;
+    }
+
+    @Override
+    public List<ProductRow> getLowStockProducts() {
+        List<ProductRow> products = new ArrayList<>();
+        for (ReorderSuggestion suggestion : getReorderSuggestions()) {
+            ProductRow product = productService.getProductByName(suggestion.productName());
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    @Override
+    public void applyForecasts(Map<String, Double> dailyDemand) {
+        Map<String, Double> previous = forecasts;
+        forecasts = Map.copyOf(dailyDemand);
+        Set<String> changed = new HashSet<>(previous.keySet());
+        changed.addAll(dailyDemand.keySet());
+        for (String productName : changed) {
+            ProductRow product = productService.getProductByName(productName);
+            if (product != null) {
+                evaluate(product);
+            }
+        }
+    }
+
+    @Override
+    public int getReorderPoint(String productName) {
+        return reorderPoint(demandOf(productName));
+    }
+
+    private ReorderSuggestion evaluate(ProductRow product) {
+        double velocity = demandOf(product.getName());
+        int reorderPoint = reorderPoint(velocity);
+        int stock = product.getStock();
+        if (stock >= reorderPoint) {
+            suggestions.remove(product.getName());
+            return null;
+        }
+
+        int orderUpTo = Math.max((int) Math.ceil(velocity * targetDays), 2 * reorderPoint);
+        ReorderSuggestion suggestion = new ReorderSuggestion(product.getName(), product.getBarcode(),
+                stock, reorderPoint, velocity, orderUpTo - stock);
+        if (suggestions.put(product.getName(), suggestion) == null) {
+            System.out.println("Restock alert: " + product.getName() + " - " + stock
+                    + " left, reorder " + suggestion.suggestedQuantity());
+        }
+        return suggestion;
+    }
+
+    private double demandOf(String productName) {
+        Velocity velocity = velocities.get(productName);
+        Double forecast = forecasts.get(productName);
+        if (forecast != null) {
+            return velocity == null ? forecast : Math.max(forecast, velocity.today());
+        }
+        return velocity == null ? 0.0 : velocity.perDay();
+    }
+
+    private int reorderPoint(double velocity) {
+        return Math.max(minThreshold, (int) Math.ceil(velocity * coverDays));
+    }
+
+    /**
+     * Units sold today and the smoothed daily average of the days before
+     */
+    private static final class Velocity {
+        private long day;
+        private int unitsToday;
+        private double smoothed;
+        private boolean seeded;
+
+        Velocity(long day) {
+            this.day = day;
+        }
+
+        synchronized void add(long day, int quantity, double smoothing) {
+            roll(day, smoothing);
+            unitsToday += quantity;
+        }
+
+        synchronized void roll(long day, double smoothing) {
+            if (day <= this.day) {
+                return;
+            }
+            smoothed = seeded ? smoothing * unitsToday + (1 - smoothing) * smoothed : unitsToday;
+            seeded = true;
+            // Days without a single sale pull the average down as well
+            smoothed *= Math.pow(1 - smoothing, day - this.day - 1);
+            this.day = day;
+            unitsToday = 0;
+        }
+
+        synchronized double perDay() {
+            // A busy day shows up before it is folded into the average
+            return Math.max(smoothed, unitsToday);
+        }
+
+        synchronized int today() {
+            return unitsToday;
+        }
+    }
+}
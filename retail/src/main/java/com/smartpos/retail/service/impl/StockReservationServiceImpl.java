@@ -0,0 +1,201 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.service.StockReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of StockReservationService
+ * Units held are counted per product, and the check against stock and the update of the
+ * count are one atomic step per product, so two lanes cannot both hold the last unit.
+ * Each cart with holds has one entry in a delay queue; the sweep takes only the entries
+ * that are due, and an entry whose cart changed since it was queued goes back in with the
+ * new deadline, so renewing a hold on every scan costs nothing. Holds are not saved:
+ * after a restart, carts hold stock again from their next change.
+ */
+@Service
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private final long ttlMillis;
+
+    private final Map<String, CartHolds> holdsByCart = new ConcurrentHashMap<>();
+    private final Map<String, Integer> reservedByProduct = new ConcurrentHashMap<>();
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+
+    @Autowired
+    public StockReservationServiceImpl(@Value("${retail.cart.reservation-ttl-ms:900000}") long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public void hold(String cartId, ProductRow product, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        String productName = product.getName();
+        while (true) {
+            CartHolds holds = holdsByCart.computeIfAbsent(cartId, CartHolds::new);
+            synchronized (holds) {
+                if (holds.released) {
+                    continue; // expired while we got here, start a fresh set of holds
+                }
+                int previous = holds.quantities.getOrDefault(productName, 0);
+                int stock = product.getStock();
+                reservedByProduct.compute(productName, (name, reserved) -> {
+                    int others = (reserved != null ? reserved : 0) - previous;
+                    // Giving units back is always allowed, even if stock has fallen below the holds
+                    if (quantity > previous && others + quantity > stock) {
+                        throw new IllegalArgumentException(
+                            "Insufficient stock. Available: " + Math.max(0, stock - others) +
+                            ", Requested: " + quantity
+                        );
+                    }
+                    int total = others + quantity;
+                    return total != 0 ? total : null;
+                });
+                if (quantity > 0) {
+                    holds.quantities.put(productName, quantity);
+                } else {
+                    holds.quantities.remove(productName);
+                }
+                renew(holds);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void release(String cartId, String productName) {
+        CartHolds holds = holdsByCart.get(cartId);
+        if (holds == null) {
+            return;
+        }
+        synchronized (holds) {
+            if (holds.released) {
+                return;
+            }
+            Integer quantity = holds.quantities.remove(productName);
+            if (quantity != null) {
+                unreserve(productName, quantity);
+            }
+            renew(holds);
+        }
+    }
+
+    @Override
+    public void releaseAll(String cartId) {
+        CartHolds holds = holdsByCart.get(cartId);
+        if (holds == null) {
+            return;
+        }
+        synchronized (holds) {
+            releaseHeld(holds);
+        }
+    }
+
+    @Override
+    public int getReserved(String productName) {
+        return reservedByProduct.getOrDefault(productName, 0);
+    }
+
+    @Override
+    public int getAvailable(ProductRow product) {
+        return Math.max(0, product.getStock() - getReserved(product.getName()));
+    }
+
+    /**
+     * Release the holds of carts that have not changed within the timeout
+     */
+    @Scheduled(fixedDelayString = "${retail.cart.reservation-sweep-interval-ms:1000}")
+    public void expireHolds() {
+        Expiry expiry;
+        while ((expiry = expiries.poll()) != null) {
+            CartHolds holds = expiry.holds;
+            synchronized (holds) {
+                if (holds.released) {
+                    continue;
+                }
+                if (holds.deadlineMillis > expiry.deadlineMillis) {
+                    expiries.add(new Expiry(holds, holds.deadlineMillis));
+                    continue;
+                }
+                releaseHeld(holds);
+            }
+        }
+    }
+
+    /**
+     * Carts currently holding stock
+     */
+    int getHoldingCartCount() {
+        return holdsByCart.size();
+    }
+
+    private void renew(CartHolds holds) {
+        if (holds.quantities.isEmpty()) {
+            releaseHeld(holds);
+            return;
+        }
+        holds.deadlineMillis = System.currentTimeMillis() + ttlMillis;
+        if (!holds.queued) {
+            holds.queued = true;
+            expiries.add(new Expiry(holds, holds.deadlineMillis));
+        }
+    }
+
+    private void releaseHeld(CartHolds holds) {
+        if (holds.released) {
+            return;
+        }
+        holds.released = true;
+        holdsByCart.remove(holds.cartId, holds);
+        holds.quantities.forEach(this::unreserve);
+        holds.quantities.clear();
+    }
+
+    private void unreserve(String productName, int quantity) {
+        reservedByProduct.computeIfPresent(productName, (name, reserved) ->
+                reserved - quantity > 0 ? reserved - quantity : null);
+    }
+
+    /**
+     * What one cart holds, guarded by its own monitor
+     */
+    private static final class CartHolds {
+        private final String cartId;
+        private final Map<String, Integer> quantities = new HashMap<>();
+        private long deadlineMillis;
+        private boolean queued;
+        private boolean released;
+
+        CartHolds(String cartId) {
+            this.cartId = cartId;
+        }
+    }
+
+    /**
+     * The queue entry of a cart, due at the deadline it had when it was queued
+     */
+    private record Expiry(CartHolds holds, long deadlineMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineMillis, ((Expiry) other).deadlineMillis);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.CartDiscounts;
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.TaxBreakdown;
+import com.smartpos.retail.model.TaxRate;
+import com.smartpos.retail.repository.TaxRateRepository;
+import com.smartpos.retail.service.TaxService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of TaxService
+ * Rates are compiled into a table where each tax class has a slot, cart lines carry
+ * their tax class from scan time, so a receipt needs one map lookup per line.
+ * A saved rate replaces the whole table; rates in a table are never changed, so a receipt
+ * being priced sees either the old rates or the new ones.
+ */
+@Service
+public class TaxServiceImpl implements TaxService {
+
+    private final TaxRateRepository taxRateRepository;
+    private final String defaultClass;
+    private final double defaultRate;
+    private final boolean pricesIncludeTax;
+
+    private volatile TaxTable table;
+
+    @Autowired
+    public TaxServiceImpl(TaxRateRepository taxRateRepository,
+                          @Value("${retail.tax.default-class:STD}") String defaultClass,
+                          @Value("${retail.tax.default-rate:0.0}") double defaultRate,
+                          @Value("${retail.tax.prices-include-tax:false}") boolean pricesIncludeTax) {
+        this.taxRateRepository = taxRateRepository;
+        this.defaultClass = defaultClass;
+        this.defaultRate = defaultRate;
+        this.pricesIncludeTax = pricesIncludeTax;
+        this.table = new TaxTable(List.of(defaultTaxRate()), defaultClass);
+    }
+
+    @PostConstruct
+    void startLoadingTaxRates() {
+        // Checkout uses the default rate until the stored rates are in
+        CompletableFuture.runAsync(this::loadTaxRates).exceptionally(e -> {
+            System.err.println("Error loading tax rates: " + e.getMessage());
+            return null;
+        });
+    }
+
+    synchronized void loadTaxRates() {
+        try {
+            List<TaxRate> rates = taxRateRepository.findAll();
+            if (rates.isEmpty()) {
+                rates = List.of(taxRateRepository.save(defaultTaxRate()));
+            }
+            table = new TaxTable(rates, defaultClass);
+        } catch (DataAccessException e) {
+            System.err.println("Error loading tax rates, using default rate: " + e.getMessage());
+        }
+    }
+
+    private TaxRate defaultTaxRate() {
+        return new TaxRate(defaultClass, "ضريبة القيمة المضافة", defaultRate, pricesIncludeTax);
+    }
+
+    @Override
+    public List<TaxRate> getTaxRates() {
+        List<TaxRate> rates = new ArrayList<>();
+        for (TaxRate rate : table.rates) {
+            rates.add(rate.copy());
+        }
+        return rates;
+    }
+
+    @Override
+    public synchronized TaxRate saveTaxRate(TaxRate taxRate) {
+        if (taxRate == null || taxRate.getCode() == null || taxRate.getCode().isBlank()) {
+            throw new IllegalArgumentException("رمز فئة الضريبة مطلوب");
+        }
+        if (taxRate.getRate() < 0) {
+            throw new IllegalArgumentException("نسبة الضريبة لا يمكن أن تكون سالبة");
+        }
+
+        // The table keeps its own copy, so the caller can go on editing the rate it passed in
+        TaxRate replacement = taxRate.copy();
+        List<TaxRate> rates = new ArrayList<>();
+        for (TaxRate existing : table.rates) {
+            if (!existing.getCode().equals(replacement.getCode())) {
+                rates.add(existing);
+            } else if (replacement.getId() == null) {
+                // Replace the stored rate rather than adding a second row with the same code
+                replacement.setId(existing.getId());
+            }
+        }
+
+        TaxRate saved = replacement;
+        try {
+            saved = taxRateRepository.save(replacement);
+        } catch (DataAccessException e) {
+            System.err.println("Error saving tax rate " + replacement.getCode() + ": " + e.getMessage());
+        }
+        rates.add(saved);
+        table = new TaxTable(rates, defaultClass);
+        return saved.copy();
+    }
+
+    @Override
+    public String resolveTaxClass(ProductRow product) {
+        TaxTable current = table;
+        if (product.getTaxClass() != null && current.slotByCode.containsKey(product.getTaxClass())) {
+            return product.getTaxClass();
+        }
+        if (product.getCategory() != null) {
+            String categoryClass = current.classByCategory.get(product.getCategory());
+            if (categoryClass != null) {
+                return categoryClass;
+            }
+        }
+        return current.rates[current.defaultSlot].getCode();
+    }
+
+    @Override
+    public TaxBreakdown calculateTax(CartSession cart) {
+        TaxTable current = table;
+        CartDiscounts discounts = cart.getDiscounts();
+
+        // Single pass: amount per rate after line discounts
+        double[] amounts = new double[current.rates.length];
+        double subtotal = 0.0;
+        double lineDiscounts = 0.0;
+        for (CartSession.CartLine line : cart.getLines()) {
+            double lineDiscount = Math.min(discounts.getLineDiscount(line.productName()), line.total());
+            amounts[current.slotOf(line.taxClass())] += line.total() - lineDiscount;
+            subtotal += line.total();
+            lineDiscounts += lineDiscount;
+        }
+
+        // Multi-line promotions (bundles, multi-buys) are spread over the cart in proportion
+        double discounted = subtotal - Math.min(discounts.getTotal(), subtotal);
+        double afterLineDiscounts = subtotal - lineDiscounts;
+        double share = afterLineDiscounts > 0 ? discounted / afterLineDiscounts : 0.0;
+
+        List<TaxBreakdown.TaxLine> lines = new ArrayList<>();
+        for (int slot = 0; slot < amounts.length; slot++) {
+            if (amounts[slot] <= 0) {
+                continue;
+            }
+            TaxRate rate = current.rates[slot];
+            double taxable = amounts[slot] * share;
+            lines.add(new TaxBreakdown.TaxLine(rate.getCode(), rate.getName(), rate.getRate(),
+                    rate.isInclusive(), taxable, rate.taxOn(taxable)));
+        }
+        return new TaxBreakdown(lines);
+    }
+
+    /**
+     * Immutable lookup tables built from the current rates
+     */
+    private static final class TaxTable {
+        private final TaxRate[] rates;
+        private final Map<String, Integer> slotByCode = new HashMap<>();
+        private final Map<String, String> classByCategory = new HashMap<>();
+        private final int defaultSlot;
+
+        TaxTable(List<TaxRate> rates, String defaultClass) {
+            this.rates = rates.toArray(new TaxRate[0]);
+            for (int slot = 0; slot < this.rates.length; slot++) {
+                TaxRate rate = this.rates[slot];
+                slotByCode.put(rate.getCode(), slot);
+                for (String category : rate.getCategories()) {
+                    classByCategory.put(category, rate.getCode());
+                }
+            }
+            this.defaultSlot = slotByCode.getOrDefault(defaultClass, 0);
+        }
+
+        int slotOf(String code) {
+            Integer slot = code != null ? slotByCode.get(code) : null;
+            return slot != null ? slot : defaultSlot;
+        }
+    }
+}
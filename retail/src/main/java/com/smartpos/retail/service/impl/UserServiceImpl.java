@@ -1,72 +1,309 @@
 package com.smartpos.retail.service.impl;
 
 import com.smartpos.retail.model.User;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.repository.UserRepository;
 import com.smartpos.retail.service.UserService;
+import com.smartpos.retail.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of UserService
- * TODO: Replace with database-backed implementation
+ * Users are stored in the database with salted password hashes and kept in memory by username.
  */
 @Service
 public class UserServiceImpl implements UserService {
-    
-    private final List<User> users;
-    private User currentUser;
-    
-    public UserServiceImpl() {
-        // Initialize with sample users - will be replaced with database later
-        this.users = new ArrayList<>();
-        
-        // Default admin user
-        users.add(new User("admin", "admin123", User.UserRole.ADMIN, "مدير النظام"));
-        
-        // Default cashier user
-        users.add(new User("cashier", "cashier123", User.UserRole.CASHIER, "كاشير"));
-        
-        // Additional sample users
-        users.add(new User("manager", "manager123", User.UserRole.ADMIN, "مدير المتجر"));
-        users.add(new User("ahmed", "ahmed123", User.UserRole.CASHIER, "أحمد محمد"));
-    }
-    
+
+    private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
+    private final long verifiedLoginTtlMillis;
+
+    private final Map<String, User> usersByUsername = new ConcurrentHashMap<>();
+
+    // Recently verified logins, so badge-in and re-lock during a shift skip the full hash
+    private final LruCache<String, VerifiedLogin> verifiedLogins;
+    private final byte[] verifiedLoginKey = new byte[32];
+
+    private volatile CompletableFuture<Void> usersLoaded = CompletableFuture.completedFuture(null);
+    private volatile String dummyHash;
+
+    // Logged in users by terminal or session ID, the desktop client uses LOCAL_TERMINAL_ID
+    private final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, UserSession> sessionsByToken = new ConcurrentHashMap<>();
+    private final SecureRandom tokenRandom = new SecureRandom();
+    private final long sessionIdleTimeoutMillis;
+
+    @Autowired
+    public UserServiceImpl(UserRepository userRepository,
+                           PasswordHasher passwordHasher,
+                           @Value("${retail.security.verified-cache-size:64}") int verifiedCacheSize,
+                           @Value("${retail.security.verified-cache-ttl-minutes:480}") long verifiedCacheTtlMinutes,
+                           @Value("${retail.session.idle-timeout-minutes:120}") long sessionIdleTimeoutMinutes) {
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.verifiedLogins = new LruCache<>(verifiedCacheSize);
+        this.verifiedLoginTtlMillis = verifiedCacheTtlMinutes * 60_000L;
+        this.sessionIdleTimeoutMillis = sessionIdleTimeoutMinutes * 60_000L;
+        new SecureRandom().nextBytes(verifiedLoginKey);
+    }
+
+    @PostConstruct
+    void startLoadingUsers() {
+        // Load users off the UI thread, the login screen only needs them once the user presses Enter
+        usersLoaded = CompletableFuture.runAsync(this::loadUsers);
+    }
+
+    void loadUsers() {
+        // The hash that unknown usernames are checked against is worked out while the database starts
+        CompletableFuture<String> emptyPasswordHash = CompletableFuture.supplyAsync(() -> passwordHasher.hash(""));
+        List<User> storedUsers = new ArrayList<>(userRepository.findAll());
+
+        if (storedUsers.isEmpty()) {
+            // Default admin user
+            storedUsers.add(new User("admin", "admin123", User.UserRole.ADMIN, "مدير النظام"));
+
+            // Default cashier user
+            storedUsers.add(new User("cashier", "cashier123", User.UserRole.CASHIER, "كاشير"));
+
+            // Additional sample users
+            storedUsers.add(new User("manager", "manager123", User.UserRole.ADMIN, "مدير المتجر"));
+            storedUsers.add(new User("ahmed", "ahmed123", User.UserRole.CASHIER, "أحمد محمد"));
+        }
+
+        // Hash any plaintext passwords before they are cached, outdated hashes are upgraded on next login
+        for (User user : storedUsers) {
+            if (!PasswordHasher.isHashed(user.getPassword())) {
+                user.setPassword(passwordHasher.hash(user.getPassword()));
+            }
+        }
+        userRepository.saveAll(storedUsers);
+
+        for (User user : storedUsers) {
+            usersByUsername.put(user.getUsername(), user);
+        }
+        dummyHash = emptyPasswordHash.join();
+    }
+
+    @Override
+    public void awaitReady() {
+        try {
+            usersLoaded.join();
+        } catch (CompletionException e) {
+            // authenticate reports the failure and retries
+        }
+    }
+
     @Override
     public User authenticate(String username, String password) {
         if (username == null || password == null) {
             return null;
         }
-        
-        return users.stream()
-                .filter(user -> user.getUsername().equals(username) && 
-                               user.getPassword().equals(password))
-                .findFirst()
-                .orElse(null);
+
+        try {
+            usersLoaded.join();
+        } catch (CompletionException e) {
+            System.err.println("Error loading users: " + e.getMessage());
+            usersLoaded = CompletableFuture.runAsync(this::loadUsers);
+            return null;
+        }
+
+        User user = usersByUsername.get(username);
+        if (user == null) {
+            // Spend the same time as a real check so unknown usernames cannot be told apart
+            passwordHasher.verify(password, dummyHash);
+            return null;
+        }
+
+        byte[] credentialMac = credentialMac(username, password);
+        VerifiedLogin cached = verifiedLogins.get(username);
+        if (cached != null && cached.matches(credentialMac, user.getPassword())) {
+            return user;
+        }
+
+        if (!passwordHasher.verify(password, user.getPassword())) {
+            return null;
+        }
+
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            user.setPassword(passwordHasher.hash(password));
+            userRepository.save(user);
+        }
+
+        verifiedLogins.put(username, new VerifiedLogin(
+            credentialMac,
+            user.getPassword(),
+            System.currentTimeMillis() + verifiedLoginTtlMillis
+        ));
+        return user;
+    }
+
+    private byte[] credentialMac(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(verifiedLoginKey, "HmacSHA256"));
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    @Override
+    public UserSession openSession(String terminalId, User user) {
+        if (terminalId == null || user == null) {
+            throw new IllegalArgumentException("Terminal and user are required");
+        }
+        byte[] token = new byte[32];
+        tokenRandom.nextBytes(token);
+        UserSession session = new UserSession(terminalId, user, Base64.getUrlEncoder().withoutPadding().encodeToString(token));
+        sessionsByToken.put(session.getToken(), session);
+        UserSession replaced = sessions.put(terminalId, session);
+        if (replaced != null) {
+            sessionsByToken.remove(replaced.getToken(), replaced);
+        }
+        return session;
+    }
+
+    @Override
+    public UserSession getSession(String terminalId) {
+        if (terminalId == null) {
+            return null;
+        }
+
+        UserSession session = sessions.get(terminalId);
+        if (session == null) {
+            return null;
+        }
+        if (expired(session, System.currentTimeMillis())) {
+            drop(session);
+            return null;
+        }
+        session.touch();
+        return session;
+    }
+
+    @Override
+    public UserSession getSessionByToken(String token) {
+        if (token == null) {
+            return null;
+        }
+
+        UserSession session = sessionsByToken.get(token);
+        // A replaced or expired session no longer answers for its terminal
+        return session != null && getSession(session.getTerminalId()) == session ? session : null;
+    }
+
+    @Override
+    public void closeSession(String terminalId) {
+        if (terminalId != null) {
+            UserSession session = sessions.get(terminalId);
+            if (session != null) {
+                drop(session);
+            }
+        }
+    }
+
+    private void drop(UserSession session) {
+        sessions.remove(session.getTerminalId(), session);
+        sessionsByToken.remove(session.getToken(), session);
+    }
+
+    @Override
+    public Collection<UserSession> getActiveSessions() {
+        return List.copyOf(sessions.values());
+    }
+
+    /**
+     * Drop sessions that have been idle longer than the timeout
+     */
+    @Scheduled(fixedDelayString = "${retail.session.sweep-interval-ms:60000}")
+    public void expireIdleSessions() {
+        long now = System.currentTimeMillis();
+        for (UserSession session : sessions.values()) {
+            if (expired(session, now)) {
+                drop(session);
+            }
+        }
+    }
+
+    /**
+     * The desktop client's session lasts until it logs out: its screens hold no session
+     * of their own to renew, so only API sessions time out
+     */
+    private boolean expired(UserSession session, long now) {
+        return !LOCAL_TERMINAL_ID.equals(session.getTerminalId()) && session.isIdle(now, sessionIdleTimeoutMillis);
+    }
+
+    @Override
+    public boolean canAccessInventory(String terminalId) {
+        UserSession session = getSession(terminalId);
+        return session != null && session.getUser().isAdmin();
     }
-    
+
+    @Override
+    public boolean canMakeSales(String terminalId) {
+        return getSession(terminalId) != null; // Any logged in user can make sales
+    }
+
     @Override
     public User getCurrentUser() {
-        return currentUser;
+        UserSession session = getSession(LOCAL_TERMINAL_ID);
+        return session != null ? session.getUser() : null;
     }
-    
+
     @Override
     public void setCurrentUser(User user) {
-        this.currentUser = user;
+        if (user == null) {
+            closeSession(LOCAL_TERMINAL_ID);
+        } else {
+            openSession(LOCAL_TERMINAL_ID, user);
+        }
     }
-    
+
     @Override
     public void logout() {
-        this.currentUser = null;
+        closeSession(LOCAL_TERMINAL_ID);
     }
-    
+
     @Override
     public boolean canAccessInventory() {
-        return currentUser != null && currentUser.isAdmin();
+        return canAccessInventory(LOCAL_TERMINAL_ID);
     }
-    
+
     @Override
     public boolean canMakeSales() {
-        return currentUser != null; // Any logged in user can make sales
+        return canMakeSales(LOCAL_TERMINAL_ID);
+    }
+
+    /**
+     * A login that passed the full hash check, valid until it expires or the password changes
+     */
+    private record VerifiedLogin(byte[] credentialMac, String passwordHash, long expiresAtMillis) {
+
+        boolean matches(byte[] candidateMac, String currentPasswordHash) {
+            return System.currentTimeMillis() < expiresAtMillis
+                    && passwordHash.equals(currentPasswordHash)
+                    && MessageDigest.isEqual(credentialMac, candidateMac);
+        }
     }
 }
@@ -0,0 +1,256 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.model.ZReport;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.repository.ZReportStore;
+import com.smartpos.retail.service.ZReportService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Implementation of ZReportService
+ * Every sale is added to running totals for the day and for its cashier, so reports and
+ * the day close never rescan sales. Amounts are summed in cents so the totals come out
+ * the same however the sales are replayed. The sales journal is the raw record: it
+ * restores the open day after a restart and is what closed reports are verified against.
+ */
+@Service
+public class ZReportServiceImpl implements ZReportService {
+
+    private final SalesJournal journal;
+    private final ZReportStore reportStore;
+    private final int topItemCount;
+
+    // Open period, guarded by this
+    private long openedAtMillis;
+    private long lastSaleMillis;
+    private long nextNumber = 1;
+    private Totals dayTotals = new Totals();
+    private Map<String, Totals> cashierTotals = new TreeMap<>();
+
+    @Autowired
+    public ZReportServiceImpl(SalesJournal journal, ZReportStore reportStore,
+                              @Value("${retail.reports.top-items:10}") int topItemCount) {
+        this.journal = journal;
+        this.reportStore = reportStore;
+        this.topItemCount = topItemCount;
+    }
+
+    /**
+     * Pick up after the last closed report and replay the sales journaled since
+     */
+    @PostConstruct
+    synchronized void restoreOpenDay() {
+        ZReport latest = reportStore.findLatest();
+        if (latest != null) {
+            openedAtMillis = latest.getClosedAtMillis();
+            nextNumber = latest.getNumber() + 1;
+        }
+        lastSaleMillis = openedAtMillis;
+
+        List<SaleRecord> sales = journal.readBetween(openedAtMillis, Long.MAX_VALUE);
+        for (SaleRecord sale : sales) {
+            add(sale);
+        }
+        if (!sales.isEmpty()) {
+            System.out.println("Open day restored from sales journal - " + sales.size() + " sales");
+        }
+    }
+
+    @Override
+    public synchronized void recordSale(SaleRecord sale) {
+        // Sales are stamped in order, so a sale belongs to the period it was counted in
+        if (sale.timestampMillis() <= lastSaleMillis) {
+            sale = sale.withTimestamp(lastSaleMillis + 1);
+        }
+        journal.append(sale);
+        add(sale);
+    }
+
+    @Override
+    public synchronized ZReport getCurrentReport() {
+        return toReport(0, Math.max(System.currentTimeMillis(), lastSaleMillis));
+    }
+
+    @Override
+    public synchronized ZReport getShiftReport(String cashier) {
+        Totals totals = cashierTotals.getOrDefault(cashier, new Totals());
+        return totals.toReport(0, cashier, openedAtMillis, Math.max(System.currentTimeMillis(), lastSaleMillis),
+                topItemCount, List.of());
+    }
+
+    @Override
+    public synchronized ZReport closeDay() {
+        long closedAtMillis = Math.max(System.currentTimeMillis(), lastSaleMillis);
+        ZReport report = toReport(nextNumber, closedAtMillis);
+        reportStore.save(report);
+
+        nextNumber++;
+        openedAtMillis = closedAtMillis;
+        lastSaleMillis = closedAtMillis;
+        dayTotals = new Totals();
+        cashierTotals = new TreeMap<>();
+        System.out.println("Day closed - Z report #" + report.getNumber() + ", "
+                + report.getTransactionCount() + " transactions, total " + report.getTotal());
+        return report;
+    }
+
+    @Override
+    public ZReport getReport(long number) {
+        return reportStore.load(number);
+    }
+
+    @Override
+    public Verification verify(long number) {
+        ZReport stored = reportStore.load(number);
+        if (stored == null) {
+            throw new IllegalArgumentException("Z report not found: " + number);
+        }
+
+        journal.flush();
+        ZReport recomputed = rebuild(number, stored.getOpenedAtMillis(), stored.getClosedAtMillis());
+        List<String> differences = new ArrayList<>();
+        compare("", stored, recomputed, differences);
+
+        Map<String, ZReport> recomputedCashiers = new HashMap<>();
+        for (ZReport cashierReport : recomputed.getCashierReports()) {
+            recomputedCashiers.put(cashierReport.getCashier(), cashierReport);
+        }
+        for (ZReport cashierReport : stored.getCashierReports()) {
+            ZReport other = recomputedCashiers.remove(cashierReport.getCashier());
+            if (other == null) {
+                differences.add(cashierReport.getCashier() + ": not in journal");
+            } else {
+                compare(cashierReport.getCashier() + " ", cashierReport, other, differences);
+            }
+        }
+        for (String cashier : recomputedCashiers.keySet()) {
+            differences.add(cashier + ": missing from report");
+        }
+        return new Verification(number, differences.isEmpty(), differences);
+    }
+
+    /**
+     * Recompute a report from the journal alone
+     */
+    ZReport rebuild(long number, long fromMillis, long toMillis) {
+        Totals day = new Totals();
+        Map<String, Totals> cashiers = new TreeMap<>();
+        for (SaleRecord sale : journal.readBetween(fromMillis, toMillis)) {
+            day.add(sale);
+            cashiers.computeIfAbsent(sale.cashier(), cashier -> new Totals()).add(sale);
+        }
+        return day.toReport(number, null, fromMillis, toMillis, topItemCount,
+                cashierReports(cashiers, fromMillis, toMillis));
+    }
+
+    private void add(SaleRecord sale) {
+        dayTotals.add(sale);
+        cashierTotals.computeIfAbsent(sale.cashier(), cashier -> new Totals()).add(sale);
+        lastSaleMillis = Math.max(lastSaleMillis, sale.timestampMillis());
+    }
+
+    private ZReport toReport(long number, long closedAtMillis) {
+        return dayTotals.toReport(number, null, openedAtMillis, closedAtMillis, topItemCount,
+                cashierReports(cashierTotals, openedAtMillis, closedAtMillis));
+    }
+
+    private List<ZReport> cashierReports(Map<String, Totals> cashiers, long fromMillis, long toMillis) {
+        List<ZReport> reports = new ArrayList<>(cashiers.size());
+        for (Map.Entry<String, Totals> entry : cashiers.entrySet()) {
+            reports.add(entry.getValue().toReport(0, entry.getKey(), fromMillis, toMillis, topItemCount, List.of()));
+        }
+        return reports;
+    }
+
+    private static void compare(String prefix, ZReport stored, ZReport recomputed, List<String> differences) {
+        compareField(prefix + "transactions", stored.getTransactionCount(), recomputed.getTransactionCount(), differences);
+        compareField(prefix + "items", stored.getItemCount(), recomputed.getItemCount(), differences);
+        compareField(prefix + "subtotal", stored.getSubtotal(), recomputed.getSubtotal(), differences);
+        compareField(prefix + "discount", stored.getDiscount(), recomputed.getDiscount(), differences);
+        compareField(prefix + "tax", stored.getTax(), recomputed.getTax(), differences);
+        compareField(prefix + "total", stored.getTotal(), recomputed.getTotal(), differences);
+        compareField(prefix + "refunds", stored.getRefundCount(), recomputed.getRefundCount(), differences);
+        compareField(prefix + "refund total", stored.getRefundTotal(), recomputed.getRefundTotal(), differences);
+        compareField(prefix + "top items", stored.getTopItems(), recomputed.getTopItems(), differences);
+    }
+
+    private static void compareField(String field, Object stored, Object recomputed, List<String> differences) {
+        if (!Objects.equals(stored, recomputed)) {
+            differences.add(field + ": report " + stored + ", journal " + recomputed);
+        }
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Running totals of a set of sales
+     */
+    private static final class Totals {
+        private int transactions;
+        private long items;
+        private long subtotalCents;
+        private long discountCents;
+        private long taxCents;
+        private long totalCents;
+        private int refunds;
+        private long refundCents;
+        // Product name to {units, cents}
+        private final Map<String, long[]> products = new HashMap<>();
+
+        void add(SaleRecord sale) {
+            // Refunds carry negative amounts, so they come off the totals as they are added
+            if (sale.isSale()) {
+                transactions++;
+            } else {
+                refunds++;
+                refundCents -= cents(sale.total());
+            }
+            subtotalCents += cents(sale.subtotal());
+            discountCents += cents(sale.discount());
+            taxCents += cents(sale.tax());
+            totalCents += cents(sale.total());
+            for (SaleRecord.Line line : sale.lines()) {
+                items += line.quantity();
+                long[] product = products.computeIfAbsent(line.productName(), name -> new long[2]);
+                product[0] += line.quantity();
+                product[1] += cents(line.total());
+            }
+        }
+
+        ZReport toReport(long number, String cashier, long openedAtMillis, long closedAtMillis,
+                         int topItemCount, List<ZReport> cashierReports) {
+            List<Map.Entry<String, long[]>> ranked = new ArrayList<>(products.entrySet());
+            ranked.sort((a, b) -> {
+                int byUnits = Long.compare(b.getValue()[0], a.getValue()[0]);
+                if (byUnits != 0) {
+                    return byUnits;
+                }
+                int byAmount = Long.compare(b.getValue()[1], a.getValue()[1]);
+                return byAmount != 0 ? byAmount : a.getKey().compareTo(b.getKey());
+            });
+
+            List<ZReport.ItemTotal> topItems = new ArrayList<>(Math.min(topItemCount, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < topItemCount; i++) {
+                long[] product = ranked.get(i).getValue();
+                topItems.add(new ZReport.ItemTotal(ranked.get(i).getKey(), (int) product[0], product[1] / 100.0));
+            }
+
+            return new ZReport(number, cashier, openedAtMillis, closedAtMillis, transactions, items,
+                    subtotalCents / 100.0, discountCents / 100.0, taxCents / 100.0, totalCents / 100.0,
+                    refunds, refundCents / 100.0, topItems, cashierReports);
+        }
+    }
+}
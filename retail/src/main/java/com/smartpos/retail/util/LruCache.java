@@ -0,0 +1,72 @@
+package com.smartpos.retail.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded cache that evicts the least recently used entry once full.
+ * All operations are synchronized, so one instance can be shared between threads.
+ * Hits and misses are counted for monitoring.
+ */
+public class LruCache<K, V> {
+    
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    /**
+     * Point-in-time cache counters
+     */
+    public record Stats(long hits, long misses, int size, int maxSize, double hitRate) {}
+    
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.maxSize;
+            }
+        };
+    }
+    
+    public V get(K key) {
+        V value;
+        synchronized (this) {
+            value = entries.get(key);
+        }
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+    
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+    
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public Stats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+        return new Stats(hitCount, missCount, size(), maxSize, lookups > 0 ? (double) hitCount / lookups : 0.0);
+    }
+}
@@ -0,0 +1,114 @@
+package com.smartpos.retail.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffer between scanner input and cart processing.
+ * The key handler only appends the scanned code; the sales screen drains the queue once
+ * per frame. Back-to-back scans of the same code within the coalescing window come out
+ * as one scan with a quantity, even when they span several frames: the last run stays
+ * open until its window ends or another code is scanned. The queue is unbounded, so no
+ * scan is ever dropped. Scans may be offered from any thread but are drained from one.
+ */
+public class ScanQueue {
+
+    /**
+     * A scanned code and how many times it was scanned in a row
+     */
+    public record Scan(String code, int quantity) {}
+
+    private record Pending(String code, long atMillis) {}
+
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final long coalesceWindowMillis;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    // The run drained last, held back while more scans of it may still merge into it
+    private String openCode;
+    private int openQuantity;
+    private long openStartMillis;
+
+    public ScanQueue(long coalesceWindowMillis) {
+        this.coalesceWindowMillis = coalesceWindowMillis;
+    }
+
+    public void offer(String code) {
+        offer(code, System.currentTimeMillis());
+    }
+
+    public void offer(String code, long atMillis) {
+        pending.add(new Pending(code, atMillis));
+        received.increment();
+    }
+
+    /**
+     * Whether nothing is queued or held in an open run
+     */
+    public boolean isEmpty() {
+        return pending.isEmpty() && openCode == null;
+    }
+
+    /**
+     * Take every queued scan, in order, merging repeats of the same code, and close the open
+     * run. Only a run of the same code merges, and only while each scan is within the window of
+     * the run's first: A, A, B gives (A×2, B), but A, B, A gives three scans, so the cart sees
+     * the lines in the order they were scanned.
+     * @return Scans since the last drain, empty if none
+     */
+    public List<Scan> drain() {
+        return drain(true, 0);
+    }
+
+    /**
+     * Take the queued scans as {@link #drain()} does, but hold back the last run while its window
+     * is still open, so repeats scanned in the next frames join it
+     * @param nowMillis The current time, on the clock the scans were stamped with
+     * @return Runs that can no longer grow, empty if none
+     */
+    public List<Scan> drainClosed(long nowMillis) {
+        return drain(false, nowMillis);
+    }
+
+    public List<Scan> drainClosed() {
+        return drainClosed(System.currentTimeMillis());
+    }
+
+    private List<Scan> drain(boolean all, long nowMillis) {
+        List<Scan> scans = new ArrayList<>();
+        Pending scan;
+        while ((scan = pending.poll()) != null) {
+            if (scan.code().equals(openCode) && scan.atMillis() - openStartMillis <= coalesceWindowMillis) {
+                openQuantity++;
+                coalesced.increment();
+                continue;
+            }
+            closeRun(scans);
+            openCode = scan.code();
+            openQuantity = 1;
+            openStartMillis = scan.atMillis();
+        }
+        if (all || nowMillis - openStartMillis > coalesceWindowMillis) {
+            closeRun(scans);
+        }
+        return scans;
+    }
+
+    private void closeRun(List<Scan> scans) {
+        if (openCode != null) {
+            scans.add(new Scan(openCode, openQuantity));
+            openCode = null;
+        }
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,75 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.model.User;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ApiSessionInterceptorTest {
+
+	private UserService userService;
+	private ApiSessionInterceptor interceptor;
+	private UserSession laneOne;
+
+	@BeforeEach
+	void setUp() {
+		userService = mock(UserService.class);
+		interceptor = new ApiSessionInterceptor(userService);
+		laneOne = new UserSession("lane-1", new User("cashier", "x", User.UserRole.CASHIER, "كاشير"), "token-1");
+		when(userService.getSessionByToken("token-1")).thenReturn(laneOne);
+	}
+
+	private static MockHttpServletRequest request(String method, String pattern, String laneId, String authorization) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/api");
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+		if (laneId != null) {
+			request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("laneId", laneId));
+		}
+		if (authorization != null) {
+			request.addHeader("Authorization", authorization);
+		}
+		return request;
+	}
+
+	private HttpStatus rejection(MockHttpServletRequest request) {
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> interceptor.preHandle(request, new MockHttpServletResponse(), new Object()));
+		return HttpStatus.valueOf(e.getStatusCode().value());
+	}
+
+	@Test
+	void callsNeedTheTokenOfTheirLanesSession() throws Exception {
+		MockHttpServletRequest checkout = request("POST", "/api/lanes/{laneId}/checkout", "lane-1", "Bearer token-1");
+		assertTrue(interceptor.preHandle(checkout, new MockHttpServletResponse(), new Object()));
+		assertSame(laneOne, checkout.getAttribute(ApiSessionInterceptor.SESSION_ATTRIBUTE));
+		assertTrue(interceptor.preHandle(request("GET", "/api/reports/current", null, "bearer token-1"),
+				new MockHttpServletResponse(), new Object()));
+
+		assertEquals(HttpStatus.UNAUTHORIZED, rejection(request("POST", "/api/lanes/{laneId}/checkout", "lane-1", null)));
+		assertEquals(HttpStatus.UNAUTHORIZED, rejection(request("GET", "/api/reports/current", null, "Bearer stale")));
+		// Somebody else's lane, including logging it out
+		assertEquals(HttpStatus.FORBIDDEN, rejection(request("POST", "/api/lanes/{laneId}/checkout", "lane-2", "Bearer token-1")));
+		assertEquals(HttpStatus.FORBIDDEN, rejection(request("DELETE", SessionApiController.PATH, "lane-2", "Bearer token-1")));
+	}
+
+	@Test
+	void onlyLoginGoesWithoutATokenAndNeverOnTheDesktopTill() throws Exception {
+		assertTrue(interceptor.preHandle(request("POST", SessionApiController.PATH, "lane-2", null),
+				new MockHttpServletResponse(), new Object()));
+
+		assertEquals(HttpStatus.FORBIDDEN, rejection(request("POST", SessionApiController.PATH, UserService.LOCAL_TERMINAL_ID, null)));
+		assertEquals(HttpStatus.FORBIDDEN, rejection(request("DELETE", SessionApiController.PATH, UserService.LOCAL_TERMINAL_ID, "Bearer token-1")));
+		verify(userService, never()).closeSession(anyString());
+	}
+}
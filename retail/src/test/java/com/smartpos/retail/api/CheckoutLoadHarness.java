@@ -0,0 +1,138 @@
+package com.smartpos.retail.api;
+
+import com.smartpos.retail.RetailApplication;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.service.ProductService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local load-test harness for the checkout API.
+ * Boots the backend on a random port, then drives it from many simulated lanes on
+ * virtual threads and reports checkouts per second and latency percentiles.
+ *
+ * Run from the IDE, or after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.smartpos.retail.api.CheckoutLoadHarness [lanes] [seconds]}
+ */
+public class CheckoutLoadHarness {
+
+	private static final int ITEMS_PER_BASKET = 3;
+	private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+	public static void main(String[] args) throws Exception {
+		int lanes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(RetailApplication.class)
+				.run("--spring.main.web-application-type=servlet", "--server.port=0",
+						"--retail.catalog.snapshot-path=target/loadtest/catalog.snapshot");
+		try {
+			String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+			List<String> barcodes = seedCatalog(context.getBean(ProductService.class));
+			run(baseUrl, barcodes, lanes, Duration.ofSeconds(seconds));
+		} finally {
+			context.close();
+		}
+	}
+
+	private static List<String> seedCatalog(ProductService productService) {
+		List<String> barcodes = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			String barcode = "99000000" + String.format("%05d", i);
+			if (productService.getProductByBarcode(barcode) == null) {
+				productService.createProduct(new ProductRow("Load item " + i, barcode, 1.0 + i, Integer.MAX_VALUE / 2));
+			}
+			barcodes.add(barcode);
+		}
+		return barcodes;
+	}
+
+	private static void run(String baseUrl, List<String> barcodes, int lanes, Duration duration) throws Exception {
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.executor(Executors.newVirtualThreadPerTaskExecutor())
+				.build();
+
+		AtomicLong checkouts = new AtomicLong();
+		AtomicLong failures = new AtomicLong();
+		List<long[]> latenciesPerLane = new ArrayList<>();
+		long deadline = System.nanoTime() + duration.toNanos();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int lane = 0; lane < lanes; lane++) {
+				String laneUrl = baseUrl + "/lanes/load-" + lane;
+				long[] latencies = new long[1 << 16];
+				latenciesPerLane.add(latencies);
+				int laneIndex = lane;
+
+				executor.submit(() -> {
+					Matcher login = TOKEN.matcher(post(client, laneUrl + "/session", null,
+							"{\"username\":\"cashier\",\"password\":\"cashier123\"}"));
+					if (!login.find()) {
+						throw new IllegalStateException("No session token for lane " + laneIndex);
+					}
+					String token = login.group(1);
+					int count = 0;
+					while (System.nanoTime() < deadline && count < latencies.length) {
+						long start = System.nanoTime();
+						try {
+							for (int i = 0; i < ITEMS_PER_BASKET; i++) {
+								String barcode = barcodes.get((laneIndex * 7 + count * ITEMS_PER_BASKET + i) % barcodes.size());
+								post(client, laneUrl + "/cart/items", token, "{\"barcode\":\"" + barcode + "\",\"quantity\":1}");
+							}
+							post(client, laneUrl + "/checkout", token, "");
+							latencies[count++] = System.nanoTime() - start;
+							checkouts.incrementAndGet();
+						} catch (Exception e) {
+							failures.incrementAndGet();
+						}
+					}
+					latenciesPerLane.set(laneIndex, Arrays.copyOf(latencies, count));
+					return null;
+				});
+			}
+		}
+
+		long[] all = latenciesPerLane.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+		double seconds = duration.toMillis() / 1000.0;
+		System.out.printf("lanes=%d duration=%.0fs checkouts=%d failures=%d%n", lanes, seconds, checkouts.get(), failures.get());
+		System.out.printf("throughput: %.1f checkouts/s%n", checkouts.get() / seconds);
+		if (all.length > 0) {
+			System.out.printf("checkout latency (scan x%d + pay): p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+					ITEMS_PER_BASKET, percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e6);
+		}
+	}
+
+	private static String post(HttpClient client, String url, String token, String json) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json));
+		if (token != null) {
+			request.header("Authorization", "Bearer " + token);
+		}
+		HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() >= 400) {
+			throw new IllegalStateException(url + " -> " + response.statusCode() + " " + response.body());
+		}
+		return response.body();
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
@@ -0,0 +1,113 @@
+package com.smartpos.retail.controllers;
+
+import com.smartpos.retail.model.ProductRow;
+import com.sun.management.ThreadMXBean;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RecentScansStripTest {
+
+	private static final ProductRow[] PRODUCTS = {
+			new ProductRow("Milk", "1", 5.0, 10),
+			new ProductRow("Bread", "2", 2.25, 10),
+			new ProductRow("Eggs", "3", 12.5, 10),
+			new ProductRow("Tea", "4", 0.99, 10),
+			new ProductRow("Rice", "5", 30.0, 10),
+			new ProductRow("Dates", "6", 18.75, 10),
+			new ProductRow("Water", "7", 1.0, 10)
+	};
+
+	@Test
+	void keepsTheLastScansInOrderWithoutAddingNodes() {
+		VBox container = new VBox();
+		RecentScansStrip strip = new RecentScansStrip(container, 5);
+		List<Node> rows = List.copyOf(container.getChildren());
+
+		for (ProductRow product : PRODUCTS) {
+			strip.show(product);
+		}
+
+		assertEquals(rows.size(), container.getChildren().size());
+		assertTrue(container.getChildren().containsAll(rows), "rows are recycled, never replaced");
+		assertEquals(List.of("Eggs", "Tea", "Rice", "Dates", "Water"), visibleNames(container));
+		assertEquals("18.75 ر.س", ((Text) ((HBox) container.getChildren().get(3)).getChildren().get(1)).getText());
+	}
+
+	@Test
+	void clearHidesEveryRow() {
+		VBox container = new VBox();
+		RecentScansStrip strip = new RecentScansStrip(container, 5);
+		strip.show(PRODUCTS[0]);
+		strip.show(PRODUCTS[1]);
+
+		strip.clear();
+		assertTrue(visibleNames(container).isEmpty());
+
+		strip.show(PRODUCTS[2]);
+		assertEquals(List.of("Eggs"), visibleNames(container));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void recycledRowsAllocateLessPerScan() {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		int scans = 20_000;
+
+		// Before: a new row with inline styles per scan, as the sales screen used to build it
+		VBox container = new VBox();
+		long before = allocatedPerScan(threads, scans, i -> {
+			if (container.getChildren().size() >= 5) {
+				container.getChildren().remove(0);
+			}
+			ProductRow product = PRODUCTS[i % PRODUCTS.length];
+			HBox row = new HBox(10);
+			row.setPadding(new Insets(5));
+			row.setStyle("-fx-background-color: white; -fx-border-color: #bdc3c7; -fx-border-width: 1;");
+			Text name = new Text(product.getName());
+			name.setStyle("-fx-font-weight: bold;");
+			Text price = new Text(String.format("%.2f", product.getPrice()) + " ر.س");
+			price.setStyle("-fx-fill: #27ae60;");
+			row.getChildren().addAll(name, price);
+			container.getChildren().add(row);
+		});
+
+		RecentScansStrip strip = new RecentScansStrip(new VBox(), 5);
+		long after = allocatedPerScan(threads, scans, i -> strip.show(PRODUCTS[i % PRODUCTS.length]));
+
+		System.out.printf("Recent scans: %d bytes/scan allocating rows, %d bytes/scan recycling rows%n", before, after);
+		assertTrue(after * 4 < before, "recycled rows should allocate a fraction of new rows");
+	}
+
+	private static long allocatedPerScan(ThreadMXBean threads, int scans, IntConsumer scan) {
+		long thread = Thread.currentThread().threadId();
+		for (int i = 0; i < scans; i++) {
+			scan.accept(i); // warm up
+		}
+		long start = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < scans; i++) {
+			scan.accept(i);
+		}
+		return (threads.getThreadAllocatedBytes(thread) - start) / scans;
+	}
+
+	private static List<String> visibleNames(VBox container) {
+		return container.getChildren().stream()
+				.filter(Node::isVisible)
+				.map(row -> ((Text) ((HBox) row).getChildren().get(0)).getText())
+				.toList();
+	}
+}
@@ -0,0 +1,80 @@
+package com.smartpos.retail.controllers;
+
+import com.smartpos.retail.util.ScanQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanPumpTest {
+
+	/**
+	 * A scanner at 25 scans/s against a pump called once per 60 Hz frame. Tests run headless,
+	 * so the frame thread plays the part of the FX pulse and calls handle() as it would.
+	 */
+	@Test
+	void keepsUpWithAScannerAtTwentyFiveScansPerSecondWithoutLosingAny() throws Exception {
+		ScanQueue queue = new ScanQueue(300);
+		List<ScanQueue.Scan> applied = new ArrayList<>();
+		ScanPump pump = new ScanPump(queue, applied::addAll);
+
+		String[] codes = {"111", "111", "222", "111", "333", "333", "333", "222"};
+		int scans = 60;
+		AtomicBoolean scanning = new AtomicBoolean(true);
+		Thread scanner = new Thread(() -> {
+			try {
+				for (int i = 0; i < scans; i++) {
+					queue.offer(codes[i % codes.length]);
+					Thread.sleep(40);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				scanning.set(false);
+			}
+		});
+
+		scanner.start();
+		while (scanning.get() || !queue.isEmpty()) {
+			pump.handle(System.nanoTime());
+			Thread.sleep(16);
+		}
+		pump.handle(System.nanoTime());
+		scanner.join();
+
+		Map<String, Integer> expected = new HashMap<>();
+		for (int i = 0; i < scans; i++) {
+			expected.merge(codes[i % codes.length], 1, Integer::sum);
+		}
+		Map<String, Integer> actual = new HashMap<>();
+		for (ScanQueue.Scan scan : applied) {
+			actual.merge(scan.code(), scan.quantity(), Integer::sum);
+		}
+
+		assertEquals(expected, actual, "every scan reaches the cart");
+		assertEquals(scans, queue.getReceivedCount());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	void onlyBackToBackRepeatsMergeWithinAFrame() {
+		ScanQueue queue = new ScanQueue(300);
+		List<List<ScanQueue.Scan>> frames = new ArrayList<>();
+		ScanPump pump = new ScanPump(queue, frames::add);
+
+		pump.handle(0);
+		assertTrue(frames.isEmpty(), "an empty frame does not touch the cart");
+
+		queue.offer("111", 1_000);
+		queue.offer("222", 1_010);
+		queue.offer("111", 1_020);
+		pump.handle(1);
+		assertEquals(List.of(List.of(new ScanQueue.Scan("111", 1), new ScanQueue.Scan("222", 1),
+				new ScanQueue.Scan("111", 1))), frames);
+	}
+}
@@ -0,0 +1,57 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.ProductRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotStoreTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void writeThenReadRoundTripsProducts() throws Exception {
+		CatalogSnapshotStore store = new CatalogSnapshotStore(tempDir.resolve("catalog.snapshot").toString());
+
+		ProductRow milk = new ProductRow("حليب", "6281234567890", 6.25, 40);
+		milk.setId(7L);
+		ProductRow bags = new ProductRow("Bags", null, 0.5, 1000);
+		store.write(List.of(milk, bags));
+
+		List<ProductRow> read = store.read();
+		assertEquals(2, read.size());
+		assertEquals(7L, read.get(0).getId());
+		assertEquals("حليب", read.get(0).getName());
+		assertEquals("6281234567890", read.get(0).getBarcode());
+		assertEquals(6.25, read.get(0).getPrice());
+		assertEquals(40, read.get(0).getStock());
+		assertNull(read.get(1).getId());
+		assertNull(read.get(1).getBarcode());
+	}
+
+	@Test
+	void missingSnapshotReadsAsEmpty() {
+		CatalogSnapshotStore store = new CatalogSnapshotStore(tempDir.resolve("none.snapshot").toString());
+		assertTrue(store.read().isEmpty());
+	}
+
+	@Test
+	void corruptSnapshotReadsAsEmpty() throws Exception {
+		Path path = tempDir.resolve("catalog.snapshot");
+		CatalogSnapshotStore store = new CatalogSnapshotStore(path.toString());
+		store.write(List.of(new ProductRow("Bread", "1", 3.0, 10)));
+
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, java.util.Arrays.copyOf(bytes, bytes.length - 6));
+		assertTrue(store.read().isEmpty());
+
+		Files.write(path, new byte[] { 1, 2, 3 });
+		assertTrue(store.read().isEmpty());
+	}
+}
@@ -0,0 +1,162 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.InventoryChange;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryAuditLogTest {
+
+	private static final long T0 = 1_717_394_400_000L;
+
+	@TempDir
+	Path tempDir;
+
+	private static InventoryChange sale(long millis, String product, int stockBefore, int quantity) {
+		return new InventoryChange(InventoryChange.Kind.SALE, millis, product, null, "ali",
+				stockBefore, stockBefore - quantity, 5.25, 5.25);
+	}
+
+	@Test
+	void historyComesBackAcrossSegmentsAndRestarts() throws Exception {
+		InventoryAuditLog log = new InventoryAuditLog(tempDir.toString(), 8, 10);
+		List<InventoryChange> milk = new ArrayList<>();
+		milk.add(new InventoryChange(InventoryChange.Kind.CREATE, T0, "Milk", null, "admin", null, 100, null, 5.25));
+		log.append(milk.get(0));
+		for (int i = 1; i <= 30; i++) {
+			InventoryChange change = sale(T0 + i, "Milk", 101 - i, 1);
+			milk.add(change);
+			log.append(change);
+			log.append(sale(T0 + i, "Bread", 200 - i, 1)); // never read, interleaved with the milk
+		}
+		InventoryChange branchStock = new InventoryChange(InventoryChange.Kind.BRANCH_STOCK, T0 + 40, "Milk", "north",
+				"admin", null, 12, 5.25, 5.25);
+		milk.add(branchStock);
+		log.append(branchStock);
+
+		assertEquals(milk, log.history("Milk", Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals(milk.subList(5, 11), log.history("Milk", T0 + 5, T0 + 10));
+		assertEquals(List.of(), log.history("Eggs", Long.MIN_VALUE, Long.MAX_VALUE));
+		// 62 records, ten to a segment: six full segments with their index, one open
+		for (int segment = 1; segment <= 6; segment++) {
+			assertTrue(Files.exists(tempDir.resolve(String.format("audit-%06d.index", segment))));
+		}
+		assertFalse(Files.exists(tempDir.resolve("audit-000007.index")));
+		log.close();
+
+		// An index lost in a crash is rebuilt, and the open segment is appended to
+		Files.delete(tempDir.resolve("audit-000003.index"));
+		InventoryAuditLog restarted = new InventoryAuditLog(tempDir.toString(), 8, 10);
+		InventoryChange delete = new InventoryChange(InventoryChange.Kind.DELETE, T0 + 50, "Milk", null, "admin",
+				70, null, 5.25, null);
+		milk.add(delete);
+		restarted.append(delete);
+		assertEquals(milk, restarted.history("Milk", Long.MIN_VALUE, Long.MAX_VALUE));
+		assertTrue(Files.exists(tempDir.resolve("audit-000003.index")));
+		assertEquals(30, restarted.history("Bread", Long.MIN_VALUE, Long.MAX_VALUE).size());
+		restarted.close();
+	}
+
+	@Test
+	void recordCutShortByACrashIsDropped() throws Exception {
+		InventoryAuditLog log = new InventoryAuditLog(tempDir.toString(), 8, 100);
+		log.append(sale(T0, "Milk", 10, 1));
+		log.append(sale(T0 + 1, "Milk", 9, 1));
+		log.close();
+		Path segment = tempDir.resolve("audit-000001.log");
+		Files.write(segment, new byte[] { 0, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		InventoryAuditLog restarted = new InventoryAuditLog(tempDir.toString(), 8, 100);
+		restarted.append(sale(T0 + 2, "Milk", 8, 1));
+		assertEquals(List.of(sale(T0, "Milk", 10, 1), sale(T0 + 1, "Milk", 9, 1), sale(T0 + 2, "Milk", 8, 1)),
+				restarted.history("Milk", Long.MIN_VALUE, Long.MAX_VALUE));
+		assertEquals(InventoryAuditLog.HEADER_SIZE + 3 * InventoryAuditLog.RECORD_SIZE, Files.size(segment));
+		restarted.close();
+	}
+
+	@Test
+	void changesFromConcurrentLanesAreAllKept() throws Exception {
+		int products = 500;
+		int lanes = 4;
+		int changesPerLane = 5_000;
+		InventoryAuditLog log = new InventoryAuditLog(tempDir.toString(), 1 << 10, 1 << 12);
+		appendFromLanes(log, products, lanes, changesPerLane);
+		log.flush();
+
+		long total = (long) lanes * changesPerLane;
+		List<InventoryChange> history = log.history("Product 123", Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(total, log.appendedCount());
+		assertEquals(total / products, history.size());
+		assertTrue(history.stream().allMatch(change -> change.productName().equals("Product 123")));
+		log.close();
+	}
+
+	@Test
+	@Tag("benchmark")
+	void lanesAppendWithoutWaitingAndOneProductIsFoundQuickly() throws Exception {
+		int products = 50_000;
+		int lanes = 4;
+		int changesPerLane = 250_000;
+		InventoryAuditLog log = new InventoryAuditLog(tempDir.toString(), 1 << 16, 1 << 17);
+		long appendNanos = appendFromLanes(log, products, lanes, changesPerLane);
+		long flushStart = System.nanoTime();
+		log.flush();
+		double flushMillis = (System.nanoTime() - flushStart) / 1e6;
+
+		long queryStart = System.nanoTime();
+		List<InventoryChange> history = log.history("Product 12345", Long.MIN_VALUE, Long.MAX_VALUE);
+		double queryMillis = (System.nanoTime() - queryStart) / 1e6;
+
+		long total = (long) lanes * changesPerLane;
+		System.out.printf("Inventory audit: %d changes from %d lanes in %.0f ms, %.0f ms left to flush, "
+				+ "%d changes of one product found in %.1f ms (%d bytes on disk per change)%n",
+				total, lanes, appendNanos / 1e6, flushMillis, history.size(), queryMillis, InventoryAuditLog.RECORD_SIZE);
+		assertEquals(total / products, history.size());
+		assertTrue(queryMillis < 1_000, "one product's history should not need a scan of the log");
+		log.close();
+	}
+
+	/**
+	 * Lanes append sales of every product in turn, all starting at once
+	 * @return Nanoseconds until the last lane finished appending
+	 */
+	private static long appendFromLanes(InventoryAuditLog log, int products, int lanes, int changesPerLane)
+			throws InterruptedException {
+		String[] names = new String[products];
+		for (int i = 0; i < products; i++) {
+			names[i] = "Product " + i;
+		}
+
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[lanes];
+		for (int lane = 0; lane < lanes; lane++) {
+			int laneNumber = lane;
+			threads[lane] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < changesPerLane; i++) {
+					log.append(sale(T0 + i, names[(i * lanes + laneNumber) % products], 1_000, 1));
+				}
+			});
+			threads[lane].start();
+		}
+		long appendStart = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return System.nanoTime() - appendStart;
+	}
+}
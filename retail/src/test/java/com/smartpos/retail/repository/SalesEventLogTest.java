@@ -0,0 +1,191 @@
+package com.smartpos.retail.repository;
+
+import com.smartpos.retail.model.SaleRecord;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesEventLogTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static long at(LocalDate date, int hour) {
+		return date.atTime(hour, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	private static SaleRecord sale(long millis, String lane, SaleRecord.Line... lines) {
+		double total = 0;
+		for (SaleRecord.Line line : lines) {
+			total += line.total();
+		}
+		return new SaleRecord("t-" + millis + lane, millis, lane, "ali", total, 0, 0, total, List.of(lines));
+	}
+
+	/**
+	 * Lines, units and cents of every line in a range
+	 */
+	private static long[] totals(SalesEventLog log, LocalDate from, LocalDate to) {
+		return log.aggregate(from, to, () -> new long[3], (tally, millis, product, quantity, cents) -> {
+			tally[0]++;
+			tally[1] += quantity;
+			tally[2] += cents;
+		}, (a, b) -> new long[] { a[0] + b[0], a[1] + b[1], a[2] + b[2] });
+	}
+
+	@Test
+	void linesArePartitionedByDayAndLane() {
+		LocalDate monday = LocalDate.of(2024, 3, 4);
+		LocalDate tuesday = monday.plusDays(1);
+		SalesEventLog log = new SalesEventLog(tempDir.toString());
+		log.append(sale(at(monday, 9), "lane-1", new SaleRecord.Line("Milk", 2, 5.0, 10.0),
+				new SaleRecord.Line("Bread", 1, 2.5, 2.5)));
+		log.append(sale(at(monday, 10), "lane 2", new SaleRecord.Line("Milk", 1, 5.0, 5.0)));
+		log.append(sale(at(tuesday, 9), "lane-1", new SaleRecord.Line("Milk", -1, 5.0, -5.0)));
+		log.flush();
+
+		assertTrue(Files.exists(tempDir.resolve("2024-03-04").resolve("lane-1.events")));
+		assertTrue(Files.exists(tempDir.resolve("2024-03-04").resolve("lane_2.events")));
+		assertTrue(Files.exists(tempDir.resolve("2024-03-05").resolve("lane-1.events")));
+		assertArrayEquals(new long[] { 4, 3, 1250 }, totals(log, null, null));
+		assertArrayEquals(new long[] { 3, 4, 1750 }, totals(log, monday, monday));
+		assertArrayEquals(new long[] { 1, -1, -500 }, totals(log, tuesday, null));
+		assertArrayEquals(new long[] { 0, 0, 0 }, totals(log, tuesday.plusDays(1), null));
+		log.close();
+
+		// Product codes carry over a restart
+		SalesEventLog restarted = new SalesEventLog(tempDir.toString());
+		restarted.append(sale(at(tuesday, 11), "lane-1", new SaleRecord.Line("Eggs", 12, 1.0, 12.0),
+				new SaleRecord.Line("Bread", 1, 2.5, 2.5)));
+		restarted.flush();
+		assertEquals(3, restarted.productCount());
+		assertEquals("Eggs", restarted.productName(2));
+		assertArrayEquals(new long[] { 3, 12, 950 }, totals(restarted, tuesday, tuesday));
+		restarted.close();
+	}
+
+	@Test
+	void recordCutShortByACrashIsDropped() throws Exception {
+		LocalDate day = LocalDate.of(2024, 3, 4);
+		SalesEventLog log = new SalesEventLog(tempDir.toString());
+		log.append(sale(at(day, 9), "lane-1", new SaleRecord.Line("Milk", 2, 5.0, 10.0)));
+		log.close();
+		Path lane = tempDir.resolve("2024-03-04").resolve("lane-1.events");
+		Files.write(lane, new byte[] { 0, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		SalesEventLog restarted = new SalesEventLog(tempDir.toString());
+		assertArrayEquals(new long[] { 1, 2, 1000 }, totals(restarted, null, null));
+		restarted.append(sale(at(day, 10), "lane-1", new SaleRecord.Line("Milk", 1, 5.0, 5.0)));
+		restarted.flush();
+		assertArrayEquals(new long[] { 2, 3, 1500 }, totals(restarted, null, null));
+		assertEquals(SalesEventLog.HEADER_SIZE + 2 * SalesEventLog.RECORD_SIZE, Files.size(lane));
+		restarted.close();
+	}
+
+	@Test
+	void parallelAggregationCountsEveryLineOnce() {
+		SalesEventLog log = new SalesEventLog(tempDir.toString());
+		long expectedUnits = appendSales(log, 30, 4, 10, 5);
+		long[][] byProduct = aggregateByProduct(log);
+		log.close();
+
+		assertEquals(expectedUnits, sum(byProduct[0]));
+		assertEquals(expectedUnits * 100, sum(byProduct[1]));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void aYearOfSalesAggregatesInSeconds() {
+		int days = 365;
+		int lanes = 8;
+		int salesPerLaneDay = 120;
+		int linesPerSale = 25;
+		SalesEventLog log = new SalesEventLog(tempDir.toString());
+		long expectedUnits = appendSales(log, days, lanes, salesPerLaneDay, linesPerSale);
+		long lines = (long) days * lanes * salesPerLaneDay * linesPerSale;
+		aggregateByProduct(log); // warm up
+
+		long start = System.nanoTime();
+		long[][] byProduct = aggregateByProduct(log);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		log.close();
+
+		double linesPerSecond = lines / seconds;
+		System.out.printf("Sales event log: %d lines in %.0f ms on %d cores, %.1fM lines/s, 50M lines in %.1f s%n",
+				lines, seconds * 1_000, Runtime.getRuntime().availableProcessors(), linesPerSecond / 1e6,
+				50_000_000 / linesPerSecond);
+		assertEquals(expectedUnits, sum(byProduct[0]));
+		assertEquals(expectedUnits * 100, sum(byProduct[1]));
+		assertTrue(50_000_000 / linesPerSecond < 10, "a year of sales should aggregate in seconds");
+	}
+
+	/**
+	 * Log sales of 1 to 3 units at 1.00 each, cycling through 5,000 products
+	 * @return Units sold in total
+	 */
+	private static long appendSales(SalesEventLog log, int days, int lanes, int salesPerLaneDay, int linesPerSale) {
+		String[] products = new String[5_000];
+		for (int i = 0; i < products.length; i++) {
+			products[i] = "Product " + i;
+		}
+		LocalDate firstDay = LocalDate.of(2024, 1, 1);
+		long units = 0;
+		int next = 0;
+		for (int day = 0; day < days; day++) {
+			for (int lane = 0; lane < lanes; lane++) {
+				for (int sale = 0; sale < salesPerLaneDay; sale++) {
+					List<SaleRecord.Line> lines = new ArrayList<>(linesPerSale);
+					for (int line = 0; line < linesPerSale; line++) {
+						int quantity = 1 + next % 3;
+						lines.add(new SaleRecord.Line(products[next++ % products.length], quantity, 1.0, quantity));
+						units += quantity;
+					}
+					log.append(sale(at(firstDay.plusDays(day), 8) + sale * 1_000L, "lane-" + lane,
+							lines.toArray(new SaleRecord.Line[0])));
+				}
+			}
+		}
+		log.flush();
+		return units;
+	}
+
+	/**
+	 * Units and cents per product over the whole log
+	 */
+	private static long[][] aggregateByProduct(SalesEventLog log) {
+		int productCount = log.productCount();
+		Supplier<long[][]> tally = () -> new long[2][productCount];
+		SalesEventLog.LineVisitor<long[][]> addLine = (sums, millis, product, quantity, cents) -> {
+			sums[0][product] += quantity;
+			sums[1][product] += cents;
+		};
+		BinaryOperator<long[][]> merge = (a, b) -> {
+			for (int i = 0; i < productCount; i++) {
+				a[0][i] += b[0][i];
+				a[1][i] += b[1][i];
+			}
+			return a;
+		};
+		return log.aggregate(null, null, tally, addLine, merge);
+	}
+
+	private static long sum(long[] values) {
+		long sum = 0;
+		for (long value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+}
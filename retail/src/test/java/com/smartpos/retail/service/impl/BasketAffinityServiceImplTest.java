@@ -0,0 +1,153 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.service.BasketAffinityService.Affinity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BasketAffinityServiceImplTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	@TempDir
+	Path tempDir;
+
+	private SalesJournal journal;
+
+	@BeforeEach
+	void setUp() {
+		journal = new SalesJournal(tempDir.toString());
+	}
+
+	@AfterEach
+	void tearDown() {
+		journal.close();
+	}
+
+	private static SaleRecord basket(long millis, String... products) {
+		List<SaleRecord.Line> lines = new ArrayList<>();
+		for (String product : products) {
+			lines.add(new SaleRecord.Line(product, 1, 1.0, 1.0));
+		}
+		return new SaleRecord(UUID.randomUUID().toString(), millis, "lane-1", "ali",
+				products.length, 0, 0, products.length, lines);
+	}
+
+	private static List<String> names(List<Affinity> affinities) {
+		return affinities.stream().map(Affinity::productName).toList();
+	}
+
+	@Test
+	void partnersRankByRecentBaskets() {
+		BasketAffinityServiceImpl affinity = new BasketAffinityServiceImpl(journal, 10, 30, 50);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 4; i++) {
+			affinity.add(basket(now - 60 * DAY, "Milk", "Jam")); // two half-lives ago, worth a quarter each
+		}
+		for (int i = 0; i < 3; i++) {
+			affinity.add(basket(now, "Milk", "Bread", "Milk"));
+		}
+		affinity.add(basket(now, "Milk", "Eggs"));
+		affinity.add(basket(now, "Eggs", "Milk"));
+		affinity.add(new SaleRecord("refund", now, "lane-1", "ali", -2, 0, 0, -2,
+				List.of(new SaleRecord.Line("Milk", -1, 1, -1), new SaleRecord.Line("Bread", -1, 1, -1)),
+				SaleRecord.Kind.REFUND, "sale"));
+
+		List<Affinity> withMilk = affinity.getBoughtWith("Milk", 0);
+		assertEquals(List.of("Bread", "Eggs", "Jam"), names(withMilk));
+		assertEquals(3.0, withMilk.get(0).score(), 0.01);
+		assertEquals(1.0, withMilk.get(2).score(), 0.01);
+		assertEquals(List.of("Milk"), names(affinity.getBoughtWith("Eggs", 5)));
+		assertEquals(List.of("Bread"), names(affinity.getBoughtWith("Milk", 1)));
+		assertTrue(affinity.getBoughtWith("Tea", 5).isEmpty());
+	}
+
+	@Test
+	void boundedTablesKeepStrongPartnersAndRecomputeIsExact() {
+		long now = System.currentTimeMillis();
+		// Milk's real partners, bought with it 40, 30, 20 and 10 times, among 40 one-off pairings
+		String[] partners = { "Bread", "Eggs", "Butter", "Jam" };
+		for (int round = 0; round < 40; round++) {
+			for (int p = 0; p < partners.length; p++) {
+				if (round < 40 - 10 * p) {
+					journal.append(basket(now - round * 1_000L, "Milk", partners[p]));
+				}
+			}
+			for (int noise = 0; noise < 1; noise++) {
+				journal.append(basket(now - round * 1_000L, "Milk", "Item " + round + "-" + noise));
+			}
+		}
+		BasketAffinityServiceImpl affinity = new BasketAffinityServiceImpl(journal, 4, 30, 50);
+		affinity.start();
+		journal.flush();
+
+		// Eight slots keep every partner bought with Milk more than 140 / 8 times
+		assertEquals(List.of("Bread", "Eggs", "Butter"), names(affinity.getBoughtWith("Milk", 3)));
+
+		assertEquals(140, affinity.recompute());
+		List<Affinity> exact = affinity.getBoughtWith("Milk", 4);
+		assertEquals(List.of("Bread", "Eggs", "Butter", "Jam"), names(exact));
+		assertEquals(40, exact.get(0).score(), 0.01);
+		assertEquals(10, exact.get(3).score(), 0.01);
+
+		// Sales after a recompute keep adding to the exact counts
+		affinity.add(basket(System.currentTimeMillis(), "Milk", "Jam"));
+		assertEquals(11, affinity.getBoughtWith("Milk", 4).get(3).score(), 0.01);
+	}
+
+	@Test
+	@Tag("benchmark")
+	void boughtWithAnswersInMicroseconds() {
+		int products = 5_000;
+		int baskets = 200_000;
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < baskets; i++) {
+			String[] items = new String[2 + random.nextInt(10)];
+			for (int j = 0; j < items.length; j++) {
+				// Skewed like real demand: a few products are in most baskets
+				items[j] = "Product " + (int) (products * Math.pow(random.nextDouble(), 3));
+			}
+			journal.append(basket(now - (baskets - i) * 10_000L, items));
+		}
+		BasketAffinityServiceImpl affinity = new BasketAffinityServiceImpl(journal, 10, 30, 50);
+		long start = System.nanoTime();
+		affinity.start();
+		journal.flush();
+		double learnMillis = (System.nanoTime() - start) / 1e6;
+
+		int pairedBaskets = baskets - 91; // baskets that drew the same product for every item
+		int queries = 200_000;
+		int found = 0;
+		for (int i = 0; i < queries; i++) {
+			found += affinity.getBoughtWith("Product " + random.nextInt(products), 10).size(); // warm up
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < queries; i++) {
+			found += affinity.getBoughtWith("Product " + random.nextInt(products), 10).size();
+		}
+		double queryMicros = (System.nanoTime() - start) / 1_000.0 / queries;
+
+		start = System.nanoTime();
+		assertEquals(pairedBaskets, affinity.recompute());
+		double recomputeMillis = (System.nanoTime() - start) / 1e6;
+
+		System.out.printf("Basket affinity over %d baskets: %.2f us/query, learnt in %.0f ms, exact recompute %.0f ms%n",
+				baskets, queryMicros, learnMillis, recomputeMillis);
+		assertTrue(found > 0);
+		assertEquals(10, affinity.getBoughtWith("Product 0", 10).size());
+		assertTrue(queryMicros < 50, "bought-with should answer in microseconds");
+	}
+}
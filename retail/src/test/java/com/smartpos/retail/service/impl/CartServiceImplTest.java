@@ -0,0 +1,157 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.repository.CartSessionStore;
+import com.smartpos.retail.service.PromotionService;
+import com.smartpos.retail.service.TaxService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CartServiceImplTest {
+
+	@TempDir
+	Path tempDir;
+
+	private CartSessionStore store;
+	private final PromotionService promotionService = mock(PromotionService.class);
+	private final TaxService taxService = mock(TaxService.class);
+	private final StockReservationServiceImpl reservations = new StockReservationServiceImpl(60_000);
+	private CartServiceImpl cartService;
+
+	private final ProductRow milk = new ProductRow("Milk", "111", 6.0, 10);
+	private final ProductRow bread = new ProductRow("Bread", "222", 3.0, 10);
+
+	@BeforeEach
+	void setUp() {
+		store = new CartSessionStore(tempDir.toString());
+		cartService = new CartServiceImpl(store, promotionService, taxService, reservations);
+	}
+
+	@AfterEach
+	void tearDown() {
+		store.flush();
+		store.close();
+	}
+
+	@Test
+	void cartsSurviveRestart() {
+		CartSession cart = cartService.getOrOpenCart("lane-1");
+		cartService.addToCart(cart.getId(), milk, 2);
+		cartService.addToCart(cart.getId(), bread, 1);
+		cartService.addToCart(cart.getId(), milk, 1);
+		store.close();
+		store = new CartSessionStore(tempDir.toString());
+		CartServiceImpl restarted = new CartServiceImpl(store, promotionService, taxService, reservations);
+		CartSession restored = restarted.getOrOpenCart("lane-1");
+
+		assertEquals(cart.getId(), restored.getId());
+		assertEquals(2, restored.getLines().size());
+		assertEquals(3, restored.getLines().get(0).quantity());
+		assertEquals(21.0, restored.getSubtotal());
+	}
+
+	@Test
+	void parkServeAnotherCustomerAndResume() {
+		CartSession first = cartService.getOrOpenCart("lane-1");
+		cartService.addToCart(first.getId(), milk, 1);
+		cartService.parkCart(first.getId());
+
+		CartSession second = cartService.getOrOpenCart("lane-1");
+		assertNotEquals(first.getId(), second.getId());
+		cartService.addToCart(second.getId(), bread, 2);
+
+		CartSession resumed = cartService.resumeCart(first.getId(), "lane-1");
+		assertSame(first, resumed);
+		assertEquals(CartSession.Status.ACTIVE, resumed.getStatus());
+		assertSame(first, cartService.getOrOpenCart("lane-1"));
+		assertEquals(1, cartService.getParkedCarts().size(), "the second customer's cart is parked in turn");
+		assertEquals(second.getId(), cartService.getParkedCarts().get(0).getId());
+	}
+
+	@Test
+	void onlyParkedCartsCanBeResumed() {
+		CartSession active = cartService.getOrOpenCart("lane-1");
+		cartService.addToCart(active.getId(), bread, 1);
+		assertThrows(IllegalStateException.class, () -> cartService.resumeCart(active.getId(), "lane-2"));
+		assertSame(active, cartService.getOrOpenCart("lane-1"), "lane 1 keeps its cart");
+
+		cartService.parkCart(active.getId());
+		cartService.resumeCart(active.getId(), "lane-2");
+		assertThrows(IllegalStateException.class, () -> cartService.resumeCart(active.getId(), "lane-3"),
+				"a cart resumed on one lane cannot be taken by another");
+		assertNotSame(active, cartService.getOrOpenCart("lane-1"));
+		assertSame(active, cartService.getOrOpenCart("lane-2"));
+
+		cartService.closeCart(active.getId());
+		assertThrows(IllegalArgumentException.class, () -> cartService.resumeCart(active.getId(), "lane-2"));
+	}
+
+	@Test
+	void closedCartsAreRemovedFromStore() {
+		CartSession cart = cartService.getOrOpenCart("lane-1");
+		cartService.addToCart(cart.getId(), milk, 1);
+		cartService.closeCart(cart.getId());
+		store.close();
+		store = new CartSessionStore(tempDir.toString());
+		CartServiceImpl restarted = new CartServiceImpl(store, promotionService, taxService, reservations);
+		assertNull(restarted.getCart(cart.getId()));
+	}
+
+	@Test
+	void rejectsQuantityAboveStock() {
+		CartSession cart = cartService.getOrOpenCart("lane-1");
+		cartService.addToCart(cart.getId(), milk, 10);
+		assertThrows(IllegalArgumentException.class, () -> cartService.addToCart(cart.getId(), milk, 1));
+		assertEquals(10, cart.getItemCount());
+	}
+
+	@Test
+	void twoLanesCannotBothCartTheLastUnits() {
+		CartSession first = cartService.getOrOpenCart("lane-1");
+		CartSession second = cartService.getOrOpenCart("lane-2");
+		cartService.addToCart(first.getId(), milk, 8);
+
+		IllegalArgumentException refused = assertThrows(IllegalArgumentException.class,
+				() -> cartService.addToCart(second.getId(), milk, 3));
+		assertEquals("Insufficient stock. Available: 2, Requested: 3", refused.getMessage());
+		cartService.addToCart(second.getId(), milk, 2);
+
+		cartService.removeFromCart(first.getId(), "Milk");
+		cartService.addToCart(second.getId(), milk, 5);
+		assertEquals(7, reservations.getReserved("Milk"));
+
+		cartService.clearCart(second.getId());
+		cartService.addToCart(first.getId(), bread, 4);
+		cartService.closeCart(first.getId());
+		assertEquals(0, reservations.getReserved("Milk"));
+		assertEquals(0, reservations.getReserved("Bread"));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void cartOperationsStaySubMillisecond() {
+		CartSession cart = cartService.getOrOpenCart("lane-1");
+		ProductRow bags = new ProductRow("Bags", "333", 0.5, Integer.MAX_VALUE);
+		for (int i = 0; i < 20_000; i++) {
+			cartService.addToCart(cart.getId(), bags, 1); // warm up
+		}
+
+		int rounds = 10_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			cartService.addToCart(cart.getId(), bags, 1);
+		}
+		double micros = (System.nanoTime() - start) / 1_000.0 / rounds;
+		System.out.printf("addToCart with store write: %.1f us/op%n", micros);
+		assertTrue(micros < 1_000, "cart operations should not wait on disk");
+	}
+}
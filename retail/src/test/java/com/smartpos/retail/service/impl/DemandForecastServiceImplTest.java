@@ -0,0 +1,148 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.repository.SalesEventLog;
+import com.smartpos.retail.service.StockMonitorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class DemandForecastServiceImplTest {
+
+	private static final LocalDate AS_OF = LocalDate.of(2024, 6, 3);
+
+	@TempDir
+	Path tempDir;
+
+	private SalesEventLog eventLog;
+	private StockMonitorService stockMonitor;
+
+	@BeforeEach
+	void setUp() {
+		eventLog = new SalesEventLog(tempDir.resolve("events").toString());
+		stockMonitor = mock(StockMonitorService.class);
+	}
+
+	@AfterEach
+	void tearDown() {
+		eventLog.close();
+	}
+
+	private DemandForecastServiceImpl forecaster(int chunkSize) {
+		return new DemandForecastServiceImpl(eventLog, stockMonitor, tempDir.resolve("forecast").toString(),
+				56, 0.3, 0.05, 0.2, chunkSize);
+	}
+
+	private void sell(LocalDate day, String product, int quantity) {
+		long millis = day.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		eventLog.append(new SaleRecord("t-" + millis + product, millis, "lane-1", "ali", quantity, 0, 0, quantity,
+				List.of(new SaleRecord.Line(product, quantity, 1.0, quantity))));
+	}
+
+	@Test
+	void holtWintersFollowsTrendAndWeekdays() {
+		int[] history = new int[56];
+		double nextWeek = 0;
+		for (int day = 0; day < history.length + 7; day++) {
+			double units = 20 + 0.5 * day + (day % 7 >= 5 ? 25 : 0); // busy weekends, growing demand
+			if (day < history.length) {
+				history[day] = (int) Math.round(units);
+			} else {
+				nextWeek += units;
+			}
+		}
+		double forecast = DemandForecastServiceImpl.forecastWeek(history, 0.3, 0.05, 0.2);
+		assertEquals(nextWeek, forecast, nextWeek * 0.05);
+
+		// A product on the shelf for ten days gets the average of those days
+		int[] newProduct = new int[56];
+		for (int day = 46; day < 56; day++) {
+			newProduct[day] = day % 2 == 0 ? 2 : 4;
+		}
+		assertEquals(21, DemandForecastServiceImpl.forecastWeek(newProduct, 0.3, 0.05, 0.2), 1e-9);
+		assertEquals(0, DemandForecastServiceImpl.forecastWeek(new int[56], 0.3, 0.05, 0.2));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void runCutShortResumesFromSavedChunks() {
+		sell(AS_OF.minusDays(100), "Tea", 5); // outside the history window
+		for (int day = 1; day <= 56; day++) {
+			sell(AS_OF.minusDays(day), "Milk", 4);
+		}
+		for (int day = 1; day <= 7; day++) {
+			sell(AS_OF.minusDays(day), "Eggs", 2);
+		}
+		eventLog.flush();
+
+		// One product per chunk, stopped after the first
+		assertEquals(1, forecaster(1).run(AS_OF, 1));
+		verify(stockMonitor, never()).applyForecasts(anyMap());
+
+		DemandForecastServiceImpl restarted = forecaster(1);
+		assertEquals(2, restarted.run(AS_OF, Integer.MAX_VALUE));
+		ArgumentCaptor<Map<String, Double>> daily = ArgumentCaptor.forClass(Map.class);
+		verify(stockMonitor).applyForecasts(daily.capture());
+		assertEquals(Map.of("Milk", 4.0, "Eggs", 2.0), daily.getValue());
+		assertEquals(28, restarted.getWeeklyDemand("Milk"), 1e-6);
+		assertNull(restarted.getWeeklyDemand("Tea"));
+		assertFalse(Files.exists(tempDir.resolve("forecast").resolve("run-" + AS_OF)));
+
+		// The finished forecast is put back after the next restart
+		DemandForecastServiceImpl reloaded = forecaster(1);
+		reloaded.loadLatest();
+		assertEquals(AS_OF, reloaded.getForecastDate());
+		assertEquals(14, reloaded.getWeeklyDemand("Eggs"), 1e-6);
+	}
+
+	@Test
+	@Tag("benchmark")
+	void hundredsOfThousandsOfProductsForecastInSeconds() throws Exception {
+		int products = 300_000;
+		DemandForecastServiceImpl forecaster = forecaster(8192);
+		// Product codes come from the event log's dictionary
+		List<SaleRecord.Line> catalog = new ArrayList<>(products);
+		for (int i = 0; i < products; i++) {
+			catalog.add(new SaleRecord.Line("Product " + i, 1, 1.0, 1.0));
+		}
+		long later = AS_OF.plusDays(1).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		eventLog.append(new SaleRecord("catalog", later, "lane-1", "ali", products, 0, 0, products, catalog));
+		eventLog.flush();
+
+		Random random = new Random(42);
+		for (int day = 1; day <= 56; day++) {
+			int[] units = new int[products];
+			for (int i = 0; i < products; i++) {
+				// Most products sell a few units a day, a few sell hundreds
+				units[i] = (int) (random.nextDouble() * 3_000 / (1 + i % 1_000));
+			}
+			forecaster.writeRollup(AS_OF.minusDays(day), units);
+		}
+
+		long start = System.nanoTime();
+		int chunks = forecaster.run(AS_OF, Integer.MAX_VALUE);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("Demand forecast: %d products over 56 days in %.0f ms on %d cores%n",
+				products, seconds * 1_000, Runtime.getRuntime().availableProcessors());
+		assertEquals((products + 8191) / 8192, chunks);
+		assertTrue(forecaster.getWeeklyDemand("Product 0") > 7_000);
+		assertTrue(seconds < 30, "the nightly forecast should finish in seconds");
+	}
+}
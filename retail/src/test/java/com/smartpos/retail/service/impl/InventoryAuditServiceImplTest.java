@@ -0,0 +1,103 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.InventoryChange;
+import com.smartpos.retail.model.InventoryChange.Kind;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.User;
+import com.smartpos.retail.repository.BranchOverlayStore;
+import com.smartpos.retail.repository.CatalogSnapshotStore;
+import com.smartpos.retail.repository.InventoryAuditLog;
+import com.smartpos.retail.repository.ProductRepository;
+import com.smartpos.retail.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class InventoryAuditServiceImplTest {
+
+	private static final long T0 = 1_717_394_400_000L;
+
+	@TempDir
+	Path tempDir;
+
+	private InventoryAuditLog auditLog;
+	private InventoryAuditServiceImpl audit;
+
+	@BeforeEach
+	void setUp() {
+		auditLog = new InventoryAuditLog(tempDir.resolve("audit").toString(), 64, 1024);
+		audit = new InventoryAuditServiceImpl(auditLog);
+	}
+
+	@AfterEach
+	void tearDown() {
+		auditLog.close();
+	}
+
+	@Test
+	void everyCatalogAndStockChangeIsTracedToWhoMadeIt() {
+		ProductRepository repository = mock(ProductRepository.class);
+		when(repository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+		UserService userService = mock(UserService.class);
+		when(userService.getCurrentUser()).thenReturn(new User("admin", "secret", User.UserRole.ADMIN, "Store Manager"));
+		ProductServiceImpl products = new ProductServiceImpl(repository,
+				new CatalogSnapshotStore(tempDir.resolve("catalog.snapshot").toString()),
+				new BranchOverlayStore(tempDir.resolve("branches").toString()), auditLog, userService, 512);
+
+		products.createProduct(new ProductRow("Milk", "999", 5.0, 40));
+		products.reduceStock("Milk", 3, "ali");
+		products.restoreStock(Map.of("Milk", 1), "ali");
+		products.updateProduct("Milk", new ProductRow("Milk", "999", 5.5, 30), 38);
+		products.setBranchStock("north", "Milk", 10);
+		products.reduceStock("north", "Milk", 2);
+		products.deleteProduct("Milk");
+
+		List<InventoryChange> history = audit.getHistory("Milk", Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(List.of(Kind.CREATE, Kind.SALE, Kind.RESTOCK, Kind.UPDATE, Kind.BRANCH_STOCK, Kind.SALE, Kind.DELETE),
+				history.stream().map(InventoryChange::kind).toList());
+		assertEquals(List.of("admin", "ali", "ali", "admin", "admin", "admin", "admin"),
+				history.stream().map(InventoryChange::actor).toList());
+		assertEquals(Arrays.asList(null, 40, 37, 38, null, 10, 30),
+				history.stream().map(InventoryChange::stockBefore).toList());
+		assertEquals(Arrays.asList(40, 37, 38, 30, 10, 8, null),
+				history.stream().map(InventoryChange::stockAfter).toList());
+		assertEquals(5.0, history.get(3).priceBefore());
+		assertEquals(5.5, history.get(3).priceAfter());
+		assertEquals("north", history.get(5).branchId());
+		assertEquals("", history.get(6).branchId());
+	}
+
+	@Test
+	void stockAtAnyTimeIsRebuiltFromTheChanges() {
+		auditLog.append(change(Kind.CREATE, T0, "", null, 50));
+		auditLog.append(change(Kind.SALE, T0 + 10, "", 50, 45));
+		auditLog.append(change(Kind.BRANCH_STOCK, T0 + 20, "north", null, 12));
+		auditLog.append(change(Kind.SALE, T0 + 30, "north", 12, 11));
+		auditLog.append(change(Kind.UPDATE, T0 + 40, "", 45, 60));
+		auditLog.append(change(Kind.BRANCH_STOCK, T0 + 50, "north", 11, null));
+
+		assertNull(audit.getStockAt("Milk", null, T0 - 1));
+		assertEquals(50, audit.getStockAt("Milk", null, T0 + 5));
+		assertEquals(60, audit.getStockAt("Milk", null, T0 + 45));
+		// A branch without stock of its own reads the catalog's
+		assertEquals(45, audit.getStockAt("Milk", "north", T0 + 15));
+		assertEquals(11, audit.getStockAt("Milk", "north", T0 + 35));
+		assertEquals(60, audit.getStockAt("Milk", "north", T0 + 55));
+		assertEquals(45, audit.getStockAt("Milk", "south", T0 + 35));
+		assertNull(audit.getStockAt("Bread", null, T0 + 35));
+	}
+
+	private static InventoryChange change(Kind kind, long millis, String branchId, Integer before, Integer after) {
+		return new InventoryChange(kind, millis, "Milk", branchId, "admin", before, after, 5.0, 5.0);
+	}
+}
@@ -0,0 +1,164 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.PriceVersion;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.repository.PriceVersionStore;
+import com.smartpos.retail.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PriceScheduleServiceImplTest {
+
+	private static final long NOW = 1_717_394_400_000L; // Monday 2024-06-03 06:00 UTC
+	private static final long HOUR = 3_600_000L;
+
+	@TempDir
+	Path tempDir;
+
+	private ProductService productService;
+	private PriceVersionStore store;
+
+	@BeforeEach
+	void setUp() {
+		productService = mock(ProductService.class);
+		when(productService.getProductByName(anyString()))
+				.thenAnswer(invocation -> new ProductRow(invocation.getArgument(0), "111", 6.0, 10));
+		when(productService.applyPrices(anyMap(), anyString())).thenAnswer(invocation -> ((Map<?, ?>) invocation.getArgument(0)).size());
+		store = new PriceVersionStore(tempDir.resolve("prices.versions").toString());
+	}
+
+	@AfterEach
+	void tearDown() {
+		store.close();
+	}
+
+	@Test
+	void pricesTakeEffectWhenTheirTimeComes() {
+		PriceScheduleServiceImpl scheduler = new PriceScheduleServiceImpl(productService, store);
+		scheduler.schedule("Milk", 5.0, NOW + HOUR, NOW);
+		scheduler.schedule("Milk", 4.5, NOW + 2 * HOUR, NOW);
+		scheduler.schedule("Eggs", 9.0, NOW + HOUR, NOW);
+
+		assertEquals(0, scheduler.activateDue(NOW + HOUR - 1));
+		verify(productService, never()).applyPrices(anyMap(), anyString());
+		assertEquals(3, scheduler.getPending().size());
+
+		// Both products change in the same batch
+		assertEquals(2, scheduler.activateDue(NOW + HOUR));
+		verify(productService).applyPrices(Map.of("Milk", 5.0, "Eggs", 9.0), "price-schedule");
+		assertEquals(List.of(new PriceVersion("Milk", NOW + 2 * HOUR, 4.5)), scheduler.getPending());
+
+		// Nothing more is due until the next version
+		assertEquals(0, scheduler.activateDue(NOW + HOUR + 1));
+		assertEquals(1, scheduler.activateDue(NOW + 3 * HOUR));
+		verify(productService).applyPrices(Map.of("Milk", 4.5), "price-schedule");
+		assertTrue(scheduler.getPending().isEmpty());
+
+		assertEquals(6.0, scheduler.getPriceAt("Milk", NOW));
+		assertEquals(5.0, scheduler.getPriceAt("Milk", NOW + HOUR + 30_000));
+		assertEquals(4.5, scheduler.getPriceAt("Milk", NOW + 5 * HOUR));
+		assertEquals(List.of(new PriceVersion("Milk", Long.MIN_VALUE, 6.0),
+				new PriceVersion("Milk", NOW + HOUR, 5.0),
+				new PriceVersion("Milk", NOW + 2 * HOUR, 4.5)), scheduler.getHistory("Milk"));
+		// A product never scheduled has its catalog price at any time
+		assertEquals(6.0, scheduler.getPriceAt("Bread", NOW - HOUR));
+		assertTrue(scheduler.getHistory("Bread").isEmpty());
+	}
+
+	@Test
+	void onlyPendingPricesCanBeCancelled() {
+		PriceScheduleServiceImpl scheduler = new PriceScheduleServiceImpl(productService, store);
+		scheduler.schedule("Milk", 5.0, NOW + HOUR, NOW);
+		scheduler.schedule("Milk", 4.0, NOW + 2 * HOUR, NOW);
+
+		assertTrue(scheduler.cancel("Milk", NOW + 2 * HOUR));
+		assertFalse(scheduler.cancel("Milk", NOW + 2 * HOUR));
+		assertFalse(scheduler.cancel("Eggs", NOW + HOUR));
+
+		scheduler.activateDue(NOW + 3 * HOUR);
+		verify(productService).applyPrices(Map.of("Milk", 5.0), "price-schedule");
+		assertThrows(IllegalStateException.class, () -> scheduler.cancel("Milk", NOW + HOUR));
+
+		assertThrows(IllegalArgumentException.class, () -> scheduler.schedule("Milk", 3.0, NOW, NOW + HOUR));
+		assertThrows(IllegalArgumentException.class, () -> scheduler.schedule("Milk", -1.0, NOW + 4 * HOUR, NOW));
+		when(productService.getProductByName("Discontinued")).thenReturn(null);
+		assertThrows(IllegalArgumentException.class, () -> scheduler.schedule("Discontinued", 1.0, NOW + 4 * HOUR, NOW));
+	}
+
+	@Test
+	void restartKeepsHistoryAndDoesNotReapplyOldPrices() {
+		PriceScheduleServiceImpl scheduler = new PriceScheduleServiceImpl(productService, store);
+		scheduler.schedule("Milk", 5.0, NOW + HOUR, NOW);
+		scheduler.schedule("Milk", 4.0, NOW + 3 * HOUR, NOW);
+		scheduler.schedule("Eggs", 9.0, NOW + 3 * HOUR, NOW);
+		scheduler.cancel("Eggs", NOW + 3 * HOUR);
+		scheduler.activateDue(NOW + 2 * HOUR);
+		store.close();
+
+		reset(productService);
+		when(productService.applyPrices(anyMap(), anyString())).thenReturn(1);
+		store = new PriceVersionStore(tempDir.resolve("prices.versions").toString());
+		PriceScheduleServiceImpl restarted = new PriceScheduleServiceImpl(productService, store);
+		assertEquals(3, restarted.getHistory("Milk").size());
+		assertEquals(1, restarted.getHistory("Eggs").size());
+		assertEquals(List.of(new PriceVersion("Milk", NOW + 3 * HOUR, 4.0)), restarted.getPending());
+
+		// The price applied before the restart may since have been edited on the product
+		assertEquals(0, restarted.activateDue(NOW + 2 * HOUR + 1));
+		verify(productService, never()).applyPrices(anyMap(), anyString());
+		assertThrows(IllegalStateException.class, () -> restarted.cancel("Milk", NOW + HOUR));
+
+		// A price that came due while the lane was down is applied on the first tick
+		assertEquals(1, restarted.activateDue(NOW + 4 * HOUR));
+		verify(productService).applyPrices(Map.of("Milk", 4.0), "price-schedule");
+	}
+
+	@Test
+	@Tag("benchmark")
+	void historicalLookupsStayFastOverMillionsOfVersions() {
+		int products = 100_000;
+		int versions = 20;
+		for (int i = 0; i < products; i++) {
+			String name = "Product " + i;
+			store.append(new PriceVersion(name, Long.MIN_VALUE, 10.0));
+			for (int v = 1; v < versions; v++) {
+				store.append(new PriceVersion(name, NOW + v * 24 * HOUR, 10.0 + v));
+			}
+		}
+		store.appendActivation(NOW + versions * 24 * HOUR);
+
+		long start = System.nanoTime();
+		PriceScheduleServiceImpl scheduler = new PriceScheduleServiceImpl(productService, store);
+		double loadMillis = (System.nanoTime() - start) / 1e6;
+
+		Random random = new Random(42);
+		int lookups = 1_000_000;
+		double checksum = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			checksum += scheduler.getPriceAt("Product " + random.nextInt(products),
+					NOW + (long) (random.nextDouble() * versions * 24 * HOUR));
+		}
+		double lookupNanos = (double) (System.nanoTime() - start) / lookups;
+
+		System.out.printf("Price history: %d products x %d versions loaded in %.0f ms, %.0f ns per lookup%n",
+				products, versions, loadMillis, lookupNanos);
+		assertTrue(checksum > lookups * 10.0);
+		assertEquals(15.0, scheduler.getPriceAt("Product 7", NOW + 5 * 24 * HOUR + 1));
+		assertTrue(scheduler.getPending().isEmpty());
+		assertTrue(lookupNanos < 20_000, "a receipt reprint should look up its prices in microseconds");
+	}
+}
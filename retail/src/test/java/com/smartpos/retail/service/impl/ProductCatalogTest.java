@@ -0,0 +1,264 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCatalogTest {
+
+	private static final String[] CATEGORIES = { "Dairy", "Bakery", "Produce", "Frozen", "Household" };
+
+	@Test
+	void rowsReadAndWriteThroughTheColumns() {
+		ProductCatalog catalog = new ProductCatalog(0);
+		ProductRow milk = new ProductRow("حليب", "6281234567890", 6.25, 40);
+		milk.setId(7L);
+		milk.setCategory("Dairy");
+		milk.setTaxClass("STD");
+		ProductCatalog.Row row = catalog.add(milk);
+
+		assertEquals(7L, row.getId());
+		assertEquals("حليب", row.getName());
+		assertEquals("6281234567890", row.getBarcode());
+		assertEquals(6.25, row.getPrice());
+		assertEquals("Dairy", row.getCategory());
+		assertEquals("STD", row.getTaxClass());
+
+		ProductCatalog.Row other = catalog.findByBarcode("6281234567890");
+		other.adjustStock(-5);
+		assertEquals(35, row.getStock(), "every view of a product reads the same columns");
+		assertEquals(row, other);
+		assertEquals(40, milk.getStock(), "the product added is copied, not kept");
+
+		catalog.set(row, new ProductRow("Fresh Milk", "6281234567890", 6.25, 99));
+		assertNull(catalog.findByName("حليب"));
+		assertEquals(row, catalog.findByName("Fresh Milk"));
+		assertEquals("Fresh Milk", row.toEntity().getName());
+		assertEquals(35, row.getStock(), "an edit leaves the stock counter to the atomic operations");
+	}
+
+	@Test
+	void barcodesArePackedOnlyWhenDigitsSurvive() {
+		assertEquals("0012345678905", ProductCatalog.unpack(ProductCatalog.pack("0012345678905")));
+		assertEquals("7", ProductCatalog.unpack(ProductCatalog.pack("7")));
+		assertNotEquals(ProductCatalog.pack("0123"), ProductCatalog.pack("123"));
+
+		ProductCatalog catalog = new ProductCatalog(0);
+		catalog.add(new ProductRow("Loose carrots", "PLU-4562", 1.0, 10));
+		catalog.add(new ProductRow("Pallet", "123456789012345678901", 1.0, 10));
+		catalog.add(new ProductRow("Bags", null, 0.5, 1000));
+		catalog.add(new ProductRow("Water", "0012345678905", 1.0, 60));
+
+		assertEquals("Loose carrots", catalog.findByBarcode("PLU-4562").getName());
+		assertEquals("Pallet", catalog.findByBarcode("123456789012345678901").getName());
+		assertEquals("Water", catalog.findByBarcode("0012345678905").getName());
+		assertNull(catalog.findByBarcode("12345678905"));
+		assertNull(catalog.findByName("Bags").getBarcode());
+	}
+
+	@Test
+	void removedProductsLeaveLookupsButKeepTheirViews() {
+		ProductCatalog catalog = new ProductCatalog(0);
+		ProductCatalog.Row bread = catalog.add(new ProductRow("Bread", "222", 3.0, 30));
+		catalog.add(new ProductRow("Eggs", "E-333", 9.0, 5));
+		ProductCatalog.Row eggs = catalog.findByName("Eggs");
+
+		catalog.remove(bread);
+		catalog.remove(eggs);
+		catalog.remove(eggs);
+
+		assertEquals(0, catalog.size());
+		assertTrue(catalog.rows().isEmpty());
+		assertNull(catalog.findByBarcode("222"));
+		assertNull(catalog.findByBarcode("E-333"));
+		assertFalse(bread.isLive());
+		assertEquals("Bread", bread.getName());
+		assertEquals("E-333", eggs.getBarcode());
+
+		catalog.add(new ProductRow("Bread", "222", 3.5, 12));
+		assertEquals(3.5, catalog.findByBarcode("222").getPrice());
+		assertEquals(3.0, bread.getPrice());
+	}
+
+	@Test
+	void indexesFollowRenamesBarcodeChangesAndGrowth() {
+		ProductCatalog catalog = new ProductCatalog(0);
+		for (int i = 0; i < 1000; i++) {
+			catalog.add(new ProductRow("Item " + i, i % 2 == 0 ? barcode(i) : "PLU-" + i, 1.0, 10));
+		}
+		ProductCatalog.Row item = catalog.findByName("Item 500");
+		for (int i = 0; i < 100; i++) {
+			// Every edit leaves a cell behind, the tables are rebuilt without them
+			catalog.set(item, new ProductRow("Renamed " + i, "PLU-X" + i, 1.0, 10));
+		}
+
+		assertNull(catalog.findByName("Item 500"));
+		assertNull(catalog.findByBarcode(barcode(500)));
+		assertNull(catalog.findByBarcode("PLU-X98"));
+		assertEquals(item, catalog.findByName("Renamed 99"));
+		assertEquals(item, catalog.findByBarcode("PLU-X99"));
+		for (int i = 0; i < 1000; i += 37) {
+			if (i != 500) {
+				assertEquals("Item " + i, catalog.findByBarcode(i % 2 == 0 ? barcode(i) : "PLU-" + i).getName());
+				assertEquals(i % 2 == 0 ? barcode(i) : "PLU-" + i, catalog.findByName("Item " + i).getBarcode());
+			}
+		}
+		assertNull(catalog.findByName("Item 1000"));
+		assertNull(catalog.findByBarcode(barcode(1000)));
+	}
+
+	@Test
+	void lastUnitIsTakenExactlyOnce() throws Exception {
+		Map<String, Integer> outcomes = race(1, (catalog, row) -> row.takeStock(1), (catalog, row) -> row.takeStock(1));
+		// Forbidden: "true true -1", both lanes selling the last unit
+		assertTrue(Set.of("false true 0", "true false 0").containsAll(outcomes.keySet()), outcomes.toString());
+	}
+
+	@Test
+	void returnedUnitsAreNeverLost() throws Exception {
+		Map<String, Integer> outcomes = race(1, (catalog, row) -> row.takeStock(2), (catalog, row) -> {
+			row.addStock(1);
+			return true;
+		});
+		// Either the take saw the returned unit or it did not; the return itself always lands
+		assertTrue(Set.of("false true 2", "true true 0").containsAll(outcomes.keySet()), outcomes.toString());
+	}
+
+	@Test
+	void scansOnlySeeStockBeforeOrAfterTake() throws Exception {
+		Map<String, Integer> outcomes = race(5, (catalog, row) -> row.takeStock(3), (catalog, row) -> {
+			int seen = row.getStock();
+			return seen == 5 || seen == 2;
+		});
+		assertTrue(Set.of("true true 2").containsAll(outcomes.keySet()), outcomes.toString());
+	}
+
+	@Test
+	void renamesAreNeverReadTorn() throws Exception {
+		// Long enough that the rename has to grow the name bytes of a fresh catalog
+		String renamed = "Fresh full-cream milk ".repeat(20);
+		Map<String, Integer> outcomes = race(1, (catalog, row) -> {
+			catalog.set(row, new ProductRow(renamed, "1", 1.0, 1));
+			return true;
+		}, (catalog, row) -> {
+			try {
+				String name = row.getName();
+				ProductCatalog.Row found = catalog.findByName(renamed);
+				return (name.equals("Milk") || name.equals(renamed)) && (found == null || found.equals(row));
+			} catch (RuntimeException e) {
+				return false;
+			}
+		});
+		// Forbidden: "true false 1", a lane reading a new offset with an old length or old bytes
+		assertTrue(Set.of("true true 1").containsAll(outcomes.keySet()), outcomes.toString());
+	}
+
+	/**
+	 * jcstress-style scenario: two actors race on a fresh product many times,
+	 * and every distinct outcome (actor results and final stock) is counted
+	 */
+	private static Map<String, Integer> race(int stock, BiFunction<ProductCatalog, ProductCatalog.Row, Boolean> first,
+			BiFunction<ProductCatalog, ProductCatalog.Row, Boolean> second) throws Exception {
+		int rounds = 5_000;
+		Map<String, Integer> outcomes = new TreeMap<>();
+		CyclicBarrier start = new CyclicBarrier(2);
+		ProductCatalog[] catalogs = new ProductCatalog[rounds];
+		ProductCatalog.Row[] rows = new ProductCatalog.Row[rounds];
+		boolean[] secondResults = new boolean[rounds];
+		for (int i = 0; i < rounds; i++) {
+			catalogs[i] = new ProductCatalog(0);
+			rows[i] = catalogs[i].add(new ProductRow("Milk", "1", 1.0, stock));
+		}
+		Thread other = new Thread(() -> {
+			try {
+				for (int i = 0; i < rounds; i++) {
+					start.await();
+					secondResults[i] = second.apply(catalogs[i], rows[i]);
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		other.start();
+		boolean[] firstResults = new boolean[rounds];
+		for (int i = 0; i < rounds; i++) {
+			start.await();
+			firstResults[i] = first.apply(catalogs[i], rows[i]);
+		}
+		other.join();
+		for (int i = 0; i < rounds; i++) {
+			outcomes.merge(firstResults[i] + " " + secondResults[i] + " " + rows[i].getStock(), 1, Integer::sum);
+		}
+		return outcomes;
+	}
+
+	@Test
+	@Tag("benchmark")
+	void wholesaleCatalogFitsInSmallHeap() {
+		int skus = 5_000_000;
+		long before = usedHeap();
+		ProductCatalog catalog = new ProductCatalog(skus);
+		ProductRow template = new ProductRow();
+		for (int i = 0; i < skus; i++) {
+			fill(template, i);
+			catalog.add(template);
+		}
+		long catalogBytes = usedHeap() - before;
+		assertEquals(skus, catalog.size());
+		assertEquals("Item 4999999", catalog.findByBarcode(barcode(4_999_999)).getName());
+		catalog = null;
+
+		// The same products as entities, fewer of them so they fit in the test heap
+		int objectSkus = 1_000_000;
+		before = usedHeap();
+		List<ProductRow> objects = new ArrayList<>(objectSkus);
+		for (int i = 0; i < objectSkus; i++) {
+			ProductRow product = new ProductRow();
+			fill(product, i);
+			objects.add(product);
+		}
+		long objectBytes = usedHeap() - before;
+		assertEquals(objectSkus, objects.size());
+
+		double catalogPerSku = catalogBytes / (double) skus;
+		double objectPerSku = objectBytes / (double) objectSkus;
+		System.out.printf("Catalog footprint: %.0f bytes/SKU columnar, %.0f bytes/SKU as objects; 5M SKUs %d MB vs %d MB%n",
+				catalogPerSku, objectPerSku, catalogBytes >> 20, (long) (objectPerSku * skus) >> 20);
+		assertTrue(catalogBytes < 384L << 20, "5M SKUs should fit in a small heap");
+		assertTrue(catalogPerSku * 2.5 < objectPerSku, "columns should take well under half the memory of objects");
+	}
+
+	private static void fill(ProductRow product, int i) {
+		product.setId((long) i + 1);
+		product.setName("Item " + i);
+		product.setBarcode(barcode(i));
+		product.setPrice(1 + i % 5_000 / 100.0);
+		product.setStock(i % 500);
+		product.setCategory(CATEGORIES[i % CATEGORIES.length]);
+		product.setTaxClass(i % 10 == 0 ? "ZERO" : "STD");
+	}
+
+	private static String barcode(int i) {
+		return "628" + String.format("%010d", i);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+}
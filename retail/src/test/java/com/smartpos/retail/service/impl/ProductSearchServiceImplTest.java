@@ -0,0 +1,118 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductSearchServiceImplTest {
+
+	private final List<ProductRow> catalog = new ArrayList<>();
+	private ProductService productService;
+	private ProductSearchServiceImpl searchService;
+
+	@BeforeEach
+	void setUp() {
+		catalog.add(new ProductRow("Whole Milk 1L", "6281001", 6.5, 10));
+		catalog.add(new ProductRow("Milk", "6281002", 5.0, 10));
+		catalog.add(new ProductRow("Chocolate Milk", "6281003", 4.0, 10));
+		catalog.add(new ProductRow("Milkshake Powder", "6281004", 12.0, 10));
+		catalog.add(new ProductRow("Buttermilk", "6281005", 3.5, 10));
+		catalog.add(new ProductRow("Bread", "6282001", 2.0, 10));
+
+		productService = mock(ProductService.class);
+		when(productService.getAllProducts()).thenAnswer(invocation -> new ArrayList<>(catalog));
+		when(productService.getProductByName(anyString())).thenAnswer(invocation -> catalog.stream()
+				.filter(product -> product.getName().equals(invocation.getArgument(0))).findFirst().orElse(null));
+		when(productService.getNamesVersion()).thenReturn(1L);
+		searchService = new ProductSearchServiceImpl(productService, 16);
+	}
+
+	@Test
+	void ranksExactThenPrefixThenWordThenSubstring() {
+		List<String> names = searchService.suggest("milk", 10).stream().map(ProductRow::getName).toList();
+
+		assertEquals(List.of("Milk", "Milkshake Powder", "Whole Milk 1L", "Chocolate Milk", "Buttermilk"), names);
+	}
+
+	@Test
+	void everyQueryWordMustMatch() {
+		List<ProductRow> results = searchService.suggest("  MILK  whole ", 10);
+
+		assertEquals(1, results.size());
+		assertEquals("Whole Milk 1L", results.get(0).getName());
+	}
+
+	@Test
+	void findsByBarcodePrefix() {
+		List<ProductRow> results = searchService.suggest("62820", 10);
+
+		assertEquals(1, results.size());
+		assertEquals("Bread", results.get(0).getName());
+	}
+
+	@Test
+	void substringsAreFoundOnlyInNamesHoldingThem() {
+		assertEquals(List.of("Buttermilk"), searchService.suggest("ermil", 10).stream().map(ProductRow::getName).toList());
+		assertEquals(List.of("Chocolate Milk"), searchService.suggest("colate mi", 10).stream().map(ProductRow::getName).toList());
+		assertTrue(searchService.suggest("ermix", 10).isEmpty());
+	}
+
+	@Test
+	void recentResultsAreCachedUntilNamesChange() {
+		searchService.suggest("mil", 5);
+		searchService.suggest("mil", 5);
+		searchService.suggest("bre", 5);
+		verify(productService, times(1)).getAllProducts();
+
+		// A sale or a price change does not touch names: same index, current price
+		catalog.get(5).setPrice(2.5);
+		assertEquals(2.5, searchService.suggest("bre", 5).get(0).getPrice());
+		verify(productService, times(1)).getAllProducts();
+
+		catalog.add(new ProductRow("Milk Powder", "6281006", 20.0, 10));
+		when(productService.getNamesVersion()).thenReturn(2L);
+
+		assertTrue(searchService.suggest("mil", 10).stream().anyMatch(p -> p.getName().equals("Milk Powder")));
+		verify(productService, times(2)).getAllProducts();
+	}
+
+	@Test
+	void blankQueriesReturnNothing() {
+		assertTrue(searchService.suggest("   ", 5).isEmpty());
+		assertTrue(searchService.suggest(null, 5).isEmpty());
+		verifyNoInteractions(productService);
+	}
+
+	@Test
+	@Tag("benchmark")
+	void prefixSearchStaysFastOnLargeCatalog() {
+		catalog.clear();
+		for (int i = 0; i < 50_000; i++) {
+			catalog.add(new ProductRow("Item " + i + " Pack", "99" + i, 1.0, 10));
+		}
+		Map<String, ProductRow> byName = new HashMap<>();
+		catalog.forEach(product -> byName.put(product.getName(), product));
+		when(productService.getProductByName(anyString())).thenAnswer(invocation -> byName.get(invocation.getArgument(0)));
+		when(productService.getNamesVersion()).thenReturn(3L);
+		searchService.suggest("item", 8); // build the index
+
+		int rounds = 2_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			searchService.suggest("item 4" + (i % 1000), 8);
+		}
+		double micros = (System.nanoTime() - start) / 1_000.0 / rounds;
+		System.out.printf("Type-ahead search (50k products): %.1f us/query%n", micros);
+		assertTrue(micros < 5_000, "a keystroke query should not scan the whole catalog");
+	}
+}
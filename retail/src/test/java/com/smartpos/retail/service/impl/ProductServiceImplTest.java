@@ -0,0 +1,566 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.repository.BranchOverlayStore;
+import com.smartpos.retail.repository.CatalogSnapshotStore;
+import com.smartpos.retail.repository.InventoryAuditLog;
+import com.smartpos.retail.repository.ProductRepository;
+import com.smartpos.retail.service.UserService;
+import com.smartpos.retail.util.LruCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductServiceImplTest {
+
+	@TempDir
+	Path tempDir;
+
+	private ProductRepository repository;
+	private CatalogSnapshotStore snapshotStore;
+	private BranchOverlayStore branchStore;
+	private InventoryAuditLog auditLog;
+	private UserService userService;
+	private final AtomicLong nextId = new AtomicLong(100);
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(ProductRepository.class);
+		when(repository.saveAll(any())).thenAnswer(invocation -> {
+			List<ProductRow> products = invocation.getArgument(0);
+			for (ProductRow product : products) {
+				if (product.getId() == null) {
+					product.setId(nextId.getAndIncrement());
+				}
+			}
+			return products;
+		});
+		snapshotStore = new CatalogSnapshotStore(tempDir.resolve("catalog.snapshot").toString());
+		branchStore = new BranchOverlayStore(tempDir.resolve("branches").toString());
+		auditLog = mock(InventoryAuditLog.class);
+		userService = mock(UserService.class);
+	}
+
+	private static ProductRow product(long id, String name, String barcode, double price, int stock) {
+		ProductRow product = new ProductRow(name, barcode, price, stock);
+		product.setId(id);
+		return product;
+	}
+
+	@Test
+	void servesLookupsFromSnapshotBeforeReconcile() throws Exception {
+		snapshotStore.write(List.of(product(1, "Milk", "111", 6.0, 12)));
+
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+
+		ProductRow milk = service.getProductByBarcode("111");
+		assertNotNull(milk);
+		assertEquals(12, milk.getStock());
+		verifyNoInteractions(repository);
+	}
+
+	@Test
+	void seedsEmptyStoreFromSnapshot() throws Exception {
+		snapshotStore.write(List.of(product(1, "Milk", "111", 6.0, 12), product(2, "Bread", "222", 3.0, 30)));
+		when(repository.findAll()).thenReturn(new ArrayList<>());
+
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		int divergent = service.reconcileWithStore();
+
+		assertEquals(2, divergent);
+		service.flushWrites();
+		verify(repository).saveAll(any());
+		assertEquals(2, service.getTotalProductCount());
+	}
+
+	@Test
+	void storeWinsWhenSnapshotDiverges() throws Exception {
+		snapshotStore.write(List.of(
+				product(1, "Milk", "111", 6.0, 12),
+				product(2, "Bread", "222", 3.0, 30),
+				product(3, "Eggs", "333", 9.0, 5)));
+		when(repository.findAll()).thenReturn(new ArrayList<>(List.of(
+				product(1, "Milk", "111", 6.5, 8),      // price and stock changed
+				product(2, "Bread", "222", 3.0, 30),    // unchanged
+				product(4, "Bags", "444", 0.5, 900)))); // created after the snapshot
+
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		int divergent = service.reconcileWithStore();
+
+		assertEquals(3, divergent);
+		assertEquals(8, service.getProductByBarcode("111").getStock());
+		assertEquals(6.5, service.getProductByBarcode("111").getPrice());
+		assertNull(service.getProductByBarcode("333"), "product deleted from the store must be dropped");
+		assertNotNull(service.getProductByBarcode("444"));
+		assertEquals(3, service.getTotalProductCount());
+	}
+
+	@Test
+	void localOnlyProductsArePersistedOnReconcile() throws Exception {
+		snapshotStore.write(List.of(product(1, "Milk", "111", 6.0, 12), new ProductRow("Water", "555", 1.0, 60)));
+		when(repository.findAll()).thenReturn(new ArrayList<>(List.of(product(1, "Milk", "111", 6.0, 12))));
+
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		int divergent = service.reconcileWithStore();
+
+		assertEquals(1, divergent);
+		service.flushWrites();
+		assertNotNull(service.getProductByBarcode("555").getId());
+		verify(repository).saveAll(any());
+	}
+
+	@Test
+	void lanesKeepSellingWhileReconcileLoadsTheStore() throws Exception {
+		snapshotStore.write(List.of(product(1, "Milk", "111", 6.0, 12)));
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch loaded = new CountDownLatch(1);
+		when(repository.findAll()).thenAnswer(invocation -> {
+			loading.countDown();
+			loaded.await(); // JPA still starting
+			return new ArrayList<>(List.of(product(1, "Milk", "111", 6.0, 12)));
+		});
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+
+		Thread reconcile = new Thread(service::reconcileWithStore);
+		reconcile.start();
+		try {
+			assertTrue(loading.await(5, TimeUnit.SECONDS));
+			assertTimeoutPreemptively(Duration.ofSeconds(5), () -> service.reduceStock("Milk", 2));
+			service.flushWrites();
+		} finally {
+			loaded.countDown();
+			reconcile.join();
+		}
+
+		// The sale was written while the store loaded, so the loaded row does not undo it
+		assertEquals(10, service.getProductByBarcode("111").getStock());
+	}
+
+	@Test
+	void snapshotReflectsStockChangesAfterRestart() {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.reduceStock("Product 1", 10);
+		service.writeSnapshot();
+
+		ProductServiceImpl restarted = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		assertEquals(90, restarted.getProductByName("Product 1").getStock());
+	}
+
+	@Test
+	void restoreStockIsAllOrNothing() {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.reduceStock("Product 1", 10);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> service.restoreStock(Map.of("Product 1", 4, "Discontinued", 1)));
+		assertEquals(90, service.getProductByName("Product 1").getStock());
+
+		service.restoreStock(Map.of("Product 1", 4, "Product 2", 1));
+		assertEquals(94, service.getProductByName("Product 1").getStock());
+		assertEquals(51, service.getProductByName("Product 2").getStock());
+	}
+
+	@Test
+	void concurrentCheckoutsNeverOversell() throws Exception {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		AtomicInteger sold = new AtomicInteger();
+		AtomicInteger refused = new AtomicInteger();
+
+		runLanes(8, lane -> {
+			for (int i = 0; i < 10; i++) {
+				try {
+					service.reduceStock("Product 2", 1);
+					sold.incrementAndGet();
+				} catch (IllegalArgumentException e) {
+					refused.incrementAndGet();
+				}
+			}
+		});
+
+		assertEquals(50, sold.get());
+		assertEquals(30, refused.get());
+		assertEquals(0, service.getAvailableStock("Product 2"));
+	}
+
+	@Test
+	void lanesDoNotWaitForEachOtherToSaveStock() throws Exception {
+		CountDownLatch saving = new CountDownLatch(1);
+		CountDownLatch saved = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			List<ProductRow> products = invocation.getArgument(0);
+			if (products.get(0).getName().equals("Product 1")) {
+				saving.countDown();
+				saved.await(); // a database round trip that does not come back until released
+			}
+			return products;
+		}).when(repository).saveAll(any());
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+
+		Thread firstLane = new Thread(() -> service.reduceStock("Product 1", 1));
+		firstLane.start();
+		try {
+			assertTrue(saving.await(5, TimeUnit.SECONDS));
+			// The first lane's stock save is stuck, a second lane still sells and sees its take
+			assertTimeoutPreemptively(Duration.ofSeconds(5), () -> service.reduceStock("Product 2", 1));
+			assertEquals(49, service.getAvailableStock("Product 2"));
+			assertEquals(99, service.getAvailableStock("Product 1"));
+		} finally {
+			saved.countDown();
+			firstLane.join();
+		}
+	}
+
+	@Test
+	@Tag("benchmark")
+	void lockFreeStockOutrunsOneLock() throws Exception {
+		int lanes = 8;
+		int sales = 50_000;
+		// Each lane sells its own product, as checkouts on different lanes mostly do
+		List<ProductRow> products = new ArrayList<>();
+		for (int lane = 0; lane < lanes; lane++) {
+			products.add(product(lane + 1, "Lane " + lane, "L" + lane, 1.0, 4 * sales));
+		}
+		snapshotStore.write(products);
+		InventoryAuditLog audit = new InventoryAuditLog(tempDir.resolve("audit").toString(), 65536, 1 << 20);
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, audit, userService, 512);
+		Object serviceLock = new Object();
+		Consumer<Integer> lockFree = lane -> {
+			for (int i = 0; i < sales; i++) {
+				service.reduceStock("Lane " + lane, 1, "bench");
+			}
+		};
+		// The same sales when every stock change holds one lock, as reduceStock used to
+		Consumer<Integer> locked = lane -> {
+			for (int i = 0; i < sales; i++) {
+				synchronized (serviceLock) {
+					service.reduceStock("Lane " + lane, 1, "bench");
+				}
+			}
+		};
+
+		runLanes(lanes, lockFree);
+		runLanes(lanes, locked);
+		double lockFreeRate = salesPerSecond(lanes, sales, lockFree);
+		double lockedRate = salesPerSecond(lanes, sales, locked);
+		audit.close();
+
+		System.out.printf("reduceStock (%d lanes x %d sales): %.0f sales/s lock-free, %.0f sales/s under one lock%n",
+				lanes, sales, lockFreeRate, lockedRate);
+		for (int lane = 0; lane < lanes; lane++) {
+			assertEquals(0, service.getAvailableStock("Lane " + lane));
+		}
+		if (Runtime.getRuntime().availableProcessors() > 1) {
+			assertTrue(lockFreeRate > lockedRate, "lanes should not queue behind each other");
+		}
+	}
+
+	private static double salesPerSecond(int lanes, int sales, Consumer<Integer> lane) throws InterruptedException {
+		long start = System.nanoTime();
+		runLanes(lanes, lane);
+		return lanes * (double) sales / ((System.nanoTime() - start) / 1e9);
+	}
+
+	@Test
+	void scansNeverSeeHalfAPriceBatch() throws Exception {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.applyPrices(Map.of("Product 1", 100.0, "Product 2", 100.0), "ali");
+		int batches = 2_000;
+		AtomicInteger mixed = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(1);
+
+		// Every batch gives both products the same new price; a reader that sees one product
+		// repriced must see the other repriced too
+		Thread scanner = new Thread(() -> {
+			while (done.getCount() > 0) {
+				double a = service.getProductByName("Product 1").getPrice();
+				double b = service.getProductByName("Product 2").getPrice();
+				double c = service.getProductByName("Product 1").getPrice();
+				if (b < a || c < b) {
+					mixed.incrementAndGet();
+				}
+			}
+		});
+		scanner.start();
+		for (int batch = 1; batch <= batches; batch++) {
+			assertEquals(2, service.applyPrices(Map.of("Product 1", 100.0 + batch, "Product 2", 100.0 + batch), "ali"));
+		}
+		done.countDown();
+		scanner.join();
+
+		assertEquals(0, mixed.get());
+		assertEquals(100.0 + batches, service.getProductByName("Product 2").getPrice());
+		assertEquals(0, service.applyPrices(Map.of("Discontinued", 1.0), "ali"));
+	}
+
+	private static void runLanes(int lanes, Consumer<Integer> lane) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[lanes];
+		for (int i = 0; i < lanes; i++) {
+			int laneNumber = i;
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				lane.accept(laneNumber);
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	@Test
+	void repeatedLookupsAreServedFromHotCache() {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.getProductByBarcode("1234567890123");
+		service.getProductByBarcode("1234567890123");
+		service.getProductByName("Product 2");
+
+		assertEquals(1, service.getLookupCacheStats().get("barcode").hits());
+		assertEquals(1, service.getLookupCacheStats().get("barcode").misses());
+		assertEquals(1, service.getLookupCacheStats().get("name").misses());
+	}
+
+	@Test
+	void editsKeepTheSalesMadeWhileTheFormWasOpen() {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		int stockShown = service.getProductByName("Product 1").getStock();
+		service.reduceStock("Product 1", 5);
+
+		// Only the price was edited: the sale stays
+		service.updateProduct("Product 1", new ProductRow("Product 1", "1234567890123", 11.0, stockShown), stockShown);
+		assertEquals(95, service.getAvailableStock("Product 1"));
+		assertEquals(11.0, service.getProductByName("Product 1").getPrice());
+
+		// Ten units counted in: added on top of what is left
+		stockShown = 95;
+		service.reduceStock("Product 1", 2);
+		service.updateProduct("Product 1", new ProductRow("Product 1", "1234567890123", 11.0, stockShown + 10), stockShown);
+		assertEquals(103, service.getAvailableStock("Product 1"));
+	}
+
+	@Test
+	void updatesAndDeletesEvictCachedRows() {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		assertNotNull(service.getProductByBarcode("1234567890123"));
+		assertNotNull(service.getProductByName("Product 1"));
+
+		service.updateProduct("Product 1", new ProductRow("Bread", "999", 3.0, 40), 100);
+		assertNull(service.getProductByBarcode("1234567890123"));
+		assertNull(service.getProductByName("Product 1"));
+		assertEquals("Bread", service.getProductByBarcode("999").getName());
+
+		service.deleteProduct("Bread");
+		assertNull(service.getProductByBarcode("999"));
+		assertNull(service.getProductByName("Bread"));
+	}
+
+	@Test
+	void stockChangesShowThroughCachedRows() {
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.getProductByBarcode("1234567890123");
+
+		service.reduceStock("Product 1", 5);
+
+		assertEquals(95, service.getProductByBarcode("1234567890123").getStock());
+	}
+
+	@Test
+	@Tag("benchmark")
+	void hotScansAvoidCatalogScan() throws Exception {
+		List<ProductRow> catalog = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			catalog.add(product(i + 1, "Item " + i, "B" + i, 1.0, 100));
+		}
+		snapshotStore.write(catalog);
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+
+		// A few hundred hot products spread over the catalog
+		int rounds = 20_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			service.getProductByBarcode("B" + (i % 300) * 61);
+		}
+		double hotNanos = (System.nanoTime() - start) / (double) rounds;
+
+		start = System.nanoTime();
+		for (int i = 0; i < 300; i++) {
+			service.getProductByBarcode("B" + (19_999 - i));
+		}
+		double coldNanos = (System.nanoTime() - start) / 300.0;
+
+		LruCache.Stats stats = service.getLookupCacheStats().get("barcode");
+		System.out.printf("Barcode lookup (20k products): hot %.0f ns, cold %.0f ns, hit rate %.3f%n",
+				hotNanos, coldNanos, stats.hitRate());
+		assertTrue(stats.hitRate() > 0.95);
+		assertTrue(hotNanos < coldNanos);
+	}
+
+	@Test
+	void branchesSeeTheirOwnPriceAndStockOverTheSharedCatalog() throws Exception {
+		snapshotStore.write(List.of(
+				product(1, "Milk", "111", 6.0, 100),
+				product(2, "Bread", "222", 3.0, 30),
+				product(3, "Eggs", "333", 9.0, 50)));
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.setBranchPrice("north", "Milk", 5.5);
+		service.setBranchPrice("north", "Eggs", 8.0);
+		assertTrue(service.reduceStock("north", "Milk", 30));
+
+		ProductRow north = service.getProductByBarcode("north", "111");
+		assertEquals("Milk", north.getName());
+		assertEquals(5.5, north.getPrice());
+		assertEquals(70, north.getStock());
+		ProductRow south = service.getProductByName("south", "Milk");
+		assertEquals(6.0, south.getPrice());
+		assertEquals(100, south.getStock());
+
+		// A branch follows the catalog's stock until it has stock of its own
+		service.reduceStock("Milk", 5);
+		assertEquals(95, service.getProductByName("south", "Milk").getStock());
+		assertEquals(70, service.getProductByName("north", "Milk").getStock());
+		assertThrows(IllegalArgumentException.class, () -> service.reduceStock("north", "Milk", 71));
+		service.restoreStock("north", Map.of("Milk", 2));
+		assertEquals(72, service.getProductByName("north", "Milk").getStock());
+
+		// Branch values survive a restart and a reconcile that moves products to new slots
+		service.writeSnapshot();
+		ProductServiceImpl restarted = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		assertEquals(72, restarted.getProductByName("north", "Milk").getStock());
+		when(repository.findAll()).thenReturn(new ArrayList<>(List.of(
+				product(1, "Milk", "111", 6.0, 95),
+				product(3, "Eggs", "333", 9.0, 50))));
+		restarted.reconcileWithStore();
+		assertNull(restarted.getProductByName("north", "Bread"));
+		assertEquals(8.0, restarted.getProductByName("north", "Eggs").getPrice());
+		assertEquals(9.0, restarted.getProductByName("south", "Eggs").getPrice());
+		assertEquals(72, restarted.getProductByName("north", "Milk").getStock());
+
+		// Clearing a branch value goes back to the catalog's
+		restarted.setBranchStock("north", "Milk", null);
+		assertEquals(95, restarted.getProductByName("north", "Milk").getStock());
+		assertThrows(IllegalArgumentException.class, () -> restarted.getProductByName("../north", "Milk"));
+	}
+
+	@Test
+	void branchValuesForUnknownProductsLeaveNoBranchBehind() throws Exception {
+		snapshotStore.write(List.of(product(1, "Milk", "111", 6.0, 100)));
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+
+		assertThrows(IllegalArgumentException.class, () -> service.setBranchPrice("east", "Discontinued", 1.0));
+		assertThrows(IllegalArgumentException.class, () -> service.setBranchStock("east", "Discontinued", 5));
+		service.setBranchPrice("north", "Milk", 5.5);
+		service.writeSnapshot();
+
+		assertEquals(Set.of("north"), branchStore.readAll().keySet());
+		verify(auditLog, times(1)).append(any());
+	}
+
+	@Test
+	void branchLookupsFindRenamedAndTextBarcodedProducts() throws Exception {
+		snapshotStore.write(List.of(product(1, "Carrots", "PLU-4562", 1.0, 80), product(2, "Milk", "111", 6.0, 100)));
+		ProductServiceImpl service = new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+		service.setBranchPrice("north", "Carrots", 0.9);
+		service.updateProduct("Carrots", new ProductRow("Loose carrots", "PLU-4563", 1.0, 80), 80);
+
+		assertNull(service.getProductByBarcode("north", "PLU-4562"));
+		assertNull(service.getProductByName("north", "Carrots"));
+		assertEquals(0.9, service.getProductByBarcode("north", "PLU-4563").getPrice());
+		assertEquals(0.9, service.getProductByName("north", "Loose carrots").getPrice());
+		assertEquals(1.0, service.getProductByBarcode("south", "PLU-4563").getPrice());
+
+		// Copies handed out are detached: changing one changes nothing in the catalog
+		service.getProductByName("north", "Milk").setStock(0);
+		assertEquals(100, service.getProductByName("north", "Milk").getStock());
+	}
+
+	@Test
+	void branchesCostMemoryForTheirOwnValuesOnly() throws Exception {
+		int products = 100_000;
+		int branchCount = 200;
+		ProductServiceImpl service = serviceWithCatalog(products);
+		long footprint = stockBranches(service, products, branchCount);
+
+		long dense = (long) branchCount * products * (Integer.BYTES + Double.BYTES);
+		assertTrue(footprint < dense / 20, "overlays should hold branch values only");
+	}
+
+	@Test
+	@Tag("benchmark")
+	void branchLookupsStayConstantTime() throws Exception {
+		int products = 100_000;
+		int branchCount = 200;
+		ProductServiceImpl service = serviceWithCatalog(products);
+		long footprint = stockBranches(service, products, branchCount);
+		long dense = (long) branchCount * products * (Integer.BYTES + Double.BYTES);
+
+		// Hot scans in a branch cost one extra array read over the shared catalog's
+		int rounds = 200_000;
+		for (int i = 0; i < rounds; i++) {
+			service.getProductByBarcode("branch-" + i % branchCount, "B" + (i % 300) * 61).getStock(); // warm up
+		}
+		long start = System.nanoTime();
+		long units = 0;
+		for (int i = 0; i < rounds; i++) {
+			units += service.getProductByBarcode("branch-" + i % branchCount, "B" + (i % 300) * 61).getStock();
+		}
+		double branchNanos = (System.nanoTime() - start) / (double) rounds;
+
+		System.out.printf("Branch overlays (%d branches, %d products): %.1f MB against %.1f MB as full copies, "
+				+ "%.0f ns per branch lookup%n", branchCount, products, footprint / 1e6, dense / 1e6, branchNanos);
+		assertTrue(units > 0);
+		assertTrue(branchNanos < 5_000, "branch lookups should stay constant time");
+	}
+
+	private ProductServiceImpl serviceWithCatalog(int products) throws Exception {
+		List<ProductRow> catalog = new ArrayList<>();
+		for (int i = 0; i < products; i++) {
+			catalog.add(product(i + 1, "Item " + i, "B" + i, 1.0, 100));
+		}
+		snapshotStore.write(catalog);
+		return new ProductServiceImpl(repository, snapshotStore, branchStore, auditLog, userService, 512);
+	}
+
+	/**
+	 * Each branch stocks its own range of 2,000 products and prices 50 products anywhere
+	 * @return Bytes held by all the overlays
+	 */
+	private static long stockBranches(ProductServiceImpl service, int products, int branchCount) {
+		Random random = new Random(7);
+		long footprint = 0;
+		for (int branch = 0; branch < branchCount; branch++) {
+			BranchOverlay overlay = service.overlay("branch-" + branch);
+			int firstStocked = random.nextInt(products - 2_000);
+			for (int slot = firstStocked; slot < firstStocked + 2_000; slot++) {
+				overlay.setStock(slot, 40);
+			}
+			for (int i = 0; i < 50; i++) {
+				overlay.setPrice(random.nextInt(products), 1.25);
+			}
+			footprint += overlay.footprint();
+		}
+		return footprint;
+	}
+}
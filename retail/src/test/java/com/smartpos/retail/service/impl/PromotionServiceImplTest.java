@@ -0,0 +1,215 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.Promotion;
+import com.smartpos.retail.repository.PromotionRepository;
+import com.smartpos.retail.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PromotionServiceImplTest {
+
+	private final Map<String, ProductRow> catalog = new HashMap<>();
+	private PromotionRepository repository;
+	private PromotionServiceImpl promotionService;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(PromotionRepository.class);
+		when(repository.save(any(Promotion.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		ProductService productService = mock(ProductService.class);
+		when(productService.getProductByName(anyString())).thenAnswer(invocation -> catalog.get(invocation.<String>getArgument(0)));
+		promotionService = new PromotionServiceImpl(repository, productService);
+
+		addProduct("Cola", 2.0, "Drinks");
+		addProduct("Juice", 4.0, "Drinks");
+		addProduct("Chips", 3.0, "Snacks");
+		addProduct("Bread", 5.0, null);
+	}
+
+	@Test
+	void multiBuyAppliesPerCompleteGroup() {
+		promotionService.addPromotion(Promotion.multiBuy("3 Cola for 5", "Cola", 3, 5.0));
+		CartSession cart = new CartSession("c1", "lane-1");
+
+		scan(cart, "Cola", 2);
+		assertEquals(0.0, cart.getDiscountTotal(), 1e-9);
+		scan(cart, "Cola", 5);
+		assertEquals(2.0, cart.getDiscountTotal(), 1e-9, "two groups of 3, one cola at full price");
+	}
+
+	@Test
+	void bundleNeedsEveryMember() {
+		promotionService.addPromotion(Promotion.bundle("Snack deal", Set.of("Cola", "Chips"), 4.0));
+		CartSession cart = new CartSession("c1", "lane-1");
+
+		scan(cart, "Cola", 2);
+		assertEquals(0.0, cart.getDiscountTotal(), 1e-9);
+		scan(cart, "Chips", 1);
+		assertEquals(1.0, cart.getDiscountTotal(), 1e-9);
+		remove(cart, "Chips");
+		assertEquals(0.0, cart.getDiscountTotal(), 1e-9);
+	}
+
+	@Test
+	void bestPercentageWinsPerLine() {
+		promotionService.addPromotion(Promotion.categoryPercentOff("Drinks 10%", "Drinks", 0.10));
+		promotionService.addPromotion(Promotion.productPercentOff("Juice 25%", Set.of("Juice"), 0.25));
+		CartSession cart = new CartSession("c1", "lane-1");
+
+		scan(cart, "Cola", 1);
+		scan(cart, "Juice", 2);
+		scan(cart, "Bread", 1);
+		assertEquals(0.2 + 2.0, cart.getDiscountTotal(), 1e-9);
+	}
+
+	@Test
+	void eachUnitGoesIntoOneDealAndPercentagesOnlyCoverTheRest() {
+		promotionService.addPromotion(Promotion.multiBuy("3 Cola for 5", "Cola", 3, 5.0));
+		promotionService.addPromotion(Promotion.bundle("Snack deal", Set.of("Cola", "Chips"), 4.0));
+		promotionService.addPromotion(Promotion.bundle("Juice deal", Set.of("Cola", "Juice"), 4.0));
+		promotionService.addPromotion(Promotion.categoryPercentOff("Drinks 10%", "Drinks", 0.10));
+		CartSession cart = new CartSession("c1", "lane-1");
+
+		scan(cart, "Cola", 3);
+		scan(cart, "Chips", 1);
+		scan(cart, "Juice", 1);
+		// Juice deal (saves 2) takes a cola, Snack deal a second, too few left for 3 for 5,
+		// and only the last cola gets 10%
+		assertEquals(2.0 + 1.0 + 0.2, cart.getDiscountTotal(), 1e-9);
+		assertTrue(cart.getDiscountTotal() <= cart.getSubtotal());
+
+		remove(cart, "Juice");
+		assertEquals(1.0, cart.getDiscountTotal(), 1e-9, "3 for 5 and Snack deal tie, 3 for 5 is first by name and takes every cola");
+	}
+
+	@Test
+	void negativeDealPricesAreRejected() {
+		assertThrows(IllegalArgumentException.class,
+				() -> promotionService.addPromotion(Promotion.bundle("Broken", Set.of("Cola", "Chips"), -1.0)));
+	}
+
+	@Test
+	void expiredPromotionsAreIgnored() {
+		LocalDateTime now = LocalDateTime.now();
+		promotionService.addPromotion(Promotion.categoryPercentOff("Old sale", "Snacks", 0.5)
+				.validBetween(now.minusDays(7), now.minusDays(1)));
+		CartSession cart = new CartSession("c1", "lane-1");
+
+		scan(cart, "Chips", 2);
+		assertEquals(0.0, cart.getDiscountTotal(), 1e-9);
+	}
+
+	@Test
+	void newRulesRepriceCartOnNextChange() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		scan(cart, "Cola", 3);
+		promotionService.addPromotion(Promotion.multiBuy("3 Cola for 5", "Cola", 3, 5.0));
+
+		promotionService.ensureEvaluated(cart);
+		assertEquals(1.0, cart.getDiscountTotal(), 1e-9);
+	}
+
+	@Test
+	void incrementalEvaluationAgreesWithFullEvaluation() {
+		CartSession cart = largeCartUnderManyRules();
+		double incrementalTotal = cart.getDiscounts().getTotal();
+		promotionService.evaluateCart(cart);
+		assertEquals(cart.getDiscounts().getTotal(), incrementalTotal, 1e-6, "incremental and full evaluation must agree");
+
+		for (int i = 0; i < 100; i++) {
+			remove(cart, cart.getLines().get(i * 7 % cart.getLines().size()).productName());
+			scan(cart, "P" + (i * 37) % 2_000, 1 + i % 3);
+		}
+		incrementalTotal = cart.getDiscounts().getTotal();
+		promotionService.evaluateCart(cart);
+		assertEquals(cart.getDiscounts().getTotal(), incrementalTotal, 1e-6, "and still agree after lines come and go");
+	}
+
+	@Test
+	@Tag("benchmark")
+	void incrementalEvaluationBeatsFullEvaluation() {
+		CartSession cart = largeCartUnderManyRules();
+
+		int rounds = 1_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			scan(cart, cart.getLines().get(i % cart.getLines().size()).productName(), 1);
+		}
+		double incrementalMicros = (System.nanoTime() - start) / 1_000.0 / rounds;
+
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			promotionService.evaluateCart(cart);
+		}
+		double fullMicros = (System.nanoTime() - start) / 1_000.0 / rounds;
+
+		System.out.printf("Promotions (10k rules, %d lines): incremental %.1f us/scan, full %.1f us/cart%n",
+				cart.getLines().size(), incrementalMicros, fullMicros);
+		assertTrue(incrementalMicros < fullMicros, "a scan should not re-evaluate the whole cart");
+	}
+
+	/**
+	 * 300 lines over 2,000 products, priced scan by scan under 10,000 rules of every kind
+	 */
+	private CartSession largeCartUnderManyRules() {
+		int products = 2_000;
+		for (int i = 0; i < products; i++) {
+			addProduct("P" + i, 1.0 + i % 10, "C" + i % 50);
+		}
+		List<Promotion> rules = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			switch (i % 4) {
+				case 0 -> rules.add(Promotion.multiBuy("M" + i, "P" + i % products, 2 + i % 3, 1.0));
+				case 1 -> rules.add(Promotion.bundle("B" + i, Set.of("P" + i % products, "P" + (i * 7 + 1) % products), 2.0));
+				case 2 -> rules.add(Promotion.productPercentOff("S" + i, Set.of("P" + i % products), 0.05));
+				default -> rules.add(Promotion.categoryPercentOff("C" + i, "C" + i % 50, 0.01 * (1 + i % 20)));
+			}
+		}
+		when(repository.findAll()).thenReturn(rules);
+		promotionService.loadPromotions();
+
+		CartSession cart = new CartSession("c1", "lane-1");
+		for (int i = 0; i < 300; i++) {
+			scan(cart, "P" + (i * 13) % products, 1 + i % 4);
+		}
+		return cart;
+	}
+
+	private void addProduct(String name, double price, String category) {
+		ProductRow product = new ProductRow(name, name, price, 1_000);
+		product.setCategory(category);
+		catalog.put(name, product);
+	}
+
+	private void scan(CartSession cart, String productName, int quantity) {
+		ProductRow product = catalog.get(productName);
+		int index = cart.indexOfLine(productName);
+		if (index >= 0) {
+			CartSession.CartLine line = cart.getLines().get(index);
+			cart.getLines().set(index, new CartSession.CartLine(productName, line.quantity() + quantity, line.price()));
+		} else {
+			cart.getLines().add(new CartSession.CartLine(productName, quantity, product.getPrice()));
+		}
+		promotionService.applyLineChange(cart, productName);
+	}
+
+	private void remove(CartSession cart, String productName) {
+		cart.getLines().remove(cart.indexOfLine(productName));
+		promotionService.applyLineChange(cart, productName);
+	}
+}
@@ -0,0 +1,197 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.service.ReceiptSearchService.Query;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptSearchServiceImplTest {
+
+	@TempDir
+	Path tempDir;
+
+	private SalesJournal journal;
+	private ReceiptSearchServiceImpl search;
+
+	@BeforeEach
+	void setUp() {
+		journal = new SalesJournal(tempDir.toString());
+		search = new ReceiptSearchServiceImpl(journal, 50, 500);
+	}
+
+	@AfterEach
+	void tearDown() {
+		journal.close();
+	}
+
+	private static long at(LocalDate date, int hour) {
+		return date.atTime(hour, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	private static SaleRecord sale(String id, long millis, String cashier, double total, String... products) {
+		List<SaleRecord.Line> lines = new ArrayList<>();
+		for (String product : products) {
+			lines.add(new SaleRecord.Line(product, 1, total / products.length, total / products.length));
+		}
+		return new SaleRecord(id, millis, "lane-1", cashier, total, 0, 0, total, lines);
+	}
+
+	private List<String> ids(Query query) {
+		return search.search(query).stream().map(SaleRecord::transactionId).toList();
+	}
+
+	@Test
+	void findsReceiptsByEachCriterionNewestFirst() {
+		LocalDate monday = LocalDate.of(2024, 3, 4);
+		LocalDate tuesday = monday.plusDays(1);
+		journal.append(sale("a1f0-0001", at(monday, 9), "ali", 12.50, "Milk", "Bread"));
+		journal.append(sale("a1f0-0002", at(monday, 10), "sara", 40.00, "Rice"));
+		journal.append(sale("b7c3-0003", at(tuesday, 9), "ali", 7.25, "Milk"));
+		search.start();
+		journal.append(sale("b7c3-0004", at(tuesday, 11), "Sara", 12.50, "Bread", "Bread"));
+		journal.flush();
+
+		assertEquals(List.of("b7c3-0004", "a1f0-0001"), ids(new Query(null, null, null, null, null, null, "bread", 0)));
+		assertEquals(List.of("b7c3-0003", "a1f0-0001"), ids(new Query(null, null, null, null, null, "ali", null, 0)));
+		assertEquals(List.of("a1f0-0001"), ids(new Query(null, null, null, null, null, "ali", "Bread", 0)));
+		assertEquals(List.of("b7c3-0004", "a1f0-0001"), ids(new Query(null, null, null, 12.5, 12.5, null, null, 0)));
+		assertEquals(List.of("a1f0-0002", "a1f0-0001"), ids(new Query(null, monday, monday, null, null, null, null, 0)));
+		assertEquals(List.of("a1f0-0002", "a1f0-0001"), ids(new Query("A1F0", null, null, null, null, null, null, 0)));
+		assertEquals(List.of("b7c3-0004"), ids(new Query("b7c3", null, null, null, null, null, null, 1)));
+		assertEquals(List.of(), ids(new Query(null, null, null, null, null, "nobody", null, 0)));
+		assertEquals(List.of(), ids(new Query(null, tuesday, monday, null, null, null, null, 0)));
+	}
+
+	@Test
+	void refundsMatchOnTheAmountPaidBack() {
+		LocalDate day = LocalDate.of(2024, 3, 4);
+		SaleRecord sale = sale("sale-1", at(day, 9), "ali", 20.00, "Milk");
+		journal.append(sale);
+		journal.append(new SaleRecord("refund-1", at(day, 10), "lane-1", "ali", -5.0, 0, 0, -5.0,
+				List.of(new SaleRecord.Line("Milk", -1, 5.0, -5.0)), SaleRecord.Kind.REFUND, "sale-1"));
+		search.start();
+		journal.flush();
+
+		List<SaleRecord> found = search.search(new Query(null, null, null, 4.0, 6.0, null, "Milk", 0));
+		assertEquals(1, found.size());
+		assertEquals(SaleRecord.Kind.REFUND, found.get(0).kind());
+		assertEquals("sale-1", found.get(0).originalTransactionId());
+	}
+
+	@Test
+	void indexFindsWhatAScanOfEveryReceiptFinds() {
+		LocalDate firstDay = LocalDate.of(2024, 1, 1);
+		List<SaleRecord> sales = addReceipts(20_000, firstDay);
+
+		int found = 0;
+		for (Query query : supportQueries(sales, firstDay)) {
+			List<String> expected = scan(sales, query);
+			assertEquals(expected, search.findIds(query), query.toString());
+			found += expected.size();
+		}
+		assertTrue(found > 0);
+	}
+
+	@Test
+	@Tag("benchmark")
+	void supportQueriesStayFastOverMillionsOfReceipts() {
+		LocalDate firstDay = LocalDate.of(2024, 1, 1);
+		List<SaleRecord> sales = addReceipts(1_000_000, firstDay);
+		List<Query> queries = supportQueries(sales, firstDay);
+		for (Query query : queries) {
+			search.findIds(query); // warm up, and sort the IDs of each day once
+		}
+
+		long start = System.nanoTime();
+		int found = 0;
+		for (int round = 0; round < 20; round++) {
+			for (Query query : queries) {
+				found += search.findIds(query).size();
+			}
+		}
+		double indexedMillis = (System.nanoTime() - start) / 1e6 / (20 * queries.size());
+
+		start = System.nanoTime();
+		int scanned = 0;
+		for (Query query : queries) {
+			scanned += scan(sales, query).size();
+		}
+		double scanMillis = (System.nanoTime() - start) / 1e6 / queries.size();
+
+		System.out.printf("Receipt search over %d receipts: %.2f ms indexed, %.1f ms scanning per query%n",
+				sales.size(), indexedMillis, scanMillis);
+		assertEquals(scanned * 20, found);
+		assertTrue(indexedMillis < 20, "support queries should answer in milliseconds");
+		assertTrue(indexedMillis * 5 < scanMillis, "the index should beat a scan by far");
+	}
+
+	/**
+	 * One sale per receipt over 100 days, 20 cashiers and 5,000 products
+	 */
+	private List<SaleRecord> addReceipts(int receipts, LocalDate firstDay) {
+		int days = 100;
+		int cashiers = 20;
+		String[] products = new String[5_000];
+		for (int i = 0; i < products.length; i++) {
+			products[i] = "Product " + i;
+		}
+		List<SaleRecord> sales = new ArrayList<>(receipts);
+		for (int i = 0; i < receipts; i++) {
+			int day = i / (receipts / days);
+			long millis = at(firstDay.plusDays(day), 8) + i % (receipts / days) * 40L;
+			String product = products[(int) ((i * 7919L) % products.length)];
+			SaleRecord sale = new SaleRecord(new UUID(i * 0x9e3779b97f4a7c15L, i).toString(), millis, "lane-1",
+					"cashier" + i % cashiers, (i % 10_000) / 100.0, 0, 0, (i % 10_000) / 100.0,
+					List.of(new SaleRecord.Line(product, 1, 1, 1)));
+			sales.add(sale);
+			search.add(sale);
+		}
+		return sales;
+	}
+
+	/**
+	 * Questions support asks: a receipt ID read off the paper, a product, a cashier's week, an amount
+	 */
+	private static List<Query> supportQueries(List<SaleRecord> sales, LocalDate firstDay) {
+		String idPrefix = sales.get(sales.size() / 3).transactionId().substring(0, 8);
+		return List.of(
+				new Query(idPrefix, null, null, null, null, null, null, 0),
+				new Query(null, null, null, null, null, null, "Product 42", 0),
+				new Query(null, firstDay.plusDays(40), firstDay.plusDays(46), null, null, "cashier7", "Product 42", 0),
+				new Query(null, firstDay.plusDays(10), firstDay.plusDays(20), 99.99, 99.99, null, null, 0));
+	}
+
+	/**
+	 * What the query costs without the index: look at every receipt, newest first
+	 */
+	private List<String> scan(List<SaleRecord> sales, Query query) {
+		List<String> matches = new ArrayList<>();
+		for (int i = sales.size() - 1; i >= 0 && matches.size() < 50; i--) {
+			SaleRecord sale = sales.get(i);
+			LocalDate date = journal.dateOf(sale.timestampMillis());
+			if ((query.transactionId() == null || sale.transactionId().startsWith(query.transactionId()))
+					&& (query.from() == null || !date.isBefore(query.from()))
+					&& (query.to() == null || !date.isAfter(query.to()))
+					&& (query.minTotal() == null || Math.abs(sale.total()) >= query.minTotal())
+					&& (query.maxTotal() == null || Math.abs(sale.total()) <= query.maxTotal())
+					&& (query.cashier() == null || sale.cashier().equals(query.cashier()))
+					&& (query.product() == null || sale.lines().stream().anyMatch(line -> line.productName().equals(query.product())))) {
+				matches.add(sale.transactionId());
+			}
+		}
+		return matches;
+	}
+}
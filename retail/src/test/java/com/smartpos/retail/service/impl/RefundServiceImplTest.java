@@ -0,0 +1,199 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.model.ZReport;
+import com.smartpos.retail.repository.SalesEventLog;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.repository.ZReportStore;
+import com.smartpos.retail.service.ProductService;
+import com.smartpos.retail.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class RefundServiceImplTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	@TempDir
+	Path tempDir;
+
+	private SalesJournal journal;
+	private ZReportServiceImpl reports;
+	private ProductService productService;
+	private RefundServiceImpl refunds;
+
+	@BeforeEach
+	void setUp() {
+		journal = new SalesJournal(tempDir.resolve("journal").toString());
+		reports = new ZReportServiceImpl(journal, new ZReportStore(tempDir.resolve("reports").toString()), 10);
+		reports.restoreOpenDay();
+		productService = mock(ProductService.class);
+		refunds = new RefundServiceImpl(journal, reports, productService, mock(UserService.class),
+				mock(SalesEventLog.class));
+	}
+
+	@AfterEach
+	void tearDown() {
+		journal.close();
+	}
+
+	/**
+	 * Milk 3 x 5.00 and Bread 1 x 2.50, 1.00 off, 15% tax added
+	 */
+	private SaleRecord recordSale() {
+		SaleRecord sale = new SaleRecord(UUID.randomUUID().toString(), System.currentTimeMillis(), "lane-1", "ali",
+				17.5, 1.0, 2.48, 18.98, List.of(
+						new SaleRecord.Line("Milk", 3, 5.0, 15.0),
+						new SaleRecord.Line("Bread", 1, 2.5, 2.5)));
+		reports.recordSale(sale);
+		return sale;
+	}
+
+	@Test
+	void partialReturnsTakeTheirShareAndTheLastOneSettlesTheRest() {
+		SaleRecord sale = recordSale();
+
+		SaleRecord first = refunds.refund(sale.transactionId(), Map.of("Milk", 1), "lane-1");
+		assertEquals(SaleRecord.Kind.REFUND, first.kind());
+		assertEquals(sale.transactionId(), first.originalTransactionId());
+		assertEquals(List.of(new SaleRecord.Line("Milk", -1, 5.0, -5.0)), first.lines());
+		assertEquals(-5.42, first.total(), 1e-9);
+		verify(productService).restoreStock(Map.of("Milk", 1), null);
+		assertEquals(Map.of("Milk", 2, "Bread", 1), refunds.getReturnableQuantities(sale.transactionId()));
+
+		SaleRecord second = refunds.refund(sale.transactionId(), Map.of("Milk", 2, "Bread", 1), "lane-1");
+		assertEquals(0, sale.total() + first.total() + second.total(), 1e-9);
+		assertEquals(0, sale.tax() + first.tax() + second.tax(), 1e-9);
+		assertEquals(Map.of("Milk", 0, "Bread", 0), refunds.getReturnableQuantities(sale.transactionId()));
+
+		ZReport day = reports.getCurrentReport();
+		assertEquals(1, day.getTransactionCount());
+		assertEquals(2, day.getRefundCount());
+		assertEquals(18.98, day.getRefundTotal(), 1e-9);
+		assertEquals(0, day.getTotal(), 1e-9);
+		assertEquals(0, day.getItemCount());
+	}
+
+	@Test
+	void cannotReturnMoreThanWasSold() {
+		SaleRecord sale = recordSale();
+		refunds.refund(sale.transactionId(), Map.of("Bread", 1), "lane-1");
+
+		assertThrows(IllegalArgumentException.class,
+				() -> refunds.refund(sale.transactionId(), Map.of("Bread", 1), "lane-1"));
+		assertThrows(IllegalArgumentException.class,
+				() -> refunds.refund(sale.transactionId(), Map.of("Milk", 4), "lane-1"));
+		assertThrows(IllegalArgumentException.class,
+				() -> refunds.refund("no-such-sale", Map.of("Milk", 1), "lane-1"));
+		verify(productService, times(1)).restoreStock(anyMap(), any());
+	}
+
+	@Test
+	void voidReversesWholeSaleOnlyBeforeAnyReturn() {
+		SaleRecord sale = recordSale();
+		SaleRecord voided = refunds.voidSale(sale.transactionId(), "lane-1");
+
+		assertEquals(SaleRecord.Kind.VOID, voided.kind());
+		assertEquals(-sale.total(), voided.total(), 1e-9);
+		verify(productService).restoreStock(Map.of("Milk", 3, "Bread", 1), null);
+		assertThrows(IllegalStateException.class, () -> refunds.voidSale(sale.transactionId(), "lane-1"));
+	}
+
+	@Test
+	void failedStockRestoreRecordsNothing() {
+		SaleRecord sale = recordSale();
+		doThrow(new IllegalArgumentException("gone")).when(productService).restoreStock(anyMap(), any());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> refunds.refund(sale.transactionId(), Map.of("Milk", 1), "lane-1"));
+		assertEquals(0, reports.getCurrentReport().getRefundCount());
+		assertEquals(Map.of("Milk", 3, "Bread", 1), refunds.getReturnableQuantities(sale.transactionId()));
+	}
+
+	@Test
+	void oldTransactionsAreFoundAfterRestartEvenWithoutIndexFiles() throws Exception {
+		SaleRecord sale = new SaleRecord("old-sale", System.currentTimeMillis() - 90 * DAY, "lane-1", "ali",
+				5.0, 0, 0, 5.0, List.of(new SaleRecord.Line("Milk", 1, 5.0, 5.0)));
+		journal.append(sale);
+		journal.close();
+
+		try (DirectoryStream<Path> indexes = Files.newDirectoryStream(tempDir.resolve("journal"), "*.index")) {
+			for (Path index : indexes) {
+				Files.delete(index);
+			}
+		}
+
+		journal = new SalesJournal(tempDir.resolve("journal").toString());
+		assertEquals(sale, journal.find("old-sale"));
+		assertNull(journal.find("missing"));
+	}
+
+	@Test
+	void everySaleIsFoundByItsIdAcrossDays() {
+		List<String> ids = appendSales(10, 50);
+		for (String id : ids) {
+			assertEquals(id, journal.find(id).transactionId());
+		}
+		assertNull(journal.find(UUID.randomUUID().toString()));
+	}
+
+	@Test
+	@Tag("benchmark")
+	void lookupByTransactionIdDoesNotScanJournal() {
+		int days = 90;
+		List<String> ids = appendSales(days, 2_000);
+		journal.find(ids.get(0)); // load the index
+
+		int lookups = 5_000;
+		long begin = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			String id = ids.get((int) ((i * 7919L) % ids.size()));
+			assertEquals(id, journal.find(id).transactionId());
+		}
+		double lookupMicros = (System.nanoTime() - begin) / 1_000.0 / lookups;
+
+		begin = System.nanoTime();
+		String wanted = ids.get(ids.size() / 2);
+		long found = journal.readBetween(0, Long.MAX_VALUE).stream().filter(sale -> sale.transactionId().equals(wanted)).count();
+		double scanMillis = (System.nanoTime() - begin) / 1e6;
+
+		System.out.printf("Transaction lookup (%d sales over %d days): %.1f us indexed, %.1f ms full scan%n",
+				ids.size(), days, lookupMicros, scanMillis);
+		assertEquals(1, found);
+		assertTrue(lookupMicros * 10 < scanMillis * 1_000, "an indexed lookup should beat a scan by far");
+	}
+
+	/**
+	 * Journal salesPerDay one-line sales on each of the last days
+	 * @return Their transaction IDs, oldest first
+	 */
+	private List<String> appendSales(int days, int salesPerDay) {
+		long start = System.currentTimeMillis() - days * DAY;
+		List<String> ids = new ArrayList<>();
+		for (int day = 0; day < days; day++) {
+			for (int i = 0; i < salesPerDay; i++) {
+				String id = UUID.randomUUID().toString();
+				ids.add(id);
+				journal.append(new SaleRecord(id, start + day * DAY + i, "lane-1", "ali", 5.0, 0, 0, 5.0,
+						List.of(new SaleRecord.Line("Milk", 1, 5.0, 5.0))));
+			}
+		}
+		journal.flush();
+		return ids;
+	}
+}
@@ -0,0 +1,167 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.ReorderSuggestion;
+import com.smartpos.retail.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class StockMonitorServiceImplTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private final Map<String, ProductRow> catalog = new HashMap<>();
+	private ProductService productService;
+	private StockMonitorServiceImpl monitor;
+
+	@BeforeEach
+	void setUp() {
+		productService = mock(ProductService.class);
+		when(productService.getProductByName(anyString())).thenAnswer(invocation -> catalog.get(invocation.<String>getArgument(0)));
+		when(productService.getAllProducts()).thenAnswer(invocation -> new ArrayList<>(catalog.values()));
+		monitor = new StockMonitorServiceImpl(productService, 0.5, 3, 14, 10);
+	}
+
+	private ProductRow product(String name, int stock) {
+		ProductRow product = new ProductRow(name, "bc-" + name, 1.0, stock);
+		catalog.put(name, product);
+		return product;
+	}
+
+	private void sell(ProductRow product, int quantity, long atMillis) {
+		product.setStock(product.getStock() - quantity);
+		monitor.recordSale(product.getName(), quantity, atMillis);
+	}
+
+	@Test
+	void suggestsReorderOnceStockFallsBelowMinimumThreshold() {
+		ProductRow milk = product("Milk", 12);
+
+		sell(milk, 1, 0);
+		assertTrue(monitor.getReorderSuggestions().isEmpty());
+
+		sell(milk, 2, 0);
+		List<ReorderSuggestion> suggestions = monitor.getReorderSuggestions();
+		assertEquals(1, suggestions.size());
+		assertEquals("Milk", suggestions.get(0).productName());
+		assertEquals(9, suggestions.get(0).stock());
+		assertEquals(10, suggestions.get(0).reorderPoint());
+		// Topped up to two weeks at today's velocity
+		assertEquals(3 * 14 - 9, suggestions.get(0).suggestedQuantity());
+	}
+
+	@Test
+	void reorderPointFollowsSmoothedVelocity() {
+		ProductRow water = product("Water", 1_000);
+		for (int day = 0; day < 5; day++) {
+			sell(water, 20, day * DAY);
+		}
+		assertEquals(60, monitor.getReorderPoint("Water"));
+
+		// A week without sales halves the velocity every day
+		monitor.rollVelocities(12 * DAY);
+		assertEquals(10, monitor.getReorderPoint("Water"));
+	}
+
+	@Test
+	void restockClearsSuggestion() {
+		ProductRow bread = product("Bread", 5);
+		sell(bread, 1, 0);
+		assertEquals(List.of(bread), monitor.getLowStockProducts());
+
+		bread.setStock(200);
+		assertTrue(monitor.getReorderSuggestions().isEmpty());
+		assertTrue(monitor.getLowStockProducts().isEmpty());
+	}
+
+	@Test
+	void forecastDemandSetsReorderPoint() {
+		product("Water", 100);
+		product("Juice", 100);
+		monitor.applyForecasts(Map.of("Water", 40.0, "Unknown", 5.0));
+		assertEquals(120, monitor.getReorderPoint("Water"));
+		assertEquals(List.of("Water"), monitor.getLowStockProducts().stream().map(ProductRow::getName).toList());
+		assertEquals(40, monitor.getReorderSuggestions().get(0).dailyVelocity());
+
+		// A day busier than forecast still raises it
+		sell(catalog.get("Water"), 50, 0);
+		assertEquals(150, monitor.getReorderPoint("Water"));
+
+		// Without a forecast the product is back on its sales velocity
+		monitor.applyForecasts(Map.of("Juice", 1.0));
+		assertEquals(150, monitor.getReorderPoint("Water"));
+		monitor.rollVelocities(2 * DAY);
+		assertEquals(75, monitor.getReorderPoint("Water"));
+		assertEquals(10, monitor.getReorderPoint("Juice"));
+	}
+
+	@Test
+	void seedingPicksUpProductsAlreadyLow() {
+		product("Eggs", 3);
+		product("Rice", 40);
+
+		monitor.seedFromCatalog();
+
+		assertEquals(List.of("Eggs"), monitor.getReorderSuggestions().stream().map(ReorderSuggestion::productName).toList());
+	}
+
+	@Test
+	void mostUrgentFirst() {
+		ProductRow slow = product("Slow", 9);
+		ProductRow fast = product("Fast", 40);
+		sell(slow, 1, 0);
+		sell(fast, 30, 0);
+
+		List<String> names = monitor.getReorderSuggestions().stream().map(ReorderSuggestion::productName).toList();
+		assertEquals(List.of("Fast", "Slow"), names);
+	}
+
+	@Test
+	void saleUpdateDoesNotScanCatalog() {
+		List<ProductRow> rows = stockedCatalog(1_000);
+		for (int i = 0; i < 2_000; i++) {
+			sell(rows.get((int) ((i * 7919L) % rows.size())), 1, (i / 200) * DAY);
+		}
+		verify(productService, never()).getAllProducts();
+	}
+
+	@Test
+	@Tag("benchmark")
+	void saleUpdatesStayInMicroseconds() {
+		int products = 100_000;
+		List<ProductRow> rows = stockedCatalog(products);
+
+		int sales = 200_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < sales; i++) {
+			sell(rows.get((int) ((i * 7919L) % products)), 1, (i / 20_000) * DAY);
+		}
+		double perSaleMicros = (System.nanoTime() - start) / 1_000.0 / sales;
+
+		start = System.nanoTime();
+		long low = rows.stream().filter(product -> product.getStock() < 50).count();
+		double scanMicros = (System.nanoTime() - start) / 1_000.0;
+
+		System.out.printf("Low-stock monitor (%d products): %.2f us/sale incremental, %.0f us per full scan%n",
+				products, perSaleMicros, scanMicros);
+		assertEquals(0, low);
+		assertTrue(perSaleMicros < 100, "a sale should only touch its own product");
+	}
+
+	private List<ProductRow> stockedCatalog(int products) {
+		for (int i = 0; i < products; i++) {
+			product("SKU " + i, 1_000_000);
+		}
+		return new ArrayList<>(catalog.values());
+	}
+}
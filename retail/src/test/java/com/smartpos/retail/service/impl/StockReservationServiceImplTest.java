@@ -0,0 +1,97 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.ProductRow;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockReservationServiceImplTest {
+
+	private final ProductRow milk = new ProductRow("Milk", "111", 6.0, 3);
+	private final ProductRow bread = new ProductRow("Bread", "222", 3.0, 10);
+
+	@Test
+	void cartsShareTheStockTheyHold() {
+		StockReservationServiceImpl reservations = new StockReservationServiceImpl(60_000);
+		reservations.hold("cart-a", milk, 2);
+		assertThrows(IllegalArgumentException.class, () -> reservations.hold("cart-b", milk, 2));
+		reservations.hold("cart-b", milk, 1);
+		assertEquals(0, reservations.getAvailable(milk));
+
+		reservations.hold("cart-a", milk, 1);
+		reservations.hold("cart-b", milk, 2);
+		assertEquals(3, reservations.getReserved("Milk"));
+
+		// Stock sold elsewhere never blocks a cart from giving units back
+		milk.setStock(1);
+		reservations.hold("cart-b", milk, 1);
+		assertEquals(2, reservations.getReserved("Milk"));
+
+		reservations.releaseAll("cart-a");
+		reservations.release("cart-b", "Milk");
+		assertEquals(0, reservations.getReserved("Milk"));
+		assertEquals(0, reservations.getHoldingCartCount());
+	}
+
+	@Test
+	void idleCartsLoseTheirHolds() throws InterruptedException {
+		StockReservationServiceImpl reservations = new StockReservationServiceImpl(100);
+		reservations.hold("idle", milk, 2);
+		reservations.hold("busy", bread, 4);
+		Thread.sleep(60);
+		reservations.hold("busy", bread, 5); // renews every hold of the cart
+		Thread.sleep(60);
+		reservations.expireHolds();
+
+		assertEquals(0, reservations.getReserved("Milk"));
+		assertEquals(5, reservations.getReserved("Bread"));
+		reservations.hold("idle", milk, 3);
+
+		Thread.sleep(120);
+		reservations.expireHolds();
+		assertEquals(0, reservations.getReserved("Milk"));
+		assertEquals(0, reservations.getReserved("Bread"));
+		assertEquals(0, reservations.getHoldingCartCount());
+	}
+
+	@Test
+	@Tag("benchmark")
+	void thousandsOfOpenCartsExpireWithoutScanning() throws InterruptedException {
+		StockReservationServiceImpl reservations = new StockReservationServiceImpl(1_500);
+		ProductRow[] products = new ProductRow[200];
+		for (int i = 0; i < products.length; i++) {
+			products[i] = new ProductRow("Product " + i, String.valueOf(i), 1.0, 1_000_000);
+		}
+		int carts = 20_000;
+		int scans = 10;
+
+		long start = System.nanoTime();
+		for (int scan = 1; scan <= scans; scan++) {
+			for (int cart = 0; cart < carts; cart++) {
+				reservations.hold("cart-" + cart, products[(cart + scan) % products.length], 1);
+			}
+		}
+		double holdMicros = (System.nanoTime() - start) / 1_000.0 / (carts * scans);
+		assertEquals(carts, reservations.getHoldingCartCount());
+
+		// Nothing is due yet, the sweep only looks at the head of the queue
+		start = System.nanoTime();
+		for (int i = 0; i < 1_000; i++) {
+			reservations.expireHolds();
+		}
+		double idleSweepMicros = (System.nanoTime() - start) / 1_000.0 / 1_000;
+
+		Thread.sleep(1_600);
+		start = System.nanoTime();
+		reservations.expireHolds();
+		double expireMillis = (System.nanoTime() - start) / 1e6;
+
+		System.out.printf("Reservations for %d carts: %.2f us/hold, idle sweep %.2f us, expiring all %.1f ms%n",
+				carts, holdMicros, idleSweepMicros, expireMillis);
+		assertEquals(0, reservations.getHoldingCartCount());
+		assertEquals(0, reservations.getReserved("Product 7"));
+		assertTrue(idleSweepMicros < 50, "a sweep with nothing due should not touch the carts");
+		assertTrue(holdMicros < 50, "holding stock should not slow down scanning");
+	}
+}
@@ -0,0 +1,149 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.CartSession;
+import com.smartpos.retail.model.ProductRow;
+import com.smartpos.retail.model.Promotion;
+import com.smartpos.retail.model.TaxBreakdown;
+import com.smartpos.retail.model.TaxRate;
+import com.smartpos.retail.repository.TaxRateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TaxServiceImplTest {
+
+	private TaxRateRepository repository;
+	private TaxServiceImpl taxService;
+
+	@BeforeEach
+	void setUp() {
+		TaxRate food = new TaxRate("FOOD", "Food", 0.05, false);
+		food.getCategories().add("Groceries");
+		List<TaxRate> rates = new ArrayList<>(List.of(
+				new TaxRate("STD", "Standard", 0.15, false),
+				food,
+				new TaxRate("INCL", "Included", 0.15, true)));
+
+		repository = mock(TaxRateRepository.class);
+		when(repository.findAll()).thenReturn(rates);
+		when(repository.save(any(TaxRate.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		taxService = new TaxServiceImpl(repository, "STD", 0.0, false);
+		taxService.loadTaxRates();
+	}
+
+	@Test
+	void resolvesProductThenCategoryThenDefault() {
+		ProductRow milk = new ProductRow("Milk", "1", 6.0, 10);
+		milk.setCategory("Groceries");
+		assertEquals("FOOD", taxService.resolveTaxClass(milk));
+
+		milk.setTaxClass("INCL");
+		assertEquals("INCL", taxService.resolveTaxClass(milk));
+
+		milk.setTaxClass("UNKNOWN");
+		assertEquals("FOOD", taxService.resolveTaxClass(milk), "an unknown class falls back to the category");
+
+		assertEquals("STD", taxService.resolveTaxClass(new ProductRow("Soap", "2", 3.0, 10)));
+	}
+
+	@Test
+	void breakdownHasOneLinePerRate() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		cart.getLines().add(new CartSession.CartLine("Soap", 2, 10.0, "STD"));
+		cart.getLines().add(new CartSession.CartLine("Milk", 1, 20.0, "FOOD"));
+		cart.getLines().add(new CartSession.CartLine("Towel", 1, 30.0, "STD"));
+		cart.getLines().add(new CartSession.CartLine("Old cart line", 1, 10.0, null));
+
+		TaxBreakdown taxes = taxService.calculateTax(cart);
+
+		assertEquals(2, taxes.getLines().size());
+		TaxBreakdown.TaxLine standard = taxes.getLines().get(0);
+		assertEquals("STD", standard.code());
+		assertEquals(60.0, standard.taxableAmount(), 1e-9);
+		assertEquals(9.0, standard.tax(), 1e-9);
+		assertEquals(1.0, taxes.getLines().get(1).tax(), 1e-9);
+		assertEquals(10.0, taxes.getAddedTax(), 1e-9);
+	}
+
+	@Test
+	void inclusivePricesDoNotAddToTotal() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		cart.getLines().add(new CartSession.CartLine("Phone", 1, 115.0, "INCL"));
+
+		TaxBreakdown taxes = taxService.calculateTax(cart);
+
+		assertEquals(15.0, taxes.getTax(), 1e-9);
+		assertEquals(0.0, taxes.getAddedTax(), 1e-9);
+	}
+
+	@Test
+	void discountsReduceTaxableAmount() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		cart.getLines().add(new CartSession.CartLine("Soap", 1, 100.0, "STD"));
+		cart.getLines().add(new CartSession.CartLine("Milk", 1, 100.0, "FOOD"));
+		cart.getDiscounts().setLineDiscount("Soap", 20.0);
+		cart.getDiscounts().setPromotionDiscount(Promotion.multiBuy("deal", "Milk", 2, 1.0), 18.0);
+
+		TaxBreakdown taxes = taxService.calculateTax(cart);
+
+		// 18 spread over 80 + 100 of remaining value
+		assertEquals(72.0, taxes.getLines().get(0).taxableAmount(), 1e-9);
+		assertEquals(90.0, taxes.getLines().get(1).taxableAmount(), 1e-9);
+	}
+
+	@Test
+	void rateChangesApplyToCartsAlreadyScanned() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		cart.getLines().add(new CartSession.CartLine("Soap", 1, 100.0, "STD"));
+
+		taxService.saveTaxRate(new TaxRate("STD", "Standard", 0.20, false));
+
+		assertEquals(20.0, taxService.calculateTax(cart).getTax(), 1e-9);
+		assertEquals(3, taxService.getTaxRates().size());
+	}
+
+	@Test
+	void savedRatesAreNeverChangedInPlace() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		cart.getLines().add(new CartSession.CartLine("Soap", 1, 100.0, "STD"));
+		TaxRate shown = taxService.getTaxRates().get(0);
+
+		TaxRate edited = new TaxRate("STD", "Standard", 0.20, false);
+		taxService.saveTaxRate(edited);
+		edited.setRate(0.50);
+		shown.setRate(0.90);
+
+		assertEquals(20.0, taxService.calculateTax(cart).getTax(), 1e-9, "later edits of either object do not reach the table");
+		assertEquals(0.20, taxService.getTaxRates().stream()
+				.filter(rate -> rate.getCode().equals("STD")).findFirst().orElseThrow().getRate(), 1e-9);
+	}
+
+	@Test
+	@Tag("benchmark")
+	void breakdownStaysCheapForLargeCarts() {
+		CartSession cart = new CartSession("c1", "lane-1");
+		String[] classes = {"STD", "FOOD", "INCL"};
+		for (int i = 0; i < 300; i++) {
+			cart.getLines().add(new CartSession.CartLine("P" + i, 1 + i % 3, 1.0 + i % 10, classes[i % 3]));
+		}
+		for (int i = 0; i < 20_000; i++) {
+			taxService.calculateTax(cart); // warm up
+		}
+
+		int rounds = 20_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			taxService.calculateTax(cart);
+		}
+		double micros = (System.nanoTime() - start) / 1_000.0 / rounds;
+		System.out.printf("Tax breakdown (300 lines, 3 rates): %.1f us/cart%n", micros);
+		assertTrue(micros < 1_000);
+	}
+}
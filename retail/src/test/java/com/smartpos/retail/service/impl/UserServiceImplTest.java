@@ -0,0 +1,153 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.User;
+import com.smartpos.retail.model.UserSession;
+import com.smartpos.retail.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserServiceImplTest {
+
+	private UserRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(UserRepository.class);
+		when(repository.findAll()).thenReturn(new ArrayList<>());
+	}
+
+	private UserServiceImpl newService(int iterations) {
+		UserServiceImpl service = new UserServiceImpl(repository, new PasswordHasher(iterations), 16, 60, 120);
+		service.loadUsers();
+		return service;
+	}
+
+	@Test
+	void seededPasswordsAreStoredHashed() {
+		UserServiceImpl service = newService(1_000);
+
+		User admin = service.authenticate("admin", "admin123");
+		assertNotNull(admin);
+		assertTrue(PasswordHasher.isHashed(admin.getPassword()));
+		assertNotEquals("admin123", admin.getPassword());
+	}
+
+	@Test
+	void rejectsWrongPasswordAndUnknownUser() {
+		UserServiceImpl service = newService(1_000);
+
+		assertNull(service.authenticate("admin", "wrong"));
+		assertNull(service.authenticate("nobody", "admin123"));
+		assertNull(service.authenticate(null, "admin123"));
+	}
+
+	@Test
+	void cachedLoginStillChecksPassword() {
+		UserServiceImpl service = newService(1_000);
+
+		assertNotNull(service.authenticate("cashier", "cashier123"));
+		assertNull(service.authenticate("cashier", "cashier124"));
+		assertNotNull(service.authenticate("cashier", "cashier123"));
+	}
+
+	@Test
+	void upgradesHashWhenIterationsChange() {
+		UserServiceImpl service = newService(1_000);
+		User admin = service.authenticate("admin", "admin123");
+
+		when(repository.findAll()).thenReturn(new ArrayList<>(java.util.List.of(admin)));
+		UserServiceImpl upgraded = new UserServiceImpl(repository, new PasswordHasher(2_000), 16, 60, 120);
+		upgraded.loadUsers();
+
+		assertNotNull(upgraded.authenticate("admin", "admin123"));
+		assertTrue(admin.getPassword().startsWith("pbkdf2-sha256$2000$"));
+	}
+
+	@Test
+	void permissionsAreEvaluatedPerTerminal() {
+		UserServiceImpl service = newService(1_000);
+		service.openSession("lane-1", service.authenticate("admin", "admin123"));
+		service.openSession("lane-2", service.authenticate("cashier", "cashier123"));
+
+		assertTrue(service.canAccessInventory("lane-1"));
+		assertFalse(service.canAccessInventory("lane-2"));
+		assertTrue(service.canMakeSales("lane-2"));
+		assertFalse(service.canMakeSales("lane-3"));
+		assertNull(service.getCurrentUser(), "desktop terminal has no session yet");
+
+		service.closeSession("lane-1");
+		assertFalse(service.canMakeSales("lane-1"));
+		assertEquals(1, service.getActiveSessions().size());
+	}
+
+	@Test
+	void sessionsAreFoundByTheirTokenUntilClosedOrReplaced() {
+		UserServiceImpl service = newService(1_000);
+		UserSession first = service.openSession("lane-1", service.authenticate("cashier", "cashier123"));
+		UserSession other = service.openSession("lane-2", service.authenticate("ahmed", "ahmed123"));
+
+		assertNotEquals(first.getToken(), other.getToken());
+		assertSame(first, service.getSessionByToken(first.getToken()));
+		assertNull(service.getSessionByToken("guess"));
+		assertNull(service.getSessionByToken(null));
+
+		UserSession second = service.openSession("lane-1", service.authenticate("admin", "admin123"));
+		assertNull(service.getSessionByToken(first.getToken()), "a replaced session's token no longer works");
+		assertSame(second, service.getSessionByToken(second.getToken()));
+
+		service.closeSession("lane-1");
+		assertNull(service.getSessionByToken(second.getToken()));
+		assertSame(other, service.getSessionByToken(other.getToken()));
+	}
+
+	@Test
+	void idleSessionsExpire() throws InterruptedException {
+		UserServiceImpl service = new UserServiceImpl(repository, new PasswordHasher(1_000), 16, 60, 0);
+		service.loadUsers();
+		UserSession session = service.openSession("lane-1", service.authenticate("cashier", "cashier123"));
+		service.setCurrentUser(service.authenticate("admin", "admin123"));
+
+		Thread.sleep(5);
+		service.expireIdleSessions();
+		assertEquals(1, service.getActiveSessions().size());
+		assertNull(service.getSession("lane-1"));
+		assertNull(service.getSessionByToken(session.getToken()));
+		assertNotNull(service.getCurrentUser(), "the desktop client stays logged in until it logs out");
+		assertTrue(service.canAccessInventory());
+	}
+
+	/**
+	 * Login latency against hash cost. The first login pays the full PBKDF2 cost,
+	 * a re-lock within the shift is served from the verified-login cache.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmarkLoginLatencyAgainstHashCost() {
+		System.out.println("iterations | first login (ms) | cached re-login (ms)");
+		for (int iterations : new int[] { 10_000, 60_000, 120_000 }) {
+			UserServiceImpl service = newService(iterations);
+			service.authenticate("ahmed", "ahmed123"); // warm up the JCA providers
+
+			service = newService(iterations);
+			long start = System.nanoTime();
+			assertNotNull(service.authenticate("ahmed", "ahmed123"));
+			double firstMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+			int rounds = 200;
+			start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				assertNotNull(service.authenticate("ahmed", "ahmed123"));
+			}
+			double cachedMillis = (System.nanoTime() - start) / 1_000_000.0 / rounds;
+
+			System.out.printf("%10d | %16.2f | %19.4f%n", iterations, firstMillis, cachedMillis);
+			assertTrue(cachedMillis < firstMillis, "cached re-login should not pay the hash cost");
+		}
+	}
+}
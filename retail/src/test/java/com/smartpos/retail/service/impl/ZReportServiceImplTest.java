@@ -0,0 +1,166 @@
+package com.smartpos.retail.service.impl;
+
+import com.smartpos.retail.model.SaleRecord;
+import com.smartpos.retail.model.ZReport;
+import com.smartpos.retail.repository.SalesJournal;
+import com.smartpos.retail.repository.ZReportStore;
+import com.smartpos.retail.service.ZReportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZReportServiceImplTest {
+
+	@TempDir
+	Path tempDir;
+
+	private SalesJournal journal;
+	private ZReportStore reportStore;
+	private ZReportServiceImpl reports;
+
+	@BeforeEach
+	void setUp() {
+		journal = new SalesJournal(tempDir.resolve("journal").toString());
+		reportStore = new ZReportStore(tempDir.resolve("reports").toString());
+		reports = newService();
+	}
+
+	@AfterEach
+	void tearDown() {
+		journal.close();
+	}
+
+	private ZReportServiceImpl newService() {
+		ZReportServiceImpl service = new ZReportServiceImpl(journal, reportStore, 3);
+		service.restoreOpenDay();
+		return service;
+	}
+
+	private static SaleRecord sale(String cashier, SaleRecord.Line... lines) {
+		double subtotal = 0;
+		for (SaleRecord.Line line : lines) {
+			subtotal += line.total();
+		}
+		double tax = Math.round(subtotal * 15) / 100.0;
+		return new SaleRecord(UUID.randomUUID().toString(), System.currentTimeMillis(), "lane-1", cashier,
+				subtotal, 0, tax, subtotal + tax, List.of(lines));
+	}
+
+	private static SaleRecord.Line line(String product, int quantity, double price) {
+		return new SaleRecord.Line(product, quantity, price, quantity * price);
+	}
+
+	@Test
+	void runningTotalsPerDayAndCashier() {
+		reports.recordSale(sale("ali", line("Milk", 2, 5.0), line("Bread", 1, 2.5)));
+		reports.recordSale(sale("sara", line("Milk", 1, 5.0)));
+		reports.recordSale(sale("ali", line("Tea", 3, 1.1)));
+
+		ZReport day = reports.getCurrentReport();
+		assertEquals(0, day.getNumber());
+		assertEquals(3, day.getTransactionCount());
+		assertEquals(7, day.getItemCount());
+		assertEquals(20.8, day.getSubtotal(), 1e-9);
+		assertEquals(List.of("Milk", "Tea", "Bread"), day.getTopItems().stream().map(ZReport.ItemTotal::productName).toList());
+		assertEquals(List.of("ali", "sara"), day.getCashierReports().stream().map(ZReport::getCashier).toList());
+
+		ZReport ali = reports.getShiftReport("ali");
+		assertEquals(2, ali.getTransactionCount());
+		assertEquals(6, ali.getItemCount());
+		assertEquals(15.8, ali.getSubtotal(), 1e-9);
+		assertEquals(0, reports.getShiftReport("nobody").getTransactionCount());
+	}
+
+	@Test
+	void closingStoresReportAndStartsFromZero() {
+		reports.recordSale(sale("ali", line("Milk", 2, 5.0)));
+		ZReport first = reports.closeDay();
+		reports.recordSale(sale("ali", line("Bread", 1, 2.5)));
+		ZReport second = reports.closeDay();
+
+		assertEquals(1, first.getNumber());
+		assertEquals(2, second.getNumber());
+		assertEquals(1, second.getTransactionCount());
+		assertEquals(first.getClosedAtMillis(), second.getOpenedAtMillis());
+		assertEquals(0, reports.getCurrentReport().getTransactionCount());
+
+		ZReport stored = reports.getReport(1);
+		assertEquals(first.getTotal(), stored.getTotal());
+		assertEquals(first.getTopItems(), stored.getTopItems());
+		assertEquals("ali", stored.getCashierReports().get(0).getCashier());
+	}
+
+	@Test
+	void closedReportVerifiesAgainstJournal() {
+		reports.recordSale(sale("ali", line("Milk", 2, 5.0)));
+		reports.recordSale(sale("sara", line("Bread", 4, 2.5)));
+		reports.closeDay();
+		reports.recordSale(sale("ali", line("Tea", 1, 1.0)));
+
+		ZReportService.Verification verification = reports.verify(1);
+		assertTrue(verification.matches(), String.valueOf(verification.differences()));
+	}
+
+	@Test
+	void verificationReportsTamperedJournal() {
+		reports.recordSale(sale("ali", line("Milk", 2, 5.0)));
+		ZReport closed = reports.closeDay();
+
+		// A sale slipped into the closed period behind the report's back
+		journal.append(sale("sara", line("Bread", 1, 2.5)).withTimestamp(closed.getClosedAtMillis() - 1));
+
+		ZReportService.Verification verification = reports.verify(1);
+		assertFalse(verification.matches());
+		assertTrue(verification.differences().contains("transactions: report 1, journal 2"), String.valueOf(verification.differences()));
+		assertTrue(verification.differences().contains("sara: missing from report"));
+	}
+
+	@Test
+	void openDayIsRestoredFromJournalAfterRestart() {
+		reports.recordSale(sale("ali", line("Milk", 2, 5.0)));
+		reports.closeDay();
+		reports.recordSale(sale("ali", line("Bread", 1, 2.5)));
+		reports.recordSale(sale("sara", line("Tea", 2, 1.0)));
+		journal.flush();
+
+		ZReportServiceImpl restarted = newService();
+
+		ZReport current = restarted.getCurrentReport();
+		assertEquals(2, current.getTransactionCount());
+		assertEquals(3, current.getItemCount());
+		assertEquals(2, restarted.closeDay().getNumber());
+	}
+
+	@Test
+	@Tag("benchmark")
+	void closingTheDayDoesNotRescanSales() {
+		int sales = 100_000;
+		String[] cashiers = {"ali", "sara", "omar", "huda"};
+		for (int i = 0; i < sales; i++) {
+			reports.recordSale(sale(cashiers[i % cashiers.length],
+					line("Product " + (i % 500), 1 + i % 3, 1.25), line("Bag", 1, 0.1)));
+		}
+
+		long start = System.nanoTime();
+		ZReport closed = reports.closeDay();
+		double closeMillis = (System.nanoTime() - start) / 1e6;
+
+		start = System.nanoTime();
+		ZReportService.Verification verification = reports.verify(closed.getNumber());
+		double verifyMillis = (System.nanoTime() - start) / 1e6;
+
+		System.out.printf("Z report (%d sales): close %.1f ms from running totals, verify %.1f ms from journal%n",
+				sales, closeMillis, verifyMillis);
+		assertEquals(sales, closed.getTransactionCount());
+		assertTrue(verification.matches(), String.valueOf(verification.differences()));
+		assertTrue(closeMillis < verifyMillis, "closing should not cost as much as replaying the journal");
+	}
+}
@@ -0,0 +1,85 @@
+package com.smartpos.retail.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanQueueTest {
+
+	@Test
+	void repeatedScansWithinWindowCoalesce() {
+		ScanQueue queue = new ScanQueue(300);
+		queue.offer("111", 1_000);
+		queue.offer("111", 1_050);
+		queue.offer("111", 1_100);
+		queue.offer("222", 1_150);
+		queue.offer("111", 1_200);
+
+		List<ScanQueue.Scan> scans = queue.drain();
+
+		assertEquals(List.of(new ScanQueue.Scan("111", 3), new ScanQueue.Scan("222", 1), new ScanQueue.Scan("111", 1)), scans);
+		assertEquals(2, queue.getCoalescedCount());
+		assertTrue(queue.drain().isEmpty());
+	}
+
+	@Test
+	void scansOutsideWindowStaySeparate() {
+		ScanQueue queue = new ScanQueue(300);
+		queue.offer("111", 1_000);
+		queue.offer("111", 1_200);
+		queue.offer("111", 1_400);
+
+		assertEquals(List.of(new ScanQueue.Scan("111", 2), new ScanQueue.Scan("111", 1)), queue.drain());
+	}
+
+	@Test
+	void runStaysOpenAcrossFramesUntilItsWindowEnds() {
+		ScanQueue queue = new ScanQueue(300);
+		// 20 scans/s drained every frame
+		queue.offer("111", 1_000);
+		assertTrue(queue.drainClosed(1_016).isEmpty());
+		queue.offer("111", 1_050);
+		assertTrue(queue.drainClosed(1_066).isEmpty());
+		queue.offer("111", 1_100);
+		assertTrue(queue.drainClosed(1_300).isEmpty());
+		assertFalse(queue.isEmpty(), "an open run is still waiting for the cart");
+		assertEquals(List.of(new ScanQueue.Scan("111", 3)), queue.drainClosed(1_301));
+
+		// Another code closes the run at once and opens its own
+		queue.offer("222", 1_400);
+		queue.offer("333", 1_450);
+		assertEquals(List.of(new ScanQueue.Scan("222", 1)), queue.drainClosed(1_466));
+		assertEquals(List.of(new ScanQueue.Scan("333", 1)), queue.drain());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	void noScansLostUnderBurst() throws Exception {
+		ScanQueue queue = new ScanQueue(300);
+		String[] codes = {"111", "111", "111", "222", "333", "333"};
+		int scans = 200_000;
+		AtomicBoolean done = new AtomicBoolean();
+
+		Thread scanner = new Thread(() -> {
+			for (int i = 0; i < scans; i++) {
+				queue.offer(codes[i % codes.length]);
+			}
+			done.set(true);
+		});
+
+		scanner.start();
+		long drainedQuantity = 0;
+		while (!done.get() || !queue.isEmpty()) {
+			for (ScanQueue.Scan scan : queue.drain()) {
+				drainedQuantity += scan.quantity();
+			}
+		}
+		scanner.join();
+
+		assertEquals(scans, drainedQuantity);
+		assertEquals(scans, queue.getReceivedCount());
+	}
+}